@@ -42,6 +42,13 @@ android {
         jvmTarget = "17"
     }
 
+    // Robolectric-backed tests run Room against a real SQLite engine on the JVM.
+    testOptions {
+        unitTests.isIncludeAndroidResources = true
+        // The timed parts of the *BenchmarkTest classes only run with -Pbenchmarks.
+        unitTests.all { it.systemProperty("benchmarks", project.hasProperty("benchmarks")) }
+    }
+
     // Fix for SQLite native lib deletion warning
     kapt {
         correctErrorTypes = true
@@ -64,8 +71,12 @@ dependencies {
     // Room Database
     implementation(libs.androidx.room.runtime)
     implementation(libs.androidx.room.ktx)
+    implementation(libs.androidx.room.paging)
     kapt(libs.androidx.room.compiler)
 
+    // Paging
+    implementation(libs.androidx.paging.runtime.ktx)
+
     // Lifecycle components
     implementation(libs.androidx.lifecycle.viewmodel.ktx)
     implementation(libs.androidx.lifecycle.livedata.ktx)
@@ -86,6 +97,8 @@ dependencies {
     testImplementation(libs.mockito.kotlin)
     testImplementation(libs.androidx.arch.core.testing)
     testImplementation(libs.kotlinx.coroutines.test)
+    testImplementation(libs.robolectric)
+    testImplementation(libs.androidx.test.core)
     androidTestImplementation(libs.androidx.junit)
     androidTestImplementation(libs.androidx.espresso.core)
 }
\ No newline at end of file
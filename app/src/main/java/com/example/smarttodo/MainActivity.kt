@@ -16,28 +16,36 @@ import androidx.annotation.StringRes
 import androidx.appcompat.app.AppCompatActivity
 import androidx.core.content.ContextCompat
 import androidx.core.widget.addTextChangedListener
+import androidx.lifecycle.Lifecycle
+import androidx.lifecycle.lifecycleScope
+import androidx.lifecycle.repeatOnLifecycle
+import androidx.paging.LoadState
 import androidx.recyclerview.widget.ItemTouchHelper
 import androidx.recyclerview.widget.LinearLayoutManager
 import androidx.recyclerview.widget.RecyclerView
-import com.example.smarttodo.data.Task
+import com.example.smarttodo.data.TaskListItem
+import com.example.smarttodo.data.TaskTransferFormat
 import com.example.smarttodo.databinding.ActivityMainBinding
 import com.example.smarttodo.ui.AddTaskDialogFragment
 import com.example.smarttodo.ui.NotificationSettingsDialog
 import com.example.smarttodo.ui.SwipeGestureHelper
 import com.example.smarttodo.ui.TaskAdapter
 import com.example.smarttodo.ui.TaskItemDecoration
+import com.example.smarttodo.ui.TaskPagingAdapter
 import com.example.smarttodo.ui.TaskViewModel
 import com.example.smarttodo.ui.TaskViewModelFactory
 import com.google.android.material.chip.ChipGroup
 import com.google.android.material.dialog.MaterialAlertDialogBuilder
 import com.google.android.material.snackbar.Snackbar
-import java.util.Date
+import kotlinx.coroutines.flow.collectLatest
+import kotlinx.coroutines.launch
 import java.util.Calendar
 
 class MainActivity : AppCompatActivity() {
 
     private lateinit var binding: ActivityMainBinding
     private lateinit var taskAdapter: TaskAdapter
+    private lateinit var taskPagingAdapter: TaskPagingAdapter
     private var inflatedEmptyState: View? = null
 
     private val taskViewModel: TaskViewModel by viewModels {
@@ -52,6 +60,15 @@ class MainActivity : AppCompatActivity() {
             }
         }
 
+    // One launcher per format: the picker only returns a Uri, and the MIME type is fixed per contract.
+    private val exportJsonLinesLauncher = registerExportLauncher(TaskTransferFormat.JSON_LINES)
+    private val exportCsvLauncher = registerExportLauncher(TaskTransferFormat.CSV)
+
+    private val importDocumentLauncher =
+        registerForActivityResult(ActivityResultContracts.OpenDocument()) { uri ->
+            uri?.let { taskViewModel.importTasks(it) }
+        }
+
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
         binding = ActivityMainBinding.inflate(layoutInflater)
@@ -82,10 +99,27 @@ class MainActivity : AppCompatActivity() {
                 dialog.show(supportFragmentManager, NotificationSettingsDialog.TAG)
                 true
             }
+            R.id.action_export_json_lines -> {
+                exportJsonLinesLauncher.launch("${getString(R.string.export_file_name)}.jsonl")
+                true
+            }
+            R.id.action_export_csv -> {
+                exportCsvLauncher.launch("${getString(R.string.export_file_name)}.csv")
+                true
+            }
+            R.id.action_import -> {
+                importDocumentLauncher.launch(IMPORT_MIME_TYPES)
+                true
+            }
             else -> super.onOptionsItemSelected(item)
         }
     }
 
+    private fun registerExportLauncher(format: TaskTransferFormat) =
+        registerForActivityResult(ActivityResultContracts.CreateDocument(format.mimeType)) { uri ->
+            uri?.let { taskViewModel.exportTasks(it, format) }
+        }
+
     /**
      * Request notification permission if needed (Android 13+)
      */
@@ -144,8 +178,15 @@ class MainActivity : AppCompatActivity() {
             onTaskLongClick = { task -> showTaskOptions(task) },
             onCompleteClick = { task -> toggleTaskCompletion(task) }
         )
+        taskPagingAdapter = TaskPagingAdapter(
+            onTaskClick = { task, view -> showTaskDetail(task, view) },
+            onTaskLongClick = { task -> showTaskOptions(task) },
+            onCompleteClick = { task -> toggleTaskCompletion(task) }
+        )
         binding.recyclerViewTasks.apply {
-            adapter = taskAdapter
+            // The unfiltered list is paged; observeViewModel() swaps adapters when a filter or a
+            // fuzzy search is selected.
+            adapter = taskPagingAdapter
             layoutManager = LinearLayoutManager(this@MainActivity)
             addItemDecoration(TaskItemDecoration(resources.getDimensionPixelSize(R.dimen.task_item_spacing)))
         }
@@ -175,7 +216,7 @@ class MainActivity : AppCompatActivity() {
         }
     }
 
-    private fun showTaskDetail(task: Task, view: View) {
+    private fun showTaskDetail(task: TaskListItem, view: View) {
         val intent = Intent(this, com.example.smarttodo.ui.TaskDetailActivity::class.java).apply {
             putExtra("task_id", task.id)
            putExtra("transition_name", "task_card_${'$'}{task.id}")
@@ -190,12 +231,12 @@ class MainActivity : AppCompatActivity() {
         val swipeGestureHelper = SwipeGestureHelper(
             onSwipeRight = { position ->
                 if (position != RecyclerView.NO_POSITION) {
-                    taskAdapter.getTaskAt(position)?.let { toggleTaskCompletion(it) }
+                    taskAt(position)?.let { toggleTaskCompletion(it) }
                 }
             },
             onSwipeLeft = { position ->
                 if (position != RecyclerView.NO_POSITION) {
-                    taskAdapter.getTaskAt(position)?.let { showDeleteConfirmation(it, position) }
+                    taskAt(position)?.let { showDeleteConfirmation(it, position) }
                 }
             }
         )
@@ -203,6 +244,12 @@ class MainActivity : AppCompatActivity() {
         itemTouchHelper.attachToRecyclerView(binding.recyclerViewTasks)
     }
 
+    private fun isShowingPagedList(): Boolean = binding.recyclerViewTasks.adapter === taskPagingAdapter
+
+    private fun taskAt(position: Int): TaskListItem? {
+        return if (isShowingPagedList()) taskPagingAdapter.getTaskAt(position) else taskAdapter.getTaskAt(position)
+    }
+
     private fun setupFab() {
         binding.fabAddTask.setOnClickListener {
             showAddTaskDialog()
@@ -217,6 +264,10 @@ class MainActivity : AppCompatActivity() {
         binding.searchEditText.addTextChangedListener { text ->
             taskViewModel.setSearchQuery(text.toString().trim())
         }
+        binding.chipFuzzySearch.isChecked = taskViewModel.fuzzySearch.value
+        binding.chipFuzzySearch.setOnCheckedChangeListener { _, isChecked ->
+            taskViewModel.setFuzzySearch(isChecked)
+        }
     }
 
     private fun setupSwipeRefresh() {
@@ -231,14 +282,48 @@ class MainActivity : AppCompatActivity() {
             binding.swipeRefreshLayout.isRefreshing = isLoading
         }
 
-        taskViewModel.tasksToDisplay.observe(this) { tasks ->
-            taskAdapter.submitList(tasks)
-            updateEmptyState(tasks.isEmpty())
+        taskViewModel.purgeProgress.observe(this) { progress ->
+            supportActionBar?.subtitle = progress?.let {
+                getString(R.string.deleting_tasks_progress, it.deleted, it.total)
+            }
+        }
+
+        lifecycleScope.launch {
+            repeatOnLifecycle(Lifecycle.State.STARTED) {
+                launch {
+                    taskViewModel.usesPagedList.collect { pagedAdapterWanted ->
+                        if (pagedAdapterWanted != isShowingPagedList()) {
+                            binding.recyclerViewTasks.adapter = if (pagedAdapterWanted) taskPagingAdapter else taskAdapter
+                            if (pagedAdapterWanted) {
+                                updateEmptyState(taskPagingAdapter.itemCount == 0)
+                            }
+                        }
+                    }
+                }
+                launch {
+                    taskViewModel.tasksToDisplay.collect { tasks ->
+                        taskAdapter.submitList(tasks)
+                        if (!isShowingPagedList()) {
+                            updateEmptyState(tasks.isEmpty())
+                        }
+                    }
+                }
+                taskViewModel.pagedTasks.collectLatest { pagingData ->
+                    taskPagingAdapter.submitData(pagingData)
+                }
+            }
+        }
+
+        taskPagingAdapter.addLoadStateListener { loadStates ->
+            if (isShowingPagedList() && loadStates.refresh is LoadState.NotLoading) {
+                updateEmptyState(taskPagingAdapter.itemCount == 0)
+            }
         }
 
         taskViewModel.userMessageEvent.observe(this) { event ->
             event.getContentIfNotHandled()?.let { userMessage ->
-                val messageText = userMessage.customMessage ?: getString(userMessage.messageResId!!)
+                val messageText = userMessage.customMessage
+                    ?: getString(userMessage.messageResId!!, *userMessage.formatArgs.toTypedArray())
                 if (userMessage.isError) {
                     Snackbar.make(binding.root, messageText, Snackbar.LENGTH_LONG).show()
                 } else {
@@ -271,16 +356,16 @@ class MainActivity : AppCompatActivity() {
         dialog.show(supportFragmentManager, AddTaskDialogFragment.TAG_ADD)
     }
 
-    private fun editTask(task: Task) {
-        val dialog = AddTaskDialogFragment.newInstance(task)
+    private fun editTask(task: TaskListItem) {
+        val dialog = AddTaskDialogFragment.newInstance(task.id)
         dialog.show(supportFragmentManager, AddTaskDialogFragment.TAG_EDIT)
     }
 
-    private fun toggleTaskCompletion(task: Task) {
-        taskViewModel.toggleTaskCompletion(task)
+    private fun toggleTaskCompletion(task: TaskListItem) {
+        taskViewModel.toggleTaskCompletion(task.id)
     }
 
-    private fun showTaskOptions(task: Task) {
+    private fun showTaskOptions(task: TaskListItem) {
         val options = arrayOf(
             getString(R.string.edit),
             getString(R.string.delete),
@@ -326,34 +411,39 @@ class MainActivity : AppCompatActivity() {
             .show()
     }
 
-    private fun showDeleteConfirmation(task: Task, position: Int = -1) {
+    private fun showDeleteConfirmation(task: TaskListItem, position: Int = -1) {
         showConfirmationDialog(
             titleResId = R.string.delete_task_title,
             messageResId = R.string.delete_task_message,
             messageArgs = arrayOf(task.title),
             onConfirm = {
-                taskViewModel.delete(task)
+                taskViewModel.deleteById(task.id)
             },
             onCancel = {
                 if (position != -1) {
-                    taskAdapter.notifyItemChanged(position)
+                    binding.recyclerViewTasks.adapter?.notifyItemChanged(position)
                 }
             }
         )
     }
 
-    private fun duplicateTask(task: Task) {
-        val duplicatedTask = task.copy(
-            id = 0,
-            title = "${task.title}${getString(R.string.task_title_copy_suffix)}",
-            isCompleted = false,
-            createdAt = Date()
-        )
-        taskViewModel.insert(duplicatedTask)
+    private fun duplicateTask(task: TaskListItem) {
+        taskViewModel.duplicateTask(task.id, getString(R.string.task_title_copy_suffix))
     }
 
     private fun showToast(@StringRes messageResId: Int) {
         Toast.makeText(this, getString(messageResId), Toast.LENGTH_SHORT).show()
     }
 
+    private companion object {
+        // Some providers report .jsonl files as plain text or generic binary.
+        val IMPORT_MIME_TYPES = arrayOf(
+            TaskTransferFormat.JSON_LINES.mimeType,
+            TaskTransferFormat.CSV.mimeType,
+            "text/comma-separated-values",
+            "text/plain",
+            "application/octet-stream"
+        )
+    }
+
 }
@@ -1,8 +1,19 @@
 package com.example.smarttodo
 
 import android.app.Application
+import com.example.smarttodo.data.FuzzyIndex
+import com.example.smarttodo.data.TaskArchiver
+import com.example.smarttodo.data.TaskBackup
+import com.example.smarttodo.data.TaskCache
 import com.example.smarttodo.data.TaskDatabase
 import com.example.smarttodo.data.TaskRepository
+import com.example.smarttodo.data.TaskWriteQueue
+import com.example.smarttodo.receiver.TimeZoneChangedReceiver
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
+import java.io.File
 
 /**
  * Custom [Application] class for the SmartTodo application.
@@ -20,16 +31,52 @@ class SmartTodoApplication : Application() {
      */
     val database: TaskDatabase by lazy { TaskDatabase.getDatabase(this) }
 
+    /**
+     * Scope for work that must outlive any screen, such as writes started from broadcast
+     * receivers. A failing child does not cancel the others.
+     */
+    val applicationScope: CoroutineScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+    /**
+     * The single writer all task mutations go through; see [TaskWriteQueue].
+     */
+    val writeQueue: TaskWriteQueue by lazy { TaskWriteQueue(database, applicationScope) }
+
     /**
      * Lazily initialized singleton instance of the [TaskRepository].
      * The repository is created only when this property is first accessed,
      * and it depends on the `taskDao()` provided by the [database] instance.
      * This repository serves as the single source of truth for task data for the UI layer.
      */
-    val repository: TaskRepository by lazy { TaskRepository(database.taskDao()) }
+    val repository: TaskRepository by lazy {
+        TaskRepository(
+            database.taskDao(),
+            writeQueue = writeQueue,
+            taskCache = TaskCache(),
+            changeFeedScope = applicationScope,
+            ioDispatcher = database.queryDispatcher,
+            fuzzyIndex = FuzzyIndex()
+        )
+    }
+
+    /** Moves old completed tasks out of the main table, see [TaskArchiver]. */
+    val taskArchiver: TaskArchiver by lazy {
+        TaskArchiver(repository, getSharedPreferences("task_archiver", MODE_PRIVATE))
+    }
+
+    /** Nightly incremental backup of the tasks table, see [TaskBackup]. */
+    val taskBackup: TaskBackup by lazy {
+        TaskBackup(repository, File(filesDir, "backup"), getSharedPreferences("task_backup", MODE_PRIVATE))
+    }
 
-    // No explicit onCreate() override is needed here if the only app-level
-    // initializations are handled by the lazy delegates above.
-    // If other global initializations were required (e.g., setting up logging,
-    // analytics, etc.), they would typically go into an overridden onCreate() method.
+    override fun onCreate() {
+        super.onCreate()
+        // Catch time zone changes that happened while the app was not running, then archive and
+        // back up what is left.
+        applicationScope.launch {
+            TimeZoneChangedReceiver.refreshIfZoneChanged(this@SmartTodoApplication)
+            taskArchiver.runIfDue()
+            taskBackup.runIfDue()
+        }
+    }
 }
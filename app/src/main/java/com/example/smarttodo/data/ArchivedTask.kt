@@ -0,0 +1,54 @@
+package com.example.smarttodo.data
+
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+/**
+ * A completed task moved out of 'tasks' into the cold 'tasks_archive' table by
+ * [TaskRepository.archiveCompletedTasks]. Keeping old completed tasks out of 'tasks' keeps its
+ * indexes, the full-text index and every list query sized to the tasks still in use.
+ *
+ * The row keeps its original [id] (AUTOINCREMENT never hands it out again) and every column of
+ * [Task] except the derived [Task.dueEpochDay], so [toTask] restores it unchanged. The archive
+ * is only read on demand, newest-completed first through the `completionDate` index.
+ */
+@Entity(
+    tableName = "tasks_archive",
+    indices = [Index(value = ["completionDate"])]
+)
+data class ArchivedTask(
+    @PrimaryKey
+    val id: Int,
+    val title: String,
+    val description: String,
+    val priority: Priority,
+    val createdAt: Long,
+    val dueDate: Long?,
+    val completionDate: Long?,
+    val hasReminder: Boolean,
+    val preReminderOffsetMinutes: Int?,
+    val taskType: TaskType,
+    val estimatedPomodoros: Int,
+    val completedPomodoros: Int,
+    val soundUri: String?,
+    val archivedAt: Long
+) {
+    /** The completed [Task] this row was archived from. */
+    fun toTask(): Task = Task(
+        id = id,
+        title = title,
+        description = description,
+        priority = priority,
+        isCompleted = true,
+        createdAt = createdAt,
+        dueDate = dueDate,
+        completionDate = completionDate,
+        hasReminder = hasReminder,
+        preReminderOffsetMinutes = preReminderOffsetMinutes,
+        taskType = taskType,
+        estimatedPomodoros = estimatedPomodoros,
+        completedPomodoros = completedPomodoros,
+        soundUri = soundUri
+    )
+}
@@ -1,8 +1,42 @@
 package com.example.smarttodo.data
 
+import com.example.smarttodo.util.DayBucket
+import com.example.smarttodo.util.DayBucketer
+
 data class CategorizedTasks(
-    val today: List<Task>,
-    val tomorrow: List<Task>,
-    val upcoming: List<Task>,
-    val completed: List<Task>
-)
+    val today: List<TaskListItem>,
+    val tomorrow: List<TaskListItem>,
+    val upcoming: List<TaskListItem>,
+    val completed: List<TaskListItem>
+) {
+    companion object {
+        /**
+         * Splits [tasks] into sections by [TaskListItem.dueDate]. Pending tasks that are overdue
+         * or have no due date go to [upcoming]; completed ones are ordered by completion time,
+         * newest first. Each row costs a few long comparisons in [bucketer], whose day
+         * boundaries are computed once, so the result follows the current zone even before the
+         * stored due days have been recomputed after a zone change.
+         */
+        fun of(tasks: List<TaskListItem>, bucketer: DayBucketer): CategorizedTasks {
+            val today = ArrayList<TaskListItem>()
+            val tomorrow = ArrayList<TaskListItem>()
+            val upcoming = ArrayList<TaskListItem>()
+            val completed = ArrayList<TaskListItem>()
+
+            for (task in tasks) {
+                if (task.isCompleted) {
+                    completed.add(task)
+                } else {
+                    when (bucketer.bucketOf(task.dueDate)) {
+                        DayBucket.TODAY -> today.add(task)
+                        DayBucket.TOMORROW -> tomorrow.add(task)
+                        DayBucket.OVERDUE, DayBucket.UPCOMING, DayBucket.NONE -> upcoming.add(task)
+                    }
+                }
+            }
+            // In place, instead of sortedByDescending's copy.
+            completed.sortWith(compareByDescending<TaskListItem> { it.completionDate })
+            return CategorizedTasks(today, tomorrow, upcoming, completed)
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.smarttodo.data
+
+/**
+ * Positions of the live readers of the 'task_changes' log ([TaskRepository.taskChanges]), so
+ * [TaskWriteQueue] can prune the log while the app runs without deleting changes a reader has
+ * not seen yet.
+ */
+class ChangeLogReaders {
+
+    private val positions = HashMap<Position, Long>()
+
+    /** Starts tracking a reader that has seen every change up to [seq]; close it when done. */
+    fun open(seq: Long): Position = Position().also { it.moveTo(seq) }
+
+    /** The lowest position of any open reader, or null if none is open. */
+    fun oldest(): Long? = synchronized(positions) { positions.values.minOrNull() }
+
+    inner class Position : AutoCloseable {
+
+        /** The reader has now seen every change up to [seq]. */
+        fun moveTo(seq: Long) {
+            synchronized(positions) { positions[this] = seq }
+        }
+
+        override fun close() {
+            synchronized(positions) { positions.remove(this) }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.smarttodo.data
+
+import androidx.room.RoomDatabase
+import androidx.sqlite.db.SupportSQLiteDatabase
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * The connection, pragma and threading settings [TaskDatabase.create] applies, spelled out
+ * instead of left to Room's and the platform's defaults.
+ *
+ * The pragmas are set when Room opens its primary connection, which is the one every write
+ * goes through. Read-only connections of the WAL pool are opened by the platform with its own
+ * settings; only [journalMode] applies to them.
+ *
+ * @property journalMode WAL lets readers run while a write transaction is open.
+ * @property synchronous With WAL, NORMAL syncs at checkpoints only. A power loss can lose the
+ *                       last commits but never corrupts the file.
+ * @property cacheSizeKib Page cache of the primary connection, `PRAGMA cache_size = -N`.
+ * @property mmapSizeBytes `PRAGMA mmap_size`. 0 (off) by default: an I/O error on a mapped page
+ *                         kills the process with SIGBUS instead of raising an exception.
+ * @property connectionPoolSize Threads that run queries, and so the parallelism of the
+ *                              dispatcher repository work runs on. Matches the platform's usual
+ *                              WAL pool size, so a query thread rarely waits for a connection.
+ */
+data class DatabaseTuning(
+    val journalMode: RoomDatabase.JournalMode = RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING,
+    val synchronous: Synchronous = Synchronous.NORMAL,
+    val cacheSizeKib: Int = 2048,
+    val mmapSizeBytes: Long = 0L,
+    val connectionPoolSize: Int = 4
+) {
+    init {
+        require(connectionPoolSize > 0) { "connectionPoolSize must be positive" }
+        require(cacheSizeKib > 0) { "cacheSizeKib must be positive" }
+        require(mmapSizeBytes >= 0) { "mmapSizeBytes must not be negative" }
+    }
+
+    /** Values of `PRAGMA synchronous`. */
+    enum class Synchronous { OFF, NORMAL, FULL }
+
+    /** Fixed pool for Room queries, one thread per connection. */
+    fun newQueryExecutor(): ExecutorService =
+        Executors.newFixedThreadPool(connectionPoolSize, NamedThreadFactory("task-db-query"))
+
+    /** Room runs transactions one at a time; a single thread is enough. */
+    fun newTransactionExecutor(): ExecutorService =
+        Executors.newSingleThreadExecutor(NamedThreadFactory("task-db-transaction"))
+
+    /** Sets the pragmas on every open of the primary connection. */
+    fun pragmaCallback(): RoomDatabase.Callback = object : RoomDatabase.Callback() {
+        override fun onOpen(db: SupportSQLiteDatabase) {
+            // Run through query(): on Android, execSQL rejects pragmas that return a row.
+            pragma(db, "synchronous = ${synchronous.name}")
+            pragma(db, "cache_size = -$cacheSizeKib")
+            pragma(db, "mmap_size = $mmapSizeBytes")
+        }
+    }
+
+    private fun pragma(db: SupportSQLiteDatabase, assignment: String) {
+        db.query("PRAGMA $assignment").use { it.moveToFirst() }
+    }
+
+    private class NamedThreadFactory(private val prefix: String) : ThreadFactory {
+        private val count = AtomicInteger()
+
+        override fun newThread(runnable: Runnable): Thread =
+            Thread(runnable, "$prefix-${count.incrementAndGet()}").apply { isDaemon = true }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.smarttodo.data
+
+/**
+ * Turns free text typed into the search box into an FTS4 MATCH expression for [TaskFts].
+ *
+ * - Bare words become prefix terms (`groc` -> `groc*`), so results update while the user is
+ *   still typing a word.
+ * - Text wrapped in double quotes is kept as an exact phrase (`"buy milk"`).
+ * - All terms must match (implicit AND).
+ * - Characters that carry meaning in the MATCH grammar (`*`, `-`, `:`, `^`, parentheses...)
+ *   are treated as separators so user input can never produce a malformed query.
+ * - Words are split and case-folded exactly as [TaskFts]'s default "simple" tokenizer indexes
+ *   them: every non-ASCII character is part of a word, and only ASCII letters are folded. Full
+ *   Unicode lowercasing would turn `Übung` into `übung`, which the index never holds.
+ */
+object FtsQueryBuilder {
+
+    /**
+     * Builds a MATCH expression over all indexed columns.
+     *
+     * @return The expression, or null if [rawQuery] contains no searchable tokens.
+     */
+    fun build(rawQuery: String): String? = build(rawQuery, column = null)
+
+    /**
+     * Builds a MATCH expression restricted to the `title` column, used to rank title hits
+     * above description-only hits.
+     *
+     * @return The expression, or null if [rawQuery] contains no searchable tokens.
+     */
+    fun buildForTitle(rawQuery: String): String? = build(rawQuery, column = "title")
+
+    private fun build(rawQuery: String, column: String?): String? {
+        val prefix = if (column != null) "$column:" else ""
+        val terms = mutableListOf<String>()
+
+        // Even-indexed segments are outside quotes, odd-indexed segments are quoted phrases.
+        rawQuery.split('"').forEachIndexed { index, segment ->
+            val tokens = tokenize(segment)
+            if (tokens.isEmpty()) return@forEachIndexed
+            if (index % 2 == 1) {
+                terms.add("$prefix\"${tokens.joinToString(" ")}\"")
+            } else {
+                tokens.forEach { terms.add("$prefix$it*") }
+            }
+        }
+        return if (terms.isEmpty()) null else terms.joinToString(" ")
+    }
+
+    private fun tokenize(text: String): List<String> {
+        return text.split(NON_TOKEN_CHARS)
+            .filter { it.isNotEmpty() }
+            .map { token -> buildString(token.length) { token.forEach { append(foldAscii(it)) } } }
+    }
+
+    private fun foldAscii(c: Char): Char = if (c in 'A'..'Z') c + ('a' - 'A') else c
+
+    /** Separators of the "simple" tokenizer: ASCII characters other than letters and digits. */
+    private val NON_TOKEN_CHARS = Regex("[\\x00-\\x2F\\x3A-\\x40\\x5B-\\x60\\x7B-\\x7F]+")
+}
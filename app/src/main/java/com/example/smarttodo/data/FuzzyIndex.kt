@@ -0,0 +1,312 @@
+package com.example.smarttodo.data
+
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.map
+import java.util.concurrent.locks.ReentrantReadWriteLock
+import kotlin.concurrent.read
+import kotlin.concurrent.write
+import kotlin.math.ln
+
+/**
+ * An in-memory, typo-tolerant search over task titles and descriptions, ranked by relevance:
+ * `grocries` finds "Buy groceries". Used by [TaskRepository.fuzzySearchTasks], which loads it
+ * on first use and keeps it current from [TaskRepository.taskChanges].
+ *
+ * Titles and descriptions are split into lowercase words (runs of letters and digits). Each
+ * distinct word is a term with a posting list of the rows containing it and how often, title
+ * words counting [TITLE_WEIGHT] times. Terms are in turn indexed by their trigrams, padded with
+ * a boundary mark so `$gr`, `gro`, ... `es$`, which is how a query word finds its candidate
+ * terms without looking at the others: a term within edit distance `d` of a word shares all
+ * but at most `3 * d` of its trigrams.
+ *
+ * Each candidate term is checked with a bounded Levenshtein distance, counting the cheaper of
+ * matching the whole term or a prefix of it, so a word still being typed matches too. Words of
+ * up to two characters must match exactly, up to five may be one edit off, longer ones two.
+ * Every row containing a matching term is scored with BM25, scaled down by the term's distance;
+ * a row must match every query word, and its score is the sum of each word's best term.
+ *
+ * The work is proportional to the candidate terms and their rows, not the table. Holds every
+ * row's [TaskListItem], so memory grows with the table. Safe to read and update from different
+ * threads.
+ */
+class FuzzyIndex : TaskSearchIndex {
+
+    /** The rows containing a term, with the term's weighted frequency in each, sorted by id. */
+    private class Postings {
+        var ids = IntArray(2)
+        var frequencies = IntArray(2)
+        var size = 0
+
+        fun put(id: Int, frequency: Int) {
+            val index = ids.binarySearch(id, 0, size)
+            if (index >= 0) {
+                frequencies[index] = frequency
+                return
+            }
+            val at = -index - 1
+            if (size == ids.size) {
+                ids = ids.copyOf(size * 2)
+                frequencies = frequencies.copyOf(size * 2)
+            }
+            System.arraycopy(ids, at, ids, at + 1, size - at)
+            System.arraycopy(frequencies, at, frequencies, at + 1, size - at)
+            ids[at] = id
+            frequencies[at] = frequency
+            size++
+        }
+
+        fun remove(id: Int) {
+            val at = ids.binarySearch(id, 0, size)
+            if (at < 0) return
+            System.arraycopy(ids, at + 1, ids, at, size - at - 1)
+            System.arraycopy(frequencies, at + 1, frequencies, at, size - at - 1)
+            size--
+        }
+    }
+
+    private val lock = ReentrantReadWriteLock()
+    private val rows = HashMap<Int, TaskListItem>()
+    private val lengths = HashMap<Int, Int>()
+    private var totalLength = 0L
+    private val postings = HashMap<String, Postings>()
+    private val termsByTrigram = HashMap<Long, HashSet<String>>()
+    private val _version = MutableStateFlow(0L)
+
+    override val version: StateFlow<Long> = _version.asStateFlow()
+
+    @Volatile
+    override var isReady = false
+        private set
+
+    val size: Int
+        get() = lock.read { rows.size }
+
+    override fun load(items: Sequence<TaskListItem>) {
+        lock.write {
+            rows.clear()
+            lengths.clear()
+            totalLength = 0
+            postings.clear()
+            termsByTrigram.clear()
+            items.forEach { addLocked(it) }
+        }
+        isReady = true
+        _version.value++
+    }
+
+    override fun apply(changedIds: Collection<Int>, current: Map<Int, TaskListItem>) {
+        lock.write {
+            for (id in changedIds) {
+                rows[id]?.let { removeLocked(it) }
+                current[id]?.let { addLocked(it) }
+            }
+        }
+        _version.value++
+    }
+
+    /** Live [results] that are already running keep their last rows until their query changes. */
+    override fun invalidate() {
+        isReady = false
+        _version.value++
+    }
+
+    /** [search] for [query] again after every change to the index. */
+    fun results(query: String): Flow<List<TaskListItem>> = version.map { search(query) }
+
+    /**
+     * The rows matching every word of [query], allowing for typos and unfinished words, best
+     * match first; equal scores in the order of [TaskDao.getTasks]. Empty for a query without
+     * words.
+     */
+    fun search(query: String): List<TaskListItem> {
+        val words = wordsOf(query).distinct()
+        if (words.isEmpty()) return emptyList()
+        val scored = ArrayList<Pair<TaskListItem, Double>>()
+        lock.read {
+            if (rows.isEmpty()) return emptyList()
+            var scores: Map<Int, Double>? = null
+            // Longer words usually match fewer rows, and later words only score those.
+            for (word in words.sortedByDescending { it.length }) {
+                val previous = scores
+                val wordScores = scoresOf(word, previous)
+                if (previous != null) wordScores.replaceAll { id, score -> score + previous.getValue(id) }
+                if (wordScores.isEmpty()) return emptyList()
+                scores = wordScores
+            }
+            scores!!.forEach { (id, score) -> scored.add(rows.getValue(id) to score) }
+        }
+        scored.sortWith(
+            compareByDescending<Pair<TaskListItem, Double>> { it.second }
+                .thenByDescending { it.first.priority.value }
+                .thenBy { it.first.createdAt }
+        )
+        return scored.map { it.first }
+    }
+
+    /**
+     * Each row's score for the query word [word]: the best BM25 score among the terms it
+     * matches. Only rows in [within] are scored when it is given, since the others already
+     * missed an earlier word.
+     *
+     * All the word's terms share the IDF of the most common one. Misspellings are rare, so
+     * their own IDF would rank a typo in a task above the correctly spelled word.
+     */
+    private fun scoresOf(word: String, within: Map<Int, Double>?): HashMap<Int, Double> {
+        val maxDistance = maxDistance(word.length)
+        val terms = matchingTerms(word, maxDistance)
+        val scores = HashMap<Int, Double>()
+        if (terms.isEmpty()) return scores
+        val averageLength = totalLength.toDouble() / rows.size
+        val documentFrequency = terms.keys.maxOf { postings.getValue(it).size }
+        val idf = ln(1 + (rows.size - documentFrequency + 0.5) / (documentFrequency + 0.5))
+        for ((term, distance) in terms) {
+            val list = postings.getValue(term)
+            val similarity = 1.0 - distance.toDouble() / (maxDistance + 1)
+            for (i in 0 until list.size) {
+                val id = list.ids[i]
+                if (within != null && id !in within) continue
+                val frequency = list.frequencies[i]
+                val norm = 1 - B + B * lengths.getValue(id) / averageLength
+                val score = similarity * idf * frequency * (K1 + 1) / (frequency + K1 * norm)
+                if (score > (scores[id] ?: 0.0)) scores[id] = score
+            }
+        }
+        return scores
+    }
+
+    /** The terms within [maxDistance] of [word] or of a prefix of theirs, with that distance. */
+    private fun matchingTerms(word: String, maxDistance: Int): Map<String, Int> {
+        val grams = HashSet<Long>().also { addTrigrams(word, it) }
+        // A prefix match loses the word's closing trigram, and each edit up to three more.
+        val required = maxOf(1, grams.size - 1 - 3 * maxDistance)
+        val shared = HashMap<String, Int>()
+        for (gram in grams) {
+            termsByTrigram[gram]?.forEach { term -> shared[term] = (shared[term] ?: 0) + 1 }
+        }
+        val matches = HashMap<String, Int>()
+        for ((term, count) in shared) {
+            if (count < required || term.length < word.length - maxDistance) continue
+            val distance = distance(word, term, maxDistance)
+            if (distance <= maxDistance) matches[term] = distance
+        }
+        return matches
+    }
+
+    private fun addLocked(row: TaskListItem) {
+        rows[row.id] = row
+        val frequencies = frequenciesOf(row)
+        var length = 0
+        for ((term, frequency) in frequencies) {
+            length += frequency
+            postings.getOrPut(term) {
+                HashSet<Long>().also { addTrigrams(term, it) }.forEach { gram ->
+                    termsByTrigram.getOrPut(gram) { HashSet() }.add(term)
+                }
+                Postings()
+            }.put(row.id, frequency)
+        }
+        lengths[row.id] = length
+        totalLength += length
+    }
+
+    private fun removeLocked(row: TaskListItem) {
+        rows.remove(row.id)
+        lengths.remove(row.id)?.let { totalLength -= it }
+        for (term in frequenciesOf(row).keys) {
+            val list = postings[term] ?: continue
+            list.remove(row.id)
+            if (list.size > 0) continue
+            postings.remove(term)
+            HashSet<Long>().also { addTrigrams(term, it) }.forEach { gram ->
+                val terms = termsByTrigram[gram] ?: return@forEach
+                terms.remove(term)
+                if (terms.isEmpty()) termsByTrigram.remove(gram)
+            }
+        }
+    }
+
+    private fun frequenciesOf(row: TaskListItem): Map<String, Int> =
+        HashMap<String, Int>().also { frequencies ->
+            wordsOf(row.title).forEach { frequencies[it] = (frequencies[it] ?: 0) + TITLE_WEIGHT }
+            wordsOf(row.description).forEach { frequencies[it] = (frequencies[it] ?: 0) + 1 }
+        }
+
+    private companion object {
+        /** How many times a word in the title counts, relative to one in the description. */
+        const val TITLE_WEIGHT = 2
+
+        // BM25 term-frequency saturation and length normalization, at their usual values.
+        private const val K1 = 1.2
+        private const val B = 0.75
+
+        private const val BOUNDARY = '$'
+
+        /** The edits a query word of [length] characters may be away from a term. */
+        fun maxDistance(length: Int): Int = when {
+            length <= 2 -> 0
+            length <= 5 -> 1
+            else -> 2
+        }
+
+        /** The lowercase runs of letters and digits in [text]. */
+        fun wordsOf(text: String): List<String> {
+            val words = ArrayList<String>()
+            var start = -1
+            for (i in 0..text.length) {
+                val inWord = i < text.length && Character.isLetterOrDigit(text[i])
+                if (inWord && start < 0) {
+                    start = i
+                } else if (!inWord && start >= 0) {
+                    words.add(text.substring(start, i).lowercase())
+                    start = -1
+                }
+            }
+            return words
+        }
+
+        /**
+         * Adds the trigrams of [word] padded with [BOUNDARY] on both sides, packed into Longs.
+         * A one-letter word has no trigram it shares with longer words, so `$` plus the first
+         * letter is added as well for every word.
+         */
+        fun addTrigrams(word: String, out: MutableSet<Long>) {
+            out.add(pack(BOUNDARY, word[0], Char.MIN_VALUE))
+            val padded = "$BOUNDARY$word$BOUNDARY"
+            if (word.length == 1) return
+            for (i in 0..padded.length - 3) {
+                out.add(pack(padded[i], padded[i + 1], padded[i + 2]))
+            }
+        }
+
+        private fun pack(a: Char, b: Char, c: Char): Long =
+            (a.code.toLong() shl 32) or (b.code.toLong() shl 16) or c.code.toLong()
+
+        /**
+         * The Levenshtein distance from [word] to [term] or to the closest prefix of [term],
+         * whichever is smaller, or `maxDistance + 1` once it is known to exceed [maxDistance].
+         */
+        fun distance(word: String, term: String, maxDistance: Int): Int {
+            // previous[j] is the distance from the word's first i - 1 chars to the term's first j.
+            var previous = IntArray(term.length + 1) { it }
+            var current = IntArray(term.length + 1)
+            for (i in 1..word.length) {
+                current[0] = i
+                var rowMin = i
+                for (j in 1..term.length) {
+                    val substitution = previous[j - 1] + if (word[i - 1] == term[j - 1]) 0 else 1
+                    current[j] = minOf(substitution, previous[j] + 1, current[j - 1] + 1)
+                    if (current[j] < rowMin) rowMin = current[j]
+                }
+                if (rowMin > maxDistance) return maxDistance + 1
+                val swap = previous
+                previous = current
+                current = swap
+            }
+            // The last row holds the distance to every prefix of the term, the whole term included.
+            return minOf(previous.min(), maxDistance + 1)
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.smarttodo.data
+
+/** What [TaskRepository.markCompleted] did. */
+enum class MarkCompletedResult {
+    /** The task was pending and is now completed. */
+    COMPLETED,
+
+    /** The task was already completed and was left as it was. */
+    ALREADY_COMPLETED,
+
+    /** There is no task with that id, e.g. it was deleted while its notification was showing. */
+    NOT_FOUND
+}
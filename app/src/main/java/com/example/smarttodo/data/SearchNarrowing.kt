@@ -0,0 +1,85 @@
+package com.example.smarttodo.data
+
+/**
+ * Answers a search query from the results of a shorter query it extends, e.g. `groce` from the
+ * rows found for `groc`, so typing another character filters rows already in memory instead
+ * of running another search in SQLite. See [TaskRepository.searchTasks].
+ *
+ * Narrowing is only used where it gives exactly the rows and order the SQL search would: the
+ * query must extend the previous one and consist of ASCII letters, digits and spaces. Those
+ * match the same way in SQLite and here: FTS4's default "simple" tokenizer folds ASCII case
+ * only, and LIKE has no wildcards among them.
+ */
+object SearchNarrowing {
+
+    /** Whether the results for [query] can be computed by [narrow] from those for [previous]. */
+    fun canNarrow(previous: String, query: String): Boolean =
+        previous.isNotBlank() && query.length > previous.length && query.startsWith(previous) && query.all(::isPlain)
+
+    /**
+     * The rows of [rows], the results of a query [query] extends, that match [query], in the
+     * order of the matching DAO search.
+     *
+     * @param fullText Whether the rows came from the FTS index ([TaskDao.searchTasks]) rather
+     *                 than LIKE ([TaskDao.getTasks]).
+     */
+    fun narrow(rows: List<TaskListItem>, query: String, fullText: Boolean): List<TaskListItem> {
+        if (!fullText) {
+            return rows.filter { containsIgnoringCase(it.title, query) || containsIgnoringCase(it.description, query) }
+        }
+        val terms = query.lowercase().split(' ').filter { it.isNotEmpty() }
+        val titleHits = HashSet<Int>()
+        val matches = rows.filter { row ->
+            var titleHit = true
+            val matched = terms.all { term ->
+                val inTitle = hasTokenWithPrefix(row.title, term)
+                titleHit = titleHit && inTitle
+                inTitle || hasTokenWithPrefix(row.description, term)
+            }
+            if (matched && titleHit) titleHits += row.id
+            matched
+        }
+        // Whether a row hits in its title can change with the query; re-rank like searchTasks.
+        return matches.sortedWith(
+            compareBy<TaskListItem> { if (it.id in titleHits) 0 else 1 }
+                .thenByDescending { it.priority.value }
+                .thenBy { it.createdAt }
+        )
+    }
+
+    private fun isPlain(c: Char): Boolean = c == ' ' || c in 'a'..'z' || c in 'A'..'Z' || c in '0'..'9'
+
+    /** A token character of the FTS4 "simple" tokenizer: ASCII letters and digits, and anything non-ASCII. */
+    private fun isTokenChar(c: Char): Boolean = c in 'a'..'z' || c in 'A'..'Z' || c in '0'..'9' || c.code >= 0x80
+
+    private fun foldAscii(c: Char): Char = if (c in 'A'..'Z') c + ('a' - 'A') else c
+
+    /** Whether a token of [text], as the "simple" tokenizer splits it, starts with the lowercase [prefix]. */
+    private fun hasTokenWithPrefix(text: String, prefix: String): Boolean {
+        var i = 0
+        while (i < text.length) {
+            if (!isTokenChar(text[i])) {
+                i++
+                continue
+            }
+            var matched = 0
+            while (matched < prefix.length && i + matched < text.length && foldAscii(text[i + matched]) == prefix[matched]) {
+                matched++
+            }
+            if (matched == prefix.length) return true
+            while (i < text.length && isTokenChar(text[i])) i++
+        }
+        return false
+    }
+
+    /** LIKE '%[query]%' with SQLite's default ASCII-only case folding. */
+    internal fun containsIgnoringCase(text: String, query: String): Boolean {
+        if (query.isEmpty()) return true
+        for (start in 0..text.length - query.length) {
+            var matched = 0
+            while (matched < query.length && foldAscii(text[start + matched]) == foldAscii(query[matched])) matched++
+            if (matched == query.length) return true
+        }
+        return false
+    }
+}
@@ -1,21 +1,45 @@
 package com.example.smarttodo.data
 
+import androidx.room.ColumnInfo
 import androidx.room.Entity
 import androidx.room.Index
 import androidx.room.PrimaryKey
+import com.example.smarttodo.util.EpochDay
 import java.io.Serializable
 import java.util.Date
+import java.util.TimeZone
 
 /**
  * Represents a single task item in the application and the schema for the Room 'tasks' table.
  * Added indices on 'title' and 'createdAt' to improve query performance for searches and ordering
- * when the dataset grows large.
+ * when the dataset grows large. The '(isCompleted, dueEpochDay, dueDate)' index backs the date filter
+ * chips and the per-day counts, and '(isCompleted, priority DESC, createdAt)' matches the default list ordering so SQLite can read
+ * rows in order instead of sorting them.
+ * '(isCompleted, dueEpochDay, priority DESC, createdAt)' and '(isCompleted, completionDate DESC, priority DESC, createdAt)'
+ * give each section of the paged list ([TaskDao.getTasksPaged]) its own order.
+ *
+ * Every column maps to a primitive or a String: dates are epoch milliseconds and the enums go
+ * through table lookups ([Priority.fromValue], [TaskType.fromCode]), so reading a row allocates
+ * nothing beyond the [Task] and its strings. UI code that needs a [Date] uses [dueDateAsDate].
  */
 @Entity(
     tableName = "tasks",
     indices = [
         Index(value = ["title"]),
-        Index(value = ["createdAt"])
+        Index(value = ["createdAt"]),
+        Index(value = ["isCompleted", "dueEpochDay", "dueDate"]),
+        Index(
+            value = ["isCompleted", "priority", "createdAt"],
+            orders = [Index.Order.ASC, Index.Order.DESC, Index.Order.ASC]
+        ),
+        Index(
+            value = ["isCompleted", "dueEpochDay", "priority", "createdAt"],
+            orders = [Index.Order.ASC, Index.Order.ASC, Index.Order.DESC, Index.Order.ASC]
+        ),
+        Index(
+            value = ["isCompleted", "completionDate", "priority", "createdAt"],
+            orders = [Index.Order.ASC, Index.Order.DESC, Index.Order.DESC, Index.Order.ASC]
+        )
     ]
 )
 data class Task(
@@ -25,16 +49,42 @@ data class Task(
     val description: String = "",
     val priority: Priority = Priority.LOW,
     val isCompleted: Boolean = false,
-    val createdAt: Date = Date(),
-    val dueDate: Date? = null,
-    val completionDate: Date? = null,
+    val createdAt: Long = System.currentTimeMillis(),
+    val dueDate: Long? = null,
+    val completionDate: Long? = null,
     val hasReminder: Boolean = false,
     val preReminderOffsetMinutes: Int? = null,
     val taskType: TaskType = TaskType.ADMINISTRATIVE,
     val estimatedPomodoros: Int = 0,
     val completedPomodoros: Int = 0,
-    val soundUri: String? = null // New field for custom notification sound URI
-) : Serializable // Implements Serializable for passing Task objects.
+    val soundUri: String? = null, // New field for custom notification sound URI
+    /**
+     * The local day [dueDate] falls on (see [EpochDay]), or null without a due date. Derived
+     * by [TaskRepository] on every write ([withDueEpochDay]) and recomputed for every task
+     * when the device's time zone changes, so day-grouped queries compare integers.
+     */
+    val dueEpochDay: Int? = null,
+    /**
+     * When this row was last written, epoch millis. Set by [TaskRepository] on every insert and
+     * update and by the DAO's bulk updates, so an incremental backup can pick up the rows
+     * changed since its last checkpoint. 0 for rows untouched since the column was added.
+     */
+    @ColumnInfo(defaultValue = "0")
+    val lastModified: Long = 0L
+) : Serializable { // Implements Serializable for passing Task objects.
+
+    /** This task with [dueEpochDay] derived from [dueDate] in [zone]. */
+    fun withDueEpochDay(zone: TimeZone = TimeZone.getDefault()): Task =
+        copy(dueEpochDay = dueDate?.let { EpochDay.of(it, zone) })
+
+    /** This task with its derived columns set for a write at [now]: [dueEpochDay] and [lastModified]. */
+    fun preparedForWrite(now: Long, zone: TimeZone = TimeZone.getDefault()): Task =
+        copy(dueEpochDay = dueDate?.let { EpochDay.of(it, zone) }, lastModified = now)
+
+    /** [dueDate] as a [Date], for UI code that formats or edits it. Not a column. */
+    val dueDateAsDate: Date?
+        get() = dueDate?.let { Date(it) }
+}
 
 /**
  * Enum representing the priority levels for a [Task].
@@ -42,5 +92,16 @@ data class Task(
 enum class Priority(val value: Int, val displayName: String) {
     LOW(1, "Low"),
     MEDIUM(2, "Medium"),
-    HIGH(3, "High")
+    HIGH(3, "High");
+
+    companion object {
+        // Indexed by [value]. Built once; `values()` would clone the array on every call.
+        private val BY_VALUE = arrayOfNulls<Priority>(entries.maxOf { it.value } + 1).also { table ->
+            entries.forEach { table[it.value] = it }
+        }
+
+        /** @throws NoSuchElementException if no priority has this [value]. */
+        fun fromValue(value: Int): Priority =
+            BY_VALUE.getOrNull(value) ?: throw NoSuchElementException("No Priority with value $value")
+    }
 }
@@ -0,0 +1,40 @@
+package com.example.smarttodo.data
+
+import android.content.SharedPreferences
+import android.util.Log
+import com.example.smarttodo.util.OperationResult
+
+/**
+ * Periodically moves old completed tasks into the archive, see
+ * [TaskRepository.archiveCompletedTasks]. Runs at most once per [RUN_INTERVAL_MILLIS]; the time
+ * of the last successful run is kept in [prefs].
+ *
+ * @param archiveAfterMillis How long after completion a task is archived.
+ */
+class TaskArchiver(
+    private val repository: TaskRepository,
+    private val prefs: SharedPreferences,
+    private val archiveAfterMillis: Long = DEFAULT_ARCHIVE_AFTER_MILLIS
+) {
+
+    companion object {
+        private const val TAG = "TaskArchiver"
+        private const val KEY_LAST_RUN = "last_run"
+
+        const val DEFAULT_ARCHIVE_AFTER_MILLIS = 30L * 24 * 60 * 60 * 1000
+        const val RUN_INTERVAL_MILLIS = 24L * 60 * 60 * 1000
+    }
+
+    /** Archives if the last run was more than [RUN_INTERVAL_MILLIS] ago. */
+    suspend fun runIfDue(now: Long = System.currentTimeMillis()) {
+        if (now - prefs.getLong(KEY_LAST_RUN, 0L) < RUN_INTERVAL_MILLIS) return
+
+        when (val result = repository.archiveCompletedTasks(archiveAfterMillis)) {
+            is OperationResult.Success -> {
+                prefs.edit().putLong(KEY_LAST_RUN, now).apply()
+                Log.d(TAG, "Archived ${result.data} completed tasks")
+            }
+            is OperationResult.Error -> Log.e(TAG, "Archiving completed tasks failed", result.exception)
+        }
+    }
+}
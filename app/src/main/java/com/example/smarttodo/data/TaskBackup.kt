@@ -0,0 +1,161 @@
+package com.example.smarttodo.data
+
+import android.content.SharedPreferences
+import android.util.Log
+import com.example.smarttodo.util.OperationResult
+import java.io.File
+import java.io.FileNotFoundException
+
+/**
+ * Where an incremental backup continues from: the newest [TaskChange.seq] and the time when it
+ * was taken. See [TaskRepository.writeBackupSegment].
+ */
+data class BackupCheckpoint(val changeSeq: Long, val time: Long)
+
+/** One incremental segment for [TaskDao.restoreBackup]: ids to delete, then rows to write. */
+class BackupSegment(val deletedIds: List<Int>, val nextBlock: () -> List<Task>?)
+
+/**
+ * Nightly incremental backup into [directory]: a base [TaskSnapshot] plus append-only segment
+ * files holding only what changed since the previous run ([TaskRepository.writeBackupSegment]).
+ * A night with a handful of edits writes a segment of a few hundred bytes.
+ *
+ * Compaction folds the segments into a new base: it writes a full snapshot and then deletes
+ * the segments. The live table already is base plus segments applied, so the new base is read
+ * from it, a page at a time, rather than merged from the files. Compaction runs instead of an
+ * incremental run when there is no base yet, after [maxSegments] segments, when the clock went
+ * backwards, or when the change log no longer reaches back to the checkpoint.
+ *
+ * Files are named after the change seq of their checkpoint, and a restore only applies the
+ * segments newer than the newest base, so a compaction interrupted before it deleted the old
+ * files never replays them over the new base. The checkpoint and the time of the last run are
+ * kept in [prefs]. Runs at most once per [RUN_INTERVAL_MILLIS].
+ *
+ * Only 'tasks' is backed up; the archive ('tasks_archive', see [TaskArchiver]) is not, and a
+ * restore leaves it as it is. Archiving deletes a task from 'tasks', so a segment records it as
+ * deleted and a restore does not bring it back into the list: it stays in the archive only.
+ */
+class TaskBackup(
+    private val repository: TaskRepository,
+    private val directory: File,
+    private val prefs: SharedPreferences,
+    private val maxSegments: Int = DEFAULT_MAX_SEGMENTS
+) {
+
+    companion object {
+        private const val TAG = "TaskBackup"
+        private const val KEY_LAST_RUN = "last_run"
+        private const val KEY_CHANGE_SEQ = "checkpoint_change_seq"
+        private const val KEY_TIME = "checkpoint_time"
+        private const val BASE_PREFIX = "base-"
+        private const val SEGMENT_PREFIX = "segment-"
+        private const val SUFFIX = ".snapshot"
+
+        const val DEFAULT_MAX_SEGMENTS = 14
+        const val RUN_INTERVAL_MILLIS = 24L * 60 * 60 * 1000
+    }
+
+    /** Files named [prefix], change seq, [SUFFIX], oldest first, paired with their seq. */
+    private fun files(prefix: String): List<Pair<Long, File>> =
+        directory.listFiles().orEmpty().mapNotNull { file ->
+            val seq = file.name.takeIf { it.startsWith(prefix) && it.endsWith(SUFFIX) }
+                ?.removePrefix(prefix)?.removeSuffix(SUFFIX)?.toLongOrNull()
+            seq?.let { it to file }
+        }.sortedBy { it.first }
+
+    /** The newest base snapshot with the seq of its checkpoint, or null before the first backup. */
+    private fun latestBase(): Pair<Long, File>? = files(BASE_PREFIX).lastOrNull()
+
+    /** The segments to apply on top of the newest base, oldest first. */
+    fun segmentFiles(): List<File> {
+        val baseSeq = latestBase()?.first ?: return emptyList()
+        return files(SEGMENT_PREFIX).filter { it.first > baseSeq }.map { it.second }
+    }
+
+    /** Backs up if the last run was more than [RUN_INTERVAL_MILLIS] ago. */
+    suspend fun runIfDue(now: Long = System.currentTimeMillis()) {
+        if (now - prefs.getLong(KEY_LAST_RUN, 0L) < RUN_INTERVAL_MILLIS) return
+        if (run(now)) prefs.edit().putLong(KEY_LAST_RUN, now).apply()
+    }
+
+    /**
+     * Writes a segment, or compacts when a segment cannot or should not be written.
+     * @return Whether a backup was written or nothing needed writing.
+     */
+    suspend fun run(now: Long = System.currentTimeMillis()): Boolean {
+        if (!directory.isDirectory && !directory.mkdirs()) {
+            Log.e(TAG, "Could not create $directory")
+            return false
+        }
+        // Taken before reading anything, so changes made while the backup runs are seen next time.
+        val checkpoint = repository.backupCheckpoint(now)
+        val previous = savedCheckpoint()
+        if (previous == null || latestBase() == null || now < previous.time || segmentFiles().size >= maxSegments) {
+            return compact(checkpoint)
+        }
+
+        val segment = File(directory, "$SEGMENT_PREFIX${checkpoint.changeSeq}$SUFFIX")
+        return when (val result = repository.writeBackupSegment(segment, previous, checkpoint)) {
+            is OperationResult.Success -> {
+                val written = result.data ?: return compact(checkpoint)
+                saveCheckpoint(checkpoint)
+                Log.d(TAG, "Backup segment with $written changes, ${segment.length()} bytes")
+                true
+            }
+            is OperationResult.Error -> {
+                Log.e(TAG, "Incremental backup failed", result.exception)
+                false
+            }
+        }
+    }
+
+    /** Writes a new base snapshot as of [checkpoint] and drops the files it replaces. */
+    suspend fun compact(checkpoint: BackupCheckpoint = repository.backupCheckpoint()): Boolean {
+        val base = File(directory, "$BASE_PREFIX${checkpoint.changeSeq}$SUFFIX")
+        return when (val result = repository.writeSnapshot(base)) {
+            is OperationResult.Success -> {
+                (files(BASE_PREFIX) + files(SEGMENT_PREFIX))
+                    .filter { (seq, file) -> seq <= checkpoint.changeSeq && file != base }
+                    .forEach { it.second.delete() }
+                saveCheckpoint(checkpoint)
+                Log.d(TAG, "Backup base with ${result.data} tasks, ${base.length()} bytes")
+                true
+            }
+            is OperationResult.Error -> {
+                Log.e(TAG, "Full backup failed", result.exception)
+                false
+            }
+        }
+    }
+
+    /**
+     * Replaces every task with the backup: the base and then each segment. Compacts afterwards,
+     * since the restore rewrote every row. The restore replaces rows behind the alarms' back, so
+     * the caller brings them in line: [onRestored] gets the restored tasks a page at a time and
+     * [onRemoved] the ids of the tasks that are gone, as in [TaskRepository.restoreBackup].
+     * AlarmScheduler.syncReminders and AlarmScheduler.cancelReminders fit these.
+     */
+    suspend fun restore(
+        onRestored: (tasks: List<Task>) -> Unit,
+        onRemoved: (ids: List<Int>) -> Unit
+    ): OperationResult<Int> {
+        val base = latestBase()?.second
+            ?: return OperationResult.Error(FileNotFoundException("No backup in $directory"), "No backup to restore.")
+        val result = repository.restoreBackup(base, segmentFiles(), onRestored, onRemoved)
+        if (result is OperationResult.Success) compact()
+        return result
+    }
+
+    private fun savedCheckpoint(): BackupCheckpoint? {
+        if (!prefs.contains(KEY_CHANGE_SEQ)) return null
+        return BackupCheckpoint(prefs.getLong(KEY_CHANGE_SEQ, 0L), prefs.getLong(KEY_TIME, 0L))
+    }
+
+    private fun saveCheckpoint(checkpoint: BackupCheckpoint) {
+        // commit(), not apply(): the files on disk already reflect this checkpoint.
+        prefs.edit()
+            .putLong(KEY_CHANGE_SEQ, checkpoint.changeSeq)
+            .putLong(KEY_TIME, checkpoint.time)
+            .commit()
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.smarttodo.data
+
+import android.util.LruCache
+
+/**
+ * A size-bounded LRU of full [Task] rows by id, in front of the by-id lookups of
+ * [TaskRepository]. Opening a task, firing its reminder and snoozing it usually read the same
+ * few rows again and again, often straight after writing them.
+ *
+ * Kept coherent two ways:
+ * - Write-through: as the [TaskWriteQueue.CommitListener], it sees every committed write in
+ *   commit order and stores or drops the row before the writer's caller resumes.
+ * - Change feed: [onChanges] drops rows changed by writes that did not go through the queue.
+ *   Changes the queue already reported are skipped, so a write does not evict the row it just
+ *   stored.
+ *
+ * A read that misses only stores its result if no write happened while it was reading
+ * ([putIfUnchanged]), so a slow read can never overwrite a newer row.
+ */
+class TaskCache(maxSize: Int = DEFAULT_MAX_SIZE) : TaskWriteQueue.CommitListener {
+
+    /** Lookup counters since the cache was created, and the number of rows held. */
+    data class Stats(val hits: Int, val misses: Int, val size: Int)
+
+    private val tasks = LruCache<Int, Task>(maxSize)
+
+    // The fields below are guarded by the lock of [tasks], which LruCache also uses internally.
+
+    /** Every [TaskChange] up to this seq is already reflected in [tasks]. */
+    private var coveredSeq = 0L
+
+    /** Bumped on every write, so a read that overlapped one is not stored. */
+    private var version = 0L
+
+    /** Counts a hit or a miss. */
+    fun get(taskId: Int): Task? = tasks.get(taskId)
+
+    fun version(): Long = synchronized(tasks) { version }
+
+    /** Call once with the change-log position the feed passed to [onChanges] starts after. */
+    fun startAt(changeSeq: Long) {
+        synchronized(tasks) {
+            coveredSeq = maxOf(coveredSeq, changeSeq)
+        }
+    }
+
+    /** Stores [task] read from the database, unless a write happened since [readVersion]. */
+    fun putIfUnchanged(task: Task, readVersion: Long) {
+        synchronized(tasks) {
+            if (version == readVersion) tasks.put(task.id, task)
+        }
+    }
+
+    /** Drops the rows named by [changes] that the write queue has not already reported. */
+    fun onChanges(changes: List<TaskChange>) {
+        if (changes.isEmpty()) return
+        synchronized(tasks) {
+            for (change in changes) {
+                if (change.seq > coveredSeq) {
+                    tasks.remove(change.taskId)
+                    version++
+                }
+            }
+            coveredSeq = maxOf(coveredSeq, changes.last().seq)
+        }
+    }
+
+    override fun onTaskWritten(task: Task) {
+        synchronized(tasks) {
+            tasks.put(task.id, task)
+            version++
+        }
+    }
+
+    override fun onTaskChanged(taskId: Int) {
+        synchronized(tasks) {
+            tasks.remove(taskId)
+            version++
+        }
+    }
+
+    override fun onTasksChanged() {
+        synchronized(tasks) {
+            tasks.evictAll()
+            version++
+        }
+    }
+
+    override fun onCommitted(fromSeq: Long, toSeq: Long) {
+        synchronized(tasks) {
+            // Only extend the covered range if it is contiguous. Otherwise some other writer got
+            // in first: leave the gap for the feed, which also re-reports (and so evicts) this
+            // transaction's rows. That costs a miss, never a stale row.
+            if (fromSeq <= coveredSeq) coveredSeq = maxOf(coveredSeq, toSeq)
+        }
+    }
+
+    fun stats(): Stats = synchronized(tasks) { Stats(tasks.hitCount(), tasks.missCount(), tasks.size()) }
+
+    private companion object {
+        // Full rows are small; this comfortably holds every task with a pending reminder.
+        private const val DEFAULT_MAX_SIZE = 128
+    }
+}
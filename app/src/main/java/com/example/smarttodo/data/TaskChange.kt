@@ -0,0 +1,31 @@
+package com.example.smarttodo.data
+
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+/**
+ * One row of the 'task_changes' log. SQLite triggers on 'tasks' (see
+ * [TaskDatabase.createChangeLogTriggers]) append a row for every inserted, updated or deleted
+ * task, so readers can ask "what changed since [seq]" instead of re-reading the whole table.
+ *
+ * The app never writes this table itself. Old rows are pruned when the database is opened,
+ * keeping the newest [TaskDatabase.CHANGE_LOG_RETENTION], and by [TaskWriteQueue] as it
+ * commits, behind the slowest reader of the feed.
+ *
+ * @property seq Strictly increasing across the life of the database (AUTOINCREMENT never
+ *               reuses a value, even after pruning).
+ * @property op One of [OP_INSERT], [OP_UPDATE] or [OP_DELETE].
+ */
+@Entity(tableName = "task_changes")
+data class TaskChange(
+    @PrimaryKey(autoGenerate = true)
+    val seq: Long = 0,
+    val taskId: Int,
+    val op: Int
+) {
+    companion object {
+        const val OP_INSERT = 0
+        const val OP_UPDATE = 1
+        const val OP_DELETE = 2
+    }
+}
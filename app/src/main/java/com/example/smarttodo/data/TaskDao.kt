@@ -1,62 +1,522 @@
 package com.example.smarttodo.data
 
-import androidx.lifecycle.LiveData
+import androidx.paging.PagingSource
 import androidx.room.Dao
 import androidx.room.Delete
 import androidx.room.Insert
 import androidx.room.OnConflictStrategy
 import androidx.room.Query
+import androidx.room.Transaction
 import androidx.room.Update
+import com.example.smarttodo.util.EpochDay
+import kotlinx.coroutines.flow.Flow
+import java.util.TimeZone
+
+/**
+ * Rows or ids per statement in the batch methods. Keeps `IN (...)` lists well below the
+ * 999 bind-variable limit of the SQLite versions shipped with older Android releases.
+ */
+const val BATCH_CHUNK_SIZE = 500
+
+/** Progress of a batch operation: items processed so far out of [total]. */
+typealias BatchProgress = (done: Int, total: Int) -> Unit
 
 @Dao
 interface TaskDao {
 
-    @Suppress("unused")
-    @Query("SELECT * FROM tasks WHERE (:isCompleted IS NULL OR isCompleted = :isCompleted) ORDER BY priority DESC, createdAt ASC")
-    fun getAllTasks(isCompleted: Boolean?): LiveData<List<Task>>
+    /**
+     * All tasks, pending first, each group by priority then age. Ordering by `isCompleted` first
+     * lets SQLite walk the `(isCompleted, priority DESC, createdAt)` index instead of sorting.
+     */
+    @Query(TaskSql.GET_ALL_TASKS)
+    fun getAllTasks(): Flow<List<TaskListItem>>
+
+    /** Pending or completed tasks only, read in index order. */
+    @Query(TaskSql.GET_TASKS_BY_COMPLETION)
+    fun getTasksByCompletion(isCompleted: Boolean): Flow<List<TaskListItem>>
+
+    @Query(TaskSql.GET_TASKS)
+    fun getTasks(searchQuery: String, isCompleted: Boolean?): Flow<List<TaskListItem>>
+
+    /**
+     * Full-text search through the [TaskFts] index. Unlike [getTasks] this never scans the whole
+     * table. Tasks whose title matches rank above tasks that only match in their description.
+     *
+     * @param matchQuery MATCH expression over all indexed columns, see [FtsQueryBuilder.build].
+     * @param titleMatchQuery The same expression restricted to titles, see [FtsQueryBuilder.buildForTitle].
+     */
+    @Query(TaskSql.SEARCH_TASKS)
+    fun searchTasks(matchQuery: String, titleMatchQuery: String, isCompleted: Boolean?): Flow<List<TaskListItem>>
+
+    /**
+     * Pages through all tasks grouped by [TaskSection]: today, tomorrow, upcoming (including
+     * overdue and undated tasks), then completed tasks newest-completed first. [today] is the
+     * current local day from [EpochDay].
+     *
+     * One ordered subquery per section, joined with UNION ALL: SQLite runs the arms one after
+     * another, each walking an index in order, so a page never sorts the table. The paging
+     * source's LIMIT/OFFSET and COUNT wrap this as it is.
+     */
+    @Query(TaskSql.GET_TASKS_PAGED)
+    fun getTasksPaged(today: Int): PagingSource<Int, TaskWithSection>
+
+    /**
+     * Paged variant of [searchTasks], grouped by section like [getTasksPaged]. Title hits rank
+     * first within a section, which no index can supply, so the matching rows are sorted; the
+     * FTS index keeps that to the matches.
+     */
+    @Query(TaskSql.SEARCH_TASKS_PAGED)
+    fun searchTasksPaged(
+        matchQuery: String,
+        titleMatchQuery: String,
+        today: Int
+    ): PagingSource<Int, TaskWithSection>
+
+    /**
+     * Paged variant of [getTasks], grouped by section like [getTasksPaged] and walking the same
+     * indexes: LIKE still reads every row, but nothing is sorted.
+     */
+    @Query(TaskSql.GET_TASKS_LIKE_PAGED)
+    fun getTasksLikePaged(searchQuery: String, today: Int): PagingSource<Int, TaskWithSection>
+
+    /**
+     * Pending tasks due on local [day], earliest first. Backs the TODAY and TOMORROW filters
+     * and reads one range of the `(isCompleted, dueEpochDay, dueDate)` index, already in order.
+     */
+    @Query(TaskSql.GET_PENDING_TASKS_DUE_ON)
+    suspend fun getPendingTasksDueOn(day: Int): List<TaskListItem>
+
+    /** Pending tasks due on or after local [day], earliest first. Backs the UPCOMING filter. */
+    @Query(TaskSql.GET_PENDING_TASKS_DUE_FROM)
+    suspend fun getPendingTasksDueFrom(day: Int): List<TaskListItem>
+
+    /**
+     * The number of pending tasks per local day from [fromDay] on, answered from the index
+     * alone. Re-emits whenever 'tasks' changes; see [TaskRepository.getPendingSectionCounts].
+     */
+    @Query(TaskSql.OBSERVE_PENDING_COUNTS_BY_DUE_DAY)
+    fun observePendingCountsByDueDay(fromDay: Int): Flow<List<DueDayCount>>
+
+    /** Pending tasks with the given priority. Backs the HIGH_PRIORITY filter. */
+    @Query(TaskSql.GET_PENDING_TASKS_BY_PRIORITY)
+    suspend fun getPendingTasksByPriority(priority: Priority): List<TaskListItem>
+
+    /** Completed tasks, read in index order. Backs the COMPLETED filter. */
+    @Query(TaskSql.GET_COMPLETED_TASK_ITEMS)
+    suspend fun getCompletedTaskItems(): List<TaskListItem>
+
+    /**
+     * The list rows for [ids], in no particular order; ids of deleted tasks are simply absent.
+     * Used to patch a loaded list after a [TaskChange]. Callers keep [ids] within [BATCH_CHUNK_SIZE].
+     */
+    @Query(TaskSql.GET_TASK_ITEMS_BY_IDS)
+    suspend fun getTaskItemsByIds(ids: List<Int>): List<TaskListItem>
+
+    /** The newest [TaskChange.seq], or 0 if the log is empty. */
+    @Query(TaskSql.LATEST_CHANGE_SEQ)
+    suspend fun getLatestChangeSeq(): Long
+
+    /**
+     * The oldest [TaskChange.seq] still in the log, or 0 if it is empty. Changes before it
+     * have been pruned, see [TaskDatabase.CHANGE_LOG_RETENTION].
+     */
+    @Query(TaskSql.OLDEST_CHANGE_SEQ)
+    suspend fun getOldestChangeSeq(): Long
+
+    /** Ids of the tasks deleted by the changes in (afterSeq, upToSeq]; some may exist again. */
+    @Query(TaskSql.GET_DELETED_TASK_IDS_BETWEEN)
+    suspend fun getDeletedTaskIdsBetween(afterSeq: Long, upToSeq: Long): List<Int>
 
-    @Query("SELECT * FROM tasks WHERE (:isCompleted IS NULL OR isCompleted = :isCompleted) AND (title LIKE '%' || :searchQuery || '%' OR description LIKE '%' || :searchQuery || '%') ORDER BY priority DESC, createdAt ASC")
-    fun getTasks(searchQuery: String, isCompleted: Boolean?): LiveData<List<Task>>
+    /**
+     * Ids of the tasks inserted or updated by the changes in (afterSeq, upToSeq]; some may have
+     * been deleted since.
+     */
+    @Query(TaskSql.GET_WRITTEN_TASK_IDS_BETWEEN)
+    suspend fun getWrittenTaskIdsBetween(afterSeq: Long, upToSeq: Long): List<Int>
 
-    @Query("SELECT * FROM tasks WHERE id = :taskId")
+    /** The full rows for [ids], in no particular order. Callers keep [ids] within [BATCH_CHUNK_SIZE]. */
+    @Query(TaskSql.GET_TASKS_BY_IDS)
+    suspend fun getTasksByIds(ids: List<Int>): List<Task>
+
+    /**
+     * Emits the newest [TaskChange.seq] whenever 'task_changes' is written, which the triggers
+     * do in the same transaction as every write to 'tasks'.
+     */
+    @Query(TaskSql.LATEST_CHANGE_SEQ)
+    fun observeLatestChangeSeq(): Flow<Long>
+
+    /** Changes logged after [afterSeq], oldest first. */
+    @Query(TaskSql.GET_CHANGES_AFTER)
+    suspend fun getChangesAfter(afterSeq: Long): List<TaskChange>
+
+    /** Deletes the changes up to and including [upToSeq]; see [TaskWriteQueue] for when. */
+    @Query(TaskSql.PRUNE_CHANGES_UP_TO)
+    suspend fun pruneChangesUpTo(upToSeq: Long): Int
+
+    @Query(TaskSql.GET_TASK_BY_ID)
     suspend fun getTaskById(taskId: Int): Task?
 
-    @Query("SELECT * FROM tasks WHERE id = :taskId")
+    @Query(TaskSql.GET_TASK_BY_ID)
     fun getTaskByIdNonLiveData(taskId: Int): Task?
 
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     suspend fun insert(task: Task): Long
 
+    /** @return 1 if the task was updated, 0 if it does not exist. */
     @Update
-    suspend fun update(task: Task)
+    suspend fun update(task: Task): Int
 
     @Delete
     suspend fun delete(task: Task)
 
-    @Query("DELETE FROM tasks WHERE isCompleted = 1")
+    /** Deletes by primary key, for callers that only hold a [TaskListItem]. */
+    @Query(TaskSql.DELETE_BY_ID)
+    suspend fun deleteById(taskId: Int): Int
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun insertBatch(tasks: List<Task>): List<Long>
+
+    @Update
+    suspend fun updateBatch(tasks: List<Task>): Int
+
+    @Query(TaskSql.DELETE_BATCH)
+    suspend fun deleteBatch(ids: List<Int>): Int
+
+    /** Completed tasks keep their original completion date; reopened tasks lose it. */
+    @Query(TaskSql.SET_COMPLETED_BATCH)
+    suspend fun setCompletedBatch(ids: List<Int>, isCompleted: Boolean, now: Long): Int
+
+    /**
+     * Moves due dates by [deltaMillis]; tasks without a due date are left alone. Leaves
+     * [Task.dueEpochDay] stale: call through [shiftDueDates], which recomputes it.
+     */
+    @Query(TaskSql.SHIFT_DUE_DATES_BATCH)
+    suspend fun shiftDueDatesBatch(ids: List<Int>, deltaMillis: Long, now: Long): Int
+
+    /** The next [limit] tasks with a due date after [afterId] in id order, see [refreshAllDueEpochDays]. */
+    @Query(TaskSql.GET_DUE_DATES_AFTER)
+    suspend fun getDueDatesAfter(afterId: Int, limit: Int): List<TaskDueDate>
+
+    @Query(TaskSql.GET_DUE_DATES_BY_IDS)
+    suspend fun getDueDatesByIds(ids: List<Int>): List<TaskDueDate>
+
+    /**
+     * Rows that already hold [day] are skipped, so they are neither rewritten nor logged. Leaves
+     * [Task.lastModified] alone: the due day is derived, and backups do not store it.
+     */
+    @Query(TaskSql.SET_DUE_EPOCH_DAY)
+    suspend fun setDueEpochDay(ids: List<Int>, day: Int): Int
+
+    /**
+     * Stores the [Task.dueEpochDay] of each of [rows] in [zone]. Rows are grouped by day, so
+     * this costs one UPDATE per distinct day (and chunk) rather than one per task.
+     * @return The number of tasks whose day changed.
+     */
+    @Transaction
+    suspend fun updateDueEpochDays(rows: List<TaskDueDate>, zone: TimeZone): Int {
+        val idsByDay = HashMap<Int, MutableList<Int>>()
+        for (row in rows) {
+            idsByDay.getOrPut(EpochDay.of(row.dueDate, zone)) { ArrayList() }.add(row.id)
+        }
+        var changed = 0
+        for ((day, ids) in idsByDay) {
+            for (chunk in ids.chunked(BATCH_CHUNK_SIZE)) changed += setDueEpochDay(chunk, day)
+        }
+        return changed
+    }
+
+    /**
+     * Recomputes [Task.dueEpochDay] of every task in [zone], e.g. after a time zone change.
+     * Reads the table a page at a time, so memory stays constant however many tasks there are.
+     */
+    @Transaction
+    suspend fun refreshAllDueEpochDays(zone: TimeZone): Int {
+        var changed = 0
+        var afterId = 0
+        while (true) {
+            val page = getDueDatesAfter(afterId, BATCH_CHUNK_SIZE)
+            if (page.isEmpty()) break
+            changed += updateDueEpochDays(page, zone)
+            afterId = page.last().id
+        }
+        return changed
+    }
+
+    /**
+     * Inserts [tasks] in chunks of [BATCH_CHUNK_SIZE], all inside one transaction so the whole
+     * batch costs a single journal commit.
+     * @return The row ids, in the order of [tasks].
+     */
+    @Transaction
+    suspend fun insertAll(tasks: List<Task>, onProgress: BatchProgress): List<Long> {
+        val rowIds = ArrayList<Long>(tasks.size)
+        for (chunk in tasks.chunked(BATCH_CHUNK_SIZE)) {
+            rowIds += insertBatch(chunk)
+            onProgress(rowIds.size, tasks.size)
+        }
+        return rowIds
+    }
+
+    /** Updates [tasks] in one transaction, reporting progress per chunk. */
+    @Transaction
+    suspend fun updateAll(tasks: List<Task>, onProgress: BatchProgress): Int {
+        var changed = 0
+        var done = 0
+        for (chunk in tasks.chunked(BATCH_CHUNK_SIZE)) {
+            changed += updateBatch(chunk)
+            done += chunk.size
+            onProgress(done, tasks.size)
+        }
+        return changed
+    }
+
+    /** Deletes the tasks with [ids] in one transaction, reporting progress per chunk. */
+    @Transaction
+    suspend fun deleteByIds(ids: List<Int>, onProgress: BatchProgress): Int {
+        var changed = 0
+        var done = 0
+        for (chunk in ids.chunked(BATCH_CHUNK_SIZE)) {
+            changed += deleteBatch(chunk)
+            done += chunk.size
+            onProgress(done, ids.size)
+        }
+        return changed
+    }
+
+    /** Completes or reopens the tasks with [ids] in one transaction, see [setCompletedBatch]. */
+    @Transaction
+    suspend fun setCompletedByIds(ids: List<Int>, isCompleted: Boolean, now: Long, onProgress: BatchProgress): Int {
+        var changed = 0
+        var done = 0
+        for (chunk in ids.chunked(BATCH_CHUNK_SIZE)) {
+            changed += setCompletedBatch(chunk, isCompleted, now)
+            done += chunk.size
+            onProgress(done, ids.size)
+        }
+        return changed
+    }
+
+    /**
+     * Shifts the due dates of the tasks with [ids] in one transaction, see [shiftDueDatesBatch],
+     * and recomputes their [Task.dueEpochDay] in the default time zone.
+     */
+    @Transaction
+    suspend fun shiftDueDates(ids: List<Int>, deltaMillis: Long, now: Long, onProgress: BatchProgress): Int {
+        val zone = TimeZone.getDefault()
+        var changed = 0
+        var done = 0
+        for (chunk in ids.chunked(BATCH_CHUNK_SIZE)) {
+            changed += shiftDueDatesBatch(chunk, deltaMillis, now)
+            updateDueEpochDays(getDueDatesByIds(chunk), zone)
+            done += chunk.size
+            onProgress(done, ids.size)
+        }
+        return changed
+    }
+
+    /** Deletes in one statement; prefer [deleteNextChunk] on large tables. */
+    @Query(TaskSql.DELETE_COMPLETED_TASKS)
     suspend fun deleteCompletedTasks(): Int
 
-    @Query("SELECT * FROM tasks WHERE isCompleted = 1")
+    @Query(TaskSql.GET_COMPLETED_TASK_IDS_LIMITED)
+    suspend fun getCompletedTaskIdsLimited(limit: Int): List<Int>
+
+    @Query(TaskSql.GET_TASK_IDS_LIMITED)
+    suspend fun getTaskIdsLimited(limit: Int): List<Int>
+
+    /**
+     * Deletes up to [limit] completed tasks (or any tasks, unless [completedOnly]) in one short
+     * transaction. Callers keep [limit] within [BATCH_CHUNK_SIZE].
+     * @return The ids deleted; fewer than [limit] once nothing is left.
+     */
+    @Transaction
+    suspend fun deleteNextChunk(completedOnly: Boolean, limit: Int): List<Int> {
+        val ids = if (completedOnly) getCompletedTaskIdsLimited(limit) else getTaskIdsLimited(limit)
+        if (ids.isNotEmpty()) deleteBatch(ids)
+        return ids
+    }
+
+    /** Up to [limit] tasks completed before [cutoff], the candidates for [archiveCompletedBefore]. */
+    @Query(TaskSql.GET_ARCHIVABLE_TASK_IDS)
+    suspend fun getArchivableTaskIds(cutoff: Long, limit: Int): List<Int>
+
+    @Query(TaskSql.COPY_TO_ARCHIVE)
+    suspend fun copyToArchive(ids: List<Int>, now: Long)
+
+    /**
+     * Moves up to [limit] tasks completed before [cutoff] into 'tasks_archive', in one
+     * transaction. Callers keep [limit] within [BATCH_CHUNK_SIZE] and call again until fewer
+     * than [limit] tasks moved.
+     * @return The number of tasks moved.
+     */
+    @Transaction
+    suspend fun archiveCompletedBefore(cutoff: Long, now: Long, limit: Int): Int {
+        val ids = getArchivableTaskIds(cutoff, limit)
+        if (ids.isEmpty()) return 0
+        copyToArchive(ids, now)
+        return deleteBatch(ids)
+    }
+
+    /** The archive, newest-completed first. */
+    @Query(TaskSql.GET_ARCHIVED_TASKS_PAGED)
+    fun getArchivedTasksPaged(): PagingSource<Int, ArchivedTask>
+
+    /** Archived tasks whose title or description contains [searchQuery], newest-completed first. */
+    @Query(TaskSql.SEARCH_ARCHIVED_TASKS_PAGED)
+    fun searchArchivedTasksPaged(searchQuery: String): PagingSource<Int, ArchivedTask>
+
+    @Query(TaskSql.GET_ARCHIVED_TASK_BY_ID)
+    suspend fun getArchivedTaskById(taskId: Int): ArchivedTask?
+
+    @Query(TaskSql.GET_ARCHIVED_TASK_COUNT)
+    suspend fun getArchivedTaskCount(): Int
+
+    @Query(TaskSql.DELETE_ARCHIVED_TASK)
+    suspend fun deleteArchivedTask(taskId: Int): Int
+
+    /** Deletes up to [limit] archived tasks. Callers keep [limit] within [BATCH_CHUNK_SIZE]; see [TaskRepository.purgeTasks]. */
+    @Query(TaskSql.DELETE_ARCHIVED_CHUNK)
+    suspend fun deleteArchivedChunk(limit: Int): Int
+
+    /** Moves [task], read from the archive, back into 'tasks' in one transaction. */
+    @Transaction
+    suspend fun restoreFromArchive(task: Task) {
+        insert(task)
+        deleteArchivedTask(task.id)
+    }
+
+    /** Loads every completed task at once; prefer the paged [getCompletedTasksAfter]. */
+    @Query(TaskSql.GET_COMPLETED_TASKS)
     fun getCompletedTasksNonLiveData(): List<Task>
 
-    @Query("DELETE FROM tasks")
+    /** Deletes in one statement; prefer [deleteNextChunk] on large tables. */
+    @Query(TaskSql.DELETE_ALL_TASKS)
     suspend fun deleteAllTasks(): Int
 
-    @Query("SELECT * FROM tasks")
+    /**
+     * Replaces every task with the blocks [nextBlock] returns until it returns null, in one
+     * transaction: a failing restore leaves the table as it was. Used to restore a
+     * [TaskSnapshot], whose blocks are read one at a time.
+     * @return The number of tasks restored.
+     */
+    @Transaction
+    suspend fun replaceAllTasks(nextBlock: () -> List<Task>?): Int {
+        deleteAllTasks()
+        var restored = 0
+        while (true) {
+            val block = nextBlock() ?: break
+            insertBatch(block)
+            restored += block.size
+        }
+        return restored
+    }
+
+    /**
+     * Restores a base snapshot with [replaceAllTasks], then applies [segments] oldest first:
+     * each deletes its ids and then writes its rows. All in one transaction.
+     *
+     * A segment's rows are deleted before they are inserted rather than replaced: the rows a
+     * REPLACE removes fire no delete triggers, so `tasks_fts` would keep the old text.
+     * @return The number of tasks afterwards.
+     */
+    @Transaction
+    suspend fun restoreBackup(base: () -> List<Task>?, segments: List<BackupSegment>): Int {
+        replaceAllTasks(base)
+        for (segment in segments) {
+            for (chunk in segment.deletedIds.chunked(BATCH_CHUNK_SIZE)) deleteBatch(chunk)
+            while (true) {
+                val block = segment.nextBlock() ?: break
+                for (chunk in block.chunked(BATCH_CHUNK_SIZE)) deleteBatch(chunk.map { it.id })
+                insertBatch(block)
+            }
+        }
+        return getTaskCount()
+    }
+
+    /** Loads every task at once; prefer the paged [getTasksAfter]. */
+    @Query(TaskSql.GET_ALL_TASK_ROWS)
     fun getAllTasksNonLiveData(): List<Task>
 
-    @Query("SELECT id FROM tasks WHERE isCompleted = 1")
+    @Query(TaskSql.GET_COMPLETED_TASK_IDS)
     fun getCompletedTaskIds(): List<Int>
 
-    @Query("SELECT id FROM tasks")
+    @Query(TaskSql.GET_ALL_TASK_IDS)
     fun getAllTaskIds(): List<Int>
 
-    @Query("SELECT COUNT(*) FROM tasks")
+    /*
+     * Keyset pages: the next [limit] rows after [afterId] in id order. Each page is a range read
+     * of the primary key starting where the previous one ended, so reading page N costs the same
+     * as reading page 1, unlike OFFSET. See [TaskRepository.streamTasks].
+     */
+
+    @Query(TaskSql.GET_TASKS_AFTER)
+    suspend fun getTasksAfter(afterId: Int, limit: Int): List<Task>
+
+    @Query(TaskSql.GET_COMPLETED_TASKS_AFTER)
+    suspend fun getCompletedTasksAfter(afterId: Int, limit: Int): List<Task>
+
+    @Query(TaskSql.GET_TASK_IDS_AFTER)
+    suspend fun getTaskIdsAfter(afterId: Int, limit: Int): List<Int>
+
+    /** List rows only, for in-memory indexes such as [TrigramIndex]. */
+    @Query(TaskSql.GET_TASK_ITEMS_AFTER)
+    suspend fun getTaskItemsAfter(afterId: Int, limit: Int): List<TaskListItem>
+
+    @Query(TaskSql.GET_COMPLETED_TASK_IDS_AFTER)
+    suspend fun getCompletedTaskIdsAfter(afterId: Int, limit: Int): List<Int>
+
+    /**
+     * The trigger-maintained counters; one primary-key lookup. Null only for a database created
+     * without [TaskDatabase.STATS_CALLBACK].
+     */
+    @Query(TaskSql.GET_STATS_ROW)
+    suspend fun getStatsRow(): TaskStatsRow?
+
+    @Query(TaskSql.GET_STATS_ROW)
+    fun observeStatsRow(): Flow<TaskStatsRow?>
+
+    /**
+     * Pending tasks due before local day [today], per priority. Reads [TaskDueCount] rows, one
+     * per priority and day, instead of the tasks themselves.
+     */
+    @Query(TaskSql.OBSERVE_OVERDUE_COUNTS_BY_PRIORITY)
+    fun observeOverdueCountsByPriority(today: Int): Flow<List<PriorityCount>>
+
+    /** Counts by scanning; prefer [getStatsRow]. */
+    @Query(TaskSql.GET_TASK_COUNT)
     suspend fun getTaskCount(): Int
 
-    @Query("SELECT COUNT(*) FROM tasks WHERE isCompleted = 1")
+    /** Counts with the index; prefer [getStatsRow]. */
+    @Query(TaskSql.GET_COMPLETED_TASK_COUNT)
     suspend fun getCompletedTaskCount(): Int
 
-    @Query("UPDATE tasks SET isCompleted = :isCompleted WHERE id = :taskId")
-    suspend fun setTaskCompleted(taskId: Int, isCompleted: Boolean)
+    /**
+     * Flips `isCompleted` and sets or clears `completionDate` in one statement. SQLite evaluates
+     * every CASE against the row as it was before the update, so both columns agree.
+     * @return The number of rows changed: 0 if the task does not exist.
+     */
+    @Query(TaskSql.FLIP_COMPLETION)
+    suspend fun flipCompletion(taskId: Int, now: Long): Int
+
+    @Query(TaskSql.IS_TASK_COMPLETED)
+    suspend fun isTaskCompleted(taskId: Int): Boolean?
+
+    /**
+     * Toggles completion with [flipCompletion] and reads the resulting state in the same
+     * transaction, so a concurrent writer cannot slip in between.
+     * @return The new completion state, or null if the task does not exist.
+     */
+    @Transaction
+    suspend fun toggleCompletion(taskId: Int, now: Long): Boolean? {
+        if (flipCompletion(taskId, now) == 0) return null
+        return isTaskCompleted(taskId)
+    }
+
+    /**
+     * Marks a pending task completed at [now]. Already completed tasks keep their original
+     * completion date, so repeated notification actions are harmless.
+     * @return 1 if the task changed, 0 if it was already completed or does not exist.
+     */
+    @Query(TaskSql.MARK_COMPLETED)
+    suspend fun markCompleted(taskId: Int, now: Long): Int
 }
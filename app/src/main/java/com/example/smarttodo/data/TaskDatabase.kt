@@ -5,6 +5,12 @@ import androidx.room.Database
 import androidx.room.Room
 import androidx.room.RoomDatabase
 import androidx.room.TypeConverters
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+import com.example.smarttodo.util.EpochDay
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.asCoroutineDispatcher
+import java.util.TimeZone
 
 /**
  * The Room database for this application.
@@ -13,7 +19,9 @@ import androidx.room.TypeConverters
  *
  * It uses a singleton pattern to ensure only one instance of the database is created.
  *
- * @property entities An array of entity classes that are part of this database. Currently [Task].
+ * @property entities An array of entity classes that are part of this database: [Task], its
+ *                    full-text index [TaskFts], its change log [TaskChange], the counters
+ *                    [TaskStatsRow] and [TaskDueCount], and the cold [ArchivedTask] table.
  * @property version The version number of the database schema.
  *                   Increment this version if you make schema changes.
  * @property exportSchema If set to true, Room exports the database schema into a folder specified
@@ -23,11 +31,11 @@ import androidx.room.TypeConverters
  *                        schema location.
  */
 @Database(
-    entities = [Task::class], // Defines the tables (entities) in the database.
-    version = 1,              // Schema version. Must be incremented on schema changes.
+    entities = [Task::class, TaskFts::class, TaskChange::class, TaskStatsRow::class, TaskDueCount::class, ArchivedTask::class], // Defines the tables (entities) in the database.
+    version = 12,             // Schema version. Must be incremented on schema changes.
     exportSchema = false      // Disables schema export to JSON files.
 )
-@TypeConverters(Converters::class) // Registers custom type converters (e.g., for Date objects).
+@TypeConverters(Converters::class) // Registers custom type converters (e.g., for the Priority and TaskType enums).
 abstract class TaskDatabase : RoomDatabase() {
 
     /**
@@ -38,6 +46,13 @@ abstract class TaskDatabase : RoomDatabase() {
      */
     abstract fun taskDao(): TaskDao
 
+    /**
+     * Dispatcher over Room's query executor. For a database from [create] that is the bounded
+     * pool of [DatabaseTuning.connectionPoolSize] threads, so [TaskRepository] work never
+     * queues more blocking reads than there are connections to serve them.
+     */
+    val queryDispatcher: CoroutineDispatcher by lazy { queryExecutor.asCoroutineDispatcher() }
+
     /**
      * Companion object to provide a singleton instance of the [TaskDatabase].
      * This ensures that only one database instance exists throughout the application's lifecycle,
@@ -52,6 +67,310 @@ abstract class TaskDatabase : RoomDatabase() {
         @Volatile
         private var INSTANCE: TaskDatabase? = null
 
+        /**
+         * Version 2 adds the [TaskFts] full-text index. Room drops and re-creates the FTS
+         * content-sync triggers around every migration, so this only needs to create the
+         * virtual table and index the rows that already exist.
+         */
+        val MIGRATION_1_2 = object : Migration(1, 2) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `tasks_fts` USING FTS4(`title` TEXT NOT NULL, `description` TEXT NOT NULL, content=`tasks`)")
+                db.execSQL("INSERT INTO `tasks_fts`(`tasks_fts`) VALUES ('rebuild')")
+            }
+        }
+
+        /** Version 3 adds the `(isCompleted, dueDate)` index used by the date filters. */
+        val MIGRATION_2_3 = object : Migration(2, 3) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_tasks_isCompleted_dueDate` ON `tasks` (`isCompleted`, `dueDate`)")
+            }
+        }
+
+        /** Version 4 adds the index matching the default `priority DESC, createdAt` ordering. */
+        val MIGRATION_3_4 = object : Migration(3, 4) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_tasks_isCompleted_priority_createdAt` ON `tasks` (`isCompleted` ASC, `priority` DESC, `createdAt` ASC)")
+            }
+        }
+
+        /**
+         * Version 5 adds the [TaskChange] log and the triggers that fill it. Rows written before
+         * the upgrade have no log entries; readers start from the current sequence anyway.
+         */
+        val MIGRATION_4_5 = object : Migration(4, 5) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("CREATE TABLE IF NOT EXISTS `task_changes` (`seq` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `taskId` INTEGER NOT NULL, `op` INTEGER NOT NULL)")
+                createChangeLogTriggers(db)
+            }
+        }
+
+        /**
+         * Version 6 stores `taskType` as its [TaskType.code] instead of the enum name. SQLite
+         * cannot change a column's type, so the table is rebuilt with the same ids. Dropping the
+         * old table drops its triggers: Room re-creates the FTS ones after the migration and the
+         * change-log ones are re-created here. The FTS index itself is keyed by id and stays valid.
+         */
+        val MIGRATION_5_6 = object : Migration(5, 6) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                val lastId = db.query("SELECT `seq` FROM `sqlite_sequence` WHERE `name` = 'tasks'").use { cursor ->
+                    if (cursor.moveToFirst()) cursor.getLong(0) else 0L
+                }
+                db.execSQL("CREATE TABLE IF NOT EXISTS `tasks_new` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `title` TEXT NOT NULL, `description` TEXT NOT NULL, `priority` INTEGER NOT NULL, `isCompleted` INTEGER NOT NULL, `createdAt` INTEGER NOT NULL, `dueDate` INTEGER, `completionDate` INTEGER, `hasReminder` INTEGER NOT NULL, `preReminderOffsetMinutes` INTEGER, `taskType` INTEGER NOT NULL, `estimatedPomodoros` INTEGER NOT NULL, `completedPomodoros` INTEGER NOT NULL, `soundUri` TEXT)")
+                db.execSQL(
+                    """
+                    INSERT INTO `tasks_new` (`id`, `title`, `description`, `priority`, `isCompleted`, `createdAt`, `dueDate`, `completionDate`, `hasReminder`, `preReminderOffsetMinutes`, `taskType`, `estimatedPomodoros`, `completedPomodoros`, `soundUri`)
+                    SELECT `id`, `title`, `description`, `priority`, `isCompleted`, `createdAt`, `dueDate`, `completionDate`, `hasReminder`, `preReminderOffsetMinutes`,
+                        CASE `taskType` WHEN 'CREATIVE' THEN ${TaskType.CREATIVE.code} WHEN 'ANALYTICAL' THEN ${TaskType.ANALYTICAL.code} ELSE ${TaskType.ADMINISTRATIVE.code} END,
+                        `estimatedPomodoros`, `completedPomodoros`, `soundUri`
+                    FROM `tasks`
+                    """
+                )
+                db.execSQL("DROP TABLE `tasks`")
+                db.execSQL("ALTER TABLE `tasks_new` RENAME TO `tasks`")
+                // Keep AUTOINCREMENT from reusing the ids of deleted tasks; alarms are keyed by id.
+                db.execSQL("UPDATE `sqlite_sequence` SET `seq` = MAX(`seq`, $lastId) WHERE `name` = 'tasks'")
+                db.execSQL("INSERT INTO `sqlite_sequence` (`name`, `seq`) SELECT 'tasks', $lastId WHERE $lastId > 0 AND NOT EXISTS (SELECT 1 FROM `sqlite_sequence` WHERE `name` = 'tasks')")
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_tasks_title` ON `tasks` (`title`)")
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_tasks_createdAt` ON `tasks` (`createdAt`)")
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_tasks_isCompleted_dueDate` ON `tasks` (`isCompleted`, `dueDate`)")
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_tasks_isCompleted_priority_createdAt` ON `tasks` (`isCompleted` ASC, `priority` DESC, `createdAt` ASC)")
+                createChangeLogTriggers(db)
+            }
+        }
+
+        /**
+         * Version 7 adds [Task.dueEpochDay] and replaces the `(isCompleted, dueDate)` index with
+         * `(isCompleted, dueEpochDay, dueDate)`. Existing days are computed here in the current
+         * time zone, one UPDATE per distinct day.
+         */
+        val MIGRATION_6_7 = object : Migration(6, 7) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("ALTER TABLE `tasks` ADD COLUMN `dueEpochDay` INTEGER")
+                db.execSQL("DROP INDEX IF EXISTS `index_tasks_isCompleted_dueDate`")
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_tasks_isCompleted_dueEpochDay_dueDate` ON `tasks` (`isCompleted`, `dueEpochDay`, `dueDate`)")
+                val zone = TimeZone.getDefault()
+                val idsByDay = HashMap<Int, MutableList<Int>>()
+                db.query("SELECT `id`, `dueDate` FROM `tasks` WHERE `dueDate` IS NOT NULL").use { cursor ->
+                    while (cursor.moveToNext()) {
+                        idsByDay.getOrPut(EpochDay.of(cursor.getLong(1), zone)) { ArrayList() }.add(cursor.getInt(0))
+                    }
+                }
+                for ((day, ids) in idsByDay) {
+                    for (chunk in ids.chunked(BATCH_CHUNK_SIZE)) {
+                        db.execSQL("UPDATE `tasks` SET `dueEpochDay` = $day WHERE `id` IN (${chunk.joinToString(",")})")
+                    }
+                }
+            }
+        }
+
+        /** Version 8 adds the [TaskStatsRow] and [TaskDueCount] counters and their triggers. */
+        val MIGRATION_7_8 = object : Migration(7, 8) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("CREATE TABLE IF NOT EXISTS `task_stats` (`id` INTEGER NOT NULL, `total` INTEGER NOT NULL, `completed` INTEGER NOT NULL, `creative` INTEGER NOT NULL, `analytical` INTEGER NOT NULL, `administrative` INTEGER NOT NULL, PRIMARY KEY(`id`))")
+                db.execSQL("CREATE TABLE IF NOT EXISTS `task_due_counts` (`priority` INTEGER NOT NULL, `dueEpochDay` INTEGER NOT NULL, `count` INTEGER NOT NULL, PRIMARY KEY(`priority`, `dueEpochDay`))")
+                createStatsTriggers(db)
+                rebuildStats(db)
+            }
+        }
+
+        /** Version 9 adds the [ArchivedTask] table; it starts empty. */
+        val MIGRATION_8_9 = object : Migration(8, 9) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("CREATE TABLE IF NOT EXISTS `tasks_archive` (`id` INTEGER NOT NULL, `title` TEXT NOT NULL, `description` TEXT NOT NULL, `priority` INTEGER NOT NULL, `createdAt` INTEGER NOT NULL, `dueDate` INTEGER, `completionDate` INTEGER, `hasReminder` INTEGER NOT NULL, `preReminderOffsetMinutes` INTEGER, `taskType` INTEGER NOT NULL, `estimatedPomodoros` INTEGER NOT NULL, `completedPomodoros` INTEGER NOT NULL, `soundUri` TEXT, `archivedAt` INTEGER NOT NULL, PRIMARY KEY(`id`))")
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_tasks_archive_completionDate` ON `tasks_archive` (`completionDate`)")
+            }
+        }
+
+        /**
+         * Version 10 adds [Task.lastModified]. Existing rows get 0, so the first backup after the
+         * upgrade is a full one anyway (see [TaskBackup]).
+         */
+        val MIGRATION_9_10 = object : Migration(9, 10) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("ALTER TABLE `tasks` ADD COLUMN `lastModified` INTEGER NOT NULL DEFAULT 0")
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_tasks_lastModified` ON `tasks` (`lastModified`)")
+            }
+        }
+
+        /**
+         * Version 11 adds the indexes the sections of the paged list walk in order, see
+         * [TaskDao.getTasksPaged].
+         */
+        val MIGRATION_10_11 = object : Migration(10, 11) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_tasks_isCompleted_dueEpochDay_priority_createdAt` ON `tasks` (`isCompleted` ASC, `dueEpochDay` ASC, `priority` DESC, `createdAt` ASC)")
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_tasks_isCompleted_completionDate_priority_createdAt` ON `tasks` (`isCompleted` ASC, `completionDate` DESC, `priority` DESC, `createdAt` ASC)")
+            }
+        }
+
+        /**
+         * Version 12 drops the '(lastModified)' index. Incremental backups find their rows through
+         * the change log now ([TaskRepository.writeBackupSegment]), so nothing reads it.
+         */
+        val MIGRATION_11_12 = object : Migration(11, 12) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("DROP INDEX IF EXISTS `index_tasks_lastModified`")
+            }
+        }
+
+        /** Every schema migration, in order. */
+        val ALL_MIGRATIONS = arrayOf(
+            MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8,
+            MIGRATION_8_9, MIGRATION_9_10, MIGRATION_10_11, MIGRATION_11_12
+        )
+
+        /**
+         * How many [TaskChange] rows survive a prune: the newest ones in [CHANGE_LOG_CALLBACK],
+         * and the ones before the slowest feed reader in [TaskWriteQueue].
+         */
+        const val CHANGE_LOG_RETENTION = 1000
+
+        /**
+         * Creates the AFTER INSERT/UPDATE/DELETE triggers on 'tasks' that append to 'task_changes'.
+         * Room does not generate triggers for plain entities, so fresh installs get them from
+         * [CHANGE_LOG_CALLBACK] and upgrades from [MIGRATION_4_5].
+         */
+        fun createChangeLogTriggers(db: SupportSQLiteDatabase) {
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS `task_changes_after_insert` AFTER INSERT ON `tasks` BEGIN INSERT INTO `task_changes`(`taskId`, `op`) VALUES (NEW.`id`, ${TaskChange.OP_INSERT}); END")
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS `task_changes_after_update` AFTER UPDATE ON `tasks` BEGIN INSERT INTO `task_changes`(`taskId`, `op`) VALUES (NEW.`id`, ${TaskChange.OP_UPDATE}); END")
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS `task_changes_after_delete` AFTER DELETE ON `tasks` BEGIN INSERT INTO `task_changes`(`taskId`, `op`) VALUES (OLD.`id`, ${TaskChange.OP_DELETE}); END")
+        }
+
+        /**
+         * Creates the triggers on 'tasks' that keep [TaskStatsRow] and [TaskDueCount] exact. Each
+         * write adjusts the counters by the difference between the old and new row, in the same
+         * transaction. The update triggers only fire when a counted column changes. A migration
+         * that rebuilds 'tasks' drops these and must call this (and [rebuildStats]) again.
+         */
+        fun createStatsTriggers(db: SupportSQLiteDatabase) {
+            val creative = TaskType.CREATIVE.code
+            val analytical = TaskType.ANALYTICAL.code
+            val administrative = TaskType.ADMINISTRATIVE.code
+            db.execSQL(
+                """
+                CREATE TRIGGER IF NOT EXISTS `task_stats_after_insert` AFTER INSERT ON `tasks` BEGIN
+                    UPDATE `task_stats` SET `total` = `total` + 1, `completed` = `completed` + NEW.`isCompleted`,
+                        `creative` = `creative` + (NEW.`taskType` = $creative),
+                        `analytical` = `analytical` + (NEW.`taskType` = $analytical),
+                        `administrative` = `administrative` + (NEW.`taskType` = $administrative)
+                    WHERE `id` = ${TaskStatsRow.ID};
+                    INSERT OR IGNORE INTO `task_due_counts` (`priority`, `dueEpochDay`, `count`)
+                        SELECT NEW.`priority`, NEW.`dueEpochDay`, 0 WHERE NEW.`isCompleted` = 0 AND NEW.`dueEpochDay` IS NOT NULL;
+                    UPDATE `task_due_counts` SET `count` = `count` + 1
+                    WHERE NEW.`isCompleted` = 0 AND `priority` = NEW.`priority` AND `dueEpochDay` = NEW.`dueEpochDay`;
+                END
+                """
+            )
+            // Room inserts with OnConflictStrategy.REPLACE. SQLite does not fire delete triggers for
+            // the row a REPLACE removes (recursive triggers are off), so subtract it here first.
+            db.execSQL(
+                """
+                CREATE TRIGGER IF NOT EXISTS `task_stats_before_replace` BEFORE INSERT ON `tasks`
+                WHEN NEW.`id` IN (SELECT `id` FROM `tasks`) BEGIN
+                    UPDATE `task_stats` SET `total` = `total` - 1,
+                        `completed` = `completed` - (SELECT `isCompleted` FROM `tasks` WHERE `id` = NEW.`id`),
+                        `creative` = `creative` - (SELECT `taskType` = $creative FROM `tasks` WHERE `id` = NEW.`id`),
+                        `analytical` = `analytical` - (SELECT `taskType` = $analytical FROM `tasks` WHERE `id` = NEW.`id`),
+                        `administrative` = `administrative` - (SELECT `taskType` = $administrative FROM `tasks` WHERE `id` = NEW.`id`)
+                    WHERE `id` = ${TaskStatsRow.ID};
+                    UPDATE `task_due_counts` SET `count` = `count` - 1
+                    WHERE EXISTS (
+                        SELECT 1 FROM `tasks` WHERE `id` = NEW.`id` AND `isCompleted` = 0
+                        AND `priority` = `task_due_counts`.`priority` AND `dueEpochDay` = `task_due_counts`.`dueEpochDay`
+                    );
+                    DELETE FROM `task_due_counts` WHERE `count` = 0;
+                END
+                """
+            )
+            db.execSQL(
+                """
+                CREATE TRIGGER IF NOT EXISTS `task_stats_after_delete` AFTER DELETE ON `tasks` BEGIN
+                    UPDATE `task_stats` SET `total` = `total` - 1, `completed` = `completed` - OLD.`isCompleted`,
+                        `creative` = `creative` - (OLD.`taskType` = $creative),
+                        `analytical` = `analytical` - (OLD.`taskType` = $analytical),
+                        `administrative` = `administrative` - (OLD.`taskType` = $administrative)
+                    WHERE `id` = ${TaskStatsRow.ID};
+                    UPDATE `task_due_counts` SET `count` = `count` - 1
+                    WHERE OLD.`isCompleted` = 0 AND `priority` = OLD.`priority` AND `dueEpochDay` = OLD.`dueEpochDay`;
+                    DELETE FROM `task_due_counts` WHERE `count` = 0 AND `priority` = OLD.`priority` AND `dueEpochDay` = OLD.`dueEpochDay`;
+                END
+                """
+            )
+            db.execSQL(
+                """
+                CREATE TRIGGER IF NOT EXISTS `task_stats_after_update` AFTER UPDATE ON `tasks`
+                WHEN OLD.`isCompleted` IS NOT NEW.`isCompleted` OR OLD.`taskType` IS NOT NEW.`taskType` BEGIN
+                    UPDATE `task_stats` SET `completed` = `completed` + NEW.`isCompleted` - OLD.`isCompleted`,
+                        `creative` = `creative` + (NEW.`taskType` = $creative) - (OLD.`taskType` = $creative),
+                        `analytical` = `analytical` + (NEW.`taskType` = $analytical) - (OLD.`taskType` = $analytical),
+                        `administrative` = `administrative` + (NEW.`taskType` = $administrative) - (OLD.`taskType` = $administrative)
+                    WHERE `id` = ${TaskStatsRow.ID};
+                END
+                """
+            )
+            db.execSQL(
+                """
+                CREATE TRIGGER IF NOT EXISTS `task_due_counts_after_update` AFTER UPDATE ON `tasks`
+                WHEN OLD.`isCompleted` IS NOT NEW.`isCompleted` OR OLD.`priority` IS NOT NEW.`priority` OR OLD.`dueEpochDay` IS NOT NEW.`dueEpochDay` BEGIN
+                    UPDATE `task_due_counts` SET `count` = `count` - 1
+                    WHERE OLD.`isCompleted` = 0 AND `priority` = OLD.`priority` AND `dueEpochDay` = OLD.`dueEpochDay`;
+                    DELETE FROM `task_due_counts` WHERE `count` = 0 AND `priority` = OLD.`priority` AND `dueEpochDay` = OLD.`dueEpochDay`;
+                    INSERT OR IGNORE INTO `task_due_counts` (`priority`, `dueEpochDay`, `count`)
+                        SELECT NEW.`priority`, NEW.`dueEpochDay`, 0 WHERE NEW.`isCompleted` = 0 AND NEW.`dueEpochDay` IS NOT NULL;
+                    UPDATE `task_due_counts` SET `count` = `count` + 1
+                    WHERE NEW.`isCompleted` = 0 AND `priority` = NEW.`priority` AND `dueEpochDay` = NEW.`dueEpochDay`;
+                END
+                """
+            )
+        }
+
+        /** Recomputes both counter tables from 'tasks' with one pass each. */
+        fun rebuildStats(db: SupportSQLiteDatabase) {
+            db.execSQL("DELETE FROM `task_stats`")
+            db.execSQL(
+                """
+                INSERT INTO `task_stats` (`id`, `total`, `completed`, `creative`, `analytical`, `administrative`)
+                SELECT ${TaskStatsRow.ID}, COUNT(*), IFNULL(SUM(`isCompleted`), 0),
+                    IFNULL(SUM(`taskType` = ${TaskType.CREATIVE.code}), 0),
+                    IFNULL(SUM(`taskType` = ${TaskType.ANALYTICAL.code}), 0),
+                    IFNULL(SUM(`taskType` = ${TaskType.ADMINISTRATIVE.code}), 0)
+                FROM `tasks`
+                """
+            )
+            db.execSQL("DELETE FROM `task_due_counts`")
+            db.execSQL(
+                """
+                INSERT INTO `task_due_counts` (`priority`, `dueEpochDay`, `count`)
+                SELECT `priority`, `dueEpochDay`, COUNT(*) FROM `tasks`
+                WHERE `isCompleted` = 0 AND `dueEpochDay` IS NOT NULL
+                GROUP BY `priority`, `dueEpochDay`
+                """
+            )
+        }
+
+        /** Installs the counter triggers and the initial [TaskStatsRow] on a newly created database. */
+        val STATS_CALLBACK = object : RoomDatabase.Callback() {
+            override fun onCreate(db: SupportSQLiteDatabase) {
+                createStatsTriggers(db)
+                rebuildStats(db)
+            }
+        }
+
+        /**
+         * Installs the change-log triggers on a newly created database and trims the log on every
+         * open, when it has no readers yet. While the app runs, [TaskWriteQueue] prunes it behind
+         * the slowest reader of the feed.
+         */
+        val CHANGE_LOG_CALLBACK = object : RoomDatabase.Callback() {
+            override fun onCreate(db: SupportSQLiteDatabase) {
+                createChangeLogTriggers(db)
+            }
+
+            override fun onOpen(db: SupportSQLiteDatabase) {
+                db.execSQL("DELETE FROM `task_changes` WHERE `seq` <= (SELECT MAX(`seq`) FROM `task_changes`) - $CHANGE_LOG_RETENTION")
+            }
+        }
+
         /**
          * Gets the singleton instance of the [TaskDatabase].
          * Uses a double-checked locking pattern to ensure thread-safe instantiation.
@@ -64,20 +383,35 @@ abstract class TaskDatabase : RoomDatabase() {
             // Return the existing instance if it's already created.
             return INSTANCE ?: synchronized(this) { // synchronized block to ensure only one thread creates the instance.
                 // Re-check INSTANCE inside synchronized block to handle cases where multiple threads passed the first check.
-                val instance = INSTANCE ?: Room.databaseBuilder(
-                    context.applicationContext, // Use application context to avoid leaks.
-                    TaskDatabase::class.java,   // The RoomDatabase class.
-                    "task_database"        // The name of the database file.
-                )
-                    // Specifies a migration strategy: if a schema migration is needed and not provided,
-                    // Room will clear all tables and recreate the database with the new schema.
-                    // This is simple for development but means data loss on schema version changes.
-                    // For production, provide explicit migration paths.
-                    .fallbackToDestructiveMigration()
-                    .build()
+                val instance = INSTANCE ?: create(context, DATABASE_NAME, DatabaseTuning())
                 INSTANCE = instance // Assign the newly created instance.
                 instance // Return the instance.
             }
         }
+
+        private const val DATABASE_NAME = "task_database"
+
+        /**
+         * Builds a file-backed [TaskDatabase] with every migration and callback, configured by
+         * [tuning]. [getDatabase] uses this for the app's instance; benchmarks use it to compare
+         * configurations.
+         */
+        fun create(context: Context, name: String, tuning: DatabaseTuning): TaskDatabase {
+            return Room.databaseBuilder(
+                context.applicationContext, // Use application context to avoid leaks.
+                TaskDatabase::class.java,   // The RoomDatabase class.
+                name                        // The name of the database file.
+            )
+                // Every schema change ships an explicit migration so upgrades never lose tasks.
+                // There is deliberately no destructive fallback: a missing migration fails loudly.
+                .addMigrations(*ALL_MIGRATIONS)
+                .addCallback(CHANGE_LOG_CALLBACK)
+                .addCallback(STATS_CALLBACK)
+                .addCallback(tuning.pragmaCallback())
+                .setJournalMode(tuning.journalMode)
+                .setQueryExecutor(tuning.newQueryExecutor())
+                .setTransactionExecutor(tuning.newTransactionExecutor())
+                .build()
+        }
     }
 }
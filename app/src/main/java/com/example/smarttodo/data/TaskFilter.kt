@@ -0,0 +1,59 @@
+package com.example.smarttodo.data
+
+/**
+ * The filter chips of the main screen. Names match the filter strings used by
+ * [com.example.smarttodo.ui.TaskViewModel.setFilter].
+ *
+ * Each filter is answered by its own DAO query (see [TaskRepository.loadFilteredTasks]);
+ * [matches] is the equivalent in-memory predicate and [comparator] the equivalent ordering,
+ * used when a search query has already narrowed the rows and when rows from the change feed
+ * are patched into a loaded list.
+ */
+enum class TaskFilter {
+    ALL,
+    TODAY,
+    TOMORROW,
+
+    /** Pending tasks due after tomorrow. */
+    UPCOMING,
+    HIGH_PRIORITY,
+    COMPLETED;
+
+    /** @param today The current local day, see [com.example.smarttodo.util.EpochDay]. */
+    fun matches(task: TaskListItem, today: Int): Boolean {
+        val dueDay = task.dueEpochDay
+        return when (this) {
+            ALL -> true
+            TODAY -> !task.isCompleted && dueDay == today
+            TOMORROW -> !task.isCompleted && dueDay == today + 1
+            UPCOMING -> !task.isCompleted && dueDay != null && dueDay >= today + 2
+            HIGH_PRIORITY -> !task.isCompleted && task.priority == Priority.HIGH
+            COMPLETED -> task.isCompleted
+        }
+    }
+
+    /**
+     * The ORDER BY of this filter's query, with the id as a final tie-breaker so every row has
+     * exactly one position.
+     */
+    val comparator: Comparator<TaskListItem>
+        get() = when (this) {
+            TODAY, TOMORROW, UPCOMING -> BY_DUE_DATE
+            HIGH_PRIORITY, COMPLETED -> BY_PRIORITY
+            ALL -> BY_STATUS_THEN_PRIORITY
+        }
+
+    companion object {
+        private val BY_DUE_DATE: Comparator<TaskListItem> =
+            compareBy<TaskListItem> { it.dueDate }.thenBy { it.id }
+
+        private val BY_PRIORITY: Comparator<TaskListItem> =
+            compareByDescending<TaskListItem> { it.priority.value }.thenBy { it.createdAt }.thenBy { it.id }
+
+        private val BY_STATUS_THEN_PRIORITY: Comparator<TaskListItem> =
+            compareBy<TaskListItem> { it.isCompleted }.then(BY_PRIORITY)
+
+        /** Parses a filter string, treating unknown values as [ALL]. */
+        fun fromName(name: String?): TaskFilter = entries.firstOrNull { it.name == name } ?: ALL
+    }
+}
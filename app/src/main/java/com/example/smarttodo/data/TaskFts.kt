@@ -0,0 +1,20 @@
+package com.example.smarttodo.data
+
+import androidx.room.Entity
+import androidx.room.Fts4
+
+/**
+ * Full-text index over the searchable columns of the 'tasks' table.
+ *
+ * This is an external-content FTS4 table: it stores only the token index, not a second copy of
+ * the text. Room generates the triggers that keep it in sync with [Task] on every insert, update
+ * and delete, and each row's `docid` equals the `rowid` (the [Task.id]) of the task it indexes.
+ * FTS4 is used instead of FTS5 because FTS5 is not available in the platform SQLite on all of
+ * the API levels this app supports.
+ */
+@Fts4(contentEntity = Task::class)
+@Entity(tableName = "tasks_fts")
+data class TaskFts(
+    val title: String,
+    val description: String
+)
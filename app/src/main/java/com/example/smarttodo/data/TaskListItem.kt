@@ -0,0 +1,25 @@
+package com.example.smarttodo.data
+
+/**
+ * The columns of the 'tasks' table that a list row shows. List queries select only these, so
+ * reminder, pomodoro and sound fields are never read into the cursor window for the list, and
+ * the dates stay plain epoch-millisecond values instead of [java.util.Date] objects.
+ *
+ * [createdAt] is only read to keep rows patched in from the change feed in the same order as
+ * the SQL `ORDER BY ... createdAt` the list was first loaded with (see [TaskFilter.comparator]).
+ *
+ * [dueEpochDay] lets the date filters and sections compare local days without calendar math.
+ *
+ * Screens that need the rest of the task load the full [Task] by [id] when they open.
+ */
+data class TaskListItem(
+    val id: Int,
+    val title: String,
+    val description: String,
+    val priority: Priority,
+    val dueDate: Long?,
+    val isCompleted: Boolean,
+    val completionDate: Long?,
+    val createdAt: Long,
+    val dueEpochDay: Int?
+)
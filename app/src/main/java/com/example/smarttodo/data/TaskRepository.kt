@@ -1,34 +1,455 @@
 package com.example.smarttodo.data
 
 import android.util.Log
-import androidx.lifecycle.LiveData
+import androidx.paging.Pager
+import androidx.paging.PagingConfig
+import androidx.paging.PagingData
+import com.example.smarttodo.util.EpochDay
 import com.example.smarttodo.util.OperationResult
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.cancelAndJoin
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.channelFlow
+import kotlinx.coroutines.flow.combine
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.flatMapLatest
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
+import kotlinx.coroutines.yield
+import java.io.File
+import java.io.IOException
+import java.nio.channels.ReadableByteChannel
+import java.nio.channels.WritableByteChannel
 import java.util.NoSuchElementException // Import for explicit exception type
+import java.util.TimeZone
+import java.util.concurrent.atomic.AtomicBoolean
 
-class TaskRepository(private val taskDao: TaskDao) {
+/**
+ * Every [Task] written through this repository gets its [Task.dueEpochDay] derived from its due
+ * date and its [Task.lastModified] set here ([Task.preparedForWrite]); [refreshDueEpochDays]
+ * recomputes the days when the device's time zone changes.
+ *
+ * @param useFullTextSearch When true, non-blank searches go through the FTS index
+ *                          ([TaskDao.searchTasks]) instead of the LIKE scan ([TaskDao.getTasks]).
+ * @param writeQueue The application's single writer. When set, every mutation is queued there
+ *                   and batched with concurrent writes; when null, writes go straight to [taskDao].
+ * @param taskCache Optional cache for [getTaskById] and [getTaskByIdNonLiveData]. It is written
+ *                  through by [writeQueue], which is then required. When [changeFeedScope] is
+ *                  set, it is also evicted from the change feed for writes that bypass the queue.
+ * @param changeFeedScope Scope that follows [taskChanges] for [taskCache], [searchIndex] and
+ *                        [fuzzyIndex] for as long as it lives.
+ * @param ioDispatcher Where database work runs. The app passes [TaskDatabase.queryDispatcher],
+ *                     bounded to the connection pool, rather than the unbounded [Dispatchers.IO].
+ * @param searchIndex Optional in-memory backend for non-blank [getTasks] searches, with LIKE
+ *                    semantics. Loaded and kept current in [changeFeedScope], which is then
+ *                    required; searches use SQLite until it is loaded.
+ * @param fuzzyIndex Optional backend for [fuzzySearchTasks]. Loaded in [changeFeedScope], which
+ *                   is then required, the first time a fuzzy search runs, and kept current from
+ *                   then on; without it, or until it is loaded, fuzzy searches are plain ones.
+ */
+class TaskRepository(
+    private val taskDao: TaskDao,
+    private val useFullTextSearch: Boolean = true,
+    private val writeQueue: TaskWriteQueue? = null,
+    private val taskCache: TaskCache? = null,
+    private val changeFeedScope: CoroutineScope? = null,
+    private val ioDispatcher: CoroutineDispatcher = Dispatchers.IO,
+    private val searchIndex: TrigramIndex? = null,
+    private val fuzzyIndex: FuzzyIndex? = null
+) {
+
+    /** Set once [fuzzyIndex] has started loading. */
+    private val fuzzyIndexStarted = AtomicBoolean(false)
+
+    /** Set if the change feed fails; the cache can no longer see every write after that. */
+    @Volatile
+    private var cacheDisabled = false
+
+    init {
+        require(taskCache == null || writeQueue != null) { "taskCache is written through by writeQueue and needs one" }
+        if (taskCache != null) {
+            writeQueue?.commitListener = taskCache
+            changeFeedScope?.launch {
+                try {
+                    val fromSeq = taskDao.getLatestChangeSeq()
+                    taskCache.startAt(fromSeq)
+                    taskChanges(fromSeq).collect { taskCache.onChanges(it) }
+                } catch (e: CancellationException) {
+                    throw e
+                } catch (e: Exception) {
+                    // Without the feed, writes that bypass the queue could leave stale rows.
+                    Log.e(TAG, "Task change feed stopped, disabling the task cache", e)
+                    taskCache.onTasksChanged()
+                    writeQueue?.commitListener = null
+                    cacheDisabled = true
+                }
+            }
+        }
+        require(searchIndex == null || changeFeedScope != null) { "searchIndex is kept current from changeFeedScope" }
+        if (searchIndex != null) {
+            changeFeedScope?.launch { followInIndex(searchIndex) }
+        }
+        require(fuzzyIndex == null || changeFeedScope != null) { "fuzzyIndex is kept current from changeFeedScope" }
+    }
+
+    /**
+     * Loads every list row into [index] in keyset pages, then applies each change from
+     * [taskChanges]. The feed position is read before the load, so a write landing in between
+     * is replayed; applying a change twice is harmless.
+     */
+    private suspend fun followInIndex(index: TaskSearchIndex) {
+        try {
+            val fromSeq = withContext(ioDispatcher) { taskDao.getLatestChangeSeq() }
+            val items = ArrayList<TaskListItem>()
+            keysetPages(BATCH_CHUNK_SIZE, TaskListItem::id) { afterId -> taskDao.getTaskItemsAfter(afterId, BATCH_CHUNK_SIZE) }
+                .collect { items.addAll(it) }
+            index.load(items.asSequence())
+            Log.d(TAG, "Search index loaded with ${items.size} tasks")
+            taskChanges(fromSeq).collect { changes ->
+                val ids = changes.mapTo(HashSet()) { it.taskId }
+                // Not getTaskItems: a failed read must stop the index, not look like deletes.
+                val current = withContext(ioDispatcher) {
+                    val rows = HashMap<Int, TaskListItem>(ids.size)
+                    for (chunk in ids.chunked(BATCH_CHUNK_SIZE)) {
+                        taskDao.getTaskItemsByIds(chunk).forEach { rows[it.id] = it }
+                    }
+                    rows
+                }
+                index.apply(ids, current)
+            }
+        } catch (e: CancellationException) {
+            index.invalidate()
+            throw e
+        } catch (e: Exception) {
+            Log.e(TAG, "Task change feed stopped, searching SQLite instead of the index", e)
+            index.invalidate()
+        }
+    }
 
     private companion object {
         private const val TAG = "TaskRepository"
+
+        // Rows per page, and the most rows the pager keeps in memory before dropping pages
+        // far from the viewport. Must be at least pageSize + 2 * prefetchDistance.
+        private const val PAGE_SIZE = 50
+        private const val MAX_PAGED_ROWS = 300
+
+        private val NO_PROGRESS: BatchProgress = { _, _ -> }
     }
 
     /**
-     * Returns LiveData of tasks. If the query is blank/empty, uses a simpler DAO query
+     * Returns a Flow of list rows ([TaskListItem]), re-emitted by Room after every write to 'tasks'.
+     * If the query is blank/empty, uses a simpler DAO query
      * that does not use LIKE and therefore performs better for large datasets.
+     * Otherwise the FTS index is used, falling back to LIKE when FTS is disabled or the query
+     * has no searchable tokens (e.g. only punctuation). With a loaded [searchIndex], queries it
+     * can answer are served from memory instead, with LIKE semantics.
+     */
+    fun getTasks(query: String, isCompleted: Boolean?): Flow<List<TaskListItem>> {
+        if (query.isBlank()) {
+            return if (isCompleted == null) taskDao.getAllTasks() else taskDao.getTasksByCompletion(isCompleted)
+        }
+        if (searchIndex != null && searchIndex.canSearch(query)) {
+            return searchIndex.results(query, isCompleted)
+        }
+        if (useFullTextSearch) {
+            val matchQuery = FtsQueryBuilder.build(query)
+            val titleMatchQuery = FtsQueryBuilder.buildForTitle(query)
+            if (matchQuery != null && titleMatchQuery != null) {
+                return taskDao.searchTasks(matchQuery, titleMatchQuery, isCompleted)
+            }
+        }
+        return taskDao.getTasks(query, isCompleted)
+    }
+
+    /**
+     * Live results of [getTasks] for the latest of [queries], e.g. the text of a search box.
+     *
+     * At most one database search is live: a new query cancels the previous one, and waits
+     * for it to finish, before its own starts. A query that only extends the one the live
+     * search was opened for (another character typed) does not query again; the live results
+     * are narrowed in memory instead, see [SearchNarrowing], and stay current with writes.
+     * Debounce [queries] before passing them in; each distinct value is acted on.
      */
-    fun getTasks(query: String, isCompleted: Boolean?): LiveData<List<Task>> {
-        return if (query.isBlank()) {
-            taskDao.getAllTasks(isCompleted)
-        } else {
-            taskDao.getTasks(query, isCompleted)
+    fun searchTasks(queries: Flow<String>): Flow<List<TaskListItem>> = channelFlow {
+        var baseQuery: String? = null
+        var refinement: MutableStateFlow<String>? = null
+        var search: Job? = null
+        queries.distinctUntilChanged().collect { query ->
+            val base = baseQuery
+            val current = refinement
+            if (base != null && current != null && SearchNarrowing.canNarrow(base, query)) {
+                current.value = query
+                return@collect
+            }
+            search?.cancelAndJoin()
+            val latest = MutableStateFlow(query)
+            // The index searches like LIKE, not like FTS.
+            val fullText = useFullTextSearch && searchIndex?.canSearch(query) != true
+            baseQuery = query
+            refinement = latest
+            search = launch {
+                getTasks(query, null).combine(latest) { rows, refined ->
+                    if (refined == query) rows else SearchNarrowing.narrow(rows, refined, fullText)
+                }.collect { send(it) }
+            }
         }
     }
 
+    /**
+     * Live typo-tolerant results for the latest of [queries], ranked by relevance rather than
+     * priority; see [FuzzyIndex]. The first call starts loading [fuzzyIndex]; until it is
+     * loaded, and whenever it stops following writes, the queries go to [searchTasks] instead.
+     * Blank queries list every task, like [getTasks].
+     */
+    @OptIn(ExperimentalCoroutinesApi::class)
+    fun fuzzySearchTasks(queries: Flow<String>): Flow<List<TaskListItem>> {
+        val index = fuzzyIndex ?: return searchTasks(queries)
+        if (fuzzyIndexStarted.compareAndSet(false, true)) {
+            changeFeedScope?.launch { followInIndex(index) }
+        }
+        return index.version.map { index.isReady }.distinctUntilChanged().flatMapLatest { ready ->
+            if (ready) {
+                queries.distinctUntilChanged().flatMapLatest { query ->
+                    if (query.isBlank()) getTasks(query, null) else index.results(query)
+                }
+            } else {
+                searchTasks(queries)
+            }
+        }
+    }
+
+    /**
+     * Search results for a filter chip: the results of [searchTasks], or of [fuzzySearchTasks]
+     * when [fuzzy] is set, for [queries], filtered in memory with [TaskFilter.matches] for the
+     * local day [today]. Without a search query the chips are not re-queried on every write;
+     * they are loaded once with [loadFilteredTasks] and then patched from [taskChanges].
+     *
+     * The filtering runs on the collector's dispatcher; the view model collects this off the
+     * main thread.
+     */
+    fun getFilteredTasks(
+        filter: TaskFilter,
+        queries: Flow<String>,
+        today: Int,
+        fuzzy: Boolean = false
+    ): Flow<List<TaskListItem>> {
+        val results = if (fuzzy) fuzzySearchTasks(queries) else searchTasks(queries)
+        return if (filter == TaskFilter.ALL) results else results.map { tasks -> tasks.filter { filter.matches(it, today) } }
+    }
+
+    /**
+     * Loads the rows of a filter chip once, each filter through its own indexed query so only
+     * that chip's rows are read. The "ALL" list is paged instead, see [getPagedTasks].
+     * @param today The current local day, see [EpochDay].
+     */
+    suspend fun loadFilteredTasks(filter: TaskFilter, today: Int): List<TaskListItem> {
+        require(filter != TaskFilter.ALL) { "The ALL list is paged, see getPagedTasks" }
+        return withContext(ioDispatcher) {
+            try {
+                when (filter) {
+                    TaskFilter.TODAY -> taskDao.getPendingTasksDueOn(today)
+                    TaskFilter.TOMORROW -> taskDao.getPendingTasksDueOn(today + 1)
+                    TaskFilter.UPCOMING -> taskDao.getPendingTasksDueFrom(today + 2)
+                    TaskFilter.HIGH_PRIORITY -> taskDao.getPendingTasksByPriority(Priority.HIGH)
+                    TaskFilter.COMPLETED, TaskFilter.ALL -> taskDao.getCompletedTaskItems()
+                }
+            } catch (e: Exception) {
+                Log.e(TAG, "loadFilteredTasks failed for filter=$filter", e)
+                emptyList()
+            }
+        }
+    }
+
+    /**
+     * Pending-task counts of the TODAY, TOMORROW and UPCOMING chips relative to the local day
+     * [today], from one GROUP BY over the day index ([TaskDao.observePendingCountsByDueDay]).
+     * Re-emits after every write that changes a count.
+     */
+    fun getPendingSectionCounts(today: Int): Flow<PendingSectionCounts> {
+        return taskDao.observePendingCountsByDueDay(today).map { counts ->
+            var todayCount = 0
+            var tomorrowCount = 0
+            var upcomingCount = 0
+            for (count in counts) {
+                when (count.day) {
+                    today -> todayCount = count.count
+                    today + 1 -> tomorrowCount = count.count
+                    else -> upcomingCount += count.count
+                }
+            }
+            PendingSectionCounts(todayCount, tomorrowCount, upcomingCount)
+        }.distinctUntilChanged()
+    }
+
+    /**
+     * Task counts from the trigger-maintained counter tables ([TaskStatsRow], [TaskDueCount]).
+     * Each emission costs a primary-key lookup plus a sum over at most one row per priority and
+     * past day, whatever the size of 'tasks'. Re-emits after every write that changes a count.
+     * Overdue means due before the local day [today].
+     */
+    fun getTaskStats(today: Int): Flow<TaskStats> {
+        return combine(
+            taskDao.observeStatsRow(),
+            taskDao.observeOverdueCountsByPriority(today)
+        ) { row, overdue -> TaskStats.from(row, overdue) }
+            .distinctUntilChanged()
+    }
+
+    /**
+     * Recomputes [Task.dueEpochDay] of every task in the current default time zone. Call after
+     * the time zone changes; tasks whose day did not move are not rewritten.
+     * @return The number of tasks whose day changed.
+     */
+    suspend fun refreshDueEpochDays(): OperationResult<Int> {
+        return withContext(ioDispatcher) {
+            try {
+                val zone = TimeZone.getDefault()
+                OperationResult.Success(write { it.refreshAllDueEpochDays(zone) })
+            } catch (e: Exception) {
+                Log.e(TAG, "Exception during refreshDueEpochDays", e)
+                OperationResult.Error(e, "Failed to update due days.")
+            }
+        }
+    }
+
+    /**
+     * The current list rows of the given tasks, keyed by id. Deleted tasks have no entry.
+     */
+    suspend fun getTaskItems(ids: Collection<Int>): Map<Int, TaskListItem> {
+        return withContext(ioDispatcher) {
+            try {
+                val items = HashMap<Int, TaskListItem>(ids.size)
+                for (chunk in ids.chunked(BATCH_CHUNK_SIZE)) {
+                    taskDao.getTaskItemsByIds(chunk).forEach { items[it.id] = it }
+                }
+                items
+            } catch (e: Exception) {
+                Log.e(TAG, "getTaskItems failed for ${ids.size} ids", e)
+                emptyMap()
+            }
+        }
+    }
+
+    /** The position of the change feed right now; pass it to [taskChanges] to read from here on. */
+    suspend fun getLatestChangeSeq(): Long {
+        return withContext(ioDispatcher) {
+            try {
+                taskDao.getLatestChangeSeq()
+            } catch (e: Exception) {
+                Log.e(TAG, "getLatestChangeSeq failed", e)
+                0L
+            }
+        }
+    }
+
+    /**
+     * Row-level change feed: emits the [TaskChange]s committed after [afterSeq], oldest first,
+     * one list per committed transaction (or per several, if the collector is slow). Each write
+     * to 'tasks' costs one indexed MAX(seq) lookup and one range read here, however large the
+     * table is, so collectors can patch what they hold instead of re-running their queries.
+     * While collected, the position is registered with [writeQueue], which does not prune the
+     * log past it.
+     */
+    fun taskChanges(afterSeq: Long): Flow<List<TaskChange>> = flow {
+        var lastSeq = afterSeq
+        val position = writeQueue?.changeLogReaders?.open(afterSeq)
+        try {
+            taskDao.observeLatestChangeSeq().collect { latestSeq ->
+                if (latestSeq > lastSeq) {
+                    val changes = taskDao.getChangesAfter(lastSeq)
+                    if (changes.isNotEmpty()) {
+                        lastSeq = changes.last().seq
+                        emit(changes)
+                        position?.moveTo(lastSeq)
+                    }
+                }
+            }
+        } finally {
+            position?.close()
+        }
+    }
+
+    /**
+     * Paged counterpart of [getTasks] for the unfiltered list, grouped by [TaskSection].
+     * Only a bounded window of rows ([MAX_PAGED_ROWS]) is held in memory regardless of table size.
+     * Sections are relative to [today]; callers move to a new pager when the day changes.
+     */
+    fun getPagedTasks(query: String, today: Int): Flow<PagingData<TaskWithSection>> {
+        val config = PagingConfig(
+            pageSize = PAGE_SIZE,
+            prefetchDistance = PAGE_SIZE,
+            enablePlaceholders = false,
+            maxSize = MAX_PAGED_ROWS
+        )
+        return Pager(config) {
+            val matchQuery = if (useFullTextSearch) FtsQueryBuilder.build(query) else null
+            val titleMatchQuery = if (useFullTextSearch) FtsQueryBuilder.buildForTitle(query) else null
+            when {
+                query.isBlank() ->
+                    taskDao.getTasksPaged(today)
+                matchQuery != null && titleMatchQuery != null ->
+                    taskDao.searchTasksPaged(matchQuery, titleMatchQuery, today)
+                else ->
+                    taskDao.getTasksLikePaged(query, today)
+            }
+        }.flow
+    }
+
+    /** Runs a DAO write through [writeQueue] when there is one, otherwise directly. */
+    private suspend fun <T> write(block: suspend (TaskDao) -> T): T {
+        return if (writeQueue != null) writeQueue.run(block) else block(taskDao)
+    }
+
+    /**
+     * Runs [block] with a [BatchProgress] for the DAO's batch transaction that only hands each
+     * report over; [onProgress] itself is called on [Dispatchers.IO], so a slow callback never
+     * runs on a database thread inside the transaction. Reports are conflated: the callback
+     * may skip some, but always sees the last one before this returns.
+     */
+    private suspend fun <T> relayingProgress(onProgress: BatchProgress, block: suspend (BatchProgress) -> T): T {
+        if (onProgress === NO_PROGRESS) return block(NO_PROGRESS)
+        return coroutineScope {
+            val reports = Channel<Pair<Int, Int>>(Channel.CONFLATED)
+            launch(Dispatchers.IO) {
+                for ((done, total) in reports) onProgress(done, total)
+            }
+            try {
+                block { done, total -> reports.trySend(done to total) }
+            } finally {
+                reports.close()
+            }
+        }
+    }
+
+    /**
+     * Hit and miss counts of the by-id lookups, or null when there is no [TaskCache].
+     */
+    fun getCacheStats(): TaskCache.Stats? = taskCache?.stats()
+
+    /** Serves [taskId] from [taskCache] when possible, otherwise [load]s and caches it. */
+    private suspend fun readThrough(taskId: Int, load: suspend () -> Task?): Task? {
+        val cache = taskCache?.takeUnless { cacheDisabled } ?: return load()
+        cache.get(taskId)?.let { return it }
+        val version = cache.version()
+        return load()?.also { cache.putIfUnchanged(it, version) }
+    }
+
     suspend fun getTaskById(taskId: Int): Task? {
-        return withContext(Dispatchers.IO) {
+        return withContext(ioDispatcher) {
             try {
-                taskDao.getTaskById(taskId)
+                readThrough(taskId) { taskDao.getTaskById(taskId) }
             } catch (e: Exception) {
                 Log.e(TAG, "getTaskById failed for id=$taskId", e)
                 null
@@ -37,9 +458,9 @@ class TaskRepository(private val taskDao: TaskDao) {
     }
 
     suspend fun getTaskByIdNonLiveData(taskId: Int): Task? {
-        return withContext(Dispatchers.IO) {
+        return withContext(ioDispatcher) {
             try {
-                taskDao.getTaskByIdNonLiveData(taskId)
+                readThrough(taskId) { taskDao.getTaskByIdNonLiveData(taskId) }
             } catch (e: Exception) {
                 Log.e(TAG, "getTaskByIdNonLiveData failed for id=$taskId", e)
                 null
@@ -48,9 +469,10 @@ class TaskRepository(private val taskDao: TaskDao) {
     }
 
     suspend fun insert(task: Task): OperationResult<Long> {
-        return withContext(Dispatchers.IO) {
+        return withContext(ioDispatcher) {
             try {
-                val newRowId = taskDao.insert(task)
+                val derived = task.preparedForWrite(System.currentTimeMillis())
+                val newRowId = writeQueue?.insert(derived) ?: taskDao.insert(derived)
                 if (newRowId > 0) {
                     OperationResult.Success(newRowId)
                 } else {
@@ -66,9 +488,10 @@ class TaskRepository(private val taskDao: TaskDao) {
     }
 
     suspend fun update(task: Task): OperationResult<Unit> {
-        return withContext(Dispatchers.IO) {
+        return withContext(ioDispatcher) {
             try {
-                taskDao.update(task)
+                val derived = task.preparedForWrite(System.currentTimeMillis())
+                if (writeQueue != null) writeQueue.update(derived) else taskDao.update(derived)
                 OperationResult.Success(Unit)
             } catch (e: Exception) {
                 Log.e(TAG, "Exception during update for id=${task.id}", e)
@@ -78,9 +501,9 @@ class TaskRepository(private val taskDao: TaskDao) {
     }
 
     suspend fun delete(task: Task): OperationResult<Unit> {
-        return withContext(Dispatchers.IO) {
+        return withContext(ioDispatcher) {
             try {
-                taskDao.delete(task)
+                if (writeQueue != null) writeQueue.delete(task) else taskDao.delete(task)
                 OperationResult.Success(Unit)
             } catch (e: Exception) {
                 Log.e(TAG, "Exception during delete for id=${task.id}", e)
@@ -89,14 +512,39 @@ class TaskRepository(private val taskDao: TaskDao) {
         }
     }
 
-    suspend fun toggleTaskCompletion(taskId: Int): OperationResult<Unit> {
-        return withContext(Dispatchers.IO) {
+    suspend fun deleteById(taskId: Int): OperationResult<Unit> {
+        return withContext(ioDispatcher) {
             try {
-                val task = taskDao.getTaskByIdNonLiveData(taskId)
-                if (task != null) {
-                    val updatedTask = task.copy(isCompleted = !task.isCompleted)
-                    taskDao.update(updatedTask)
+                if ((writeQueue?.deleteById(taskId) ?: taskDao.deleteById(taskId)) > 0) {
                     OperationResult.Success(Unit)
+                } else {
+                    val ex = NoSuchElementException("Task with ID $taskId not found for delete.")
+                    Log.w(TAG, "deleteById: task not found for id=$taskId")
+                    OperationResult.Error(ex, "Task not found.")
+                }
+            } catch (e: Exception) {
+                Log.e(TAG, "Exception during deleteById for id=$taskId", e)
+                OperationResult.Error(e, "An error occurred while deleting the task.")
+            }
+        }
+    }
+
+    /**
+     * Flips the completion state of a task in a single UPDATE (see [TaskDao.toggleCompletion]),
+     * so concurrent toggles from the UI and notification actions cannot overwrite each other.
+     * @return The new completion state.
+     */
+    suspend fun toggleTaskCompletion(taskId: Int): OperationResult<Boolean> {
+        return withContext(ioDispatcher) {
+            try {
+                val now = System.currentTimeMillis()
+                val isCompleted = if (writeQueue != null) {
+                    writeQueue.toggleCompletion(taskId, now)
+                } else {
+                    taskDao.toggleCompletion(taskId, now)
+                }
+                if (isCompleted != null) {
+                    OperationResult.Success(isCompleted)
                 } else {
                     val ex = NoSuchElementException("Task with ID $taskId not found for toggle.")
                     Log.w(TAG, "toggleTaskCompletion: task not found for id=$taskId")
@@ -109,59 +557,262 @@ class TaskRepository(private val taskDao: TaskDao) {
         }
     }
 
-    suspend fun deleteCompletedTasks(): OperationResult<Int> {
-        return withContext(Dispatchers.IO) {
+    /**
+     * Marks a task completed, for notification "complete" actions. Unlike
+     * [toggleTaskCompletion] this never reopens a task that is already done. Only when the
+     * conditional update changes nothing is the row read, to tell a completed task from a
+     * missing one.
+     */
+    suspend fun markCompleted(taskId: Int): OperationResult<MarkCompletedResult> {
+        return withContext(ioDispatcher) {
             try {
-                val numberOfRowsDeleted = taskDao.deleteCompletedTasks()
-                OperationResult.Success(numberOfRowsDeleted)
+                val now = System.currentTimeMillis()
+                val changed = writeQueue?.markCompleted(taskId, now) ?: taskDao.markCompleted(taskId, now)
+                OperationResult.Success(
+                    when {
+                        changed > 0 -> MarkCompletedResult.COMPLETED
+                        taskDao.isTaskCompleted(taskId) == true -> MarkCompletedResult.ALREADY_COMPLETED
+                        else -> MarkCompletedResult.NOT_FOUND
+                    }
+                )
             } catch (e: Exception) {
-                Log.e(TAG, "Exception during deleteCompletedTasks", e)
-                OperationResult.Error(e, "Failed to delete completed tasks.")
+                Log.e(TAG, "Exception during markCompleted for id=$taskId", e)
+                OperationResult.Error(e, "Failed to update task status.")
             }
         }
     }
 
-    @Suppress("unused")
-    suspend fun getCompletedTasksNonLiveData(): List<Task> {
-        return withContext(Dispatchers.IO) {
+    /**
+     * Inserts many tasks at once. The batch methods below run in a single transaction (one
+     * commit for the whole batch) and split the work into chunks of [BATCH_CHUNK_SIZE];
+     * [onProgress] is reported after every chunk and called on [Dispatchers.IO], never on the
+     * database thread holding the transaction.
+     * @return The new row ids, in the order of [tasks].
+     */
+    suspend fun insertAll(tasks: List<Task>, onProgress: BatchProgress = NO_PROGRESS): OperationResult<List<Long>> {
+        return relayingProgress(onProgress) { progress ->
+            withContext(ioDispatcher) {
+                try {
+                    val zone = TimeZone.getDefault()
+                    val now = System.currentTimeMillis()
+                    val derived = tasks.map { it.preparedForWrite(now, zone) }
+                    OperationResult.Success(write { it.insertAll(derived, progress) })
+                } catch (e: Exception) {
+                    Log.e(TAG, "Exception during insertAll of ${tasks.size} tasks", e)
+                    OperationResult.Error(e, "Failed to save tasks.")
+                }
+            }
+        }
+    }
+
+    /** @return The number of tasks updated. See [insertAll] for batching. */
+    suspend fun updateAll(tasks: List<Task>, onProgress: BatchProgress = NO_PROGRESS): OperationResult<Int> {
+        return relayingProgress(onProgress) { progress ->
+            withContext(ioDispatcher) {
+                try {
+                    val zone = TimeZone.getDefault()
+                    val now = System.currentTimeMillis()
+                    val derived = tasks.map { it.preparedForWrite(now, zone) }
+                    OperationResult.Success(write { it.updateAll(derived, progress) })
+                } catch (e: Exception) {
+                    Log.e(TAG, "Exception during updateAll of ${tasks.size} tasks", e)
+                    OperationResult.Error(e, "Failed to update tasks.")
+                }
+            }
+        }
+    }
+
+    /** @return The number of tasks deleted. See [insertAll] for batching. */
+    suspend fun deleteByIds(ids: List<Int>, onProgress: BatchProgress = NO_PROGRESS): OperationResult<Int> {
+        return relayingProgress(onProgress) { progress ->
+            withContext(ioDispatcher) {
+                try {
+                    OperationResult.Success(write { it.deleteByIds(ids, progress) })
+                } catch (e: Exception) {
+                    Log.e(TAG, "Exception during deleteByIds of ${ids.size} tasks", e)
+                    OperationResult.Error(e, "Failed to delete tasks.")
+                }
+            }
+        }
+    }
+
+    /** @return The number of tasks changed. See [insertAll] for batching. */
+    suspend fun setCompletedByIds(
+        ids: List<Int>,
+        isCompleted: Boolean,
+        onProgress: BatchProgress = NO_PROGRESS
+    ): OperationResult<Int> {
+        return relayingProgress(onProgress) { progress ->
+            withContext(ioDispatcher) {
+                try {
+                    val now = System.currentTimeMillis()
+                    OperationResult.Success(write { it.setCompletedByIds(ids, isCompleted, now, progress) })
+                } catch (e: Exception) {
+                    Log.e(TAG, "Exception during setCompletedByIds of ${ids.size} tasks", e)
+                    OperationResult.Error(e, "Failed to update task status.")
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the due dates of the given tasks by [deltaMillis] (negative to move earlier).
+     * @return The number of tasks changed; tasks without a due date are skipped.
+     */
+    suspend fun shiftDueDates(
+        ids: List<Int>,
+        deltaMillis: Long,
+        onProgress: BatchProgress = NO_PROGRESS
+    ): OperationResult<Int> {
+        return relayingProgress(onProgress) { progress ->
+            withContext(ioDispatcher) {
+                try {
+                    val now = System.currentTimeMillis()
+                    OperationResult.Success(write { it.shiftDueDates(ids, deltaMillis, now, progress) })
+                } catch (e: Exception) {
+                    Log.e(TAG, "Exception during shiftDueDates of ${ids.size} tasks", e)
+                    OperationResult.Error(e, "Failed to reschedule tasks.")
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes completed tasks, or every task unless [completedOnly], in transactions of at most
+     * [BATCH_CHUNK_SIZE] rows with a yield point between them. Each transaction holds the write
+     * lock only briefly, so list observers, reminder receivers and notification actions keep
+     * running during a long purge, and cancelling the caller stops it after the current chunk.
+     * The archive ([ArchivedTask]) is emptied afterwards, in the same chunks, in both cases:
+     * every archived task is a completed one.
+     *
+     * @param onChunkDeleted Called on [Dispatchers.IO] with the ids of each deleted chunk
+     *                       of 'tasks', e.g. to cancel their alarms in bulk.
+     * @param onProgress Called on the caller's context after every chunk, with the number of
+     *                   tasks deleted so far and the expected total.
+     * @return The number of tasks deleted, archived ones included.
+     */
+    suspend fun purgeTasks(
+        completedOnly: Boolean,
+        onChunkDeleted: (ids: List<Int>) -> Unit = {},
+        onProgress: BatchProgress = NO_PROGRESS
+    ): OperationResult<Int> {
+        return try {
+            val total = withContext(ioDispatcher) {
+                val stats = taskDao.getStatsRow()
+                val live = when {
+                    stats == null -> if (completedOnly) taskDao.getCompletedTaskCount() else taskDao.getTaskCount()
+                    completedOnly -> stats.completed
+                    else -> stats.total
+                }
+                live + taskDao.getArchivedTaskCount()
+            }
+            var deleted = 0
+            do {
+                val ids = withContext(ioDispatcher) { write { it.deleteNextChunk(completedOnly, BATCH_CHUNK_SIZE) } }
+                withContext(Dispatchers.IO) { onChunkDeleted(ids) }
+                deleted += ids.size
+                onProgress(deleted, maxOf(total, deleted))
+                yield()
+            } while (ids.size == BATCH_CHUNK_SIZE)
+            do {
+                val archived = withContext(ioDispatcher) { write { it.deleteArchivedChunk(BATCH_CHUNK_SIZE) } }
+                deleted += archived
+                if (archived > 0) onProgress(deleted, maxOf(total, deleted))
+                yield()
+            } while (archived == BATCH_CHUNK_SIZE)
+            OperationResult.Success(deleted)
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            Log.e(TAG, "Exception during purgeTasks(completedOnly=$completedOnly)", e)
+            OperationResult.Error(e, if (completedOnly) "Failed to delete completed tasks." else "Failed to delete all tasks.")
+        }
+    }
+
+    /** Deletes every completed task in chunks; see [purgeTasks]. */
+    suspend fun deleteCompletedTasks(): OperationResult<Int> = purgeTasks(completedOnly = true)
+
+    /**
+     * Moves tasks completed more than [olderThanMillis] ago into the archive
+     * ([ArchivedTask]). Each chunk of [BATCH_CHUNK_SIZE] is its own transaction through the
+     * write queue, so other writes are never blocked for long while a large backlog moves.
+     * @return The number of tasks archived.
+     */
+    suspend fun archiveCompletedTasks(olderThanMillis: Long): OperationResult<Int> {
+        return withContext(ioDispatcher) {
             try {
-                taskDao.getCompletedTasksNonLiveData()
+                val now = System.currentTimeMillis()
+                val cutoff = now - olderThanMillis
+                var archived = 0
+                do {
+                    val moved = write { it.archiveCompletedBefore(cutoff, now, BATCH_CHUNK_SIZE) }
+                    archived += moved
+                    yield()
+                } while (moved == BATCH_CHUNK_SIZE)
+                OperationResult.Success(archived)
             } catch (e: Exception) {
-                Log.e(TAG, "Exception during getCompletedTasksNonLiveData", e)
-                emptyList()
+                Log.e(TAG, "Exception during archiveCompletedTasks", e)
+                OperationResult.Error(e, "Failed to archive completed tasks.")
             }
         }
     }
 
-    suspend fun deleteAllTasks(): OperationResult<Int> {
-        return withContext(Dispatchers.IO) {
+    /**
+     * Pages through the archive, newest-completed first, optionally narrowed by a plain
+     * substring [query]. Only this reads 'tasks_archive'; the main list never does.
+     */
+    fun getArchivedTasks(query: String): Flow<PagingData<ArchivedTask>> {
+        val config = PagingConfig(
+            pageSize = PAGE_SIZE,
+            prefetchDistance = PAGE_SIZE,
+            enablePlaceholders = false,
+            maxSize = MAX_PAGED_ROWS
+        )
+        return Pager(config) {
+            if (query.isBlank()) taskDao.getArchivedTasksPaged() else taskDao.searchArchivedTasksPaged(query.trim())
+        }.flow
+    }
+
+    suspend fun getArchivedTaskCount(): Int {
+        return withContext(ioDispatcher) {
             try {
-                val numberOfRowsDeleted = taskDao.deleteAllTasks()
-                OperationResult.Success(numberOfRowsDeleted)
+                taskDao.getArchivedTaskCount()
             } catch (e: Exception) {
-                Log.e(TAG, "Exception during deleteAllTasks", e)
-                OperationResult.Error(e, "Failed to delete all tasks.")
+                Log.e(TAG, "Exception during getArchivedTaskCount", e)
+                0
             }
         }
     }
 
-    @Suppress("unused")
-    suspend fun getAllTasksNonLiveData(): List<Task> {
-        return withContext(Dispatchers.IO) {
+    /** Moves an archived task back into the task list, still completed. */
+    suspend fun restoreArchivedTask(taskId: Int): OperationResult<Unit> {
+        return withContext(ioDispatcher) {
             try {
-                taskDao.getAllTasksNonLiveData()
+                val archived = taskDao.getArchivedTaskById(taskId)
+                if (archived != null) {
+                    val task = archived.toTask().preparedForWrite(System.currentTimeMillis())
+                    write { it.restoreFromArchive(task) }
+                    OperationResult.Success(Unit)
+                } else {
+                    val ex = NoSuchElementException("Archived task with ID $taskId not found.")
+                    Log.w(TAG, "restoreArchivedTask: task not found for id=$taskId")
+                    OperationResult.Error(ex, "Task not found.")
+                }
             } catch (e: Exception) {
-                Log.e(TAG, "Exception during getAllTasksNonLiveData", e)
-                emptyList()
+                Log.e(TAG, "Exception during restoreArchivedTask for id=$taskId", e)
+                OperationResult.Error(e, "Failed to restore the task.")
             }
         }
     }
 
+    /** Deletes every task in chunks; see [purgeTasks]. */
+    suspend fun deleteAllTasks(): OperationResult<Int> = purgeTasks(completedOnly = false)
+
     @Suppress("unused")
     suspend fun getTaskCount(): Int {
-        return withContext(Dispatchers.IO) {
+        return withContext(ioDispatcher) {
             try {
-                taskDao.getTaskCount()
+                taskDao.getStatsRow()?.total ?: taskDao.getTaskCount()
             } catch (e: Exception) {
                 Log.e(TAG, "Exception during getTaskCount", e)
                 0
@@ -171,9 +822,9 @@ class TaskRepository(private val taskDao: TaskDao) {
 
     @Suppress("unused")
     suspend fun getCompletedTaskCount(): Int {
-        return withContext(Dispatchers.IO) {
+        return withContext(ioDispatcher) {
             try {
-                taskDao.getCompletedTaskCount()
+                taskDao.getStatsRow()?.completed ?: taskDao.getCompletedTaskCount()
             } catch (e: Exception) {
                 Log.e(TAG, "Exception during getCompletedTaskCount", e)
                 0
@@ -181,25 +832,310 @@ class TaskRepository(private val taskDao: TaskDao) {
         }
     }
 
-    suspend fun getCompletedTaskIds(): List<Int> {
+    /**
+     * Writes every task to [channel] as [format], reading the table in keyset pages
+     * ([streamTasks]) and encoding straight into a buffered writer, so memory does not grow with
+     * the number of tasks. Encoding and writing run on [Dispatchers.IO], and only the reads on
+     * [ioDispatcher], so a slow [channel] does not hold a database thread. [onProgress] runs
+     * after every page. The caller closes [channel].
+     * @return The number of tasks written.
+     */
+    suspend fun exportTasks(
+        channel: WritableByteChannel,
+        format: TaskTransferFormat,
+        onProgress: BatchProgress = NO_PROGRESS
+    ): OperationResult<Int> {
         return withContext(Dispatchers.IO) {
             try {
-                taskDao.getCompletedTaskIds()
+                val total = withContext(ioDispatcher) { taskDao.getStatsRow()?.total ?: taskDao.getTaskCount() }
+                val out = TaskTransfer.newWriter(channel)
+                TaskTransfer.writeHeader(out, format)
+                var written = 0
+                streamTasks().collect { page ->
+                    page.forEach { TaskTransfer.write(out, it, format) }
+                    written += page.size
+                    onProgress(written, maxOf(total, written))
+                }
+                out.flush()
+                OperationResult.Success(written)
+            } catch (e: CancellationException) {
+                throw e
             } catch (e: Exception) {
-                Log.e(TAG, "Exception during getCompletedTaskIds", e)
-                emptyList()
+                Log.e(TAG, "Exception during exportTasks as $format", e)
+                OperationResult.Error(e, "Failed to export tasks.")
             }
         }
     }
 
-    suspend fun getAllTaskIds(): List<Int> {
+    /**
+     * Reads tasks from [channel] as [format], or as the format its content suggests
+     * ([TaskTransfer.detectFormat]) if [format] is null, and inserts them with new ids,
+     * [batchSize] rows per [TaskDao.insertAll] transaction. The input is decoded one record at a time
+     * ([TaskTransfer.readTasks]), so only the current batch is held in memory, plus two 64-bit
+     * [TaskTransfer.contentHash]es per task for duplicate detection: rows matching a task already
+     * in the database, or an earlier row of the same input, are skipped. Rows without a creation
+     * time are matched on everything else, so importing them again skips them too.
+     *
+     * Batches are committed as they fill up. If the import fails or is cancelled part way, the
+     * committed batches stay, and importing the same input again skips them as duplicates.
+     * [onBatchInserted] gets each committed batch with its new ids, e.g. to schedule reminders.
+     * Reading and decoding run on [Dispatchers.IO], and only the database work on
+     * [ioDispatcher]. The caller closes [channel].
+     */
+    suspend fun importTasks(
+        channel: ReadableByteChannel,
+        format: TaskTransferFormat?,
+        batchSize: Int = BATCH_CHUNK_SIZE,
+        onBatchInserted: (List<Task>) -> Unit = {},
+        onProgress: (ImportSummary) -> Unit = {}
+    ): OperationResult<ImportSummary> {
+        require(batchSize > 0) { "batchSize must be positive" }
         return withContext(Dispatchers.IO) {
+            var summary = ImportSummary(imported = 0, duplicates = 0, rejected = 0)
             try {
-                taskDao.getAllTaskIds()
+                val known = HashSet<Long>()
+                streamTasks().collect { page ->
+                    page.forEach {
+                        known += TaskTransfer.contentHash(it)
+                        known += TaskTransfer.contentHash(it, withCreatedAt = false)
+                    }
+                }
+
+                val zone = TimeZone.getDefault()
+                val now = System.currentTimeMillis()
+                val batch = ArrayList<Task>(batchSize)
+                suspend fun flush() {
+                    if (batch.isEmpty()) return
+                    val rowIds = withContext(ioDispatcher) { write { it.insertAll(batch, NO_PROGRESS) } }
+                    onBatchInserted(batch.mapIndexed { i, task -> task.copy(id = rowIds[i].toInt()) })
+                    summary = summary.copy(imported = summary.imported + batch.size)
+                    batch.clear()
+                    onProgress(summary)
+                    yield()
+                }
+
+                val reader = TaskTransfer.newReader(channel)
+                val records = TaskTransfer.readTasks(reader, format ?: TaskTransfer.detectFormat(reader), now)
+                for (record in records) {
+                    when {
+                        record == null -> summary = summary.copy(rejected = summary.rejected + 1)
+                        !known.add(TaskTransfer.contentHash(record.task, record.hasCreatedAt)) ->
+                            summary = summary.copy(duplicates = summary.duplicates + 1)
+                        else -> {
+                            if (record.hasCreatedAt) known += TaskTransfer.contentHash(record.task, withCreatedAt = false)
+                            batch += record.task.preparedForWrite(now, zone)
+                            if (batch.size == batchSize) flush()
+                        }
+                    }
+                }
+                flush()
+                OperationResult.Success(summary)
+            } catch (e: CancellationException) {
+                throw e
             } catch (e: Exception) {
-                Log.e(TAG, "Exception during getAllTaskIds", e)
-                emptyList()
+                Log.e(TAG, "Exception during importTasks as $format after $summary", e)
+                OperationResult.Error(e, "Failed to import tasks.")
+            }
+        }
+    }
+
+    /**
+     * Writes every task to [file] as a [TaskSnapshot], one keyset page per block. The snapshot
+     * is written next to [file] first and renamed over it once complete, so an interrupted
+     * backup never replaces a good one. The file is written on [Dispatchers.IO]; only the
+     * page reads use [ioDispatcher].
+     * @return The number of tasks written.
+     */
+    suspend fun writeSnapshot(file: File): OperationResult<Int> {
+        return withContext(Dispatchers.IO) {
+            val partial = File(file.parentFile, "${file.name}.partial")
+            try {
+                var written = 0
+                TaskSnapshot.Writer(partial).use { writer ->
+                    streamTasks().collect { page ->
+                        writer.writeBlock(page)
+                        written += page.size
+                    }
+                    writer.finish()
+                }
+                if (!partial.renameTo(file)) throw IOException("Could not rename $partial to $file")
+                OperationResult.Success(written)
+            } catch (e: CancellationException) {
+                partial.delete()
+                throw e
+            } catch (e: Exception) {
+                partial.delete()
+                Log.e(TAG, "Exception during writeSnapshot to $file", e)
+                OperationResult.Error(e, "Failed to back up tasks.")
+            }
+        }
+    }
+
+    /**
+     * Replaces every task with the ones in the [TaskSnapshot] at [file], block by block inside a
+     * single transaction ([TaskDao.replaceAllTasks]). See [restoreBackup] for the callbacks.
+     * @return The number of tasks restored.
+     */
+    suspend fun restoreSnapshot(
+        file: File,
+        onRestored: (tasks: List<Task>) -> Unit,
+        onRemoved: (ids: List<Int>) -> Unit
+    ): OperationResult<Int> = restoreBackup(file, emptyList(), onRestored, onRemoved)
+
+    /**
+     * Restores the base snapshot [base] and then the incremental [segments] written by
+     * [writeBackupSegment], oldest first, in one transaction ([TaskDao.restoreBackup]). Restored
+     * rows count as modified now, so the next incremental backup covers them. The archive is
+     * not part of a backup and is left untouched.
+     *
+     * After the commit, on [Dispatchers.IO], the restored table is read back a page at a time
+     * and each page is passed to [onRestored], and then the ids of the tasks the restore
+     * removed are passed to [onRemoved] in chunks of [BATCH_CHUNK_SIZE]; e.g. to reschedule and
+     * cancel their alarms in bulk.
+     * @return The number of tasks afterwards.
+     */
+    suspend fun restoreBackup(
+        base: File,
+        segments: List<File>,
+        onRestored: (tasks: List<Task>) -> Unit,
+        onRemoved: (ids: List<Int>) -> Unit
+    ): OperationResult<Int> {
+        return try {
+            val (idsBefore, restored) = withContext(ioDispatcher) {
+                val readers = ArrayList<TaskSnapshot.Reader>(segments.size + 1)
+                try {
+                    val zone = TimeZone.getDefault()
+                    val now = System.currentTimeMillis()
+                    fun TaskSnapshot.Reader.nextPrepared() = nextBlock()?.map { it.preparedForWrite(now, zone) }
+
+                    val baseReader = TaskSnapshot.Reader(base).also { readers += it }
+                    if (baseReader.deletedIds != null) throw IOException("$base is a segment, not a base snapshot")
+                    val segmentSources = segments.map { file ->
+                        val reader = TaskSnapshot.Reader(file).also { readers += it }
+                        val deletedIds = reader.deletedIds ?: throw IOException("$file is a base snapshot, not a segment")
+                        BackupSegment(deletedIds) { reader.nextPrepared() }
+                    }
+                    write { dao -> dao.getAllTaskIds() to dao.restoreBackup({ baseReader.nextPrepared() }, segmentSources) }
+                } finally {
+                    readers.forEach { it.close() }
+                }
+            }
+            withContext(Dispatchers.IO) {
+                val removed = idsBefore.toHashSet()
+                streamTasks().collect { page ->
+                    page.forEach { removed.remove(it.id) }
+                    onRestored(page)
+                }
+                removed.chunked(BATCH_CHUNK_SIZE).forEach(onRemoved)
             }
+            OperationResult.Success(restored)
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            Log.e(TAG, "Exception during restoreBackup from $base and ${segments.size} segments", e)
+            OperationResult.Error(e, "Failed to restore tasks.")
         }
     }
+
+    /** The point an incremental backup taken [now] continues from next time. */
+    suspend fun backupCheckpoint(now: Long = System.currentTimeMillis()): BackupCheckpoint =
+        withContext(ioDispatcher) { BackupCheckpoint(changeSeq = taskDao.getLatestChangeSeq(), time = now) }
+
+    /**
+     * Writes a segment with the changes between [since] and [upTo] to [file]. Both parts come
+     * from the change log entries in that range: the ids deleted, and the current rows of the
+     * ids inserted or updated, read by id a chunk at a time. A row written again after [upTo]
+     * is backed up as it is now, and again by the next segment, which is harmless; a row
+     * deleted after [upTo] is missing here and recorded as deleted by the next segment. As in
+     * [writeSnapshot], only the reads run on [ioDispatcher].
+     *
+     * @return The number of rows and deleted ids written; 0 without changes, in which case no
+     *         file is created. Null if the change log has been pruned past [since], so the
+     *         deletes cannot be known and a full snapshot is needed instead.
+     */
+    suspend fun writeBackupSegment(file: File, since: BackupCheckpoint, upTo: BackupCheckpoint): OperationResult<Int?> {
+        return withContext(Dispatchers.IO) {
+            val partial = File(file.parentFile, "${file.name}.partial")
+            try {
+                // Every write to 'tasks' is logged, so an unchanged seq means nothing to back up.
+                if (upTo.changeSeq <= since.changeSeq) return@withContext OperationResult.Success(0)
+                val (deletedIds, writtenIds) = withContext(ioDispatcher) {
+                    if (taskDao.getOldestChangeSeq() > since.changeSeq + 1) null
+                    else taskDao.getDeletedTaskIdsBetween(since.changeSeq, upTo.changeSeq) to
+                        taskDao.getWrittenTaskIdsBetween(since.changeSeq, upTo.changeSeq).sorted()
+                } ?: return@withContext OperationResult.Success(null)
+                var rows = 0
+                TaskSnapshot.Writer(partial, deletedIds).use { writer ->
+                    for (chunk in writtenIds.chunked(BATCH_CHUNK_SIZE)) {
+                        val block = withContext(ioDispatcher) { taskDao.getTasksByIds(chunk) }
+                        writer.writeBlock(block.sortedBy { it.id })
+                        rows += block.size
+                    }
+                    writer.finish()
+                }
+                if (rows == 0 && deletedIds.isEmpty()) {
+                    partial.delete()
+                    return@withContext OperationResult.Success(0)
+                }
+                if (!partial.renameTo(file)) throw IOException("Could not rename $partial to $file")
+                OperationResult.Success(rows + deletedIds.size)
+            } catch (e: CancellationException) {
+                partial.delete()
+                throw e
+            } catch (e: Exception) {
+                partial.delete()
+                Log.e(TAG, "Exception during writeBackupSegment to $file", e)
+                OperationResult.Error(e, "Failed to back up tasks.")
+            }
+        }
+    }
+
+    /**
+     * Streams every task, or only completed ones, as pages of at most [pageSize] rows in id
+     * order, for jobs that walk the whole table (export, rescheduling every reminder, ...).
+     *
+     * The flow is cold: each collection reads the table afresh, one keyset page
+     * ([TaskDao.getTasksAfter]) per emission, and the next page is not read until the collector
+     * has handled the current one. Memory stays at one page whatever the table size. Pages are
+     * separate reads, not one snapshot: rows inserted behind the cursor while collecting are not
+     * seen, and a row changed after its page was emitted is not emitted again.
+     *
+     * Errors are not caught here; collectors handle them like any other failing flow.
+     */
+    fun streamTasks(completedOnly: Boolean = false, pageSize: Int = BATCH_CHUNK_SIZE): Flow<List<Task>> =
+        keysetPages(pageSize, Task::id) { afterId ->
+            if (completedOnly) {
+                taskDao.getCompletedTasksAfter(afterId, pageSize)
+            } else {
+                taskDao.getTasksAfter(afterId, pageSize)
+            }
+        }
+
+    /** Like [streamTasks], but only reads the ids. */
+    fun streamTaskIds(completedOnly: Boolean = false, pageSize: Int = BATCH_CHUNK_SIZE): Flow<List<Int>> =
+        keysetPages(pageSize, { it }) { afterId ->
+            if (completedOnly) {
+                taskDao.getCompletedTaskIdsAfter(afterId, pageSize)
+            } else {
+                taskDao.getTaskIdsAfter(afterId, pageSize)
+            }
+        }
+
+    private fun <T> keysetPages(
+        pageSize: Int,
+        idOf: (T) -> Int,
+        loadAfter: suspend (afterId: Int) -> List<T>
+    ): Flow<List<T>> {
+        require(pageSize > 0) { "pageSize must be positive" }
+        return flow {
+            var afterId = 0
+            while (true) {
+                val page = loadAfter(afterId)
+                if (page.isEmpty()) break
+                emit(page)
+                if (page.size < pageSize) break
+                afterId = idOf(page.last())
+            }
+        }.flowOn(ioDispatcher)
+    }
 }
@@ -0,0 +1,28 @@
+package com.example.smarttodo.data
+
+import kotlinx.coroutines.flow.StateFlow
+
+/**
+ * An in-memory index over the list rows ([TaskListItem]) that [TaskRepository] loads once and
+ * then keeps current from [TaskRepository.taskChanges]. See [TrigramIndex] and [FuzzyIndex].
+ */
+interface TaskSearchIndex {
+
+    /** False until the first [load], and again after [invalidate]. */
+    val isReady: Boolean
+
+    /** Incremented after every [load], [apply] and [invalidate], so live searches run again. */
+    val version: StateFlow<Long>
+
+    /** Replaces the whole index with [items] and marks it ready. */
+    fun load(items: Sequence<TaskListItem>)
+
+    /** Applies the current state of changed rows: [current] holds those that still exist. */
+    fun apply(changedIds: Collection<Int>, current: Map<Int, TaskListItem>)
+
+    /**
+     * Marks the index as no longer current, because it stopped seeing writes: new searches go
+     * back to SQLite.
+     */
+    fun invalidate()
+}
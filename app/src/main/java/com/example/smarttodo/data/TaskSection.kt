@@ -0,0 +1,40 @@
+package com.example.smarttodo.data
+
+import androidx.room.ColumnInfo
+import androidx.room.Embedded
+
+/**
+ * The date sections of the main task list, in display order. The ordinal is what the paged
+ * DAO queries compute in SQL (see [TaskDao.getTasksPaged]), so the order must not change.
+ */
+enum class TaskSection {
+    TODAY,
+    TOMORROW,
+    UPCOMING,
+    COMPLETED
+}
+
+/**
+ * A [TaskListItem] together with the [TaskSection] SQLite assigned it. Computing the section in the
+ * query keeps calendar arithmetic out of the paging pipeline.
+ */
+data class TaskWithSection(
+    @Embedded val task: TaskListItem,
+    @ColumnInfo(name = "section") val sectionOrdinal: Int
+) {
+    val section: TaskSection
+        get() = TaskSection.entries[sectionOrdinal]
+}
+
+/** One row of [TaskDao.observePendingCountsByDueDay]: pending tasks due on local [day]. */
+data class DueDayCount(val day: Int, val count: Int)
+
+/**
+ * Pending-task counts of the date filter chips, folded from [DueDayCount]s by
+ * [TaskRepository.getPendingSectionCounts]. [upcoming] counts tasks due after tomorrow, like
+ * [TaskFilter.UPCOMING].
+ */
+data class PendingSectionCounts(val today: Int, val tomorrow: Int, val upcoming: Int)
+
+/** A task's due date, read to recompute its [Task.dueEpochDay]. */
+data class TaskDueDate(val id: Int, val dueDate: Long)
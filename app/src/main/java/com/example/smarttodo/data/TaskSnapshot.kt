@@ -0,0 +1,311 @@
+package com.example.smarttodo.data
+
+import java.io.Closeable
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.BufferUnderflowException
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+
+/**
+ * A compact binary backup of the 'tasks' table, see [TaskRepository.writeSnapshot] and
+ * [TaskRepository.restoreSnapshot]. The same encoding stores the incremental segments of
+ * [TaskBackup], which start with the ids deleted since the previous checkpoint.
+ *
+ * Layout, version [VERSION]:
+ * ```
+ * magic "STSN" (base) or "STSG" (segment), version byte
+ * segments only: deleted id count (varint), ids ascending as varint deltas
+ * block*   row count (varint, 1..BATCH_CHUNK_SIZE), then one column after another:
+ *            id               varint, delta from the previous id in the block
+ *            flags            1 byte: completed, hasReminder, and which nullable fields are set
+ *            priority         varint [Priority.value]
+ *            taskType         varint [TaskType.code]
+ *            createdAt        zigzag varint, delta from the previous row's createdAt
+ *            dueDate          zigzag varint, delta from the row's createdAt; rows with FLAG_DUE only
+ *            completionDate   same, rows with FLAG_COMPLETION only
+ *            preReminder      zigzag varint; rows with FLAG_PRE_REMINDER only
+ *            estimated, completed pomodoros   varint each
+ *            title, description   varint byte length + UTF-8
+ *            soundUri         same; rows with FLAG_SOUND only
+ * end      row count 0
+ * ```
+ * Rows are written in id order, so id deltas are mostly 1 and fit one byte, and timestamps
+ * shrink to the few bytes of their distance to a nearby timestamp. Blocks keep memory constant
+ * on both sides while still grouping similar values. [Task.dueEpochDay] is derived and not
+ * stored.
+ */
+object TaskSnapshot {
+
+    const val VERSION = 1
+
+    private val MAGIC = "STSN".toByteArray(Charsets.US_ASCII)
+    private val SEGMENT_MAGIC = "STSG".toByteArray(Charsets.US_ASCII)
+
+    private const val FLAG_COMPLETED = 1
+    private const val FLAG_REMINDER = 1 shl 1
+    private const val FLAG_DUE = 1 shl 2
+    private const val FLAG_COMPLETION = 1 shl 3
+    private const val FLAG_PRE_REMINDER = 1 shl 4
+    private const val FLAG_SOUND = 1 shl 5
+
+    /**
+     * Encodes blocks into a direct buffer and writes it to a [FileChannel], so the bytes go from
+     * the buffer to the file without another copy on the Java heap.
+     *
+     * @param deletedIds Makes this a segment that deletes these ids before its rows are applied.
+     */
+    class Writer(file: File, deletedIds: Collection<Int>? = null) : Closeable {
+        private val channel: FileChannel = RandomAccessFile(file, "rw").channel
+        private var buffer: ByteBuffer = ByteBuffer.allocateDirect(64 * 1024)
+
+        init {
+            // Nothing closes the channel if the constructor throws, so close it here.
+            try {
+                channel.truncate(0)
+                if (deletedIds == null) {
+                    buffer.put(MAGIC).put(VERSION.toByte())
+                } else {
+                    buffer.put(SEGMENT_MAGIC).put(VERSION.toByte())
+                    putVarint(deletedIds.size.toLong())
+                    var previousId = 0L
+                    deletedIds.sorted().forEach {
+                        putVarint(it - previousId)
+                        previousId = it.toLong()
+                    }
+                }
+            } catch (e: Exception) {
+                channel.close()
+                throw e
+            }
+        }
+
+        /**
+         * Appends one block of at most [BATCH_CHUNK_SIZE] tasks. Any order decodes correctly;
+         * ascending ids keep the id deltas to a byte.
+         */
+        fun writeBlock(tasks: List<Task>) {
+            if (tasks.isEmpty()) return
+            require(tasks.size <= BATCH_CHUNK_SIZE) { "Blocks hold at most $BATCH_CHUNK_SIZE rows" }
+            putVarint(tasks.size.toLong())
+
+            var previousId = 0L
+            tasks.forEach {
+                putVarint(it.id - previousId)
+                previousId = it.id.toLong()
+            }
+            tasks.forEach { ensure(1); buffer.put(flagsOf(it).toByte()) }
+            tasks.forEach { putVarint(it.priority.value.toLong()) }
+            tasks.forEach { putVarint(it.taskType.code.toLong()) }
+            var previousCreatedAt = 0L
+            tasks.forEach {
+                putZigzag(it.createdAt - previousCreatedAt)
+                previousCreatedAt = it.createdAt
+            }
+            tasks.forEach { task -> task.dueDate?.let { putZigzag(it - task.createdAt) } }
+            tasks.forEach { task -> task.completionDate?.let { putZigzag(it - task.createdAt) } }
+            tasks.forEach { task -> task.preReminderOffsetMinutes?.let { putZigzag(it.toLong()) } }
+            tasks.forEach { putVarint(it.estimatedPomodoros.toLong()) }
+            tasks.forEach { putVarint(it.completedPomodoros.toLong()) }
+            tasks.forEach { putString(it.title) }
+            tasks.forEach { putString(it.description) }
+            tasks.forEach { task -> task.soundUri?.let { putString(it) } }
+            drain()
+        }
+
+        /** Writes the end marker and forces the file to storage. Call before [close]. */
+        fun finish() {
+            putVarint(0)
+            drain()
+            channel.force(false)
+        }
+
+        override fun close() {
+            channel.close()
+        }
+
+        private fun drain() {
+            buffer.flip()
+            while (buffer.hasRemaining()) channel.write(buffer)
+            buffer.clear()
+        }
+
+        private fun ensure(bytes: Int) {
+            if (buffer.remaining() >= bytes) return
+            val grown = ByteBuffer.allocateDirect(maxOf(buffer.capacity() * 2, buffer.position() + bytes))
+            buffer.flip()
+            buffer = grown.put(buffer)
+        }
+
+        private fun putVarint(value: Long) {
+            ensure(10)
+            var v = value
+            while (v and 0x7FL.inv() != 0L) {
+                buffer.put(((v and 0x7F) or 0x80).toByte())
+                v = v ushr 7
+            }
+            buffer.put(v.toByte())
+        }
+
+        private fun putZigzag(value: Long) = putVarint((value shl 1) xor (value shr 63))
+
+        private fun putString(value: String) {
+            val bytes = value.toByteArray(Charsets.UTF_8)
+            putVarint(bytes.size.toLong())
+            ensure(bytes.size)
+            buffer.put(bytes)
+        }
+
+        private fun flagsOf(task: Task): Int {
+            var flags = 0
+            if (task.isCompleted) flags = flags or FLAG_COMPLETED
+            if (task.hasReminder) flags = flags or FLAG_REMINDER
+            if (task.dueDate != null) flags = flags or FLAG_DUE
+            if (task.completionDate != null) flags = flags or FLAG_COMPLETION
+            if (task.preReminderOffsetMinutes != null) flags = flags or FLAG_PRE_REMINDER
+            if (task.soundUri != null) flags = flags or FLAG_SOUND
+            return flags
+        }
+    }
+
+    /**
+     * Decodes a snapshot straight from a read-only memory mapping of the file; only strings are
+     * copied out of it.
+     *
+     * @throws IOException if the file is not a snapshot or has an unsupported version.
+     */
+    class Reader(file: File) : Closeable {
+        private val channel: FileChannel = RandomAccessFile(file, "r").channel
+        private val buffer: MappedByteBuffer
+        private var scratch = ByteArray(256)
+
+        /** For a segment, the ids it deletes, ascending; null for a base snapshot. */
+        val deletedIds: List<Int>?
+
+        init {
+            // Mapped in here, after the channel is open, so a failing map closes it too.
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                val magic = ByteArray(MAGIC.size).also { buffer.get(it) }
+                val segment = magic.contentEquals(SEGMENT_MAGIC)
+                if (!segment && !magic.contentEquals(MAGIC)) throw IOException("Not a task snapshot")
+                val version = buffer.get().toInt()
+                if (version != VERSION) throw IOException("Unsupported snapshot version $version")
+                deletedIds = if (segment) readDeletedIds() else null
+            } catch (e: BufferUnderflowException) {
+                channel.close()
+                throw IOException("Not a task snapshot", e)
+            } catch (e: Exception) {
+                channel.close()
+                throw e
+            }
+        }
+
+        /**
+         * The next block of tasks, or null after the last one.
+         * @throws IOException if the file ends early or holds values no writer produces.
+         */
+        fun nextBlock(): List<Task>? = try {
+            readBlock()
+        } catch (e: BufferUnderflowException) {
+            throw IOException("Truncated task snapshot", e)
+        } catch (e: NoSuchElementException) {
+            // Unknown priority value or type code.
+            throw IOException("Corrupt task snapshot", e)
+        }
+
+        private fun readDeletedIds(): List<Int> {
+            val count = getVarint()
+            if (count < 0 || count > buffer.remaining()) throw IOException("Corrupt task snapshot: $count deleted ids")
+            var id = 0L
+            return List(count.toInt()) {
+                id += getVarint()
+                id.toInt()
+            }
+        }
+
+        private fun readBlock(): List<Task>? {
+            val count = getVarint().toInt()
+            if (count == 0) return null
+            if (count !in 1..BATCH_CHUNK_SIZE) throw IOException("Corrupt task snapshot: block of $count rows")
+
+            val ids = IntArray(count)
+            var id = 0L
+            for (i in 0 until count) {
+                id += getVarint()
+                ids[i] = id.toInt()
+            }
+            val flags = IntArray(count) { buffer.get().toInt() }
+            val priorities = Array(count) { Priority.fromValue(getVarint().toInt()) }
+            val types = Array(count) { TaskType.fromCode(getVarint().toInt()) }
+            val createdAt = LongArray(count)
+            var previousCreatedAt = 0L
+            for (i in 0 until count) {
+                previousCreatedAt += getZigzag()
+                createdAt[i] = previousCreatedAt
+            }
+            val dueDates = arrayOfNulls<Long>(count)
+            for (i in 0 until count) if (flags[i] and FLAG_DUE != 0) dueDates[i] = createdAt[i] + getZigzag()
+            val completionDates = arrayOfNulls<Long>(count)
+            for (i in 0 until count) if (flags[i] and FLAG_COMPLETION != 0) completionDates[i] = createdAt[i] + getZigzag()
+            val preReminders = arrayOfNulls<Int>(count)
+            for (i in 0 until count) if (flags[i] and FLAG_PRE_REMINDER != 0) preReminders[i] = getZigzag().toInt()
+            val estimated = IntArray(count) { getVarint().toInt() }
+            val completed = IntArray(count) { getVarint().toInt() }
+            val titles = Array(count) { getString() }
+            val descriptions = Array(count) { getString() }
+            val sounds = arrayOfNulls<String>(count)
+            for (i in 0 until count) if (flags[i] and FLAG_SOUND != 0) sounds[i] = getString()
+
+            return List(count) { i ->
+                Task(
+                    id = ids[i],
+                    title = titles[i],
+                    description = descriptions[i],
+                    priority = priorities[i],
+                    isCompleted = flags[i] and FLAG_COMPLETED != 0,
+                    createdAt = createdAt[i],
+                    dueDate = dueDates[i],
+                    completionDate = completionDates[i],
+                    hasReminder = flags[i] and FLAG_REMINDER != 0,
+                    preReminderOffsetMinutes = preReminders[i],
+                    taskType = types[i],
+                    estimatedPomodoros = estimated[i],
+                    completedPomodoros = completed[i],
+                    soundUri = sounds[i]
+                )
+            }
+        }
+
+        override fun close() {
+            channel.close()
+        }
+
+        private fun getVarint(): Long {
+            var result = 0L
+            var shift = 0
+            while (shift < 64) {
+                val b = buffer.get().toInt()
+                result = result or ((b and 0x7F).toLong() shl shift)
+                if (b and 0x80 == 0) return result
+                shift += 7
+            }
+            throw IOException("Corrupt task snapshot: varint longer than 10 bytes")
+        }
+
+        private fun getZigzag(): Long {
+            val v = getVarint()
+            return (v ushr 1) xor -(v and 1)
+        }
+
+        private fun getString(): String {
+            val length = getVarint().toInt()
+            if (length < 0 || length > buffer.remaining()) throw IOException("Corrupt task snapshot: string of $length bytes")
+            if (scratch.size < length) scratch = ByteArray(maxOf(length, scratch.size * 2))
+            buffer.get(scratch, 0, length)
+            return String(scratch, 0, length, Charsets.UTF_8)
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.smarttodo.data
+
+import com.example.smarttodo.util.EpochDay
+
+/**
+ * The SQL of every [TaskDao] query, one constant per statement. [TaskDao] passes them to
+ * `@Query` and [TaskDaoQueryPlanTest] explains the very same strings, so the plans it checks
+ * are the plans the app runs. Parameters are named as in the DAO methods.
+ */
+internal object TaskSql {
+
+    /**
+     * The columns of [TaskListItem], qualified so they stay unambiguous when joined with 'tasks_fts'.
+     */
+    private const val LIST_COLUMNS = """
+        tasks.id, tasks.title, tasks.description, tasks.priority, tasks.dueDate, tasks.isCompleted, tasks.completionDate,
+        tasks.createdAt, tasks.dueEpochDay
+    """
+
+    /*
+     * The rows of each [TaskSection] of the paged list, and their order within it. Each pair is
+     * answered by walking one index in order: the sections are queried separately rather than
+     * computed per row and sorted on. Expect the `:today` bind parameter, the current local day
+     * (see [EpochDay]).
+     */
+    private const val TODAY_ROWS = "tasks.isCompleted = 0 AND tasks.dueEpochDay = :today"
+    private const val TOMORROW_ROWS = "tasks.isCompleted = 0 AND tasks.dueEpochDay = :today + 1"
+    private const val UPCOMING_ROWS =
+        "tasks.isCompleted = 0 AND (tasks.dueEpochDay IS NULL OR tasks.dueEpochDay < :today OR tasks.dueEpochDay > :today + 1)"
+    private const val COMPLETED_ROWS = "tasks.isCompleted = 1"
+    private const val PENDING_ORDER = "ORDER BY tasks.priority DESC, tasks.createdAt ASC"
+    private const val COMPLETED_ORDER = "ORDER BY tasks.completionDate DESC, tasks.priority DESC, tasks.createdAt ASC"
+
+    /** The LIKE filter of [TaskDao.getTasks], for the paged list. */
+    private const val LIKE_FILTER = "(tasks.title LIKE '%' || :searchQuery || '%' OR tasks.description LIKE '%' || :searchQuery || '%')"
+
+    /** SQL for the `section` column of [TaskWithSection] where rows are sorted rather than walked. */
+    private const val SECTION_COLUMN = """
+        CASE
+            WHEN isCompleted = 1 THEN 3
+            WHEN dueEpochDay = :today THEN 0
+            WHEN dueEpochDay = :today + 1 THEN 1
+            ELSE 2
+        END AS section
+    """
+
+    const val GET_ALL_TASKS = "SELECT $LIST_COLUMNS FROM tasks ORDER BY isCompleted ASC, priority DESC, createdAt ASC"
+
+    const val GET_TASKS_BY_COMPLETION =
+        "SELECT $LIST_COLUMNS FROM tasks WHERE isCompleted = :isCompleted ORDER BY priority DESC, createdAt ASC"
+
+    const val GET_TASKS = "SELECT $LIST_COLUMNS FROM tasks WHERE (:isCompleted IS NULL OR isCompleted = :isCompleted) AND (title LIKE '%' || :searchQuery || '%' OR description LIKE '%' || :searchQuery || '%') ORDER BY priority DESC, createdAt ASC"
+
+    const val SEARCH_TASKS = """
+        SELECT $LIST_COLUMNS FROM tasks
+        JOIN tasks_fts ON tasks.id = tasks_fts.docid
+        WHERE tasks_fts MATCH :matchQuery
+        AND (:isCompleted IS NULL OR tasks.isCompleted = :isCompleted)
+        ORDER BY
+            CASE WHEN tasks.id IN (SELECT docid FROM tasks_fts WHERE tasks_fts MATCH :titleMatchQuery) THEN 0 ELSE 1 END,
+            tasks.priority DESC, tasks.createdAt ASC
+    """
+
+    const val GET_TASKS_PAGED = """
+        SELECT * FROM (SELECT $LIST_COLUMNS, 0 AS section FROM tasks WHERE $TODAY_ROWS $PENDING_ORDER)
+        UNION ALL SELECT * FROM (SELECT $LIST_COLUMNS, 1 AS section FROM tasks WHERE $TOMORROW_ROWS $PENDING_ORDER)
+        UNION ALL SELECT * FROM (SELECT $LIST_COLUMNS, 2 AS section FROM tasks WHERE $UPCOMING_ROWS $PENDING_ORDER)
+        UNION ALL SELECT * FROM (SELECT $LIST_COLUMNS, 3 AS section FROM tasks WHERE $COMPLETED_ROWS $COMPLETED_ORDER)
+    """
+
+    const val SEARCH_TASKS_PAGED = """
+        SELECT $LIST_COLUMNS, $SECTION_COLUMN FROM tasks
+        JOIN tasks_fts ON tasks.id = tasks_fts.docid
+        WHERE tasks_fts MATCH :matchQuery
+        ORDER BY section,
+            CASE WHEN tasks.id IN (SELECT docid FROM tasks_fts WHERE tasks_fts MATCH :titleMatchQuery) THEN 0 ELSE 1 END,
+            CASE WHEN isCompleted = 1 THEN completionDate END DESC, priority DESC, createdAt ASC
+    """
+
+    const val GET_TASKS_LIKE_PAGED = """
+        SELECT * FROM (SELECT $LIST_COLUMNS, 0 AS section FROM tasks WHERE $TODAY_ROWS AND $LIKE_FILTER $PENDING_ORDER)
+        UNION ALL SELECT * FROM (SELECT $LIST_COLUMNS, 1 AS section FROM tasks WHERE $TOMORROW_ROWS AND $LIKE_FILTER $PENDING_ORDER)
+        UNION ALL SELECT * FROM (SELECT $LIST_COLUMNS, 2 AS section FROM tasks WHERE $UPCOMING_ROWS AND $LIKE_FILTER $PENDING_ORDER)
+        UNION ALL SELECT * FROM (SELECT $LIST_COLUMNS, 3 AS section FROM tasks WHERE $COMPLETED_ROWS AND $LIKE_FILTER $COMPLETED_ORDER)
+    """
+
+    const val GET_PENDING_TASKS_DUE_ON =
+        "SELECT $LIST_COLUMNS FROM tasks WHERE isCompleted = 0 AND dueEpochDay = :day ORDER BY dueDate ASC"
+
+    const val GET_PENDING_TASKS_DUE_FROM =
+        "SELECT $LIST_COLUMNS FROM tasks WHERE isCompleted = 0 AND dueEpochDay >= :day ORDER BY dueEpochDay ASC, dueDate ASC"
+
+    const val OBSERVE_PENDING_COUNTS_BY_DUE_DAY =
+        "SELECT dueEpochDay AS day, COUNT(*) AS count FROM tasks WHERE isCompleted = 0 AND dueEpochDay >= :fromDay GROUP BY dueEpochDay"
+
+    const val GET_PENDING_TASKS_BY_PRIORITY =
+        "SELECT $LIST_COLUMNS FROM tasks WHERE isCompleted = 0 AND priority = :priority ORDER BY priority DESC, createdAt ASC"
+
+    const val GET_COMPLETED_TASK_ITEMS =
+        "SELECT $LIST_COLUMNS FROM tasks WHERE isCompleted = 1 ORDER BY priority DESC, createdAt ASC"
+
+    const val GET_TASK_ITEMS_BY_IDS = "SELECT $LIST_COLUMNS FROM tasks WHERE id IN (:ids)"
+
+    const val LATEST_CHANGE_SEQ = "SELECT IFNULL(MAX(seq), 0) FROM task_changes"
+
+    const val OLDEST_CHANGE_SEQ = "SELECT IFNULL(MIN(seq), 0) FROM task_changes"
+
+    const val GET_DELETED_TASK_IDS_BETWEEN =
+        "SELECT DISTINCT taskId FROM task_changes WHERE seq > :afterSeq AND seq <= :upToSeq AND op = ${TaskChange.OP_DELETE}"
+
+    const val GET_WRITTEN_TASK_IDS_BETWEEN =
+        "SELECT DISTINCT taskId FROM task_changes WHERE seq > :afterSeq AND seq <= :upToSeq AND op != ${TaskChange.OP_DELETE}"
+
+    const val GET_CHANGES_AFTER = "SELECT * FROM task_changes WHERE seq > :afterSeq ORDER BY seq ASC"
+
+    const val PRUNE_CHANGES_UP_TO = "DELETE FROM task_changes WHERE seq <= :upToSeq"
+
+    const val GET_TASK_BY_ID = "SELECT * FROM tasks WHERE id = :taskId"
+
+    const val DELETE_BY_ID = "DELETE FROM tasks WHERE id = :taskId"
+
+    const val DELETE_BATCH = "DELETE FROM tasks WHERE id IN (:ids)"
+
+    const val SET_COMPLETED_BATCH = """
+        UPDATE tasks SET
+            isCompleted = :isCompleted,
+            completionDate = CASE WHEN :isCompleted THEN COALESCE(completionDate, :now) ELSE NULL END,
+            lastModified = :now
+        WHERE id IN (:ids)
+    """
+
+    const val SHIFT_DUE_DATES_BATCH =
+        "UPDATE tasks SET dueDate = dueDate + :deltaMillis, lastModified = :now WHERE id IN (:ids) AND dueDate IS NOT NULL"
+
+    const val GET_DUE_DATES_AFTER =
+        "SELECT id, dueDate FROM tasks WHERE id > :afterId AND dueDate IS NOT NULL ORDER BY id LIMIT :limit"
+
+    const val GET_DUE_DATES_BY_IDS = "SELECT id, dueDate FROM tasks WHERE id IN (:ids) AND dueDate IS NOT NULL"
+
+    const val SET_DUE_EPOCH_DAY = "UPDATE tasks SET dueEpochDay = :day WHERE id IN (:ids) AND dueEpochDay IS NOT :day"
+
+    const val DELETE_COMPLETED_TASKS = "DELETE FROM tasks WHERE isCompleted = 1"
+
+    const val GET_COMPLETED_TASK_IDS_LIMITED = "SELECT id FROM tasks WHERE isCompleted = 1 LIMIT :limit"
+
+    const val GET_TASK_IDS_LIMITED = "SELECT id FROM tasks LIMIT :limit"
+
+    const val GET_ARCHIVABLE_TASK_IDS =
+        "SELECT id FROM tasks WHERE isCompleted = 1 AND completionDate < :cutoff LIMIT :limit"
+
+    const val COPY_TO_ARCHIVE = """
+        INSERT OR REPLACE INTO tasks_archive (id, title, description, priority, createdAt, dueDate, completionDate,
+            hasReminder, preReminderOffsetMinutes, taskType, estimatedPomodoros, completedPomodoros, soundUri, archivedAt)
+        SELECT id, title, description, priority, createdAt, dueDate, completionDate,
+            hasReminder, preReminderOffsetMinutes, taskType, estimatedPomodoros, completedPomodoros, soundUri, :now
+        FROM tasks WHERE id IN (:ids)
+    """
+
+    const val GET_ARCHIVED_TASKS_PAGED = "SELECT * FROM tasks_archive ORDER BY completionDate DESC"
+
+    const val SEARCH_ARCHIVED_TASKS_PAGED = """
+        SELECT * FROM tasks_archive
+        WHERE title LIKE '%' || :searchQuery || '%' OR description LIKE '%' || :searchQuery || '%'
+        ORDER BY completionDate DESC
+    """
+
+    const val GET_ARCHIVED_TASK_BY_ID = "SELECT * FROM tasks_archive WHERE id = :taskId"
+
+    const val GET_ARCHIVED_TASK_COUNT = "SELECT COUNT(*) FROM tasks_archive"
+
+    const val DELETE_ARCHIVED_TASK = "DELETE FROM tasks_archive WHERE id = :taskId"
+
+    const val DELETE_ARCHIVED_CHUNK = "DELETE FROM tasks_archive WHERE id IN (SELECT id FROM tasks_archive LIMIT :limit)"
+
+    const val GET_COMPLETED_TASKS = "SELECT * FROM tasks WHERE isCompleted = 1"
+
+    const val DELETE_ALL_TASKS = "DELETE FROM tasks"
+
+    const val GET_ALL_TASK_ROWS = "SELECT * FROM tasks"
+
+    const val GET_COMPLETED_TASK_IDS = "SELECT id FROM tasks WHERE isCompleted = 1"
+
+    const val GET_ALL_TASK_IDS = "SELECT id FROM tasks"
+
+    const val GET_TASKS_AFTER = "SELECT * FROM tasks WHERE id > :afterId ORDER BY id LIMIT :limit"
+
+    const val GET_COMPLETED_TASKS_AFTER =
+        "SELECT * FROM tasks WHERE isCompleted = 1 AND id > :afterId ORDER BY id LIMIT :limit"
+
+    const val GET_TASK_IDS_AFTER = "SELECT id FROM tasks WHERE id > :afterId ORDER BY id LIMIT :limit"
+
+    const val GET_TASK_ITEMS_AFTER = "SELECT $LIST_COLUMNS FROM tasks WHERE id > :afterId ORDER BY id LIMIT :limit"
+
+    const val GET_COMPLETED_TASK_IDS_AFTER =
+        "SELECT id FROM tasks WHERE isCompleted = 1 AND id > :afterId ORDER BY id LIMIT :limit"
+
+    const val GET_TASKS_BY_IDS = "SELECT * FROM tasks WHERE id IN (:ids)"
+
+    const val GET_STATS_ROW = "SELECT * FROM task_stats WHERE id = ${TaskStatsRow.ID}"
+
+    const val OBSERVE_OVERDUE_COUNTS_BY_PRIORITY =
+        "SELECT priority, SUM(count) AS count FROM task_due_counts WHERE dueEpochDay < :today GROUP BY priority"
+
+    const val GET_TASK_COUNT = "SELECT COUNT(*) FROM tasks"
+
+    const val GET_COMPLETED_TASK_COUNT = "SELECT COUNT(*) FROM tasks WHERE isCompleted = 1"
+
+    const val FLIP_COMPLETION = """
+        UPDATE tasks SET
+            isCompleted = CASE WHEN isCompleted = 1 THEN 0 ELSE 1 END,
+            completionDate = CASE WHEN isCompleted = 1 THEN NULL ELSE :now END,
+            lastModified = :now
+        WHERE id = :taskId
+    """
+
+    const val IS_TASK_COMPLETED = "SELECT isCompleted FROM tasks WHERE id = :taskId"
+
+    const val MARK_COMPLETED =
+        "UPDATE tasks SET isCompleted = 1, completionDate = :now, lastModified = :now WHERE id = :taskId AND isCompleted = 0"
+}
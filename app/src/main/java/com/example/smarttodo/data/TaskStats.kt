@@ -0,0 +1,76 @@
+package com.example.smarttodo.data
+
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+/**
+ * The single row of the 'task_stats' table: running counts over 'tasks', kept exact by the
+ * triggers from [TaskDatabase.createStatsTriggers]. Reading it is one primary-key lookup
+ * however many tasks there are. The app never writes this table itself.
+ */
+@Entity(tableName = "task_stats")
+data class TaskStatsRow(
+    @PrimaryKey
+    val id: Int = ID,
+    val total: Int,
+    val completed: Int,
+    val creative: Int,
+    val analytical: Int,
+    val administrative: Int
+) {
+    companion object {
+        const val ID = 0
+    }
+}
+
+/**
+ * Pending tasks per priority and local due day ([Task.dueEpochDay]), maintained by the same
+ * triggers as [TaskStatsRow]. Overdue counts depend on the current day, so they cannot be a
+ * plain counter; summing this table instead costs one row per priority and past day that still
+ * has pending tasks, not one per task. Rows whose count drops to zero are deleted.
+ */
+@Entity(tableName = "task_due_counts", primaryKeys = ["priority", "dueEpochDay"])
+data class TaskDueCount(
+    val priority: Int,
+    val dueEpochDay: Int,
+    val count: Int
+)
+
+/** One row of [TaskDao.observeOverdueCountsByPriority]. */
+data class PriorityCount(val priority: Priority, val count: Int)
+
+/**
+ * Task counts for badges and statistics, see [TaskRepository.getTaskStats].
+ *
+ * @property overdueByPriority Pending tasks due before today. Priorities without overdue
+ *                             tasks map to 0.
+ */
+data class TaskStats(
+    val total: Int,
+    val completed: Int,
+    val byType: Map<TaskType, Int>,
+    val overdueByPriority: Map<Priority, Int>
+) {
+    val pending: Int
+        get() = total - completed
+
+    val overdue: Int
+        get() = overdueByPriority.values.sum()
+
+    companion object {
+        fun from(row: TaskStatsRow?, overdue: List<PriorityCount>): TaskStats {
+            val overdueByPriority = Priority.entries.associateWithTo(LinkedHashMap()) { 0 }
+            overdue.forEach { overdueByPriority[it.priority] = it.count }
+            return TaskStats(
+                total = row?.total ?: 0,
+                completed = row?.completed ?: 0,
+                byType = linkedMapOf(
+                    TaskType.CREATIVE to (row?.creative ?: 0),
+                    TaskType.ANALYTICAL to (row?.analytical ?: 0),
+                    TaskType.ADMINISTRATIVE to (row?.administrative ?: 0)
+                ),
+                overdueByPriority = overdueByPriority
+            )
+        }
+    }
+}
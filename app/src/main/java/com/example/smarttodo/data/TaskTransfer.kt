@@ -0,0 +1,352 @@
+package com.example.smarttodo.data
+
+import org.json.JSONException
+import org.json.JSONObject
+import java.io.BufferedReader
+import java.io.BufferedWriter
+import java.io.IOException
+import java.io.Reader
+import java.io.Writer
+import java.nio.channels.Channels
+import java.nio.channels.ReadableByteChannel
+import java.nio.channels.WritableByteChannel
+
+/** File formats of [TaskRepository.exportTasks] and [TaskRepository.importTasks]. */
+enum class TaskTransferFormat(val mimeType: String) {
+    /** One JSON object per line, keyed by [TaskTransfer.COLUMNS]. */
+    JSON_LINES("application/x-ndjson"),
+
+    /** RFC 4180 CSV with a header row of [TaskTransfer.COLUMNS]; empty fields are null. */
+    CSV("text/csv");
+
+    companion object {
+        /** The format a file name's extension stands for, or null for any other name. */
+        fun fromFileName(name: String?): TaskTransferFormat? =
+            when (name?.substringAfterLast('.', missingDelimiterValue = "")?.lowercase()) {
+                "csv" -> CSV
+                "jsonl", "ndjson" -> JSON_LINES
+                else -> null
+            }
+
+        /**
+         * The format a MIME type stands for, or null for the generic types providers also report
+         * for these files, such as text/plain and application/octet-stream.
+         */
+        fun fromMimeType(mimeType: String?): TaskTransferFormat? = when (mimeType) {
+            "text/csv", "text/comma-separated-values" -> CSV
+            JSON_LINES.mimeType, "application/jsonl", "application/x-jsonlines" -> JSON_LINES
+            else -> null
+        }
+    }
+}
+
+/**
+ * Outcome of [TaskRepository.importTasks].
+ *
+ * @property duplicates Rows whose [TaskTransfer.contentHash] matched a task already in the
+ *                      database or earlier in the same file.
+ * @property rejected Rows without a title or with a value that does not parse.
+ */
+data class ImportSummary(val imported: Int, val duplicates: Int, val rejected: Int)
+
+/**
+ * Encodes and decodes tasks for export and import, one record at a time so neither side ever
+ * holds more than the current row.
+ *
+ * Ids and [Task.dueEpochDay] are not exported: imported tasks get new ids, and the due day is
+ * derived again in the importing device's time zone. Enums are written by name.
+ */
+object TaskTransfer {
+
+    private const val BUFFER_SIZE = 64 * 1024
+    private const val BYTE_ORDER_MARK = 0xFEFF
+
+    private class Column(val name: String, val quoted: Boolean, val get: (Task) -> Any?)
+
+    private val COLUMN_SPECS = listOf(
+        Column("title", quoted = true) { it.title },
+        Column("description", quoted = true) { it.description },
+        Column("priority", quoted = true) { it.priority.name },
+        Column("isCompleted", quoted = false) { it.isCompleted },
+        Column("createdAt", quoted = false) { it.createdAt },
+        Column("dueDate", quoted = false) { it.dueDate },
+        Column("completionDate", quoted = false) { it.completionDate },
+        Column("hasReminder", quoted = false) { it.hasReminder },
+        Column("preReminderOffsetMinutes", quoted = false) { it.preReminderOffsetMinutes },
+        Column("taskType", quoted = true) { it.taskType.name },
+        Column("estimatedPomodoros", quoted = false) { it.estimatedPomodoros },
+        Column("completedPomodoros", quoted = false) { it.completedPomodoros },
+        Column("soundUri", quoted = true) { it.soundUri }
+    )
+
+    /** Field names, in the order CSV exports them. */
+    val COLUMNS: List<String> = COLUMN_SPECS.map { it.name }
+
+    /** A UTF-8 writer over [channel] with a large buffer; flush it when done, the caller closes [channel]. */
+    fun newWriter(channel: WritableByteChannel): Writer =
+        BufferedWriter(Channels.newWriter(channel, Charsets.UTF_8.newEncoder(), BUFFER_SIZE), BUFFER_SIZE)
+
+    /** A UTF-8 reader over [channel] with a large buffer, past the byte order mark if there is one. */
+    fun newReader(channel: ReadableByteChannel): BufferedReader =
+        BufferedReader(Channels.newReader(channel, Charsets.UTF_8.newDecoder(), BUFFER_SIZE), BUFFER_SIZE).apply {
+            mark(1)
+            if (read() != BYTE_ORDER_MARK) reset()
+        }
+
+    /**
+     * Guesses the format of [reader] from its first character other than whitespace: a JSON
+     * Lines record starts with '{', a CSV header never does. Reads ahead at most one buffer and
+     * resets [reader] to where it was.
+     */
+    fun detectFormat(reader: BufferedReader): TaskTransferFormat {
+        reader.mark(BUFFER_SIZE)
+        try {
+            repeat(BUFFER_SIZE) {
+                val c = reader.read()
+                if (c == -1) return TaskTransferFormat.JSON_LINES
+                if (!c.toChar().isWhitespace()) {
+                    return if (c == '{'.code) TaskTransferFormat.JSON_LINES else TaskTransferFormat.CSV
+                }
+            }
+            return TaskTransferFormat.CSV
+        } finally {
+            reader.reset()
+        }
+    }
+
+    /** Writes what comes before the first record: the CSV header, nothing for JSON Lines. */
+    fun writeHeader(out: Writer, format: TaskTransferFormat) {
+        if (format == TaskTransferFormat.CSV) {
+            COLUMNS.forEachIndexed { i, name ->
+                if (i > 0) out.write(','.code)
+                writeCsvField(out, name)
+            }
+            out.write("\r\n")
+        }
+    }
+
+    /** Writes [task] as one record. */
+    fun write(out: Writer, task: Task, format: TaskTransferFormat) {
+        when (format) {
+            TaskTransferFormat.JSON_LINES -> {
+                out.write('{'.code)
+                COLUMN_SPECS.forEachIndexed { i, column ->
+                    if (i > 0) out.write(','.code)
+                    writeJsonString(out, column.name)
+                    out.write(':'.code)
+                    val value = column.get(task)
+                    when {
+                        value == null -> out.write("null")
+                        column.quoted -> writeJsonString(out, value.toString())
+                        else -> out.write(value.toString())
+                    }
+                }
+                out.write("}\n")
+            }
+            TaskTransferFormat.CSV -> {
+                COLUMN_SPECS.forEachIndexed { i, column ->
+                    if (i > 0) out.write(','.code)
+                    column.get(task)?.let { writeCsvField(out, it.toString()) }
+                }
+                out.write("\r\n")
+            }
+        }
+    }
+
+    /**
+     * One decoded record. [hasCreatedAt] is false if the record had no creation time and
+     * [task] got the time of the import instead.
+     */
+    class Record(val task: Task, val hasCreatedAt: Boolean)
+
+    /**
+     * Lazily decodes the records of [reader]: one element per record, null for a record that
+     * is rejected (see [ImportSummary.rejected]). [now] is the creation time of records
+     * without one. Nothing is read until the sequence is iterated, and iterating it reads one
+     * record at a time.
+     *
+     * @throws IOException from iteration if the input ends inside a quoted CSV field.
+     */
+    fun readTasks(reader: BufferedReader, format: TaskTransferFormat, now: Long): Sequence<Record?> = when (format) {
+        TaskTransferFormat.JSON_LINES -> generateSequence { reader.readLine() }
+            .filter { it.isNotBlank() }
+            .map { line ->
+                try {
+                    val json = JSONObject(line)
+                    decode(now) { column -> COLUMNS[column].let { if (json.isNull(it)) null else json.get(it).toString() } }
+                } catch (e: JSONException) {
+                    null
+                }
+            }
+        TaskTransferFormat.CSV -> sequence {
+            val records = CsvRecordReader(reader)
+            val header = records.next() ?: return@sequence
+            // Fields are matched by header name, so column order and extra columns don't matter.
+            val positions = IntArray(COLUMNS.size) { header.indexOf(COLUMNS[it]) }
+            while (true) {
+                val record = records.next() ?: break
+                if (record.size == 1 && record[0].isEmpty()) continue
+                yield(decode(now) { column -> record.getOrNull(positions[column])?.takeIf { it.isNotEmpty() } })
+            }
+        }
+    }
+
+    /**
+     * A 64-bit FNV-1a hash of what makes two tasks the same task: title, description, priority,
+     * type, creation time and due date. Completion, reminders and pomodoro progress are left
+     * out, so importing an older export of the same tasks still finds them.
+     *
+     * Without [withCreatedAt] the creation time is left out too. That is the hash for records
+     * that had none ([Record.hasCreatedAt]): the time they were given differs on every import.
+     */
+    fun contentHash(task: Task, withCreatedAt: Boolean = true): Long {
+        var hash = FNV_OFFSET_BASIS
+        fun mix(value: String) {
+            for (c in value) {
+                hash = (hash xor c.code.toLong()) * FNV_PRIME
+            }
+            hash = (hash xor 0x1FL) * FNV_PRIME // Separator, so ("ab", "c") differs from ("a", "bc").
+        }
+        mix(task.title)
+        mix(task.description)
+        mix(task.priority.name)
+        mix(task.taskType.name)
+        if (withCreatedAt) mix(task.createdAt.toString())
+        mix(task.dueDate?.toString().orEmpty())
+        return hash
+    }
+
+    private const val FNV_OFFSET_BASIS = -0x340d631b7bdddcdbL
+    private const val FNV_PRIME = 0x100000001b3L
+
+    /** Builds a record from the field at each index of [COLUMNS], or null if the record is rejected. */
+    private inline fun decode(now: Long, value: (Int) -> String?): Record? = try {
+        val title = value(0)?.takeIf { it.isNotBlank() }
+        val createdAt = value(4)?.toLong()
+        title?.let {
+            val task = Task(
+                title = it,
+                description = value(1).orEmpty(),
+                priority = value(2)?.let { name -> Priority.valueOf(name) } ?: Priority.LOW,
+                isCompleted = value(3)?.let(::parseBoolean) ?: false,
+                createdAt = createdAt ?: now,
+                dueDate = value(5)?.toLong(),
+                completionDate = value(6)?.toLong(),
+                hasReminder = value(7)?.let(::parseBoolean) ?: false,
+                preReminderOffsetMinutes = value(8)?.toInt(),
+                taskType = value(9)?.let { name -> TaskType.valueOf(name) } ?: TaskType.ADMINISTRATIVE,
+                estimatedPomodoros = value(10)?.toInt() ?: 0,
+                completedPomodoros = value(11)?.toInt() ?: 0,
+                soundUri = value(12)
+            )
+            Record(task, hasCreatedAt = createdAt != null)
+        }
+    } catch (e: IllegalArgumentException) {
+        // Covers NumberFormatException and unknown enum names.
+        null
+    }
+
+    private fun parseBoolean(value: String): Boolean = when (value.lowercase()) {
+        "true", "1" -> true
+        "false", "0" -> false
+        else -> throw IllegalArgumentException("Not a boolean: $value")
+    }
+
+    private fun writeJsonString(out: Writer, value: String) {
+        out.write('"'.code)
+        for (c in value) {
+            when {
+                c == '"' -> out.write("\\\"")
+                c == '\\' -> out.write("\\\\")
+                c == '\n' -> out.write("\\n")
+                c == '\r' -> out.write("\\r")
+                c == '\t' -> out.write("\\t")
+                c < ' ' -> out.write("\\u%04x".format(c.code))
+                else -> out.write(c.code)
+            }
+        }
+        out.write('"'.code)
+    }
+
+    private fun writeCsvField(out: Writer, value: String) {
+        if (value.none { it == ',' || it == '"' || it == '\n' || it == '\r' }) {
+            out.write(value)
+            return
+        }
+        out.write('"'.code)
+        for (c in value) {
+            if (c == '"') out.write('"'.code)
+            out.write(c.code)
+        }
+        out.write('"'.code)
+    }
+
+    /**
+     * Splits RFC 4180 CSV into records. Reads through its own char buffer rather than
+     * [Reader.read] per character, and handles quoted fields spanning lines.
+     */
+    private class CsvRecordReader(private val reader: Reader) {
+        private val buffer = CharArray(8192)
+        private var pos = 0
+        private var limit = 0
+        private val field = StringBuilder()
+
+        private fun nextChar(): Int {
+            if (pos == limit) {
+                limit = reader.read(buffer)
+                pos = 0
+                if (limit <= 0) {
+                    limit = 0
+                    return -1
+                }
+            }
+            return buffer[pos++].code
+        }
+
+        private fun peekChar(): Int {
+            val c = nextChar()
+            if (c != -1) pos--
+            return c
+        }
+
+        /** The fields of the next record, or null at the end of the input. */
+        fun next(): List<String>? {
+            var c = nextChar()
+            if (c == -1) return null
+            val fields = ArrayList<String>(COLUMNS.size)
+            field.setLength(0)
+            var quoted = false
+            while (true) {
+                if (quoted) {
+                    when (c) {
+                        -1 -> throw IOException("CSV input ends inside a quoted field")
+                        '"'.code -> if (peekChar() == '"'.code) {
+                            field.append('"')
+                            nextChar()
+                        } else {
+                            quoted = false
+                        }
+                        else -> field.append(c.toChar())
+                    }
+                } else {
+                    when (c) {
+                        -1, '\n'.code -> break
+                        '\r'.code -> {
+                            if (peekChar() == '\n'.code) nextChar()
+                            break
+                        }
+                        ','.code -> {
+                            fields += field.toString()
+                            field.setLength(0)
+                        }
+                        '"'.code -> quoted = true
+                        else -> field.append(c.toChar())
+                    }
+                }
+                c = nextChar()
+            }
+            fields += field.toString()
+            return fields
+        }
+    }
+}
@@ -3,21 +3,35 @@ package com.example.smarttodo.data
 /**
  * Enum representing the different types or categories a [Task] can belong to.
  * This helps in organizing and potentially filtering tasks based on their nature.
+ *
+ * @property code The value stored in the 'taskType' column. Fixed per constant, so reordering
+ *                or adding constants never changes what existing rows mean.
  */
-enum class TaskType {
+enum class TaskType(val code: Int) {
     /**
      * Represents tasks that involve creative work, such as brainstorming, designing, or writing.
      */
-    CREATIVE,
+    CREATIVE(0),
 
     /**
      * Represents tasks that involve analytical thinking, such as problem-solving, data analysis, or research.
      */
-    ANALYTICAL,
+    ANALYTICAL(1),
 
     /**
      * Represents tasks that are administrative or logistical in nature,
      * such as scheduling, responding to emails, or organizing files.
      */
-    ADMINISTRATIVE
+    ADMINISTRATIVE(2);
+
+    companion object {
+        // Indexed by [code]. Built once; `values()` would clone the array on every call.
+        private val BY_CODE = arrayOfNulls<TaskType>(entries.maxOf { it.code } + 1).also { table ->
+            entries.forEach { table[it.code] = it }
+        }
+
+        /** @throws NoSuchElementException if no type has this [code]. */
+        fun fromCode(code: Int): TaskType =
+            BY_CODE.getOrNull(code) ?: throw NoSuchElementException("No TaskType with code $code")
+    }
 }
@@ -0,0 +1,280 @@
+package com.example.smarttodo.data
+
+import android.util.Log
+import androidx.room.withTransaction
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.launch
+
+/**
+ * The single writer for the 'tasks' table. Every mutation from [TaskRepository] is queued here
+ * and applied by one coroutine, so writes from the UI, notification actions and receivers never
+ * contend for the database lock.
+ *
+ * Each time the writer wakes it drains everything queued so far (up to [maxBatchSize]) and
+ * applies it in one transaction, so a burst of actions costs one commit instead of one each.
+ * Within a batch, repeated [update]s of the same task collapse into the last one, and an
+ * update followed by a delete of the same task collapses into the delete.
+ *
+ * Callers suspend until their write has been committed and receive its result. If a batch
+ * fails, its writes are retried one transaction each so one bad write does not fail the rest.
+ * A [commitListener] hears about each committed write before its caller resumes.
+ *
+ * Every [CHANGE_LOG_PRUNE_INTERVAL] logged changes, the writer also prunes 'task_changes'
+ * between batches. It keeps [TaskDatabase.CHANGE_LOG_RETENTION] changes before the oldest
+ * position in [changeLogReaders] (or before the newest change, with no reader), so the log
+ * stays short in a long-running process without a feed reader losing changes it has not seen.
+ */
+class TaskWriteQueue(
+    private val database: TaskDatabase,
+    scope: CoroutineScope,
+    private val maxBatchSize: Int = DEFAULT_MAX_BATCH_SIZE
+) {
+
+    private val dao = database.taskDao()
+    private val queue = Channel<Write>(Channel.UNLIMITED)
+
+    /**
+     * Told about every committed write on the writer's coroutine, in commit order, so it can
+     * mirror the table exactly; see [TaskCache].
+     */
+    interface CommitListener {
+        /** [task] was inserted or updated and the row now holds exactly these values. */
+        fun onTaskWritten(task: Task)
+
+        /** The task with [taskId] was deleted, or changed in a way only the database knows. */
+        fun onTaskChanged(taskId: Int)
+
+        /** A batch write changed tasks that are not known individually. */
+        fun onTasksChanged()
+
+        /**
+         * Ends one transaction: the calls since the previous one account for exactly the
+         * [TaskChange]s with `fromSeq < seq <= toSeq`.
+         */
+        fun onCommitted(fromSeq: Long, toSeq: Long)
+    }
+
+    @Volatile
+    var commitListener: CommitListener? = null
+
+    /** Readers of the change feed; the log is never pruned past them. */
+    val changeLogReaders = ChangeLogReaders()
+
+    // Only touched by the writer coroutine.
+    private var latestSeq = 0L
+    private var prunedAtSeq = 0L
+
+    init {
+        scope.launch {
+            val batch = ArrayList<Write>()
+            for (first in queue) {
+                batch.add(first)
+                while (batch.size < maxBatchSize) {
+                    batch.add(queue.tryReceive().getOrNull() ?: break)
+                }
+                applyBatch(batch)
+                batch.clear()
+                pruneChangeLogIfDue()
+            }
+        }
+    }
+
+    suspend fun insert(task: Task): Long = submit(Write.Insert(task)) as Long
+
+    suspend fun update(task: Task) {
+        submit(Write.Update(task))
+    }
+
+    /** @return The number of rows deleted. */
+    suspend fun delete(task: Task): Int = submit(Write.Delete(task.id)) as Int
+
+    /** @return The number of rows deleted. */
+    suspend fun deleteById(taskId: Int): Int = submit(Write.Delete(taskId)) as Int
+
+    /** See [TaskDao.toggleCompletion]. */
+    suspend fun toggleCompletion(taskId: Int, now: Long): Boolean? =
+        submit(Write.Custom(taskId) { it.toggleCompletion(taskId, now) }) as Boolean?
+
+    /** See [TaskDao.markCompleted]. */
+    suspend fun markCompleted(taskId: Int, now: Long): Int =
+        submit(Write.Custom(taskId) { it.markCompleted(taskId, now) }) as Int
+
+    /**
+     * Runs any other write, such as a batch method of [TaskDao], in the writer's order.
+     * It shares a transaction with whatever else is queued alongside it.
+     */
+    suspend fun <T> run(block: suspend (TaskDao) -> T): T {
+        @Suppress("UNCHECKED_CAST")
+        return submit(Write.Custom(null, block)) as T
+    }
+
+    private suspend fun submit(write: Write): Any? {
+        queue.send(write)
+        return write.result.await()
+    }
+
+    private suspend fun applyBatch(batch: List<Write>) {
+        val writes = coalesce(batch)
+        val committed = try {
+            commit(writes)
+        } catch (e: Exception) {
+            if (writes.size == 1) {
+                writes[0].fail(e)
+                return
+            }
+            Log.w(TAG, "Batch of ${writes.size} writes failed, retrying one by one", e)
+            writes.forEach { write ->
+                try {
+                    val single = commit(listOf(write))
+                    write.complete(single.results[0])
+                } catch (e: Exception) {
+                    write.fail(e)
+                }
+            }
+            return
+        }
+        writes.forEachIndexed { i, write -> write.complete(committed.results[i]) }
+    }
+
+    /**
+     * Applies [writes] in one transaction and reports them to the [commitListener]. The change
+     * log position is read before and after the writes inside the transaction, so the range
+     * between covers exactly these writes.
+     */
+    private suspend fun commit(writes: List<Write>): Committed {
+        val listener = commitListener
+        val committed = database.withTransaction {
+            val fromSeq = if (listener != null) dao.getLatestChangeSeq() else 0L
+            val results = writes.map { it.apply(dao) }
+            val toSeq = dao.getLatestChangeSeq()
+            Committed(results, fromSeq, toSeq)
+        }
+        latestSeq = committed.toSeq
+        if (listener != null) {
+            writes.forEachIndexed { i, write -> write.report(listener, committed.results[i]) }
+            listener.onCommitted(committed.fromSeq, committed.toSeq)
+        }
+        return committed
+    }
+
+    /**
+     * Deletes the changes older than [TaskDatabase.CHANGE_LOG_RETENTION] before the slowest
+     * reader, once [CHANGE_LOG_PRUNE_INTERVAL] changes have been logged since the last try.
+     * A failure only leaves the log longer, so it is logged and the writer carries on.
+     */
+    private suspend fun pruneChangeLogIfDue() {
+        val latest = latestSeq
+        if (latest - prunedAtSeq < CHANGE_LOG_PRUNE_INTERVAL) return
+        prunedAtSeq = latest
+        val cutoff = minOf(latest, changeLogReaders.oldest() ?: latest) - TaskDatabase.CHANGE_LOG_RETENTION
+        if (cutoff <= 0) return
+        try {
+            val pruned = dao.pruneChangesUpTo(cutoff)
+            Log.d(TAG, "Pruned $pruned changes up to seq $cutoff")
+        } catch (e: Exception) {
+            Log.w(TAG, "Pruning the change log failed", e)
+        }
+    }
+
+    private class Committed(val results: List<Any?>, val fromSeq: Long, val toSeq: Long)
+
+    /**
+     * Drops writes made redundant by a later write to the same task in [batch]. The dropped
+     * write is attached to the one that replaces it and completes with it. Writes to different
+     * tasks keep their relative order. A write replaces an earlier one at the earlier position,
+     * so nothing may be merged across a [run] write, which can touch any task.
+     */
+    private fun coalesce(batch: List<Write>): List<Write> {
+        if (batch.size == 1) return batch
+        val result = ArrayList<Write>(batch.size)
+        val lastIndexById = HashMap<Int, Int>()
+        for (write in batch) {
+            val id = write.taskId
+            val previousIndex = id?.let { lastIndexById[it] }
+            val previous = previousIndex?.let { result[it] }
+            if (previousIndex != null && previous is Write.Update && (write is Write.Update || write is Write.Delete)) {
+                write.superseded.add(previous)
+                write.superseded.addAll(previous.superseded)
+                result[previousIndex] = write
+            } else {
+                result.add(write)
+                if (id != null) {
+                    lastIndexById[id] = result.size - 1
+                } else if (write is Write.Custom) {
+                    lastIndexById.clear()
+                }
+            }
+        }
+        if (result.size < batch.size) {
+            Log.d(TAG, "Coalesced ${batch.size} writes into ${result.size}")
+        }
+        return result
+    }
+
+    private sealed class Write(val taskId: Int?) {
+        val result = CompletableDeferred<Any?>()
+
+        /** Writes replaced by this one during [coalesce]. */
+        val superseded = ArrayList<Write>(0)
+
+        abstract suspend fun apply(dao: TaskDao): Any?
+
+        /** Tells [listener] what this write did, given the [result] of [apply]. */
+        abstract fun report(listener: CommitListener, result: Any?)
+
+        fun complete(value: Any?) {
+            result.complete(value)
+            // Only updates are superseded, and they have nothing to report beyond being applied.
+            superseded.forEach { it.result.complete(Unit) }
+        }
+
+        fun fail(e: Throwable) {
+            result.completeExceptionally(e)
+            superseded.forEach { it.result.completeExceptionally(e) }
+        }
+
+        class Insert(private val task: Task) : Write(null) {
+            override suspend fun apply(dao: TaskDao): Any? = dao.insert(task)
+
+            override fun report(listener: CommitListener, result: Any?) {
+                listener.onTaskWritten(task.copy(id = (result as Long).toInt()))
+            }
+        }
+
+        class Update(private val task: Task) : Write(task.id) {
+            override suspend fun apply(dao: TaskDao): Any? = dao.update(task)
+
+            override fun report(listener: CommitListener, result: Any?) {
+                // An update of a missing row writes nothing, so there is nothing to mirror.
+                if (result as Int > 0) listener.onTaskWritten(task) else listener.onTaskChanged(task.id)
+            }
+        }
+
+        class Delete(private val id: Int) : Write(id) {
+            override suspend fun apply(dao: TaskDao): Any? = dao.deleteById(id)
+
+            override fun report(listener: CommitListener, result: Any?) {
+                listener.onTaskChanged(id)
+            }
+        }
+
+        class Custom(taskId: Int?, private val block: suspend (TaskDao) -> Any?) : Write(taskId) {
+            override suspend fun apply(dao: TaskDao): Any? = block(dao)
+
+            override fun report(listener: CommitListener, result: Any?) {
+                val id = taskId
+                if (id != null) listener.onTaskChanged(id) else listener.onTasksChanged()
+            }
+        }
+    }
+
+    private companion object {
+        private const val TAG = "TaskWriteQueue"
+        private const val DEFAULT_MAX_BATCH_SIZE = 256
+
+        /** Changes logged between two prunes of 'task_changes'. */
+        private const val CHANGE_LOG_PRUNE_INTERVAL = 1000
+    }
+}
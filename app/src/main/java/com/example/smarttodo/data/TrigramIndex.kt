@@ -0,0 +1,202 @@
+package com.example.smarttodo.data
+
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.map
+import java.util.concurrent.locks.ReentrantReadWriteLock
+import kotlin.concurrent.read
+import kotlin.concurrent.write
+
+/**
+ * An in-memory trigram index over task titles and descriptions, answering the same substring
+ * search as [TaskDao.getTasks] (`LIKE '%query%'`) without going to SQLite. Used by
+ * [TaskRepository.getTasks] when passed in; the repository loads it and then keeps it current
+ * from [TaskRepository.taskChanges].
+ *
+ * Every three-character window of a row's title and of its description is a trigram, folded
+ * to lowercase the way LIKE folds case (ASCII only). Each trigram maps to a posting list: the
+ * sorted ids of the rows containing it, in a plain [IntArray]. A query of three or more
+ * characters intersects the posting lists of its own trigrams, smallest first, and then checks
+ * the few remaining rows for the whole substring; shorter queries check every row. Either way
+ * the work is proportional to the candidates, not the table.
+ *
+ * Holds every row's [TaskListItem], so memory grows with the table, roughly the text size
+ * again in posting lists. Safe to read and update from different threads.
+ */
+class TrigramIndex : TaskSearchIndex {
+
+    /** A sorted, growable list of task ids. */
+    private class PostingList {
+        var ids = IntArray(4)
+        var size = 0
+
+        fun add(id: Int) {
+            val index = ids.binarySearch(id, 0, size)
+            if (index >= 0) return
+            val at = -index - 1
+            if (size == ids.size) ids = ids.copyOf(size * 2)
+            System.arraycopy(ids, at, ids, at + 1, size - at)
+            ids[at] = id
+            size++
+        }
+
+        fun remove(id: Int) {
+            val at = ids.binarySearch(id, 0, size)
+            if (at < 0) return
+            System.arraycopy(ids, at + 1, ids, at, size - at - 1)
+            size--
+        }
+    }
+
+    private val lock = ReentrantReadWriteLock()
+    private val rows = HashMap<Int, TaskListItem>()
+    private val postings = HashMap<Long, PostingList>()
+    private val _version = MutableStateFlow(0L)
+
+    override val version: StateFlow<Long> = _version.asStateFlow()
+
+    @Volatile
+    override var isReady = false
+        private set
+
+    val size: Int
+        get() = lock.read { rows.size }
+
+    override fun load(items: Sequence<TaskListItem>) {
+        lock.write {
+            rows.clear()
+            postings.clear()
+            items.forEach { addLocked(it) }
+        }
+        isReady = true
+        _version.value++
+    }
+
+    override fun apply(changedIds: Collection<Int>, current: Map<Int, TaskListItem>) {
+        lock.write {
+            for (id in changedIds) {
+                rows[id]?.let { removeLocked(it) }
+                current[id]?.let { addLocked(it) }
+            }
+        }
+        _version.value++
+    }
+
+    /** Live [results] that are already running keep their last rows until their query changes. */
+    override fun invalidate() {
+        isReady = false
+        _version.value++
+    }
+
+    /** Whether [search] answers [query] exactly like [TaskDao.getTasks]. */
+    fun canSearch(query: String): Boolean =
+        isReady && query.isNotBlank() && query.none { it == '%' || it == '_' }
+
+    /** [search] for [query] again after every change to the index. */
+    fun results(query: String, isCompleted: Boolean?): Flow<List<TaskListItem>> =
+        version.map { search(query, isCompleted) }
+
+    /**
+     * The rows whose title or description contains [query], ignoring ASCII case, in the order
+     * of [TaskDao.getTasks]: priority, highest first, then oldest first.
+     */
+    fun search(query: String, isCompleted: Boolean?): List<TaskListItem> {
+        val matches = ArrayList<TaskListItem>()
+        lock.read {
+            val candidates = candidates(query)
+            fun check(row: TaskListItem) {
+                if (isCompleted != null && row.isCompleted != isCompleted) return
+                if (SearchNarrowing.containsIgnoringCase(row.title, query) ||
+                    SearchNarrowing.containsIgnoringCase(row.description, query)
+                ) {
+                    matches.add(row)
+                }
+            }
+            if (candidates == null) {
+                rows.values.forEach(::check)
+            } else {
+                candidates.forEach { id -> rows[id]?.let(::check) }
+            }
+        }
+        matches.sortWith(BY_PRIORITY)
+        return matches
+    }
+
+    /** Ids of the rows containing every trigram of [query], or null if it is too short to have any. */
+    private fun candidates(query: String): IntArray? {
+        val trigrams = trigramsOf(query)
+        if (trigrams.isEmpty()) return null
+        val lists = ArrayList<PostingList>(trigrams.size)
+        for (trigram in trigrams) {
+            lists.add(postings[trigram] ?: return IntArray(0))
+        }
+        lists.sortBy { it.size }
+        var result = lists[0].ids.copyOf(lists[0].size)
+        for (i in 1 until lists.size) {
+            if (result.isEmpty()) break
+            result = intersect(result, lists[i])
+        }
+        return result
+    }
+
+    /** The ids in both [ids] and [list]; [ids] is the smaller, so each is looked up in [list]. */
+    private fun intersect(ids: IntArray, list: PostingList): IntArray {
+        val out = IntArray(ids.size)
+        var count = 0
+        var from = 0
+        for (id in ids) {
+            val index = list.ids.binarySearch(id, from, list.size)
+            if (index >= 0) {
+                out[count++] = id
+                from = index + 1
+            } else {
+                from = -index - 1
+            }
+        }
+        return out.copyOf(count)
+    }
+
+    private fun addLocked(row: TaskListItem) {
+        rows[row.id] = row
+        for (trigram in trigramsOf(row)) {
+            postings.getOrPut(trigram) { PostingList() }.add(row.id)
+        }
+    }
+
+    private fun removeLocked(row: TaskListItem) {
+        rows.remove(row.id)
+        for (trigram in trigramsOf(row)) {
+            val list = postings[trigram] ?: continue
+            list.remove(row.id)
+            if (list.size == 0) postings.remove(trigram)
+        }
+    }
+
+    private fun trigramsOf(row: TaskListItem): Set<Long> =
+        HashSet<Long>().also {
+            addTrigrams(row.title, it)
+            addTrigrams(row.description, it)
+        }
+
+    private fun trigramsOf(text: String): Set<Long> = HashSet<Long>().also { addTrigrams(text, it) }
+
+    private companion object {
+        val BY_PRIORITY: Comparator<TaskListItem> =
+            compareByDescending<TaskListItem> { it.priority.value }.thenBy { it.createdAt }
+
+        /** Adds each window of three chars in [text], ASCII-lowercased and packed into a Long. */
+        fun addTrigrams(text: String, out: MutableSet<Long>) {
+            for (i in 0..text.length - 3) {
+                out.add(
+                    (fold(text[i]).code.toLong() shl 32) or
+                        (fold(text[i + 1]).code.toLong() shl 16) or
+                        fold(text[i + 2]).code.toLong()
+                )
+            }
+        }
+
+        fun fold(c: Char): Char = if (c in 'A'..'Z') c + ('a' - 'A') else c
+    }
+}
@@ -5,9 +5,8 @@ import android.content.Context
 import android.content.Intent
 import androidx.core.app.NotificationManagerCompat
 import com.example.smarttodo.SmartTodoApplication
+import com.example.smarttodo.util.OperationResult
 // import com.example.smarttodo.util.NotificationHelper // Not strictly needed for NOTIFICATION_ID_PREFIX if we use passed ID
-import kotlinx.coroutines.CoroutineScope
-import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
 
 class MarkTaskCompleteReceiver : BroadcastReceiver() {
@@ -24,19 +23,19 @@ class MarkTaskCompleteReceiver : BroadcastReceiver() {
             val notificationId = intent.getIntExtra(EXTRA_NOTIFICATION_ID, -1) // Retrieve the notification ID
 
             if (taskId != -1 && notificationId != -1) {
-                val repository = (context.applicationContext as SmartTodoApplication).repository
-                CoroutineScope(Dispatchers.IO).launch {
-                    val task = repository.getTaskById(taskId)
-                    task?.let {
-                        // Only mark complete if it's not already (though UI might prevent this)
-                        if (!it.isCompleted) {
-                            val updatedTask = it.copy(isCompleted = true)
-                            repository.update(updatedTask)
+                val app = context.applicationContext as SmartTodoApplication
+                val repository = app.repository
+                val pendingResult = goAsync()
+                app.applicationScope.launch {
+                    try {
+                        // Single conditional UPDATE; a task that is already completed is left as is.
+                        if (repository.markCompleted(taskId) is OperationResult.Success) {
+                            // Dismiss the specific notification that was actioned
+                            NotificationManagerCompat.from(context).cancel(notificationId)
+                            // Optionally, you might want to show a Toast or update UI if the app is open
                         }
-
-                        // Dismiss the specific notification that was actioned
-                        NotificationManagerCompat.from(context).cancel(notificationId)
-                        // Optionally, you might want to show a Toast or update UI if the app is open
+                    } finally {
+                        pendingResult.finish()
                     }
                 }
             }
@@ -4,11 +4,10 @@ import android.content.BroadcastReceiver
 import android.content.Context
 import android.content.Intent
 import android.util.Log
-import com.example.smarttodo.data.TaskDatabase
+import com.example.smarttodo.SmartTodoApplication
+import com.example.smarttodo.util.OperationResult
 import com.example.smarttodo.utils.NotificationHelper
 import com.example.smarttodo.utils.SnoozeScheduler
-import kotlinx.coroutines.CoroutineScope
-import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
 import java.util.concurrent.TimeUnit
 
@@ -35,25 +34,32 @@ class NotificationActionReceiver : BroadcastReceiver() {
     }
 
     private fun handleActionComplete(context: Context, taskId: Int) {
-        CoroutineScope(Dispatchers.IO).launch {
+        val app = context.applicationContext as SmartTodoApplication
+        val pendingResult = goAsync()
+        app.applicationScope.launch {
             try {
-                val taskDao = TaskDatabase.getDatabase(context).taskDao()
-                taskDao.setTaskCompleted(taskId, true)
-                Log.d(TAG, "Task $taskId marked as complete")
+                val repository = app.repository
+                val result = repository.markCompleted(taskId)
+                if (result !is OperationResult.Success) return@launch
+                Log.d(TAG, "Task $taskId marked as complete (${result.data})")
 
                 val notificationHelper = NotificationHelper(context)
                 notificationHelper.cancelNotification(taskId)
             } catch (e: Exception) {
                 Log.e(TAG, "Error completing task", e)
+            } finally {
+                pendingResult.finish()
             }
         }
     }
 
     private fun handleActionSnooze(context: Context, taskId: Int) {
-        CoroutineScope(Dispatchers.IO).launch {
+        val app = context.applicationContext as SmartTodoApplication
+        val pendingResult = goAsync()
+        app.applicationScope.launch {
             try {
-                val taskDao = TaskDatabase.getDatabase(context).taskDao()
-                val task = taskDao.getTaskById(taskId)
+                val repository = app.repository
+                val task = repository.getTaskById(taskId)
                 if (task != null) {
                     val notificationHelper = NotificationHelper(context)
                     val snoozeTimeMinutes = notificationHelper.getSnoozeDuration()
@@ -71,6 +77,8 @@ class NotificationActionReceiver : BroadcastReceiver() {
                 }
             } catch (e: Exception) {
                 Log.e(TAG, "Error snoozing task", e)
+            } finally {
+                pendingResult.finish()
             }
         }
     }
@@ -11,8 +11,6 @@ import com.example.smarttodo.SmartTodoApplication
 import com.example.smarttodo.data.Task // Ensure Task is imported
 import com.example.smarttodo.util.AlarmScheduler // For EXTRA_IS_PRE_REMINDER
 import com.example.smarttodo.utils.NotificationHelper
-import kotlinx.coroutines.CoroutineScope
-import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
 import java.util.Calendar
 
@@ -35,11 +33,16 @@ class SnoozeTaskReceiver : BroadcastReceiver() {
             if (taskId != -1 && notificationId != -1) {
                 NotificationManagerCompat.from(context).cancel(notificationId)
 
-                val repository = (context.applicationContext as SmartTodoApplication).repository
-                CoroutineScope(Dispatchers.IO).launch {
-                    val task = repository.getTaskById(taskId)
-                    task?.let {
-                        scheduleSnoozedNotification(context, it, isPreReminder, notificationId, soundUriString)
+                val app = context.applicationContext as SmartTodoApplication
+                val pendingResult = goAsync()
+                app.applicationScope.launch {
+                    try {
+                        val task = app.repository.getTaskById(taskId)
+                        task?.let {
+                            scheduleSnoozedNotification(app, it, isPreReminder, notificationId, soundUriString)
+                        }
+                    } finally {
+                        pendingResult.finish()
                     }
                 }
             }
@@ -4,11 +4,10 @@ import android.content.BroadcastReceiver
 import android.content.Context
 import android.content.Intent
 import android.util.Log
-import com.example.smarttodo.data.TaskDatabase
+import com.example.smarttodo.SmartTodoApplication
 import com.example.smarttodo.utils.NotificationActionReceiver
 import com.example.smarttodo.utils.NotificationHelper
 import com.example.smarttodo.utils.WakeLockManager
-import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
@@ -32,38 +31,40 @@ class SnoozedNotificationReceiver : BroadcastReceiver() {
 
         Log.d(TAG, "Received snoozed notification alarm for task $taskId")
 
-        // Acquire wake lock to ensure we complete processing
+        // Acquire wake lock to ensure we complete processing; held until the lookup is done.
         val wakeLock = WakeLockManager.acquireWakeLock(context, "snoozed:$taskId")
 
-        try {
-            processSnoozedNotification(context, taskId)
-        } finally {
-            WakeLockManager.releaseWakeLock(wakeLock)
+        val app = context.applicationContext as SmartTodoApplication
+        val pendingResult = goAsync()
+        app.applicationScope.launch {
+            try {
+                processSnoozedNotification(app, taskId)
+            } finally {
+                WakeLockManager.releaseWakeLock(wakeLock)
+                pendingResult.finish()
+            }
         }
     }
 
-    private fun processSnoozedNotification(context: Context, taskId: Int) {
-        CoroutineScope(Dispatchers.IO).launch {
-            try {
-                val taskDao = TaskDatabase.getDatabase(context).taskDao()
-                val task = taskDao.getTaskById(taskId)
+    private suspend fun processSnoozedNotification(app: SmartTodoApplication, taskId: Int) {
+        try {
+            val task = app.repository.getTaskById(taskId)
 
-                if (task != null && !task.isCompleted) {
-                    // Switch to the main thread to show the notification
-                    withContext(Dispatchers.Main) {
-                        val notificationHelper = NotificationHelper(context)
-                        // Use the enhanced notification with continuous vibration
-                        notificationHelper.showTaskReminder(task, isPreReminder = false)
-                        Log.d(TAG, "Showing snoozed notification for task: ${task.title}")
-                    }
-                } else if (task == null) {
-                    Log.e(TAG, "Task with ID $taskId not found in database")
-                } else {
-                    Log.d(TAG, "Task $taskId is already completed, not showing notification")
+            if (task != null && !task.isCompleted) {
+                // Switch to the main thread to show the notification
+                withContext(Dispatchers.Main) {
+                    val notificationHelper = NotificationHelper(app)
+                    // Use the enhanced notification with continuous vibration
+                    notificationHelper.showTaskReminder(task, isPreReminder = false)
+                    Log.d(TAG, "Showing snoozed notification for task: ${task.title}")
                 }
-            } catch (e: Exception) {
-                Log.e(TAG, "Error processing snoozed notification", e)
+            } else if (task == null) {
+                Log.e(TAG, "Task with ID $taskId not found in database")
+            } else {
+                Log.d(TAG, "Task $taskId is already completed, not showing notification")
             }
+        } catch (e: Exception) {
+            Log.e(TAG, "Error processing snoozed notification", e)
         }
     }
 }
@@ -7,13 +7,11 @@ import android.net.Uri
 import android.os.Build
 import android.util.Log
 import androidx.core.net.toUri // For String?.toUri()
+import com.example.smarttodo.SmartTodoApplication
 import com.example.smarttodo.data.Task
-import com.example.smarttodo.data.TaskDatabase
 import com.example.smarttodo.utils.NotificationHelper
 import com.example.smarttodo.utils.SnoozeScheduler
 import com.example.smarttodo.utils.WakeLockManager
-import kotlinx.coroutines.CoroutineScope
-import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
 import java.util.Date
 
@@ -74,11 +72,13 @@ class TaskReminderReceiver : BroadcastReceiver() {
                     WakeLockManager.releaseWakeLock(wakeLock)
                 } else if (taskId != -1) {
                     Log.w(TAG, "Task object was null, retrieving from database by ID: $taskId")
-                    // Use coroutine with proper error handling
-                    CoroutineScope(Dispatchers.IO).launch {
+                    // Keeps the broadcast alive until the lookup is done; see TimeZoneChangedReceiver.
+                    val app = context.applicationContext as SmartTodoApplication
+                    val pendingResult = goAsync()
+                    app.applicationScope.launch {
                         try {
-                            val taskDao = TaskDatabase.getDatabase(context).taskDao()
-                            val retrievedTask = taskDao.getTaskById(taskId)
+                            val repository = app.repository
+                            val retrievedTask = repository.getTaskById(taskId)
                             if (retrievedTask != null && !retrievedTask.isCompleted) {
                                 Log.d(TAG, "Successfully retrieved active task from database: ${retrievedTask.title}")
                                 showNotificationSafely(context, retrievedTask, isPreReminder, explicitSoundUri)
@@ -91,6 +91,7 @@ class TaskReminderReceiver : BroadcastReceiver() {
                             Log.e(TAG, "Error retrieving task from database", e)
                         } finally {
                             WakeLockManager.releaseWakeLock(wakeLock)
+                            pendingResult.finish()
                         }
                     }
                 } else {
@@ -0,0 +1,60 @@
+package com.example.smarttodo.receiver
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.util.Log
+import com.example.smarttodo.SmartTodoApplication
+import com.example.smarttodo.util.OperationResult
+import kotlinx.coroutines.launch
+import java.util.TimeZone
+
+/**
+ * Recomputes every task's stored due day ([com.example.smarttodo.data.Task.dueEpochDay]) when
+ * the device's time zone changes, so the date filters and sections keep matching the clock.
+ * [SmartTodoApplication] runs the same check at startup, for changes made while the process
+ * was not around to receive the broadcast.
+ */
+class TimeZoneChangedReceiver : BroadcastReceiver() {
+
+    companion object {
+        private const val TAG = "TimeZoneChangedReceiver"
+        private const val PREFS_NAME = "due_day_prefs"
+
+        // The zone the stored due days were last computed in.
+        private const val KEY_ZONE_ID = "zone_id"
+
+        /**
+         * Recomputes the due days if the default time zone differs from the one they were last
+         * computed in. Cheap when nothing changed: one preference read.
+         */
+        suspend fun refreshIfZoneChanged(context: Context) {
+            val prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+            val zoneId = TimeZone.getDefault().id
+            if (prefs.getString(KEY_ZONE_ID, null) == zoneId) return
+
+            val repository = (context.applicationContext as SmartTodoApplication).repository
+            when (val result = repository.refreshDueEpochDays()) {
+                is OperationResult.Success -> {
+                    prefs.edit().putString(KEY_ZONE_ID, zoneId).apply()
+                    Log.d(TAG, "Recomputed due days for $zoneId, ${result.data} tasks moved")
+                }
+                is OperationResult.Error -> Log.e(TAG, "Failed to recompute due days for $zoneId", result.exception)
+            }
+        }
+    }
+
+    override fun onReceive(context: Context, intent: Intent) {
+        if (intent.action != Intent.ACTION_TIMEZONE_CHANGED) return
+
+        val app = context.applicationContext as SmartTodoApplication
+        val pendingResult = goAsync()
+        app.applicationScope.launch {
+            try {
+                refreshIfZoneChanged(app)
+            } finally {
+                pendingResult.finish()
+            }
+        }
+    }
+}
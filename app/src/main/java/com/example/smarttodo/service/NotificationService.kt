@@ -2,9 +2,11 @@ package com.example.smarttodo.service
 
 import android.content.Context
 import android.util.Log
+import com.example.smarttodo.SmartTodoApplication
+import com.example.smarttodo.data.MarkCompletedResult
 import com.example.smarttodo.data.Task
-import com.example.smarttodo.data.TaskDatabase
 import com.example.smarttodo.utils.NotificationHelper
+import com.example.smarttodo.util.OperationResult
 import com.example.smarttodo.utils.SnoozeScheduler
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
@@ -13,7 +15,6 @@ import kotlinx.coroutines.launch
 import kotlinx.coroutines.sync.Mutex
 import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.withContext
-import java.util.Date
 import java.util.concurrent.ConcurrentHashMap
 
 /**
@@ -48,30 +49,31 @@ object NotificationService {
                 try {
                     Log.d(TAG, "Starting task completion for task $taskId")
 
-                    val taskDao = TaskDatabase.getDatabase(context).taskDao()
-                    val task = taskDao.getTaskById(taskId)
+                    val repository = (context.applicationContext as SmartTodoApplication).repository
+                    val result = repository.markCompleted(taskId)
 
-                    if (task != null) {
-                        // Update task in a single atomic operation
-                        val completedTask = task.copy(
-                            isCompleted = true,
-                            completionDate = Date()
-                        )
-                        taskDao.update(completedTask)
+                    if (result is OperationResult.Success) {
+                        val completed = result.data == MarkCompletedResult.COMPLETED
 
-                        // Handle UI feedback on main thread
+                        // Handle UI feedback on main thread. The notification is stale whatever
+                        // the outcome, but only an actual completion is celebrated.
                         withContext(Dispatchers.Main) {
                             val notificationHelper = NotificationHelper(context)
                             notificationHelper.cancelNotification(taskId)
                             notificationHelper.stopVibration()
-                            notificationHelper.showToast("Task completed! 🎉")
+                            if (completed) notificationHelper.showToast("Task completed! 🎉")
                         }
 
-                        Log.i(TAG, "Task $taskId completed successfully")
-                        onResult?.invoke(true, "Task completed successfully")
+                        if (result.data == MarkCompletedResult.NOT_FOUND) {
+                            Log.w(TAG, "Task $taskId no longer exists")
+                            onResult?.invoke(false, "Task not found")
+                        } else {
+                            Log.i(TAG, "Task $taskId completed successfully (${result.data})")
+                            onResult?.invoke(true, "Task completed successfully")
+                        }
                     } else {
-                        Log.w(TAG, "Task not found for completion: $taskId")
-                        onResult?.invoke(false, "Task not found")
+                        Log.w(TAG, "Could not complete task: $taskId")
+                        onResult?.invoke(false, "Task could not be completed")
                     }
                 } catch (e: Exception) {
                     Log.e(TAG, "Error completing task $taskId", e)
@@ -105,8 +107,8 @@ object NotificationService {
                 try {
                     Log.d(TAG, "Starting snooze for task $taskId, duration: ${durationMillis}ms")
 
-                    val taskDao = TaskDatabase.getDatabase(context).taskDao()
-                    val task = taskDao.getTaskById(taskId)
+                    val repository = (context.applicationContext as SmartTodoApplication).repository
+                    val task = repository.getTaskById(taskId)
 
                     if (task != null && !task.isCompleted) {
                         // Cancel current notification immediately and stop vibration
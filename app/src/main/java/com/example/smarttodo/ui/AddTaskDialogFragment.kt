@@ -14,6 +14,7 @@ import androidx.appcompat.app.AlertDialog
 import androidx.core.widget.doOnTextChanged
 import androidx.fragment.app.DialogFragment
 import androidx.fragment.app.activityViewModels
+import androidx.lifecycle.lifecycleScope
 import com.example.smarttodo.R
 import com.example.smarttodo.data.Priority
 import com.example.smarttodo.data.Task
@@ -25,6 +26,7 @@ import com.google.android.material.dialog.MaterialAlertDialogBuilder
 import com.google.android.material.snackbar.Snackbar
 import com.google.android.material.timepicker.MaterialTimePicker
 import com.google.android.material.timepicker.TimeFormat
+import kotlinx.coroutines.launch
 import java.text.SimpleDateFormat
 import java.util.Calendar
 import java.util.Date
@@ -49,6 +51,7 @@ class AddTaskDialogFragment : DialogFragment() {
         )
     }
 
+    private var editingTaskId: Int? = null
     private var editingTask: Task? = null
     private var selectedDate: Date? = null
     private var customPreReminderMinutes: Int? = null
@@ -68,7 +71,7 @@ class AddTaskDialogFragment : DialogFragment() {
         private const val TAG = "AddTaskDialog" // For logging
         const val TAG_ADD = "AddTaskDialog_Add"
         const val TAG_EDIT = "EditTaskDialog_Edit"
-        private const val ARG_TASK = "task"
+        private const val ARG_TASK_ID = "task_id"
 
         // Map of spinner position (excluding "No pre-reminder" and "Custom") to offset minutes
         private val PREDEFINED_OFFSET_VALUES = mapOf(
@@ -83,12 +86,13 @@ class AddTaskDialogFragment : DialogFragment() {
 
         /**
          * Creates a new instance of AddTaskDialogFragment for editing an existing task.
-         * @param task The task to be edited.
+         * The list only holds lightweight rows, so the full task is loaded when the dialog opens.
+         * @param taskId The id of the task to be edited.
          * @return A new instance of AddTaskDialogFragment.
          */
-        fun newInstance(task: Task): AddTaskDialogFragment {
+        fun newInstance(taskId: Int): AddTaskDialogFragment {
             val fragment = AddTaskDialogFragment()
-            val args = Bundle().apply { putSerializable(ARG_TASK, task) }
+            val args = Bundle().apply { putInt(ARG_TASK_ID, taskId) }
             fragment.arguments = args
             return fragment
         }
@@ -98,11 +102,8 @@ class AddTaskDialogFragment : DialogFragment() {
         super.onCreate(savedInstanceState)
         setStyle(STYLE_NORMAL, R.style.Theme_SmartToDo_Dialog_Slide) // Apply custom dialog theme
         Log.d(TAG, "onCreate: DialogFragment created.")
-        arguments?.getSerializable(ARG_TASK)?.let {
-            editingTask = it as? Task
-            if (editingTask == null) {
-                Log.w(TAG, "Failed to cast ARG_TASK to Task object during onCreate.")
-            }
+        arguments?.takeIf { it.containsKey(ARG_TASK_ID) }?.let {
+            editingTaskId = it.getInt(ARG_TASK_ID)
         }
     }
 
@@ -116,12 +117,45 @@ class AddTaskDialogFragment : DialogFragment() {
         super.onViewCreated(view, savedInstanceState)
         Log.d(TAG, "onViewCreated: Initializing dialog UI, listeners, and observers.")
         setupDialogAppearance()
+        observeUserMessages()
+        val taskId = editingTaskId
+        if (taskId == null) {
+            initializeForm()
+        } else {
+            loadTaskForEditing(taskId)
+        }
+    }
+
+    /**
+     * Fills the fields (when editing) and then wires the listeners, so programmatic selections
+     * made while populating are not mistaken for user input.
+     */
+    private fun initializeForm() {
         populateFieldsForEditing()
         setupClickListenersAndWatchers()
-        observeUserMessages()
         updatePreReminderUIVisibility() // Set initial UI state for pre-reminder section
     }
 
+    /**
+     * Loads the full task being edited. Saving is disabled until it arrives; if the task no
+     * longer exists the dialog is dismissed with an error.
+     */
+    private fun loadTaskForEditing(taskId: Int) {
+        binding.buttonSave.isEnabled = false
+        viewLifecycleOwner.lifecycleScope.launch {
+            val task = taskViewModel.loadTask(taskId)
+            if (task == null) {
+                Log.w(TAG, "Task with ID $taskId not found for editing.")
+                Toast.makeText(requireContext(), R.string.error_generic, Toast.LENGTH_SHORT).show()
+                dismissAllowingStateLoss()
+                return@launch
+            }
+            editingTask = task
+            binding.buttonSave.isEnabled = true
+            initializeForm()
+        }
+    }
+
     /**
      * Observes messages from the ViewModel, typically for success or error feedback after operations.
      */
@@ -146,7 +180,7 @@ class AddTaskDialogFragment : DialogFragment() {
      * Also configures the dialog window layout parameters.
      */
     private fun setupDialogAppearance() {
-        val isEditing = editingTask != null
+        val isEditing = editingTaskId != null
         binding.textViewDialogTitle.text = if (isEditing) getString(R.string.edit_task_title) else getString(R.string.add_task_title)
         binding.buttonSave.text = if (isEditing) getString(R.string.update_task) else getString(R.string.save_task)
         dialog?.window?.setLayout(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT)
@@ -172,7 +206,7 @@ class AddTaskDialogFragment : DialogFragment() {
                     TaskType.ANALYTICAL -> chipAnalytical.isChecked = true
                     TaskType.ADMINISTRATIVE -> chipAdministrative.isChecked = true
                 }
-                task.dueDate?.let { selectedDate = it }
+                task.dueDateAsDate?.let { selectedDate = it }
                 switchReminder.isChecked = task.hasReminder
                 setPreReminderSpinnerSelection(task.preReminderOffsetMinutes)
             }
@@ -392,7 +426,7 @@ class AddTaskDialogFragment : DialogFragment() {
             description = description,
             priority = priority,
             taskType = taskType,
-            dueDate = selectedDate,
+            dueDate = selectedDate?.time,
             hasReminder = hasReminder,
             preReminderOffsetMinutes = preReminderOffsetToSave
         ) ?: Task(
@@ -400,13 +434,13 @@ class AddTaskDialogFragment : DialogFragment() {
             description = description,
             priority = priority,
             taskType = taskType,
-            createdAt = Date(), // Set creation date only for new tasks
-            dueDate = selectedDate,
+            createdAt = System.currentTimeMillis(), // Set creation date only for new tasks
+            dueDate = selectedDate?.time,
             hasReminder = hasReminder,
             preReminderOffsetMinutes = preReminderOffsetToSave
         )
 
-        Log.i(TAG, "Attempting to save/update task: Title='${taskToSave.title}', DueDate=${taskToSave.dueDate}, Reminder=${taskToSave.hasReminder}, Offset=${taskToSave.preReminderOffsetMinutes}")
+        Log.i(TAG, "Attempting to save/update task: Title='${taskToSave.title}', DueDate=${taskToSave.dueDateAsDate}, Reminder=${taskToSave.hasReminder}, Offset=${taskToSave.preReminderOffsetMinutes}")
         try {
             if (editingTask != null) {
                 Log.d(TAG, "Calling viewModel.update for task ID: ${taskToSave.id}")
@@ -0,0 +1,54 @@
+package com.example.smarttodo.ui
+
+import com.example.smarttodo.data.TaskFilter
+import com.example.smarttodo.data.TaskListItem
+
+/**
+ * The rows of one filter chip, kept sorted by [TaskFilter.comparator] and patched in place from
+ * the change feed ([com.example.smarttodo.data.TaskRepository.taskChanges]).
+ *
+ * Patching a changed task is a hash lookup plus a binary search, so a toggle no longer re-reads
+ * and re-sorts the whole chip. Applying the same change twice is harmless: every patch removes
+ * the task's old row and re-inserts its current one if it still [TaskFilter.matches].
+ *
+ * @param today The local day the date filters were evaluated for (see
+ *              [com.example.smarttodo.util.EpochDay]). Once the day rolls over the list must be
+ *              reloaded rather than patched.
+ */
+internal class FilteredTaskList(
+    val filter: TaskFilter,
+    val today: Int,
+    rows: List<TaskListItem>
+) {
+    private val comparator = filter.comparator
+    // Re-sorted once so ties the SQL left unordered follow the comparator's id tie-breaker.
+    private val rows = ArrayList(rows).apply { sortWith(comparator) }
+    private val byId = HashMap<Int, TaskListItem>(rows.size).apply { rows.forEach { put(it.id, it) } }
+
+    /**
+     * Applies the current state of [changedIds]; [current] holds the rows that still exist.
+     * @return true if the list changed.
+     */
+    fun apply(changedIds: Collection<Int>, current: Map<Int, TaskListItem>): Boolean {
+        var changed = false
+        for (id in changedIds) {
+            val old = byId[id]
+            val new = current[id]?.takeIf { filter.matches(it, today) }
+            if (old == new) continue
+            if (old != null) {
+                rows.removeAt(rows.binarySearch(old, comparator))
+                byId.remove(id)
+            }
+            if (new != null) {
+                val index = rows.binarySearch(new, comparator)
+                rows.add(if (index < 0) -index - 1 else index, new)
+                byId[id] = new
+            }
+            changed = true
+        }
+        return changed
+    }
+
+    /** A copy for the adapter; [androidx.recyclerview.widget.ListAdapter] needs a new list to diff. */
+    fun snapshot(): List<TaskListItem> = ArrayList(rows)
+}
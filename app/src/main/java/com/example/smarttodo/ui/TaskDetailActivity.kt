@@ -13,12 +13,13 @@ import androidx.lifecycle.lifecycleScope
 import com.example.smarttodo.R
 import com.example.smarttodo.data.Priority
 import com.example.smarttodo.data.Task
+import com.example.smarttodo.util.AlarmScheduler
+import com.example.smarttodo.util.OperationResult
 import com.google.android.material.chip.Chip
 import com.google.android.material.dialog.MaterialAlertDialogBuilder
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
 import java.text.SimpleDateFormat
-import java.util.Date
 import java.util.Locale
 
 class TaskDetailActivity : AppCompatActivity() {
@@ -107,7 +108,7 @@ class TaskDetailActivity : AppCompatActivity() {
         } else descView.visibility = View.GONE
 
         val dueView = findViewById<TextView>(R.id.textDetailDue)
-        t.dueDate?.let { date ->
+        t.dueDateAsDate?.let { date ->
             val fmt = try {
                 SimpleDateFormat(getString(R.string.date_time_format_display), Locale.getDefault())
             } catch (e: Exception) {
@@ -140,8 +141,13 @@ class TaskDetailActivity : AppCompatActivity() {
     private fun toggleCompleteAndUpdate(t: Task) {
         lifecycleScope.launch(Dispatchers.IO) {
             val repo = (application as com.example.smarttodo.SmartTodoApplication).repository
-            val updated = t.copy(isCompleted = !t.isCompleted, completionDate = if (!t.isCompleted) Date() else null)
-            repo.update(updated)
+            // Flip in the database rather than writing back our copy, which may be stale if a
+            // notification action changed the task while this screen was open.
+            val result = repo.toggleTaskCompletion(t.id)
+            if (result is OperationResult.Success && result.data) {
+                AlarmScheduler.cancelReminder(applicationContext, t.id)
+            }
+            val updated = repo.getTaskById(t.id) ?: return@launch
             task = updated // Update the local task object
             launch(Dispatchers.Main) {
                 // Re-populate the views to reflect the change
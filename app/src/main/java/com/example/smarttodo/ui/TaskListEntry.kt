@@ -0,0 +1,51 @@
+package com.example.smarttodo.ui
+
+import androidx.annotation.StringRes
+import androidx.recyclerview.widget.DiffUtil
+import com.example.smarttodo.R
+import com.example.smarttodo.data.TaskListItem
+import com.example.smarttodo.data.TaskSection
+
+/**
+ * An item of the paged task list: either a task row or a section separator inserted by
+ * `PagingData.insertSeparators` in [TaskViewModel.pagedTasks].
+ */
+sealed class TaskListEntry {
+
+    data class Row(val task: TaskListItem, val section: TaskSection) : TaskListEntry()
+
+    data class Header(val section: TaskSection) : TaskListEntry()
+
+    object DiffCallback : DiffUtil.ItemCallback<TaskListEntry>() {
+        val COMPLETION_PAYLOAD = Any()
+
+        override fun areItemsTheSame(oldItem: TaskListEntry, newItem: TaskListEntry): Boolean {
+            return when {
+                oldItem is Row && newItem is Row -> oldItem.task.id == newItem.task.id
+                oldItem is Header && newItem is Header -> oldItem.section == newItem.section
+                else -> false
+            }
+        }
+
+        override fun areContentsTheSame(oldItem: TaskListEntry, newItem: TaskListEntry): Boolean {
+            return oldItem == newItem
+        }
+
+        override fun getChangePayload(oldItem: TaskListEntry, newItem: TaskListEntry): Any? {
+            if (oldItem is Row && newItem is Row && oldItem.task.isCompleted != newItem.task.isCompleted) {
+                return COMPLETION_PAYLOAD
+            }
+            return null
+        }
+    }
+}
+
+/** String resource used as the separator title for this section. */
+@get:StringRes
+val TaskSection.titleResId: Int
+    get() = when (this) {
+        TaskSection.TODAY -> R.string.category_today
+        TaskSection.TOMORROW -> R.string.category_tomorrow
+        TaskSection.UPCOMING -> R.string.category_upcoming
+        TaskSection.COMPLETED -> R.string.category_completed
+    }
@@ -0,0 +1,70 @@
+package com.example.smarttodo.ui
+
+import android.view.LayoutInflater
+import android.view.View
+import android.view.ViewGroup
+import androidx.paging.PagingDataAdapter
+import androidx.recyclerview.widget.RecyclerView
+import com.example.smarttodo.data.TaskListItem
+import com.example.smarttodo.databinding.ItemTaskBinding
+
+/**
+ * Paged version of [TaskAdapter] for the unfiltered task list. Items arrive as [TaskListEntry]
+ * pages, so only the rows near the viewport are held in memory. Section headers are
+ * [TaskListEntry.Header] separators rather than strings mixed into the data.
+ */
+class TaskPagingAdapter(
+    private val onTaskClick: (TaskListItem, View) -> Unit,
+    private val onTaskLongClick: (TaskListItem) -> Unit,
+    private val onCompleteClick: (TaskListItem) -> Unit
+) : PagingDataAdapter<TaskListEntry, RecyclerView.ViewHolder>(TaskListEntry.DiffCallback) {
+
+    override fun getItemViewType(position: Int): Int {
+        return when (peek(position)) {
+            is TaskListEntry.Header -> ITEM_VIEW_TYPE_HEADER
+            else -> ITEM_VIEW_TYPE_ITEM
+        }
+    }
+
+    override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): RecyclerView.ViewHolder {
+        return when (viewType) {
+            ITEM_VIEW_TYPE_HEADER -> TaskAdapter.HeaderViewHolder.create(parent)
+            ITEM_VIEW_TYPE_ITEM -> {
+                val binding = ItemTaskBinding.inflate(LayoutInflater.from(parent.context), parent, false)
+                TaskViewHolder(binding, ::getTaskAt, onTaskClick, onTaskLongClick, onCompleteClick)
+            }
+            else -> throw IllegalArgumentException("Invalid view type")
+        }
+    }
+
+    override fun onBindViewHolder(holder: RecyclerView.ViewHolder, position: Int) {
+        when (val entry = getItem(position)) {
+            is TaskListEntry.Row -> (holder as TaskViewHolder).bind(entry.task)
+            is TaskListEntry.Header -> (holder as TaskAdapter.HeaderViewHolder).bind(
+                holder.itemView.context.getString(entry.section.titleResId)
+            )
+            null -> Unit // Placeholders are disabled, so this only happens transiently.
+        }
+    }
+
+    override fun onBindViewHolder(holder: RecyclerView.ViewHolder, position: Int, payloads: MutableList<Any>) {
+        val entry = peek(position)
+        if (payloads.isNotEmpty() && holder is TaskViewHolder && entry is TaskListEntry.Row) {
+            payloads.forEach { payload ->
+                if (payload == TaskListEntry.DiffCallback.COMPLETION_PAYLOAD) {
+                    holder.animateCompletion(entry.task.isCompleted)
+                }
+            }
+        } else {
+            super.onBindViewHolder(holder, position, payloads)
+        }
+    }
+
+    /**
+     * Returns the task at [position] without triggering a page load, or null for headers.
+     */
+    fun getTaskAt(position: Int): TaskListItem? {
+        if (position !in 0 until itemCount) return null
+        return (peek(position) as? TaskListEntry.Row)?.task
+    }
+}
@@ -0,0 +1,165 @@
+@file:Suppress("unused", "UNUSED_PARAMETER")
+
+package com.example.smarttodo.ui
+
+import android.content.Context
+import android.graphics.Paint
+import android.util.Log
+import android.view.View
+import android.view.animation.AnimationUtils
+import androidx.core.content.ContextCompat
+import androidx.recyclerview.widget.RecyclerView
+import com.example.smarttodo.R
+import com.example.smarttodo.data.Priority
+import com.example.smarttodo.data.TaskListItem
+import com.example.smarttodo.databinding.ItemTaskBinding
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+
+/**
+ * ViewHolder for a single task row, shared by [TaskAdapter] and [TaskPagingAdapter].
+ * Click callbacks resolve the task through [taskAt] so they always act on the item currently
+ * bound at the holder's adapter position.
+ */
+class TaskViewHolder(
+    private val binding: ItemTaskBinding,
+    private val taskAt: (position: Int) -> TaskListItem?,
+    private val onTaskClick: (TaskListItem, View) -> Unit,
+    private val onTaskLongClick: (TaskListItem) -> Unit,
+    private val onCompleteClick: (TaskListItem) -> Unit
+) : RecyclerView.ViewHolder(binding.root) {
+
+    companion object {
+        // Shared formatter (initialized lazily using first available context)
+        @Volatile
+        private var sharedDateFormatter: SimpleDateFormat? = null
+
+        @Suppress("UNUSED_PARAMETER")
+        private fun getSharedFormatter(context: Context): SimpleDateFormat {
+            val existing = sharedDateFormatter
+            if (existing != null) return existing
+            synchronized(this) {
+                val once = sharedDateFormatter
+                if (once != null) return once
+                val formatString = try {
+                    context.getString(R.string.date_time_format_item)
+                } catch (e: Exception) {
+                    // Log exception and reference it as throwable so analyzers see it used
+                    Log.w("TaskAdapter", "Failed to read date_time_format_item, using default format", e)
+                    "MMM dd, hh:mm a"
+                }
+                val fmt = SimpleDateFormat(formatString, Locale.getDefault())
+                sharedDateFormatter = fmt
+                return fmt
+            }
+        }
+
+        private fun resolveSecondaryTextColor(context: Context, fallbackRes: Int): Int {
+            // Use theme-aware color for secondary text
+            val typedValue = android.util.TypedValue()
+            return if (context.theme.resolveAttribute(android.R.attr.textColorSecondary, typedValue, true)) {
+                typedValue.data
+            } else {
+                ContextCompat.getColor(context, fallbackRes)
+            }
+        }
+    }
+
+    init {
+        // Lazily initialize shared formatter using the view context
+        getSharedFormatter(itemView.context)
+
+        binding.root.setOnClickListener {
+            val position = bindingAdapterPosition
+            if (position != RecyclerView.NO_POSITION) {
+                taskAt(position)?.let { task -> onTaskClick(task, itemView) }
+            }
+        }
+        binding.root.setOnLongClickListener {
+            val position = bindingAdapterPosition
+            if (position != RecyclerView.NO_POSITION) {
+                taskAt(position)?.let { task -> onTaskLongClick(task) }
+                true
+            } else false
+        }
+        binding.checkboxComplete.setOnClickListener {
+            val position = bindingAdapterPosition
+            if (position != RecyclerView.NO_POSITION) {
+                taskAt(position)?.let { task -> onCompleteClick(task) }
+            }
+        }
+    }
+
+    fun bind(task: TaskListItem) {
+        binding.root.transitionName = "task_card_${task.id}"
+        binding.apply {
+            textViewTitle.text = task.title
+            checkboxComplete.isChecked = task.isCompleted
+
+            if (task.description.isNotEmpty()) {
+                textViewDescription.text = task.description
+                textViewDescription.visibility = View.VISIBLE
+            } else {
+                textViewDescription.visibility = View.GONE
+            }
+
+            task.dueDate?.let { dueDate ->
+                try {
+                    val formatter = getSharedFormatter(itemView.context)
+                    layoutDueDate.text = itemView.context.getString(R.string.due_date_prefix_item, formatter.format(Date(dueDate)))
+                } catch (e: Exception) {
+                    val ex = e
+                    Log.e("TaskViewHolder", "Failed to load due date prefix string R.string.due_date_format_item. Using fallback.", ex)
+                    // Use the translatable resource as a fallback as well
+                    layoutDueDate.text = itemView.context.getString(R.string.due_date_prefix_item, getSharedFormatter(itemView.context).format(Date(dueDate)))
+                }
+                layoutDueDate.visibility = View.VISIBLE
+
+                if (dueDate < System.currentTimeMillis() && !task.isCompleted) {
+                    layoutDueDate.setTextColor(ContextCompat.getColor(root.context, R.color.priority_high))
+                } else {
+                    // Resolve secondary text color from theme so it matches dark/light
+                    val secondaryColor = resolveSecondaryTextColor(root.context, R.color.textMuted)
+                    layoutDueDate.setTextColor(secondaryColor)
+                }
+            } ?: run {
+                layoutDueDate.visibility = View.GONE
+            }
+
+            val priorityColorResId = when (task.priority) {
+                Priority.HIGH -> R.color.priority_high
+                Priority.MEDIUM -> R.color.priority_medium
+                Priority.LOW -> R.color.priority_low
+                else -> android.R.color.transparent
+            }
+            viewPriorityIndicator.setBackgroundColor(ContextCompat.getColor(root.context, priorityColorResId))
+
+            updateCompletedStatus(task.isCompleted)
+        }
+    }
+
+    fun animateCompletion(isCompleted: Boolean) {
+        val animation = if (isCompleted) {
+            AnimationUtils.loadAnimation(itemView.context, R.anim.fade_out)
+        } else {
+            AnimationUtils.loadAnimation(itemView.context, R.anim.fade_in)
+        }
+        itemView.startAnimation(animation)
+        updateCompletedStatus(isCompleted)
+    }
+
+    private fun updateCompletedStatus(isCompleted: Boolean) {
+        if (isCompleted) {
+            binding.textViewTitle.paintFlags = binding.textViewTitle.paintFlags or Paint.STRIKE_THRU_TEXT_FLAG
+            binding.textViewTitle.alpha = 0.6f
+            binding.textViewDescription.alpha = 0.6f
+            binding.root.alpha = 0.7f
+        } else {
+            binding.textViewTitle.paintFlags = binding.textViewTitle.paintFlags and Paint.STRIKE_THRU_TEXT_FLAG.inv()
+            binding.textViewTitle.alpha = 1.0f
+            binding.textViewDescription.alpha = 1.0f
+            binding.root.alpha = 1.0f
+        }
+    }
+}
@@ -1,33 +1,67 @@
 package com.example.smarttodo.ui
 
 import android.app.Application
+import android.net.Uri
+import android.os.ParcelFileDescriptor
+import android.provider.OpenableColumns
 import android.util.Log
 import androidx.annotation.StringRes
 import androidx.lifecycle.LiveData
 import androidx.lifecycle.MutableLiveData
 import androidx.lifecycle.ViewModel
-import androidx.lifecycle.map
-import androidx.lifecycle.switchMap
+import androidx.lifecycle.asLiveData
 import androidx.lifecycle.viewModelScope
+import androidx.paging.PagingData
+import androidx.paging.cachedIn
+import androidx.paging.insertSeparators
+import androidx.paging.map
 import com.example.smarttodo.R
-import com.example.smarttodo.data.CategorizedTasks
+import com.example.smarttodo.data.BATCH_CHUNK_SIZE
+import com.example.smarttodo.data.PendingSectionCounts
 import com.example.smarttodo.data.Task
+import com.example.smarttodo.data.TaskFilter
+import com.example.smarttodo.data.TaskListItem
 import com.example.smarttodo.data.TaskRepository
+import com.example.smarttodo.data.TaskStats
+import com.example.smarttodo.data.TaskTransferFormat
 import com.example.smarttodo.util.AlarmScheduler
+import com.example.smarttodo.util.DayBucketer
+import com.example.smarttodo.util.DayTicker
 import com.example.smarttodo.util.Event
 import com.example.smarttodo.util.OperationResult
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.FlowPreview
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.SharingStarted
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.combine
+import kotlinx.coroutines.flow.debounce
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.filter
+import kotlinx.coroutines.flow.flatMapLatest
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOf
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.flow.shareIn
+import kotlinx.coroutines.flow.stateIn
 import kotlinx.coroutines.launch
-import java.util.Calendar
-import java.util.Date
+import kotlinx.coroutines.withContext
+import java.io.IOException
 
 data class UserMessage(
     @StringRes val messageResId: Int? = null,
     val customMessage: String? = null,
-    val isError: Boolean = false
+    val isError: Boolean = false,
+    /** Format arguments of [messageResId]. */
+    val formatArgs: List<Any> = emptyList()
 ) {
     companion object {
-        fun success(@StringRes resId: Int): UserMessage {
-            return UserMessage(messageResId = resId, isError = false)
+        fun success(@StringRes resId: Int, vararg formatArgs: Any): UserMessage {
+            return UserMessage(messageResId = resId, isError = false, formatArgs = formatArgs.toList())
         }
 
         fun error(errorMessage: String?, @StringRes fallbackResId: Int = R.string.error_generic): UserMessage {
@@ -40,122 +74,187 @@ data class UserMessage(
     }
 }
 
+/** Tasks deleted so far by a chunked purge, out of [total]. */
+data class PurgeProgress(val deleted: Int, val total: Int)
+
+/**
+ * @param dayTicker The current local day, see [DayTicker]; a fixed day in tests.
+ */
 class TaskViewModel(
     private val application: Application,
-    private val repository: TaskRepository
+    private val repository: TaskRepository,
+    dayTicker: Flow<DayBucketer> = DayTicker.days(application)
 ) : ViewModel() {
 
     private companion object {
         private const val TAG = "TaskViewModel"
-    }
 
-    private val _searchQuery = MutableLiveData("")
-    private val _filter = MutableLiveData("ALL")
-    val filter: LiveData<String> = _filter
+        // Beyond this many changed tasks in one batch, reloading the chip is cheaper than patching.
+        private const val MAX_PATCHED_TASKS = BATCH_CHUNK_SIZE
+
+        // Keeps the list pipelines running briefly after the last collector stops, so a
+        // configuration change resubscribes without reloading.
+        private const val STOP_TIMEOUT_MILLIS = 5_000L
 
-    private val tasks: LiveData<List<Task>> = _searchQuery.switchMap { query ->
-        repository.getTasks(query, null)
+        // Quiet time after the last keystroke before a search runs.
+        private const val SEARCH_DEBOUNCE_MILLIS = 300L
     }
 
-    val tasksToDisplay: LiveData<List<Any>> = tasks.switchMap { allTasks ->
-        _filter.map { currentFilter ->
-            val filteredTasks = when (currentFilter) {
-                "TODAY" -> allTasks.filter { it.isToday() && !it.isCompleted }
-                "TOMORROW" -> allTasks.filter { it.isTomorrow() && !it.isCompleted }
-                "UPCOMING" -> allTasks.filter { it.isUpcoming() && !it.isCompleted }
-                "HIGH_PRIORITY" -> allTasks.filter { it.priority == com.example.smarttodo.data.Priority.HIGH && !it.isCompleted }
-                "COMPLETED" -> allTasks.filter { it.isCompleted }
-                else -> allTasks
-            }
+    /**
+     * The local day that everything "today"-relative below is computed for. Shared, so the
+     * lists and counts all move on together and register one broadcast receiver between them.
+     */
+    private val today: Flow<Int> = dayTicker
+        .map { it.today }
+        .distinctUntilChanged()
+        .shareIn(viewModelScope, SharingStarted.WhileSubscribed(STOP_TIMEOUT_MILLIS), replay = 1)
 
-            val displayList = mutableListOf<Any>()
-            if (currentFilter == "ALL") {
-                displayList.addAll(buildCategorizedList(filteredTasks))
-            } else {
-                if (filteredTasks.isNotEmpty()) {
-                    val header = when (currentFilter) {
-                        "TODAY" -> application.getString(R.string.category_today)
-                        "TOMORROW" -> application.getString(R.string.category_tomorrow)
-                        "UPCOMING" -> application.getString(R.string.category_upcoming)
-                        "HIGH_PRIORITY" -> application.getString(R.string.category_high_priority)
-                        "COMPLETED" -> application.getString(R.string.category_completed)
-                        else -> ""
-                    }
-                    if (header.isNotEmpty()) {
-                        displayList.add(header)
+    private val _searchQuery = MutableStateFlow("")
+
+    /**
+     * The search box text once typing pauses for [SEARCH_DEBOUNCE_MILLIS]. Clearing the box
+     * takes effect at once. Every list below searches for this instead of each keystroke.
+     */
+    @OptIn(FlowPreview::class)
+    private val searchQuery: StateFlow<String> = _searchQuery
+        .debounce { query -> if (query.isBlank()) 0L else SEARCH_DEBOUNCE_MILLIS }
+        .stateIn(viewModelScope, SharingStarted.Eagerly, "")
+    private val _filter = MutableStateFlow("ALL")
+    val filter: StateFlow<String> = _filter.asStateFlow()
+
+    private val _fuzzySearch = MutableStateFlow(false)
+
+    /** Whether searches tolerate typos and rank by relevance, see [TaskRepository.fuzzySearchTasks]. */
+    val fuzzySearch: StateFlow<Boolean> = _fuzzySearch.asStateFlow()
+
+    /**
+     * Whether the list shows [pagedTasks] rather than [tasksToDisplay]: for the "ALL" chip,
+     * unless a fuzzy search is running, whose ranked results are not paged.
+     */
+    val usesPagedList: StateFlow<Boolean> = combine(_filter, searchQuery, _fuzzySearch) { filterName, query, fuzzy ->
+        TaskFilter.fromName(filterName) == TaskFilter.ALL && !(fuzzy && query.isNotBlank())
+    }.stateIn(viewModelScope, SharingStarted.Eagerly, true)
+
+    /**
+     * The unfiltered ("ALL") list, paged from the database with date-section separators.
+     * Only a bounded window of rows is kept in memory; see [TaskRepository.getPagedTasks]. A
+     * new day ([today]) starts a new pager, so the sections move on at midnight without a write.
+     */
+    @OptIn(ExperimentalCoroutinesApi::class)
+    val pagedTasks: Flow<PagingData<TaskListEntry>> = combine(searchQuery, today) { query, day -> query to day }
+        .flatMapLatest { (query, day) -> repository.getPagedTasks(query, day) }
+        .map { pagingData ->
+            pagingData
+                .map { TaskListEntry.Row(it.task, it.section) }
+                .insertSeparators { before: TaskListEntry.Row?, after: TaskListEntry.Row? ->
+                    when {
+                        after == null -> null
+                        before == null || before.section != after.section -> TaskListEntry.Header(after.section)
+                        else -> null
                     }
-                    displayList.addAll(filteredTasks)
                 }
-            }
-            displayList
         }
-    }
+        .cachedIn(viewModelScope)
 
-    private fun buildCategorizedList(tasks: List<Task>): List<Any> {
-        val displayableList = mutableListOf<Any>()
-        val categorized = categorizeTasks(tasks)
-        if (categorized.today.isNotEmpty()) {
-            displayableList.add(application.getString(R.string.category_today))
-            displayableList.addAll(categorized.today)
-        }
-        if (categorized.tomorrow.isNotEmpty()) {
-            displayableList.add(application.getString(R.string.category_tomorrow))
-            displayableList.addAll(categorized.tomorrow)
+    /**
+     * The list for the filter chips other than "ALL". Without a search query each chip is loaded
+     * once and then patched from the change feed (see [patchedTasks]); with one, the search
+     * results are filtered by [TaskRepository.getFilteredTasks]. The "ALL" view is served by
+     * [pagedTasks], so for it this emits an empty list without querying the database.
+     *
+     * A fuzzy search ([fuzzySearch]) is served here for every chip, "ALL" included, ranked by
+     * relevance. Like any other search, its results come under the chip's section header, and
+     * without one for "ALL".
+     *
+     * The filter, whether there is a query, the search mode and the current day ([today]) are
+     * combined into one key, and each new key switches to that key's rows, so the date chips
+     * move on at midnight. Typing does not change the key: the queries go on to
+     * [TaskRepository.searchTasks], which keeps one search live and narrows it in memory while
+     * the query only grows. Filtering, patching and building the display list run on [Dispatchers.Default]; the
+     * main thread only receives finished lists. The latest list is kept in [viewModelScope], so
+     * a configuration change gets it back without reloading.
+     */
+    @OptIn(ExperimentalCoroutinesApi::class)
+    val tasksToDisplay: StateFlow<List<Any>> = combine(_filter, searchQuery, _fuzzySearch, today) { filterName, query, fuzzy, day ->
+        ListKey(TaskFilter.fromName(filterName), query.isBlank(), fuzzy, day)
+    }
+        .distinctUntilChanged()
+        .flatMapLatest { (taskFilter, noQuery, fuzzy, day) ->
+            val queries = searchQuery.filter { it.isNotBlank() }
+            when {
+                fuzzy && !noQuery -> repository.getFilteredTasks(taskFilter, queries, day, fuzzy = true)
+                taskFilter == TaskFilter.ALL -> flowOf(emptyList())
+                noQuery -> patchedTasks(taskFilter, day)
+                else -> repository.getFilteredTasks(taskFilter, queries, day)
+            }.map { filteredTasks -> withHeader(taskFilter, filteredTasks) }
         }
-        if (categorized.upcoming.isNotEmpty()) {
-            displayableList.add(application.getString(R.string.category_upcoming))
-            displayableList.addAll(categorized.upcoming)
+        .distinctUntilChanged()
+        .flowOn(Dispatchers.Default)
+        .stateIn(viewModelScope, SharingStarted.WhileSubscribed(STOP_TIMEOUT_MILLIS), emptyList())
+
+    /** What [tasksToDisplay] reloads on; see there. */
+    private data class ListKey(val filter: TaskFilter, val noQuery: Boolean, val fuzzy: Boolean, val today: Int)
+
+    /** [filteredTasks] preceded by the chip's section header, or an empty list. */
+    private fun withHeader(taskFilter: TaskFilter, filteredTasks: List<TaskListItem>): List<Any> {
+        if (filteredTasks.isEmpty()) return emptyList()
+        val header = when (taskFilter) {
+            TaskFilter.TODAY -> application.getString(R.string.category_today)
+            TaskFilter.TOMORROW -> application.getString(R.string.category_tomorrow)
+            TaskFilter.UPCOMING -> application.getString(R.string.category_upcoming)
+            TaskFilter.HIGH_PRIORITY -> application.getString(R.string.category_high_priority)
+            TaskFilter.COMPLETED -> application.getString(R.string.category_completed)
+            TaskFilter.ALL -> ""
         }
-        if (categorized.completed.isNotEmpty()) {
-            displayableList.add(application.getString(R.string.category_completed))
-            displayableList.addAll(categorized.completed)
+        val displayList = ArrayList<Any>(filteredTasks.size + 1)
+        if (header.isNotEmpty()) {
+            displayList.add(header)
         }
-        return displayableList
+        displayList.addAll(filteredTasks)
+        return displayList
     }
 
-    val categorizedTasks: LiveData<CategorizedTasks> = tasks.map { tasks ->
-        categorizeTasks(tasks)
-    }
-
-    fun categorizeTasks(tasks: List<Task>): CategorizedTasks {
-        val today = mutableListOf<Task>()
-        val tomorrow = mutableListOf<Task>()
-        val upcoming = mutableListOf<Task>()
-        val completed = mutableListOf<Task>()
-
-        val todayCalendar = Calendar.getInstance()
-        val tomorrowCalendar = Calendar.getInstance().apply { add(Calendar.DAY_OF_YEAR, 1) }
-        val taskDateCalendar = Calendar.getInstance()
-
-        for (task in tasks) {
-            if (task.isCompleted) {
-                completed.add(task)
-            } else {
-                val dueDate = task.dueDate
-                if (dueDate == null) {
-                    upcoming.add(task)
-                    continue
-                }
-                taskDateCalendar.time = dueDate
-
-                when {
-                    isSameDay(taskDateCalendar, todayCalendar) -> today.add(task)
-                    isSameDay(taskDateCalendar, tomorrowCalendar) -> tomorrow.add(task)
-                    else -> upcoming.add(task)
-                }
+    /**
+     * A filter chip's rows for [today], loaded once and then kept current from
+     * [TaskRepository.taskChanges]: a write costs a lookup of the rows it touched instead of
+     * re-running the chip's query. Large batches reload the chip instead of patching it; a new
+     * day is a new key of [tasksToDisplay] and so a new load.
+     *
+     * The feed position is read before the initial load, so a write landing in between is both
+     * in the loaded rows and replayed; [FilteredTaskList.apply] makes the replay a no-op.
+     */
+    private fun patchedTasks(filter: TaskFilter, today: Int): Flow<List<TaskListItem>> = flow {
+        val fromSeq = repository.getLatestChangeSeq()
+        var list = FilteredTaskList(filter, today, repository.loadFilteredTasks(filter, today))
+        emit(list.snapshot())
+        repository.taskChanges(fromSeq).collect { changes ->
+            val ids = changes.mapTo(HashSet()) { it.taskId }
+            if (ids.size > MAX_PATCHED_TASKS) {
+                list = FilteredTaskList(filter, today, repository.loadFilteredTasks(filter, today))
+                emit(list.snapshot())
+            } else if (list.apply(ids, repository.getTaskItems(ids))) {
+                emit(list.snapshot())
             }
         }
-        return CategorizedTasks(today, tomorrow, upcoming, completed.sortedByDescending { it.completionDate })
     }
 
-    private fun isSameDay(cal1: Calendar, cal2: Calendar): Boolean {
-        return cal1.get(Calendar.YEAR) == cal2.get(Calendar.YEAR) &&
-                cal1.get(Calendar.DAY_OF_YEAR) == cal2.get(Calendar.DAY_OF_YEAR)
-    }
+    /** Pending-task counts of the date chips, grouped by due day in SQL, for the current [today]. */
+    @OptIn(ExperimentalCoroutinesApi::class)
+    val pendingSectionCounts: LiveData<PendingSectionCounts> =
+        today.flatMapLatest { day -> repository.getPendingSectionCounts(day) }.asLiveData()
+
+    /** Totals for badges and statistics, read from counters instead of counting rows; overdue as of [today]. */
+    @OptIn(ExperimentalCoroutinesApi::class)
+    val taskStats: LiveData<TaskStats> = today.flatMapLatest { day -> repository.getTaskStats(day) }.asLiveData()
 
     private val _isLoading = MutableLiveData(false)
     val isLoading: LiveData<Boolean> = _isLoading
 
+    private val _purgeProgress = MutableLiveData<PurgeProgress?>(null)
+
+    /** Progress of a running delete-completed or delete-all, or null when none is running. */
+    val purgeProgress: LiveData<PurgeProgress?> = _purgeProgress
+
     private val _userMessageEvent = MutableLiveData<Event<UserMessage>>()
     val userMessageEvent: LiveData<Event<UserMessage>> = _userMessageEvent
 
@@ -221,24 +320,27 @@ class TaskViewModel(
         }
     }
 
-    fun toggleTaskCompletion(task: Task) = viewModelScope.launch {
+    fun toggleTaskCompletion(task: Task) = toggleTaskCompletion(task.id)
+
+    /**
+     * Toggles completion with a single UPDATE in the database (see [TaskRepository.toggleTaskCompletion]).
+     * The full [Task] is only loaded when a reopened task needs its reminder rescheduled.
+     */
+    fun toggleTaskCompletion(taskId: Int) = viewModelScope.launch {
         _isLoading.value = true
         try {
-            val isCompleted = !task.isCompleted
-            val updatedTask = task.copy(
-                isCompleted = isCompleted,
-                completionDate = if (isCompleted) Date() else null
-            )
-            when (val result = repository.update(updatedTask)) {
+            when (val result = repository.toggleTaskCompletion(taskId)) {
                 is OperationResult.Success -> {
-                    if (updatedTask.isCompleted) {
-                        AlarmScheduler.cancelReminder(application, updatedTask.id)
+                    val isCompleted = result.data
+                    if (isCompleted) {
+                        AlarmScheduler.cancelReminder(application, taskId)
                     } else {
-                        if (updatedTask.hasReminder && updatedTask.dueDate != null) {
-                            AlarmScheduler.scheduleReminder(application, updatedTask)
+                        val task = repository.getTaskByIdNonLiveData(taskId)
+                        if (task != null && task.hasReminder && task.dueDate != null) {
+                            AlarmScheduler.scheduleReminder(application, task)
                         }
                     }
-                    val messageRes = if (updatedTask.isCompleted) R.string.task_completed else R.string.task_incomplete
+                    val messageRes = if (isCompleted) R.string.task_completed else R.string.task_incomplete
                     _userMessageEvent.value = Event(UserMessage.success(messageRes))
                 }
                 is OperationResult.Error -> {
@@ -250,14 +352,14 @@ class TaskViewModel(
         }
     }
 
-    fun deleteCompletedTasks() = viewModelScope.launch {
+    /** Deletes a task shown in the list by id and cancels its reminder. */
+    fun deleteById(taskId: Int) = viewModelScope.launch {
         _isLoading.value = true
         try {
-            val completedTaskIds = repository.getCompletedTaskIds()
-            completedTaskIds.forEach { AlarmScheduler.cancelReminder(application, it) }
-            when (val result = repository.deleteCompletedTasks()) {
+            when (val result = repository.deleteById(taskId)) {
                 is OperationResult.Success -> {
-                    _userMessageEvent.value = Event(UserMessage.success(R.string.completed_tasks_deleted))
+                    AlarmScheduler.cancelReminder(application, taskId)
+                    _userMessageEvent.value = Event(UserMessage.success(R.string.task_deleted))
                 }
                 is OperationResult.Error -> {
                     _userMessageEvent.value = Event(UserMessage.error(result.message))
@@ -268,19 +370,127 @@ class TaskViewModel(
         }
     }
 
-    fun deleteAllTasks() = viewModelScope.launch {
+    /**
+     * Inserts a pending copy of the task with [taskId], appending [titleSuffix] to its title.
+     * The full [Task] is loaded so reminder and pomodoro settings are copied too.
+     */
+    fun duplicateTask(taskId: Int, titleSuffix: String) = viewModelScope.launch {
+        val task = repository.getTaskByIdNonLiveData(taskId)
+        if (task == null) {
+            _userMessageEvent.value = Event(UserMessage.error(null))
+            return@launch
+        }
+        insert(
+            task.copy(
+                id = 0,
+                title = "${task.title}$titleSuffix",
+                isCompleted = false,
+                completionDate = null,
+                createdAt = System.currentTimeMillis()
+            )
+        )
+    }
+
+    /** Loads the full [Task] behind a list row, e.g. before editing it. */
+    suspend fun loadTask(taskId: Int): Task? = repository.getTaskByIdNonLiveData(taskId)
+
+    fun deleteCompletedTasks() = purge(completedOnly = true, R.string.completed_tasks_deleted)
+
+    fun deleteAllTasks() = purge(completedOnly = false, R.string.all_tasks_deleted)
+
+    /**
+     * Deletes tasks in chunks ([TaskRepository.purgeTasks]), cancelling each chunk's alarms as it
+     * goes and publishing [purgeProgress]. Leaving the screen stops the purge after the current
+     * chunk; everything deleted so far stays deleted.
+     */
+    private fun purge(completedOnly: Boolean, @StringRes successResId: Int) = viewModelScope.launch {
         _isLoading.value = true
+        _purgeProgress.value = PurgeProgress(0, 0)
         try {
-            val allTaskIds = repository.getAllTaskIds()
-            allTaskIds.forEach { AlarmScheduler.cancelReminder(application, it) }
-            when (val result = repository.deleteAllTasks()) {
+            val result = repository.purgeTasks(
+                completedOnly,
+                onChunkDeleted = { ids -> AlarmScheduler.cancelReminders(application, ids) },
+                onProgress = { deleted, total -> _purgeProgress.value = PurgeProgress(deleted, total) }
+            )
+            when (result) {
                 is OperationResult.Success -> {
-                    _userMessageEvent.value = Event(UserMessage.success(R.string.all_tasks_deleted))
+                    _userMessageEvent.value = Event(UserMessage.success(successResId))
                 }
                 is OperationResult.Error -> {
                     _userMessageEvent.value = Event(UserMessage.error(result.message))
                 }
             }
+        } finally {
+            _isLoading.value = false
+            _purgeProgress.value = null
+        }
+    }
+
+    /** Writes every task to the document at [uri] as [format]. */
+    fun exportTasks(uri: Uri, format: TaskTransferFormat) = viewModelScope.launch {
+        _isLoading.value = true
+        try {
+            val result = withContext(Dispatchers.IO) {
+                application.contentResolver.openFileDescriptor(uri, "wt")?.let { descriptor ->
+                    ParcelFileDescriptor.AutoCloseOutputStream(descriptor).channel.use { channel ->
+                        repository.exportTasks(channel, format)
+                    }
+                }
+            }
+            _userMessageEvent.value = Event(
+                when (result) {
+                    is OperationResult.Success -> UserMessage.success(R.string.tasks_exported, result.data)
+                    is OperationResult.Error -> UserMessage.error(result.message)
+                    null -> UserMessage.error(null)
+                }
+            )
+        } catch (e: IOException) {
+            Log.e(TAG, "Could not open $uri for export", e)
+            _userMessageEvent.value = Event(UserMessage.error(null))
+        } finally {
+            _isLoading.value = false
+        }
+    }
+
+    /**
+     * Imports the tasks in the document at [uri]. The format comes from the extension of its
+     * display name, then its MIME type, and otherwise from its content, since providers often
+     * report these files as text/plain or application/octet-stream. Pending imported tasks with
+     * a reminder get it scheduled, like newly added ones.
+     */
+    fun importTasks(uri: Uri) = viewModelScope.launch {
+        _isLoading.value = true
+        try {
+            val result = withContext(Dispatchers.IO) {
+                val resolver = application.contentResolver
+                val displayName = resolver.query(uri, arrayOf(OpenableColumns.DISPLAY_NAME), null, null, null)
+                    ?.use { cursor -> if (cursor.moveToFirst()) cursor.getString(0) else null }
+                val format = TaskTransferFormat.fromFileName(displayName)
+                    ?: TaskTransferFormat.fromMimeType(resolver.getType(uri))
+                resolver.openFileDescriptor(uri, "r")?.let { descriptor ->
+                    ParcelFileDescriptor.AutoCloseInputStream(descriptor).channel.use { channel ->
+                        repository.importTasks(channel, format, onBatchInserted = { tasks ->
+                            tasks.filter { it.hasReminder && it.dueDate != null && !it.isCompleted }
+                                .forEach { AlarmScheduler.scheduleReminder(application, it) }
+                        })
+                    }
+                }
+            }
+            _userMessageEvent.value = Event(
+                when (result) {
+                    is OperationResult.Success -> UserMessage.success(
+                        R.string.tasks_imported,
+                        result.data.imported,
+                        result.data.duplicates,
+                        result.data.rejected
+                    )
+                    is OperationResult.Error -> UserMessage.error(result.message)
+                    null -> UserMessage.error(null)
+                }
+            )
+        } catch (e: IOException) {
+            Log.e(TAG, "Could not open $uri for import", e)
+            _userMessageEvent.value = Event(UserMessage.error(null))
         } finally {
             _isLoading.value = false
         }
@@ -293,27 +503,8 @@ class TaskViewModel(
     fun setFilter(filter: String) {
         _filter.value = filter
     }
-}
-
-private fun Task.isToday(): Boolean {
-    val cal = Calendar.getInstance()
-    val today = cal.get(Calendar.DAY_OF_YEAR)
-    val year = cal.get(Calendar.YEAR)
-    cal.time = this.dueDate ?: return false
-    return cal.get(Calendar.DAY_OF_YEAR) == today && cal.get(Calendar.YEAR) == year
-}
-
-private fun Task.isTomorrow(): Boolean {
-    val cal = Calendar.getInstance()
-    cal.add(Calendar.DAY_OF_YEAR, 1)
-    val tomorrow = cal.get(Calendar.DAY_OF_YEAR)
-    val year = cal.get(Calendar.YEAR)
-    cal.time = this.dueDate ?: return false
-    return cal.get(Calendar.DAY_OF_YEAR) == tomorrow && cal.get(Calendar.YEAR) == year
-}
 
-private fun Task.isUpcoming(): Boolean {
-    val cal = Calendar.getInstance()
-    cal.add(Calendar.DAY_OF_YEAR, 1)
-    return this.dueDate?.after(cal.time) ?: false
+    fun setFuzzySearch(enabled: Boolean) {
+        _fuzzySearch.value = enabled
+    }
 }
@@ -61,7 +61,7 @@ object AlarmScheduler {
             val alarmManager = context.getSystemService(Context.ALARM_SERVICE) as AlarmManager
 
             val triggerCal = Calendar.getInstance().apply {
-                time = task.dueDate
+                timeInMillis = task.dueDate
                 task.preReminderOffsetMinutes?.let { add(Calendar.MINUTE, -it) }
             }
 
@@ -134,6 +134,42 @@ object AlarmScheduler {
         }
     }
 
+    /**
+     * Brings the alarms of many tasks in line with their rows, e.g. after a restore replaced
+     * them: schedules the open tasks with a reminder and cancels the rest in one
+     * [cancelReminders] call.
+     */
+    fun syncReminders(context: Context, tasks: Collection<Task>) {
+        val (active, inactive) = tasks.partition { it.hasReminder && it.dueDate != null && !it.isCompleted }
+        cancelReminders(context, inactive.map { it.id })
+        active.forEach { scheduleReminder(context, it) }
+    }
+
+    /**
+     * Cancels the reminders of many tasks, e.g. before a bulk delete. Looks up the
+     * AlarmManager and builds the match intent once instead of once per task.
+     */
+    fun cancelReminders(context: Context, taskIds: Collection<Int>) {
+        if (taskIds.isEmpty()) return
+        val alarmManager = context.getSystemService(Context.ALARM_SERVICE) as AlarmManager
+        val intent = Intent(context, TaskReminderReceiver::class.java).apply {
+            action = TaskReminderReceiver.ACTION_SHOW_TASK_REMINDER
+        }
+        var cancelled = 0
+        for (taskId in taskIds) {
+            val pendingIntent = PendingIntent.getBroadcast(
+                context,
+                taskId,
+                intent,
+                PendingIntent.FLAG_NO_CREATE or PendingIntent.FLAG_IMMUTABLE
+            ) ?: continue
+            alarmManager.cancel(pendingIntent)
+            pendingIntent.cancel()
+            cancelled++
+        }
+        Log.i(TAG, "Cancelled $cancelled of ${taskIds.size} reminders")
+    }
+
     fun vibrate(context: Context) {
         val vibrator = context.getSystemService(Context.VIBRATOR_SERVICE) as Vibrator
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
@@ -0,0 +1,49 @@
+package com.example.smarttodo.util
+
+import java.util.TimeZone
+
+/** Where a due date falls relative to the day a [DayBucketer] was created on. */
+enum class DayBucket {
+    /** Before the start of today. */
+    OVERDUE,
+    TODAY,
+    TOMORROW,
+
+    /** From the day after tomorrow on. */
+    UPCOMING,
+
+    /** No due date. */
+    NONE
+}
+
+/**
+ * Classifies due dates into [DayBucket]s with plain millisecond comparisons. The local-day
+ * boundaries of today, tomorrow and the day after are computed once, in [zone], when the
+ * bucketer is created; after that a due date costs at most three long comparisons and no
+ * [TimeZone] lookups or allocations.
+ *
+ * The boundaries are real instants, so days that are 23 or 25 hours long because of a DST
+ * change are bucketed correctly. A bucketer is only valid for the day and zone it was created
+ * for: check [isCurrent] and create a new one after midnight or a time zone change.
+ */
+class DayBucketer(now: Long = System.currentTimeMillis(), private val zone: TimeZone = TimeZone.getDefault()) {
+
+    /** The local day [now] falls on, see [EpochDay]. */
+    val today: Int = EpochDay.of(now, zone)
+
+    val startOfToday: Long = EpochDay.startOf(today, zone)
+    val startOfTomorrow: Long = EpochDay.startOf(today + 1, zone)
+    val startOfDayAfterTomorrow: Long = EpochDay.startOf(today + 2, zone)
+
+    fun bucketOf(dueDate: Long?): DayBucket = when {
+        dueDate == null -> DayBucket.NONE
+        dueDate < startOfToday -> DayBucket.OVERDUE
+        dueDate < startOfTomorrow -> DayBucket.TODAY
+        dueDate < startOfDayAfterTomorrow -> DayBucket.TOMORROW
+        else -> DayBucket.UPCOMING
+    }
+
+    /** Whether [now] still falls on [today] in the current default zone. */
+    fun isCurrent(now: Long = System.currentTimeMillis(), currentZone: TimeZone = TimeZone.getDefault()): Boolean =
+        now in startOfToday until startOfTomorrow && currentZone.hasSameRules(zone)
+}
@@ -0,0 +1,60 @@
+package com.example.smarttodo.util
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import androidx.core.content.ContextCompat
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.flow.conflate
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.transformLatest
+
+/**
+ * The current local day as a flow of [DayBucketer]s: one for today when collection starts, and
+ * a new one whenever the day changes, either at the next local midnight
+ * ([DayBucketer.startOfTomorrow]) or because the date, time or time zone was changed. Lists and
+ * counts that depend on "today" switch to the new day with flatMapLatest on this, instead of
+ * reading [EpochDay.today] once and going stale after midnight.
+ *
+ * A broadcast that leaves the day and zone as they were ([DayBucketer.isCurrent]) emits
+ * nothing, so a clock adjusted by a few seconds reloads nothing downstream.
+ */
+object DayTicker {
+
+    private val CLOCK_ACTIONS = arrayOf(
+        Intent.ACTION_DATE_CHANGED,
+        Intent.ACTION_TIME_CHANGED,
+        Intent.ACTION_TIMEZONE_CHANGED
+    )
+
+    @OptIn(ExperimentalCoroutinesApi::class)
+    fun days(context: Context): Flow<DayBucketer> = clockChanges(context.applicationContext)
+        .transformLatest {
+            var bucketer = DayBucketer()
+            emit(bucketer)
+            while (true) {
+                delay(bucketer.startOfTomorrow - System.currentTimeMillis())
+                bucketer = DayBucketer()
+                emit(bucketer)
+            }
+        }
+        .distinctUntilChanged { previous, _ -> previous.isCurrent() }
+
+    /** Emits once when collected and then after every clock broadcast, until cancelled. */
+    private fun clockChanges(context: Context): Flow<Unit> = callbackFlow {
+        val receiver = object : BroadcastReceiver() {
+            override fun onReceive(context: Context, intent: Intent) {
+                trySend(Unit)
+            }
+        }
+        val filter = IntentFilter().apply { CLOCK_ACTIONS.forEach(::addAction) }
+        ContextCompat.registerReceiver(context, receiver, filter, ContextCompat.RECEIVER_NOT_EXPORTED)
+        trySend(Unit)
+        awaitClose { context.unregisterReceiver(receiver) }
+    }.conflate()
+}
@@ -0,0 +1,42 @@
+package com.example.smarttodo.util
+
+import java.util.TimeZone
+
+/**
+ * Local-zone day numbers: whole days since 1970-01-01 in the device's time zone. Tasks store
+ * the day their due date falls on ([com.example.smarttodo.data.Task.dueEpochDay]), so the list
+ * can group and filter by day with plain integer comparisons instead of [java.util.Calendar]
+ * arithmetic per task.
+ */
+object EpochDay {
+
+    private const val MILLIS_PER_DAY = 86_400_000L
+
+    /**
+     * The local day [millis] falls on in [zone]. Pass the zone in when converting many values:
+     * [TimeZone.getDefault] returns a new copy on every call.
+     */
+    fun of(millis: Long, zone: TimeZone = TimeZone.getDefault()): Int =
+        Math.floorDiv(millis + zone.getOffset(millis), MILLIS_PER_DAY).toInt()
+
+    fun today(): Int = of(System.currentTimeMillis())
+
+    // Zone offsets are within ±18 hours.
+    private const val MAX_OFFSET_MILLIS = 18 * 60 * 60 * 1000L
+
+    /**
+     * The first instant of local day [day] in [zone]. Usually local midnight, but in zones
+     * where a DST change skips midnight, the day starts when the clocks jump.
+     */
+    fun startOf(day: Int, zone: TimeZone = TimeZone.getDefault()): Long {
+        // The earliest instant on [day] or later. Searched rather than derived from one offset,
+        // since the offset at local midnight is only known once the instant is.
+        var low = day * MILLIS_PER_DAY - MAX_OFFSET_MILLIS
+        var high = day * MILLIS_PER_DAY + MAX_OFFSET_MILLIS
+        while (low < high) {
+            val mid = low + (high - low) / 2
+            if (of(mid, zone) >= day) high = mid else low = mid + 1
+        }
+        return low
+    }
+}
@@ -10,12 +10,13 @@ import android.os.Build
 import android.os.Handler
 import android.os.Looper
 import android.util.Log
+import com.example.smarttodo.SmartTodoApplication
+import com.example.smarttodo.data.MarkCompletedResult
 import com.example.smarttodo.data.Task
-import com.example.smarttodo.data.TaskDatabase
 import com.example.smarttodo.receiver.TaskReminderReceiver
 import com.example.smarttodo.ui.NotificationActionActivity
 import com.example.smarttodo.util.AlarmScheduler
-import kotlinx.coroutines.CoroutineScope
+import com.example.smarttodo.util.OperationResult
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
@@ -70,44 +71,50 @@ class NotificationActionReceiver : BroadcastReceiver() {
     }
 
     private fun handleCompleteAction(context: Context, taskId: Int) {
-        CoroutineScope(Dispatchers.IO).launch {
+        val app = context.applicationContext as SmartTodoApplication
+        val pendingResult = goAsync()
+        app.applicationScope.launch {
             try {
-                val taskDao = TaskDatabase.getDatabase(context).taskDao()
-                val task = taskDao.getTaskById(taskId)
+                val repository = app.repository
+                val result = repository.markCompleted(taskId)
 
-                if (task != null) {
-                    // Update task as completed
-                    taskDao.update(task.copy(isCompleted = true, completionDate = Date()))
-
-                    // Cancel notification and stop vibration on main thread
+                if (result is OperationResult.Success) {
+                    // Cancel notification and stop vibration on main thread; the toast only
+                    // when this action is what completed the task.
                     withContext(Dispatchers.Main) {
                         val notificationHelper = NotificationHelper(context)
                         notificationHelper.stopVibration()
                         notificationHelper.cancelNotification(taskId)
-                        notificationHelper.showToast("Task completed! 🎉")
+                        if (result.data == MarkCompletedResult.COMPLETED) {
+                            notificationHelper.showToast("Task completed! 🎉")
+                        }
                     }
 
-                    Log.i(TAG, "✅ Task $taskId completed successfully")
+                    Log.i(TAG, "✅ Task $taskId completion handled (${result.data})")
                 } else {
-                    Log.w(TAG, "❌ Task not found for completion: $taskId")
+                    Log.w(TAG, "❌ Could not complete task: $taskId")
                 }
             } catch (e: Exception) {
                 Log.e(TAG, "❌ Error completing task $taskId", e)
+            } finally {
+                pendingResult.finish()
             }
         }
     }
 
     // Added validation for snooze duration and improved error handling
     private fun handleDirectSnooze(context: Context, taskId: Int, snoozeDurationMillis: Long) {
-        CoroutineScope(Dispatchers.IO).launch {
-            if (snoozeDurationMillis <= 0) {
-                Log.e(TAG, "Invalid snooze duration: $snoozeDurationMillis for task $taskId")
-                return@launch
-            }
+        if (snoozeDurationMillis <= 0) {
+            Log.e(TAG, "Invalid snooze duration: $snoozeDurationMillis for task $taskId")
+            return
+        }
 
+        val app = context.applicationContext as SmartTodoApplication
+        val pendingResult = goAsync()
+        app.applicationScope.launch {
             try {
-                val taskDao = TaskDatabase.getDatabase(context).taskDao()
-                val task = taskDao.getTaskById(taskId)
+                val repository = app.repository
+                val task = repository.getTaskById(taskId)
 
                 if (task != null) {
                     // IMMEDIATELY stop vibration and cancel notification
@@ -141,6 +148,8 @@ class NotificationActionReceiver : BroadcastReceiver() {
                 }
             } catch (e: Exception) {
                 Log.e(TAG, "❌ Error snoozing task $taskId", e)
+            } finally {
+                pendingResult.finish()
             }
         }
     }
@@ -216,10 +225,12 @@ class NotificationActionReceiver : BroadcastReceiver() {
     private fun showSnoozeDialog(context: Context, taskId: Int) {
         try {
             // Get the task title from database first before cancelling notification
-            CoroutineScope(Dispatchers.IO).launch {
+            val app = context.applicationContext as SmartTodoApplication
+            val pendingResult = goAsync()
+            app.applicationScope.launch {
                 try {
-                    val taskDao = TaskDatabase.getDatabase(context).taskDao()
-                    val task = taskDao.getTaskById(taskId)
+                    val repository = app.repository
+                    val task = repository.getTaskById(taskId)
 
                     if (task != null) {
                         val taskTitle = task.title
@@ -253,6 +264,8 @@ class NotificationActionReceiver : BroadcastReceiver() {
                     }
                 } catch (e: Exception) {
                     Log.e(TAG, "❌ Error retrieving task for snooze dialog: ${e.message}")
+                } finally {
+                    pendingResult.finish()
                 }
             }
         } catch (e: Exception) {
@@ -2,8 +2,10 @@ package com.example.smarttodo.utils
 
 import android.content.Context
 import android.util.Log
+import com.example.smarttodo.SmartTodoApplication
+import com.example.smarttodo.data.MarkCompletedResult
 import com.example.smarttodo.data.Task
-import com.example.smarttodo.data.TaskDatabase
+import com.example.smarttodo.util.OperationResult
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.SupervisorJob
@@ -11,7 +13,6 @@ import kotlinx.coroutines.launch
 import kotlinx.coroutines.sync.Mutex
 import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.withContext
-import java.util.Date
 import java.util.concurrent.ConcurrentHashMap
 
 /**
@@ -42,29 +43,26 @@ object NotificationManager {
                 try {
                     Log.d(TAG, "Starting task completion for task $taskId")
 
-                    val taskDao = TaskDatabase.getDatabase(context).taskDao()
-                    val task = taskDao.getTaskById(taskId)
+                    val repository = (context.applicationContext as SmartTodoApplication).repository
+                    val result = repository.markCompleted(taskId)
 
-                    if (task != null) {
-                        // Update task as completed in a single transaction
-                        val completedTask = task.copy(
-                            isCompleted = true,
-                            completionDate = Date()
-                        )
-                        taskDao.update(completedTask)
-
-                        // Handle UI operations on main thread
+                    if (result is OperationResult.Success) {
+
+                        // Handle UI operations on main thread. The notification is stale
+                        // whatever the outcome, but only an actual completion gets the toast.
                         withContext(Dispatchers.Main) {
                             val notificationHelper = NotificationHelper(context)
                             notificationHelper.cancelNotification(taskId)
                             notificationHelper.stopVibration()
-                            notificationHelper.showToast("Task completed! 🎉")
+                            if (result.data == MarkCompletedResult.COMPLETED) {
+                                notificationHelper.showToast("Task completed! 🎉")
+                            }
                         }
 
-                        Log.i(TAG, "Task $taskId completed successfully: ${task.title}")
-                        onComplete?.invoke(true)
+                        Log.i(TAG, "Task $taskId completion handled (${result.data})")
+                        onComplete?.invoke(result.data != MarkCompletedResult.NOT_FOUND)
                     } else {
-                        Log.w(TAG, "Task not found for completion: $taskId")
+                        Log.w(TAG, "Could not complete task: $taskId")
                         onComplete?.invoke(false)
                     }
                 } catch (e: Exception) {
@@ -96,8 +94,8 @@ object NotificationManager {
                 try {
                     Log.d(TAG, "Starting task snooze for task $taskId, duration: ${snoozeDurationMillis}ms")
 
-                    val taskDao = TaskDatabase.getDatabase(context).taskDao()
-                    val task = taskDao.getTaskById(taskId)
+                    val repository = (context.applicationContext as SmartTodoApplication).repository
+                    val task = repository.getTaskById(taskId)
 
                     if (task != null) {
                         // Cancel current notification first
@@ -2,28 +2,44 @@ package com.example.smarttodo
 
 import android.app.Application
 import androidx.arch.core.executor.testing.InstantTaskExecutorRule
+import androidx.lifecycle.Observer
+import androidx.paging.PagingData
+import com.example.smarttodo.data.PendingSectionCounts
+import com.example.smarttodo.data.Priority
 import com.example.smarttodo.data.Task
+import com.example.smarttodo.data.TaskFilter
+import com.example.smarttodo.data.TaskListItem
 import com.example.smarttodo.data.TaskRepository
 import com.example.smarttodo.ui.TaskViewModel
 import com.example.smarttodo.util.AlarmScheduler
+import com.example.smarttodo.util.DayBucketer
 import com.example.smarttodo.util.OperationResult
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.flow.emptyFlow
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.flow.flowOf
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.test.UnconfinedTestDispatcher
 import kotlinx.coroutines.test.resetMain
 import kotlinx.coroutines.test.runTest
 import kotlinx.coroutines.test.setMain
 import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
 import org.junit.Before
 import org.junit.Rule
 import org.junit.Test
-import org.mockito.ArgumentCaptor
 import org.mockito.MockedStatic
 import org.mockito.Mockito.mockStatic
 import org.mockito.kotlin.any
+import org.mockito.kotlin.eq
 import org.mockito.kotlin.mock
+import org.mockito.kotlin.never
 import org.mockito.kotlin.verify
 import org.mockito.kotlin.whenever
+import java.util.TimeZone
 
 /**
  * Unit tests for the [TaskViewModel].
@@ -49,8 +65,11 @@ class TaskViewModelTest {
         taskRepository = mock()
         // Mock static calls to AlarmScheduler as it depends on Android framework
         alarmScheduler = mockStatic(AlarmScheduler::class.java)
+        // Flows the view model subscribes to as it is created.
+        whenever(taskRepository.getPendingSectionCounts(any())).thenReturn(emptyFlow())
+        whenever(taskRepository.getTaskStats(any())).thenReturn(emptyFlow())
 
-        taskViewModel = TaskViewModel(application, taskRepository)
+        taskViewModel = TaskViewModel(application, taskRepository, flowOf(DayBucketer()))
     }
 
     @After
@@ -92,34 +111,140 @@ class TaskViewModelTest {
     }
 
     @Test
-    fun `toggleTaskCompletion calls repository update`() = runTest {
+    fun `toggleTaskCompletion flips the row in the repository`() = runTest {
         val task = Task(id = 1, title = "Toggle Me", isCompleted = false)
-        val taskCaptor = ArgumentCaptor.forClass(Task::class.java)
-        whenever(taskRepository.update(taskCaptor.capture())).thenReturn(OperationResult.Success(Unit))
+        whenever(taskRepository.toggleTaskCompletion(1)).thenReturn(OperationResult.Success(true))
 
         taskViewModel.toggleTaskCompletion(task)
 
-        verify(taskRepository).update(any())
-        assert(taskCaptor.value.isCompleted)
+        verify(taskRepository).toggleTaskCompletion(1)
+        verify(taskRepository, never()).update(any())
     }
 
     @Test
-    fun `deleteCompletedTasks calls repository deleteCompletedTasks`() = runTest {
-        whenever(taskRepository.getCompletedTaskIds()).thenReturn(listOf(1, 2))
-        whenever(taskRepository.deleteCompletedTasks()).thenReturn(OperationResult.Success(2))
+    fun `deleteCompletedTasks purges completed tasks`() = runTest {
+        whenever(taskRepository.purgeTasks(eq(true), any(), any())).thenReturn(OperationResult.Success(2))
 
         taskViewModel.deleteCompletedTasks()
 
-        verify(taskRepository).deleteCompletedTasks()
+        verify(taskRepository).purgeTasks(eq(true), any(), any())
     }
 
     @Test
-    fun `deleteAllTasks calls repository deleteAllTasks`() = runTest {
-        whenever(taskRepository.getAllTaskIds()).thenReturn(listOf(1, 2, 3))
-        whenever(taskRepository.deleteAllTasks()).thenReturn(OperationResult.Success(3))
+    fun `deleteAllTasks purges every task`() = runTest {
+        whenever(taskRepository.purgeTasks(eq(false), any(), any())).thenReturn(OperationResult.Success(3))
 
         taskViewModel.deleteAllTasks()
 
-        verify(taskRepository).deleteAllTasks()
+        verify(taskRepository).purgeTasks(eq(false), any(), any())
+    }
+
+    @Test
+    fun `pending section counts follow the day ticker`() = runTest {
+        val days = MutableSharedFlow<DayBucketer>(replay = 1)
+        val first = DayBucketer(NOW, UTC)
+        val next = DayBucketer(first.startOfTomorrow, UTC)
+        whenever(taskRepository.getPendingSectionCounts(first.today)).thenReturn(flowOf(PendingSectionCounts(1, 0, 0)))
+        whenever(taskRepository.getPendingSectionCounts(next.today)).thenReturn(flowOf(PendingSectionCounts(0, 1, 0)))
+        val viewModel = TaskViewModel(application, taskRepository, days)
+        val observer = Observer<PendingSectionCounts> {}
+        viewModel.pendingSectionCounts.observeForever(observer)
+
+        days.emit(first)
+        assertEquals(PendingSectionCounts(1, 0, 0), viewModel.pendingSectionCounts.value)
+        days.emit(next)
+        assertEquals(PendingSectionCounts(0, 1, 0), viewModel.pendingSectionCounts.value)
+        viewModel.pendingSectionCounts.removeObserver(observer)
+    }
+
+    @Test
+    fun `paged list starts a new pager for a new day`() = runTest {
+        val days = MutableSharedFlow<DayBucketer>(replay = 1)
+        val first = DayBucketer(NOW, UTC)
+        val next = DayBucketer(first.startOfTomorrow, UTC)
+        whenever(taskRepository.getPagedTasks(any(), any())).thenReturn(flowOf(PagingData.empty()))
+        val viewModel = TaskViewModel(application, taskRepository, days)
+        val job = launch(UnconfinedTestDispatcher(testScheduler)) { viewModel.pagedTasks.collect {} }
+
+        days.emit(first)
+        verify(taskRepository).getPagedTasks("", first.today)
+        days.emit(next)
+        verify(taskRepository).getPagedTasks("", next.today)
+        job.cancel()
+    }
+
+    @Test
+    fun `tasksToDisplay puts the chip header before the filtered search results`() = runTest {
+        val row = TaskListItem(
+            id = 1,
+            title = "Due today",
+            description = "",
+            priority = Priority.HIGH,
+            dueDate = null,
+            isCompleted = false,
+            completionDate = null,
+            createdAt = 0L,
+            dueEpochDay = null
+        )
+        whenever(application.getString(R.string.category_today)).thenReturn("Today")
+        whenever(taskRepository.getFilteredTasks(eq(TaskFilter.TODAY), any(), any(), eq(false))).thenReturn(flowOf(listOf(row)))
+
+        taskViewModel.setFilter(TaskFilter.TODAY.name)
+        taskViewModel.setSearchQuery("due")
+
+        assertEquals(listOf("Today", row), taskViewModel.tasksToDisplay.first { it.isNotEmpty() })
+    }
+
+    @Test
+    fun `fuzzy search replaces the paged ALL list with ranked results`() = runTest {
+        val row = TaskListItem(
+            id = 1,
+            title = "Buy groceries",
+            description = "",
+            priority = Priority.LOW,
+            dueDate = null,
+            isCompleted = false,
+            completionDate = null,
+            createdAt = 0L,
+            dueEpochDay = null
+        )
+        whenever(taskRepository.getFilteredTasks(eq(TaskFilter.ALL), any(), any(), eq(true))).thenReturn(flowOf(listOf(row)))
+
+        taskViewModel.setFuzzySearch(true)
+        taskViewModel.setSearchQuery("grocries")
+
+        assertEquals(listOf<Any>(row), taskViewModel.tasksToDisplay.first { it.isNotEmpty() })
+        assertFalse(taskViewModel.usesPagedList.value)
+    }
+
+    @Test
+    fun `fuzzy search under a chip keeps the ranking below the chip header`() = runTest {
+        val rows = listOf("Buy groceries", "Buy gifts").mapIndexed { i, title ->
+            TaskListItem(
+                id = i + 1,
+                title = title,
+                description = "",
+                priority = Priority.LOW,
+                dueDate = null,
+                isCompleted = false,
+                completionDate = null,
+                createdAt = 0L,
+                dueEpochDay = null
+            )
+        }
+        whenever(application.getString(R.string.category_high_priority)).thenReturn("High priority")
+        whenever(taskRepository.getFilteredTasks(eq(TaskFilter.HIGH_PRIORITY), any(), any(), eq(true))).thenReturn(flowOf(rows))
+
+        taskViewModel.setFilter(TaskFilter.HIGH_PRIORITY.name)
+        taskViewModel.setFuzzySearch(true)
+        taskViewModel.setSearchQuery("grocries")
+
+        assertEquals(listOf("High priority") + rows, taskViewModel.tasksToDisplay.first { it.isNotEmpty() })
+        assertFalse(taskViewModel.usesPagedList.value)
+    }
+
+    private companion object {
+        const val NOW = 1_700_000_000_000L
+        val UTC: TimeZone = TimeZone.getTimeZone("UTC")
     }
 }
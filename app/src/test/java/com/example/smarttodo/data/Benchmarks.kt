@@ -0,0 +1,26 @@
+package com.example.smarttodo.data
+
+import org.junit.Assume.assumeTrue
+import kotlin.system.measureNanoTime
+
+/**
+ * Shared by the `*BenchmarkTest` classes. Their timed runs load tens of thousands of rows, so
+ * they are skipped unless the tests run with `-Pbenchmarks`, e.g.
+ * `./gradlew testDebugUnitTest -Pbenchmarks --tests '*BenchmarkTest'`. Their correctness
+ * checks run at small sizes in every build.
+ */
+internal object Benchmarks {
+
+    /** Skips the calling test unless benchmarks were asked for. */
+    fun assumeEnabled() {
+        assumeTrue("benchmarks run with -Pbenchmarks", System.getProperty("benchmarks") == "true")
+    }
+
+    /** The median of [runs] timed runs of [block] after [warmupRuns] untimed ones. */
+    inline fun medianNanos(warmupRuns: Int = 2, runs: Int = 7, block: () -> Unit): Long {
+        repeat(warmupRuns) { block() }
+        val samples = LongArray(runs) { measureNanoTime(block) }
+        samples.sort()
+        return samples[runs / 2]
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.smarttodo.data
+
+import com.example.smarttodo.util.DayBucketer
+import com.example.smarttodo.util.EpochDay
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Calendar
+import java.util.TimeZone
+import kotlin.random.Random
+
+/**
+ * [CategorizedTasks.of] against the categorizations it replaced:
+ * - The old one: a [Calendar] set to every due date and compared field by field.
+ * - One [EpochDay.of] zone lookup per row.
+ * - [DayBucketer], with the day boundaries computed once.
+ *
+ * Every build checks all three agree on 1k rows. With [Benchmarks] enabled they are timed at
+ * 10k and 100k rows, and [DayBucketer] must beat the [Calendar] one.
+ */
+class CategorizedTasksBenchmarkTest {
+
+    @Test
+    fun `categorizations agree`() {
+        val zone = TimeZone.getDefault()
+        val now = System.currentTimeMillis()
+        val tasks = tasks(1_000, now)
+        val expected = calendarCategorize(tasks, now)
+        assertEquals(expected, epochDayCategorize(tasks, now, zone))
+        assertEquals(expected, CategorizedTasks.of(tasks, DayBucketer(now, zone)))
+    }
+
+    @Test
+    fun `categorization throughput`() {
+        Benchmarks.assumeEnabled()
+        val zone = TimeZone.getDefault()
+        val now = System.currentTimeMillis()
+        for (size in SIZES) {
+            val tasks = tasks(size, now)
+            val calendar = measure { calendarCategorize(tasks, now) }
+            val epochDay = measure { epochDayCategorize(tasks, now, zone) }
+            val bucketed = measure { CategorizedTasks.of(tasks, DayBucketer(now, zone)) }
+            assertTrue(
+                "rows=$size calendar=${calendar}us epochDay=${epochDay}us bucketer=${bucketed}us",
+                bucketed < calendar
+            )
+        }
+    }
+
+    /** The median time of [block] in microseconds. */
+    private fun measure(block: () -> CategorizedTasks): Long =
+        Benchmarks.medianNanos(WARMUP_RUNS, RUNS) { block() } / 1_000
+
+    private fun calendarCategorize(tasks: List<TaskListItem>, now: Long): CategorizedTasks {
+        val today = ArrayList<TaskListItem>()
+        val tomorrow = ArrayList<TaskListItem>()
+        val upcoming = ArrayList<TaskListItem>()
+        val completed = ArrayList<TaskListItem>()
+        val todayCalendar = Calendar.getInstance().apply { timeInMillis = now }
+        val tomorrowCalendar = Calendar.getInstance().apply {
+            timeInMillis = now
+            add(Calendar.DAY_OF_YEAR, 1)
+        }
+        val taskDateCalendar = Calendar.getInstance()
+        for (task in tasks) {
+            if (task.isCompleted) {
+                completed.add(task)
+                continue
+            }
+            val dueDate = task.dueDate
+            if (dueDate == null) {
+                upcoming.add(task)
+                continue
+            }
+            taskDateCalendar.timeInMillis = dueDate
+            when {
+                isSameDay(taskDateCalendar, todayCalendar) -> today.add(task)
+                isSameDay(taskDateCalendar, tomorrowCalendar) -> tomorrow.add(task)
+                else -> upcoming.add(task)
+            }
+        }
+        return CategorizedTasks(today, tomorrow, upcoming, completed.sortedByDescending { it.completionDate })
+    }
+
+    private fun isSameDay(a: Calendar, b: Calendar): Boolean =
+        a.get(Calendar.YEAR) == b.get(Calendar.YEAR) && a.get(Calendar.DAY_OF_YEAR) == b.get(Calendar.DAY_OF_YEAR)
+
+    private fun epochDayCategorize(tasks: List<TaskListItem>, now: Long, zone: TimeZone): CategorizedTasks {
+        val today = ArrayList<TaskListItem>()
+        val tomorrow = ArrayList<TaskListItem>()
+        val upcoming = ArrayList<TaskListItem>()
+        val completed = ArrayList<TaskListItem>()
+        val todayDay = EpochDay.of(now, zone)
+        for (task in tasks) {
+            if (task.isCompleted) {
+                completed.add(task)
+                continue
+            }
+            when (task.dueDate?.let { EpochDay.of(it, zone) }) {
+                todayDay -> today.add(task)
+                todayDay + 1 -> tomorrow.add(task)
+                else -> upcoming.add(task)
+            }
+        }
+        return CategorizedTasks(today, tomorrow, upcoming, completed.sortedByDescending { it.completionDate })
+    }
+
+    /** Due dates spread over the ten days around [now]; a fifth completed, a tenth undated. */
+    private fun tasks(size: Int, now: Long): List<TaskListItem> {
+        val random = Random(size)
+        return List(size) { i ->
+            val completed = i % 5 == 0
+            TaskListItem(
+                id = i + 1,
+                title = "Task $i",
+                description = "",
+                priority = Priority.entries[i % Priority.entries.size],
+                dueDate = if (i % 10 == 1) null else now + random.nextLong(-5 * DAY, 5 * DAY),
+                isCompleted = completed,
+                completionDate = if (completed) now - random.nextLong(DAY) else null,
+                createdAt = now - i,
+                dueEpochDay = null
+            )
+        }
+    }
+
+    private companion object {
+        val SIZES = intArrayOf(10_000, 100_000)
+        const val WARMUP_RUNS = 5
+        const val RUNS = 11
+        const val DAY = 86_400_000L
+    }
+}
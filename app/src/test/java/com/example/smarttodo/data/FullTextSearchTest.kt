@@ -0,0 +1,72 @@
+package com.example.smarttodo.data
+
+import android.content.Context
+import androidx.room.Room
+import androidx.test.core.app.ApplicationProvider
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+/**
+ * Searches through [TaskRepository.getTasks] with full-text search on and checks the rows
+ * match what the LIKE search finds, for words outside ASCII in particular.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class FullTextSearchTest {
+
+    private lateinit var db: TaskDatabase
+    private lateinit var dao: TaskDao
+    private lateinit var repository: TaskRepository
+
+    @Before
+    fun setup() {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        db = Room.inMemoryDatabaseBuilder(context, TaskDatabase::class.java)
+            .allowMainThreadQueries()
+            .build()
+        dao = db.taskDao()
+        repository = TaskRepository(dao, useFullTextSearch = true)
+        runBlocking {
+            dao.insertAll(
+                listOf(
+                    Task(title = "Übung macht den Meister", createdAt = 1),
+                    Task(title = "ÉCOLE primaire", description = "Inscription", createdAt = 2),
+                    Task(title = "Straße fegen", createdAt = 3),
+                    Task(title = "Buy groceries", description = "Milk, EGGS", createdAt = 4)
+                )
+            ) { _, _ -> }
+        }
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+    }
+
+    @Test
+    fun `words with uppercase non-ASCII letters are found`() = runBlocking {
+        assertEquals(listOf("Übung macht den Meister"), titles("Übung"))
+        assertEquals(listOf("Übung macht den Meister"), titles("Übu"))
+        assertEquals(listOf("ÉCOLE primaire"), titles("École"))
+        assertEquals(listOf("ÉCOLE primaire"), titles("ÉCOLE"))
+        assertEquals(listOf("Straße fegen"), titles("STRAßE"))
+    }
+
+    @Test
+    fun `full-text search folds case like LIKE does`() = runBlocking {
+        for (query in listOf("Übung", "übung", "École", "école", "ÉCOLE", "straße", "EGGS", "eggs", "Grocer")) {
+            assertEquals(query, dao.getTasks(query, null).first().map { it.id }.toSet(), ids(query))
+        }
+    }
+
+    private suspend fun titles(query: String): List<String> = repository.getTasks(query, null).first().map { it.title }
+
+    private suspend fun ids(query: String): Set<Int> = repository.getTasks(query, null).first().map { it.id }.toSet()
+}
@@ -0,0 +1,91 @@
+package com.example.smarttodo.data
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class FuzzyIndexTest {
+
+    @Test
+    fun `finds words with typos and unfinished words`() {
+        val index = FuzzyIndex()
+        index.load(sequenceOf(item(1, "Buy groceries"), item(2, "Dentist", "appointment at 9"), item(3, "Gym"), item(4, "Crème brûlée")))
+
+        assertEquals(listOf(1), index.search("grocries").map { it.id })
+        assertEquals(listOf(1), index.search("groc").map { it.id })
+        assertEquals(listOf(2), index.search("dentst").map { it.id })
+        assertEquals(listOf(2), index.search("appointmnet").map { it.id })
+        // Words of up to two characters must match exactly.
+        assertEquals(listOf(3), index.search("gy").map { it.id })
+        assertEquals(emptyList<Int>(), index.search("gm").map { it.id })
+        // Case is folded beyond ASCII.
+        assertEquals(listOf(4), index.search("CRÈME").map { it.id })
+        assertEquals(emptyList<Int>(), index.search("--").map { it.id })
+    }
+
+    @Test
+    fun `every query word must match`() {
+        val index = FuzzyIndex()
+        index.load(sequenceOf(item(1, "Buy milk"), item(2, "Buy bread"), item(3, "Milk the goat")))
+
+        assertEquals(listOf(1), index.search("buy mlk").map { it.id })
+        assertEquals(listOf(1, 3), index.search("milk").map { it.id })
+    }
+
+    @Test
+    fun `closer and title matches rank first`() {
+        val index = FuzzyIndex()
+        index.load(
+            sequenceOf(
+                item(1, "Call", "about the invoice from the plumber", priority = Priority.HIGH),
+                item(2, "Pay invoise", priority = Priority.HIGH),
+                item(3, "Pay invoice", priority = Priority.LOW)
+            )
+        )
+
+        // Exact title match, then the one-letter typo in a title, then the description.
+        assertEquals(listOf(3, 2, 1), index.search("invoice").map { it.id })
+    }
+
+    @Test
+    fun `changes update the terms`() {
+        val index = FuzzyIndex()
+        index.load(sequenceOf(item(1, "Grocery run"), item(2, "Laundry")))
+
+        index.apply(listOf(1, 2, 3), mapOf(1 to item(1, "Pharmacy run"), 3 to item(3, "Grocery list")))
+
+        assertEquals(listOf(3), index.search("grocey").map { it.id })
+        assertEquals(listOf(1), index.search("pharmcy").map { it.id })
+        assertEquals(emptyList<Int>(), index.search("laundry").map { it.id })
+        assertEquals(2, index.size)
+    }
+
+    @Test
+    fun `is ready only between a load and an invalidate`() {
+        val index = FuzzyIndex()
+        assertFalse(index.isReady)
+        index.load(emptySequence())
+        assertTrue(index.isReady)
+        assertEquals(emptyList<TaskListItem>(), index.search("milk"))
+        index.invalidate()
+        assertFalse(index.isReady)
+    }
+
+    private fun item(
+        id: Int,
+        title: String,
+        description: String = "",
+        priority: Priority = Priority.MEDIUM
+    ) = TaskListItem(
+        id = id,
+        title = title,
+        description = description,
+        priority = priority,
+        dueDate = null,
+        isCompleted = false,
+        completionDate = null,
+        createdAt = id.toLong(),
+        dueEpochDay = null
+    )
+}
@@ -0,0 +1,125 @@
+package com.example.smarttodo.data
+
+import android.content.Context
+import androidx.room.Room
+import androidx.test.core.app.ApplicationProvider
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+/**
+ * Checks that [SearchNarrowing] gives exactly the rows and order SQLite gives for the longer
+ * query, for both the FTS and the LIKE search.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class SearchNarrowingTest {
+
+    private lateinit var db: TaskDatabase
+    private lateinit var dao: TaskDao
+
+    @Before
+    fun setup() {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        db = Room.inMemoryDatabaseBuilder(context, TaskDatabase::class.java)
+            .allowMainThreadQueries()
+            .build()
+        dao = db.taskDao()
+        runBlocking {
+            dao.insertAll(
+                listOf(
+                    Task(title = "Groceries", description = "milk, EGGS", priority = Priority.LOW, createdAt = 1),
+                    Task(title = "Grow tomatoes", description = "buy groceries first", priority = Priority.HIGH, createdAt = 2),
+                    Task(title = "Call Greg", description = "re: groundwork", priority = Priority.MEDIUM, createdAt = 3),
+                    Task(title = "Ägypten-Reise", description = "grobe Planung", priority = Priority.MEDIUM, createdAt = 4),
+                    Task(title = "buy-milk", description = "", priority = Priority.HIGH, createdAt = 5),
+                    Task(title = "Eggs", description = "buy MILK and eggs", priority = Priority.LOW, createdAt = 6)
+                )
+            ) { _, _ -> }
+        }
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+    }
+
+    @Test
+    fun `narrowing matches the full-text search`() = runBlocking {
+        for ((previous, query) in PAIRS) {
+            assertTrue(SearchNarrowing.canNarrow(previous, query))
+            val narrowed = SearchNarrowing.narrow(ftsSearch(previous), query, fullText = true)
+            assertEquals("$previous -> $query", ftsSearch(query), narrowed)
+        }
+    }
+
+    @Test
+    fun `narrowing matches the LIKE search`() = runBlocking {
+        for ((previous, query) in PAIRS) {
+            val narrowed = SearchNarrowing.narrow(dao.getTasks(previous, null).first(), query, fullText = false)
+            assertEquals("$previous -> $query", dao.getTasks(query, null).first(), narrowed)
+        }
+    }
+
+    @Test
+    fun `queries that could match differently are not narrowed`() {
+        assertFalse(SearchNarrowing.canNarrow("", "g"))
+        assertFalse(SearchNarrowing.canNarrow("gro", "gr"))
+        assertFalse(SearchNarrowing.canNarrow("gro", "gra"))
+        assertFalse(SearchNarrowing.canNarrow("\"bu", "\"buy"))
+        assertFalse(SearchNarrowing.canNarrow("a", "a_b"))
+        assertFalse(SearchNarrowing.canNarrow("gro", "grö"))
+    }
+
+    @Test
+    fun `typing a longer query narrows the live results`() = runBlocking {
+        val queries = MutableStateFlow("gro")
+        val repository = TaskRepository(dao)
+        val collected = mutableListOf<List<TaskListItem>>()
+        val job = launch { repository.searchTasks(queries).collect { collected += it } }
+        // Waits for each result before typing on, as debounced input would.
+        awaitLatest(collected, ftsSearch("gro"))
+        queries.value = "groc"
+        awaitLatest(collected, ftsSearch("groc"))
+        // Still live: a write is seen through the narrowed search.
+        dao.insert(Task(title = "Grocery run", createdAt = 7))
+        awaitLatest(collected, ftsSearch("groc"))
+        job.cancel()
+
+        assertEquals(3, ftsSearch("groc").size)
+    }
+
+    private suspend fun awaitLatest(collected: List<List<TaskListItem>>, expected: List<TaskListItem>) {
+        withTimeout(5_000) {
+            while (collected.lastOrNull() != expected) delay(10)
+        }
+    }
+
+    private suspend fun ftsSearch(query: String): List<TaskListItem> =
+        dao.searchTasks(FtsQueryBuilder.build(query)!!, FtsQueryBuilder.buildForTitle(query)!!, null).first()
+
+    private companion object {
+        val PAIRS = listOf(
+            "gr" to "gro",
+            "gro" to "groc",
+            "gro" to "grow",
+            "g" to "gre",
+            "buy" to "buy m",
+            "buy m" to "buy milk",
+            "eg" to "eggs",
+            "mil" to "milk eg"
+        )
+    }
+}
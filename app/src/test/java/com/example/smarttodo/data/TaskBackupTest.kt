@@ -0,0 +1,156 @@
+package com.example.smarttodo.data
+
+import android.content.Context
+import android.content.SharedPreferences
+import androidx.room.Room
+import androidx.test.core.app.ApplicationProvider
+import com.example.smarttodo.util.OperationResult
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import java.io.File
+
+/**
+ * Runs [TaskBackup] through a full base, an incremental segment with edits, inserts and
+ * deletes, and a restore of both onto an emptied table.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class TaskBackupTest {
+
+    private lateinit var db: TaskDatabase
+    private lateinit var dao: TaskDao
+    private lateinit var repository: TaskRepository
+    private lateinit var directory: File
+    private lateinit var prefs: SharedPreferences
+
+    @Before
+    fun setup() {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        db = Room.inMemoryDatabaseBuilder(context, TaskDatabase::class.java)
+            .addCallback(TaskDatabase.CHANGE_LOG_CALLBACK)
+            .allowMainThreadQueries()
+            .build()
+        dao = db.taskDao()
+        repository = TaskRepository(dao)
+        directory = File(context.filesDir, "backup-test")
+        prefs = context.getSharedPreferences("task_backup_test", Context.MODE_PRIVATE)
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+        directory.deleteRecursively()
+        prefs.edit().clear().commit()
+    }
+
+    @Test
+    fun `segment holds only the changes and restores on top of the base`() = runBlocking {
+        // All in the base, so none of these is in the segment unless changed afterwards.
+        dao.insertAll(List(BATCH_CHUNK_SIZE + 20) { Task(title = "Task $it", createdAt = NOW + it) }) { _, _ -> }
+        val backup = TaskBackup(repository, directory, prefs)
+        assertTrue(backup.run())
+        val base = directory.listFiles()!!.single()
+
+        val tasks = dao.getAllTasksNonLiveData().sortedBy { it.id }
+        repository.update(tasks[3].copy(title = "Edited"))
+        repository.delete(tasks[10])
+        repository.insert(Task(title = "Added", createdAt = NOW))
+        assertTrue(backup.run())
+
+        val segment = backup.segmentFiles().single()
+        assertTrue(segment.length() < 100)
+        assertTrue(base.length() > segment.length())
+
+        val expected = dao.getAllTasksNonLiveData().sortedBy { it.id }.map { it.copy(lastModified = 0) }
+        dao.deleteAllTasks()
+        assertEquals(OperationResult.Success(expected.size), backup.restore({}, {}))
+        assertEquals(expected, dao.getAllTasksNonLiveData().sortedBy { it.id }.map { it.copy(lastModified = 0) })
+        // The restore rewrote every row, so it compacted into a fresh base.
+        assertTrue(backup.segmentFiles().isEmpty())
+        // The edited row's old text left the full-text index with it.
+        assertEquals(listOf(tasks[3].id), search("Edited"))
+        assertEquals(emptyList<Int>(), search("\"Task 3\""))
+        assertEquals(listOf(tasks[4].id), search("\"Task 4\""))
+    }
+
+    @Test
+    fun `segment finds changed rows by change log, not by their timestamp`() = runBlocking {
+        dao.insertAll(List(3) { Task(title = "Task $it", createdAt = NOW + it) }) { _, _ -> }
+        val backup = TaskBackup(repository, directory, prefs)
+        assertTrue(backup.run())
+
+        // Written with a clock far behind the checkpoint's, as after a time change.
+        val stale = dao.getAllTasksNonLiveData().sortedBy { it.id }[1]
+        dao.update(stale.copy(title = "Stale clock", lastModified = 0))
+        assertTrue(backup.run())
+        assertEquals(1, backup.segmentFiles().size)
+
+        dao.deleteAllTasks()
+        assertEquals(OperationResult.Success(3), backup.restore({}, {}))
+        assertEquals("Stale clock", dao.getTaskByIdNonLiveData(stale.id)?.title)
+    }
+
+    @Test
+    fun `archived tasks stay in the archive across a restore`() = runBlocking {
+        dao.insertAll(
+            listOf(
+                Task(title = "Open", createdAt = NOW),
+                Task(title = "Done", createdAt = NOW, isCompleted = true, completionDate = NOW)
+            )
+        ) { _, _ -> }
+        val backup = TaskBackup(repository, directory, prefs)
+        assertTrue(backup.run())
+        val done = dao.getAllTasksNonLiveData().single { it.isCompleted }
+        assertEquals(OperationResult.Success(1), repository.archiveCompletedTasks(0))
+        assertTrue(backup.run())
+
+        assertEquals(OperationResult.Success(1), backup.restore({}, {}))
+        assertEquals(listOf("Open"), dao.getAllTasksNonLiveData().map { it.title })
+        assertEquals(1, dao.getArchivedTaskCount())
+        assertEquals("Done", dao.getArchivedTaskById(done.id)?.title)
+    }
+
+    @Test
+    fun `restore reports the restored tasks and the removed ids after the commit`() = runBlocking {
+        dao.insertAll(List(3) { Task(title = "Task $it", createdAt = NOW + it) }) { _, _ -> }
+        val backup = TaskBackup(repository, directory, prefs)
+        assertTrue(backup.run())
+        val kept = dao.getAllTasksNonLiveData().map { it.id }.sorted()
+        val added = dao.insert(Task(title = "Added after the backup", createdAt = NOW)).toInt()
+
+        val restored = ArrayList<Int>()
+        val removed = ArrayList<Int>()
+        backup.restore(onRestored = { page ->
+            // Called after the commit, so the rows are already readable.
+            assertEquals(page.size, page.count { dao.getTaskByIdNonLiveData(it.id) != null })
+            restored += page.map { it.id }
+        }, onRemoved = { removed += it })
+
+        assertEquals(kept, restored)
+        assertEquals(listOf(added), removed)
+    }
+
+    @Test
+    fun `nothing changed writes no segment`() = runBlocking {
+        dao.insert(Task(title = "Only"))
+        val backup = TaskBackup(repository, directory, prefs)
+        assertTrue(backup.run())
+        assertTrue(backup.run())
+        assertTrue(backup.segmentFiles().isEmpty())
+    }
+
+    private suspend fun search(query: String): List<Int> =
+        dao.searchTasks(FtsQueryBuilder.build(query)!!, FtsQueryBuilder.buildForTitle(query)!!, null).first().map { it.id }
+
+    private companion object {
+        const val NOW = 1_700_000_000_000L
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.smarttodo.data
+
+import android.content.Context
+import androidx.room.Room
+import androidx.test.core.app.ApplicationProvider
+import com.example.smarttodo.util.EpochDay
+import com.example.smarttodo.util.OperationResult
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import java.util.TimeZone
+
+/**
+ * Exercises the [TaskDao] batch methods with more ids than fit in one `IN (...)` list, so the
+ * chunking across [BATCH_CHUNK_SIZE] boundaries is covered.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class TaskBatchDaoTest {
+
+    private lateinit var db: TaskDatabase
+    private lateinit var dao: TaskDao
+
+    @Before
+    fun setup() {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        db = Room.inMemoryDatabaseBuilder(context, TaskDatabase::class.java)
+            .allowMainThreadQueries()
+            .build()
+        dao = db.taskDao()
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+    }
+
+    @Test
+    fun `batch methods cover every id across chunks`() = runBlocking {
+        val total = BATCH_CHUNK_SIZE * 2 + 7
+        val tasks = List(total) { i -> Task(title = "Task $i", dueDate = if (i % 2 == 0) DUE else null) }
+        val progress = mutableListOf<Int>()
+
+        val ids = dao.insertAll(tasks) { done, _ -> progress.add(done) }.map { it.toInt() }
+        assertEquals(total, ids.size)
+        assertEquals(listOf(BATCH_CHUNK_SIZE, BATCH_CHUNK_SIZE * 2, total), progress)
+
+        assertEquals(total, dao.setCompletedByIds(ids, true, NOW) { _, _ -> })
+        assertEquals(total, dao.getCompletedTaskCount())
+        assertTrue(dao.getCompletedTasksNonLiveData().all { it.completionDate == NOW })
+
+        val dated = (total + 1) / 2
+        assertEquals(dated, dao.shiftDueDates(ids, DAY, NOW) { _, _ -> })
+        assertEquals(DUE + DAY, dao.getTaskByIdNonLiveData(ids.first())?.dueDate)
+        assertEquals(EpochDay.of(DUE + DAY), dao.getTaskByIdNonLiveData(ids.first())?.dueEpochDay)
+
+        val renamed = dao.getAllTasksNonLiveData().map { it.copy(title = it.title.uppercase()) }
+        assertEquals(total, dao.updateAll(renamed) { _, _ -> })
+
+        assertEquals(total - 1, dao.deleteByIds(ids.drop(1)) { _, _ -> })
+        assertEquals(1, dao.getTaskCount())
+        assertEquals("TASK 0", dao.getTaskByIdNonLiveData(ids.first())?.title)
+    }
+
+    @Test
+    fun `purge deletes in chunks and reports every id`() = runBlocking {
+        val total = BATCH_CHUNK_SIZE * 2 + 7
+        dao.insertAll(List(total) { i -> Task(title = "Task $i", isCompleted = i % 2 == 0) }) { _, _ -> }
+        val deletedIds = mutableListOf<Int>()
+        val progress = mutableListOf<Int>()
+
+        val result = TaskRepository(dao).purgeTasks(
+            completedOnly = false,
+            onChunkDeleted = { deletedIds += it },
+            onProgress = { deleted, _ -> progress.add(deleted) }
+        )
+
+        assertEquals(OperationResult.Success(total), result)
+        assertEquals(total, deletedIds.toSet().size)
+        assertEquals(listOf(BATCH_CHUNK_SIZE, BATCH_CHUNK_SIZE * 2, total), progress)
+        assertEquals(0, dao.getTaskCount())
+    }
+
+    @Test
+    fun `relayed batch progress ends at the total before the batch returns`() = runBlocking {
+        val total = BATCH_CHUNK_SIZE * 2 + 7
+        val reported = mutableListOf<Int>()
+
+        val result = TaskRepository(dao).insertAll(List(total) { i -> Task(title = "Task $i") }) { done, _ ->
+            synchronized(reported) { reported += done }
+        }
+
+        assertEquals(total, (result as OperationResult.Success).data.size)
+        synchronized(reported) {
+            assertEquals(total, reported.last())
+            assertEquals(reported.sorted(), reported)
+        }
+    }
+
+    @Test
+    fun `purges empty the archive too`() = runBlocking {
+        val repository = TaskRepository(dao)
+        dao.insertAll(List(5) { i -> Task(title = "Old $i", isCompleted = i < 2, completionDate = if (i < 2) NOW else null) }) { _, _ -> }
+        assertEquals(OperationResult.Success(2), repository.archiveCompletedTasks(0))
+        dao.insert(Task(title = "Done recently", isCompleted = true, completionDate = System.currentTimeMillis()))
+
+        assertEquals(OperationResult.Success(3), repository.purgeTasks(completedOnly = true))
+        assertEquals(0, dao.getArchivedTaskCount())
+        assertEquals(3, dao.getTaskCount())
+
+        dao.insert(Task(title = "Done long ago", isCompleted = true, completionDate = NOW))
+        assertEquals(OperationResult.Success(1), repository.archiveCompletedTasks(0))
+        assertEquals(OperationResult.Success(4), repository.purgeTasks(completedOnly = false))
+        assertEquals(0, dao.getArchivedTaskCount())
+        assertEquals(0, dao.getTaskCount())
+    }
+
+    @Test
+    fun `streams visit every row once in keyset pages`() = runBlocking {
+        val total = BATCH_CHUNK_SIZE * 2 + 7
+        val ids = dao.insertAll(List(total) { i -> Task(title = "Task $i", isCompleted = i % 3 == 0) }) { _, _ -> }
+            .map { it.toInt() }
+        val repository = TaskRepository(dao)
+
+        val pages = repository.streamTasks().toList()
+        assertEquals(listOf(BATCH_CHUNK_SIZE, BATCH_CHUNK_SIZE, 7), pages.map { it.size })
+        assertEquals(ids, pages.flatten().map { it.id })
+
+        val completedIds = ids.filterIndexed { i, _ -> i % 3 == 0 }
+        assertEquals(completedIds, repository.streamTaskIds(completedOnly = true, pageSize = 100).toList().flatten())
+        assertEquals(completedIds, repository.streamTasks(completedOnly = true, pageSize = 100).toList().flatten().map { it.id })
+
+        // An exact multiple of the page size ends on an empty read, not an empty page.
+        assertEquals(listOf(total), repository.streamTaskIds(pageSize = total).toList().map { it.size })
+    }
+
+    @Test
+    fun `due days follow the time zone they are computed in`() = runBlocking {
+        val utc = TimeZone.getTimeZone("UTC")
+        val tokyo = TimeZone.getTimeZone("Asia/Tokyo")
+        // NOW is 22:13 UTC, which is already the next morning in Tokyo.
+        val id = dao.insert(Task(title = "Flight", dueDate = NOW)).toInt()
+        val undated = dao.insert(Task(title = "Someday")).toInt()
+
+        assertEquals(1, dao.refreshAllDueEpochDays(utc))
+        val utcDay = EpochDay.of(NOW, utc)
+        assertEquals(utcDay, dao.getTaskByIdNonLiveData(id)?.dueEpochDay)
+        assertEquals(0, dao.refreshAllDueEpochDays(utc))
+
+        assertEquals(1, dao.refreshAllDueEpochDays(tokyo))
+        assertEquals(utcDay + 1, dao.getTaskByIdNonLiveData(id)?.dueEpochDay)
+        assertNull(dao.getTaskByIdNonLiveData(undated)?.dueEpochDay)
+    }
+
+    @Test
+    fun `archiving moves only old completed tasks and restoring brings them back`() = runBlocking {
+        val old = dao.insert(Task(title = "Old", isCompleted = true, completionDate = NOW - 40 * DAY)).toInt()
+        dao.insert(Task(title = "Recent", isCompleted = true, completionDate = NOW))
+        dao.insert(Task(title = "Pending"))
+
+        assertEquals(1, dao.archiveCompletedBefore(NOW - 30 * DAY, NOW, BATCH_CHUNK_SIZE))
+        assertEquals(0, dao.archiveCompletedBefore(NOW - 30 * DAY, NOW, BATCH_CHUNK_SIZE))
+        assertEquals(2, dao.getTaskCount())
+        assertNull(dao.getTaskById(old))
+        val archived = dao.getArchivedTaskById(old)!!
+        assertEquals(NOW, archived.archivedAt)
+
+        dao.restoreFromArchive(archived.toTask())
+        assertEquals(0, dao.getArchivedTaskCount())
+        assertEquals(Task(id = old, title = "Old", isCompleted = true, createdAt = archived.createdAt, completionDate = NOW - 40 * DAY), dao.getTaskById(old))
+    }
+
+    private companion object {
+        const val NOW = 1_700_000_000_000L
+        const val DUE = NOW + 3_600_000L
+        const val DAY = 86_400_000L
+    }
+}
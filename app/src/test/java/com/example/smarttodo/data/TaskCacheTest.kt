@@ -0,0 +1,79 @@
+package com.example.smarttodo.data
+
+import android.content.Context
+import androidx.room.Room
+import androidx.test.core.app.ApplicationProvider
+import com.example.smarttodo.util.OperationResult
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class TaskCacheTest {
+
+    private lateinit var db: TaskDatabase
+    private lateinit var scope: CoroutineScope
+    private lateinit var cache: TaskCache
+    private lateinit var repository: TaskRepository
+
+    @Before
+    fun setup() {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        db = Room.inMemoryDatabaseBuilder(context, TaskDatabase::class.java)
+            .addCallback(TaskDatabase.CHANGE_LOG_CALLBACK)
+            .allowMainThreadQueries()
+            .build()
+        scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+        cache = TaskCache()
+        repository = TaskRepository(
+            db.taskDao(),
+            writeQueue = TaskWriteQueue(db, scope),
+            taskCache = cache,
+            changeFeedScope = scope
+        )
+    }
+
+    @After
+    fun tearDown() {
+        scope.cancel()
+        db.close()
+    }
+
+    @Test
+    fun `reading back a written task is served from the cache`() = runBlocking {
+        val id = (repository.insert(Task(title = "Pay rent")) as OperationResult.Success).data.toInt()
+        assertEquals("Pay rent", repository.getTaskByIdNonLiveData(id)?.title)
+
+        repository.update(Task(id = id, title = "Pay rent today"))
+        assertEquals("Pay rent today", repository.getTaskById(id)?.title)
+
+        assertEquals(TaskCache.Stats(hits = 2, misses = 0, size = 1), repository.getCacheStats())
+    }
+
+    @Test
+    fun `completion changes are never served stale`() = runBlocking {
+        val id = (repository.insert(Task(title = "Call mum")) as OperationResult.Success).data.toInt()
+
+        repository.toggleTaskCompletion(id)
+        assertTrue(repository.getTaskById(id)?.isCompleted == true)
+        repository.markCompleted(id)
+        assertTrue(repository.getTaskById(id)?.isCompleted == true)
+        repository.toggleTaskCompletion(id)
+        assertEquals(false, repository.getTaskById(id)?.isCompleted)
+        assertEquals(false, repository.getTaskById(id)?.isCompleted)
+
+        // The last read after the final toggle is the only one that could be served from memory.
+        assertEquals(1, repository.getCacheStats()?.hits)
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.smarttodo.data
+
+import android.content.Context
+import androidx.room.Room
+import androidx.test.core.app.ApplicationProvider
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+/**
+ * Checks that the triggers installed by [TaskDatabase.CHANGE_LOG_CALLBACK] log every kind of
+ * write to 'tasks', including the single-statement and batch writes that bypass @Update.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class TaskChangeFeedTest {
+
+    private lateinit var db: TaskDatabase
+    private lateinit var dao: TaskDao
+
+    @Before
+    fun setup() {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        db = Room.inMemoryDatabaseBuilder(context, TaskDatabase::class.java)
+            .addCallback(TaskDatabase.CHANGE_LOG_CALLBACK)
+            .allowMainThreadQueries()
+            .build()
+        dao = db.taskDao()
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+    }
+
+    @Test
+    fun `every write to tasks is logged in order`() = runBlocking {
+        val start = dao.getLatestChangeSeq()
+        val a = dao.insert(Task(title = "a")).toInt()
+        val b = dao.insert(Task(title = "b")).toInt()
+        dao.toggleCompletion(a, NOW)
+        dao.setCompletedByIds(listOf(a, b), false, NOW) { _, _ -> }
+        dao.deleteById(b)
+
+        val changes = dao.getChangesAfter(start)
+
+        assertEquals(
+            listOf(
+                a to TaskChange.OP_INSERT,
+                b to TaskChange.OP_INSERT,
+                a to TaskChange.OP_UPDATE,
+                a to TaskChange.OP_UPDATE,
+                b to TaskChange.OP_UPDATE,
+                b to TaskChange.OP_DELETE
+            ),
+            changes.map { it.taskId to it.op }
+        )
+        assertEquals(changes.map { it.seq }.sorted(), changes.map { it.seq })
+        assertEquals(changes.last().seq, dao.getLatestChangeSeq())
+    }
+
+    @Test
+    fun `the write queue prunes the log behind its slowest reader`() = runBlocking {
+        val writerScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+        try {
+            val queue = TaskWriteQueue(db, writerScope)
+            suspend fun insertMany(count: Int) {
+                queue.run { it.insertAll(List(count) { i -> Task(title = "Task $i") }) { _, _ -> } }
+                // The prune runs between batches, so it is done once a later write returns.
+                queue.insert(Task(title = "sync"))
+            }
+            val reader = queue.changeLogReaders.open(dao.getLatestChangeSeq())
+
+            insertMany(TaskDatabase.CHANGE_LOG_RETENTION * 2)
+            assertEquals(1L, dao.getOldestChangeSeq())
+
+            reader.close()
+            insertMany(TaskDatabase.CHANGE_LOG_RETENTION)
+            assertTrue(dao.getOldestChangeSeq() > 1L)
+            assertTrue(dao.getLatestChangeSeq() - dao.getOldestChangeSeq() >= TaskDatabase.CHANGE_LOG_RETENTION)
+        } finally {
+            writerScope.cancel()
+        }
+    }
+
+    private companion object {
+        const val NOW = 1_700_000_000_000L
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.smarttodo.data
+
+import android.content.Context
+import androidx.room.Room
+import androidx.test.core.app.ApplicationProvider
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+/**
+ * Runs `EXPLAIN QUERY PLAN` for every [TaskDao] query and fails if SQLite would scan the
+ * 'tasks' table without an index or build a temporary B-tree to sort.
+ *
+ * The cases explain the [TaskSql] constants the DAO's @Query annotations use, with the
+ * arguments given by parameter name. Paged queries are wrapped the way Room's paging source
+ * runs them. A separate test fails when a DAO method is added without a plan case here.
+ * Queries that cannot avoid a scan or a sort are listed with the reason and the allowance.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class TaskDaoQueryPlanTest {
+
+    private lateinit var db: TaskDatabase
+
+    @Before
+    fun setup() {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        db = Room.inMemoryDatabaseBuilder(context, TaskDatabase::class.java)
+            .allowMainThreadQueries()
+            .build()
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+    }
+
+    @Test
+    fun `every TaskDao method is covered`() {
+        // Compiler-generated helpers for default methods (synthetic or '$'-named) are not queries.
+        val daoMethods = TaskDao::class.java.declaredMethods
+            .filterNot { it.isSynthetic || '$' in it.name }
+            .map { it.name }
+            .toSet()
+        val covered = PLAN_CASES.map { it.method }.toSet() + NON_QUERY_METHODS
+        assertEquals("TaskDao methods without a query plan case", emptySet<String>(), daoMethods - covered)
+    }
+
+    @Test
+    fun `no query scans tasks or sorts with a temp b-tree unless allowed`() {
+        val failures = PLAN_CASES.mapNotNull { case ->
+            val plan = explain(case.sql, case.args)
+            val problems = mutableListOf<String>()
+            if (!case.allowScan && plan.any { FULL_SCAN.containsMatchIn(it) }) problems.add("full table scan")
+            if (!case.allowTempBTree && plan.any { it.contains("USE TEMP B-TREE") }) problems.add("temp b-tree sort")
+            if (problems.isEmpty()) null else "${case.method}: ${problems.joinToString()} in $plan"
+        }
+        assertTrue(failures.joinToString("\n"), failures.isEmpty())
+    }
+
+    private fun explain(sql: String, args: Map<String, Any?>): List<String> {
+        // SQLite numbers named parameters by their first appearance; a repeated name reuses it.
+        val names = PARAMETER.findAll(sql).map { it.groupValues[1] }.distinct()
+        val values = names.map { args.getValue(it) }.toList().toTypedArray()
+        db.query("EXPLAIN QUERY PLAN $sql", values).use { cursor ->
+            val detail = cursor.getColumnIndexOrThrow("detail")
+            val rows = mutableListOf<String>()
+            while (cursor.moveToNext()) rows.add(cursor.getString(detail))
+            return rows
+        }
+    }
+
+    private class PlanCase(
+        val method: String,
+        val sql: String,
+        val args: Map<String, Any?> = emptyMap(),
+        val allowScan: Boolean = false,
+        val allowTempBTree: Boolean = false,
+        @Suppress("unused") val reason: String = ""
+    )
+
+    private companion object {
+        // "SCAN tasks" / "SCAN TABLE tasks" not followed by "USING ... INDEX". An in-order walk of
+        // an index is accepted: it is how SQLite avoids sorting.
+        val FULL_SCAN = Regex("SCAN (TABLE )?tasks\\b(?! USING)")
+
+        val PARAMETER = Regex(":(\\w+)")
+
+        const val DAY = 86_400_000L
+        const val NOW = 1_700_000_000_000L
+        const val TODAY = 19_675
+
+        // Insert/update/delete methods generated from annotations rather than SQL, and
+        // @Transaction methods that only call the queries covered below.
+        val NON_QUERY_METHODS = setOf(
+            "insert", "update", "delete", "insertBatch", "updateBatch",
+            "toggleCompletion", "insertAll", "updateAll", "deleteByIds", "setCompletedByIds", "shiftDueDates",
+            "updateDueEpochDays", "refreshAllDueEpochDays", "archiveCompletedBefore", "restoreFromArchive",
+            "deleteNextChunk", "replaceAllTasks", "restoreBackup"
+        )
+
+        val PLAN_CASES = listOf(
+            PlanCase("getAllTasks", TaskSql.GET_ALL_TASKS),
+            PlanCase("getTasksByCompletion", TaskSql.GET_TASKS_BY_COMPLETION, mapOf("isCompleted" to 0)),
+            PlanCase(
+                "getTasks",
+                TaskSql.GET_TASKS,
+                mapOf("isCompleted" to null, "searchQuery" to "milk"),
+                allowScan = true,
+                allowTempBTree = true,
+                reason = "LIKE fallback when full-text search is disabled; searchTasks is the indexed path"
+            ),
+            PlanCase(
+                "searchTasks",
+                TaskSql.SEARCH_TASKS,
+                mapOf("matchQuery" to "milk*", "isCompleted" to null, "titleMatchQuery" to "title:milk*"),
+                allowTempBTree = true,
+                reason = "relevance ordering; only the matching rows are sorted"
+            ),
+            PlanCase("getTasksPaged", paged(TaskSql.GET_TASKS_PAGED), mapOf("today" to TODAY)),
+            PlanCase(
+                "searchTasksPaged",
+                paged(TaskSql.SEARCH_TASKS_PAGED),
+                mapOf("today" to TODAY, "matchQuery" to "milk*", "titleMatchQuery" to "title:milk*"),
+                allowTempBTree = true,
+                reason = "title hits rank first within a section; only matching rows are sorted"
+            ),
+            PlanCase(
+                "getTasksLikePaged",
+                paged(TaskSql.GET_TASKS_LIKE_PAGED),
+                mapOf("today" to TODAY, "searchQuery" to "milk")
+            ),
+            PlanCase("getPendingTasksDueOn", TaskSql.GET_PENDING_TASKS_DUE_ON, mapOf("day" to TODAY)),
+            PlanCase("getPendingTasksDueFrom", TaskSql.GET_PENDING_TASKS_DUE_FROM, mapOf("day" to TODAY + 2)),
+            PlanCase("observePendingCountsByDueDay", TaskSql.OBSERVE_PENDING_COUNTS_BY_DUE_DAY, mapOf("fromDay" to TODAY)),
+            PlanCase("getPendingTasksByPriority", TaskSql.GET_PENDING_TASKS_BY_PRIORITY, mapOf("priority" to 3)),
+            PlanCase("getCompletedTaskItems", TaskSql.GET_COMPLETED_TASK_ITEMS),
+            PlanCase("getTaskItemsByIds", TaskSql.GET_TASK_ITEMS_BY_IDS, mapOf("ids" to 1)),
+            PlanCase("getLatestChangeSeq", TaskSql.LATEST_CHANGE_SEQ),
+            PlanCase("observeLatestChangeSeq", TaskSql.LATEST_CHANGE_SEQ),
+            PlanCase("getChangesAfter", TaskSql.GET_CHANGES_AFTER, mapOf("afterSeq" to 0L)),
+            PlanCase("getOldestChangeSeq", TaskSql.OLDEST_CHANGE_SEQ),
+            PlanCase("pruneChangesUpTo", TaskSql.PRUNE_CHANGES_UP_TO, mapOf("upToSeq" to 0L)),
+            PlanCase(
+                "getDeletedTaskIdsBetween",
+                TaskSql.GET_DELETED_TASK_IDS_BETWEEN,
+                mapOf("afterSeq" to 0L, "upToSeq" to 100L),
+                allowTempBTree = true,
+                reason = "DISTINCT over the deletes of one backup interval"
+            ),
+            PlanCase(
+                "getWrittenTaskIdsBetween",
+                TaskSql.GET_WRITTEN_TASK_IDS_BETWEEN,
+                mapOf("afterSeq" to 0L, "upToSeq" to 100L),
+                allowTempBTree = true,
+                reason = "DISTINCT over the writes of one backup interval"
+            ),
+            PlanCase("getTasksByIds", TaskSql.GET_TASKS_BY_IDS, mapOf("ids" to 1)),
+            PlanCase("getTaskById", TaskSql.GET_TASK_BY_ID, mapOf("taskId" to 1)),
+            PlanCase("getTaskByIdNonLiveData", TaskSql.GET_TASK_BY_ID, mapOf("taskId" to 1)),
+            PlanCase("deleteById", TaskSql.DELETE_BY_ID, mapOf("taskId" to 1)),
+            PlanCase("deleteBatch", TaskSql.DELETE_BATCH, mapOf("ids" to 1)),
+            PlanCase(
+                "setCompletedBatch",
+                TaskSql.SET_COMPLETED_BATCH,
+                mapOf("isCompleted" to 1, "now" to NOW, "ids" to 1)
+            ),
+            PlanCase(
+                "shiftDueDatesBatch",
+                TaskSql.SHIFT_DUE_DATES_BATCH,
+                mapOf("deltaMillis" to DAY, "now" to NOW, "ids" to 1)
+            ),
+            PlanCase("getDueDatesAfter", TaskSql.GET_DUE_DATES_AFTER, mapOf("afterId" to 0, "limit" to 500)),
+            PlanCase("getDueDatesByIds", TaskSql.GET_DUE_DATES_BY_IDS, mapOf("ids" to 1)),
+            PlanCase("setDueEpochDay", TaskSql.SET_DUE_EPOCH_DAY, mapOf("day" to TODAY, "ids" to 1)),
+            PlanCase("deleteCompletedTasks", TaskSql.DELETE_COMPLETED_TASKS),
+            PlanCase("getCompletedTaskIdsLimited", TaskSql.GET_COMPLETED_TASK_IDS_LIMITED, mapOf("limit" to 500)),
+            PlanCase(
+                "getTaskIdsLimited",
+                TaskSql.GET_TASK_IDS_LIMITED,
+                mapOf("limit" to 500),
+                allowScan = true,
+                reason = "LIMIT stops the scan after one purge chunk"
+            ),
+            PlanCase("getTasksAfter", TaskSql.GET_TASKS_AFTER, mapOf("afterId" to 0, "limit" to 500)),
+            PlanCase("getTaskItemsAfter", TaskSql.GET_TASK_ITEMS_AFTER, mapOf("afterId" to 0, "limit" to 500)),
+            PlanCase("getCompletedTasksAfter", TaskSql.GET_COMPLETED_TASKS_AFTER, mapOf("afterId" to 0, "limit" to 500)),
+            PlanCase("getTaskIdsAfter", TaskSql.GET_TASK_IDS_AFTER, mapOf("afterId" to 0, "limit" to 500)),
+            PlanCase(
+                "getCompletedTaskIdsAfter",
+                TaskSql.GET_COMPLETED_TASK_IDS_AFTER,
+                mapOf("afterId" to 0, "limit" to 500)
+            ),
+            PlanCase("getArchivableTaskIds", TaskSql.GET_ARCHIVABLE_TASK_IDS, mapOf("cutoff" to NOW, "limit" to 500)),
+            PlanCase("copyToArchive", TaskSql.COPY_TO_ARCHIVE, mapOf("now" to NOW, "ids" to 1)),
+            PlanCase("getArchivedTasksPaged", paged(TaskSql.GET_ARCHIVED_TASKS_PAGED)),
+            PlanCase("searchArchivedTasksPaged", paged(TaskSql.SEARCH_ARCHIVED_TASKS_PAGED), mapOf("searchQuery" to "milk")),
+            PlanCase("getArchivedTaskById", TaskSql.GET_ARCHIVED_TASK_BY_ID, mapOf("taskId" to 1)),
+            PlanCase("getArchivedTaskCount", TaskSql.GET_ARCHIVED_TASK_COUNT),
+            PlanCase("deleteArchivedTask", TaskSql.DELETE_ARCHIVED_TASK, mapOf("taskId" to 1)),
+            PlanCase("deleteArchivedChunk", TaskSql.DELETE_ARCHIVED_CHUNK, mapOf("limit" to 500)),
+            PlanCase("getCompletedTasksNonLiveData", TaskSql.GET_COMPLETED_TASKS),
+            PlanCase(
+                "deleteAllTasks",
+                TaskSql.DELETE_ALL_TASKS,
+                allowScan = true,
+                reason = "deletes every row; the FTS triggers rule out SQLite's truncate shortcut"
+            ),
+            PlanCase(
+                "getAllTasksNonLiveData",
+                TaskSql.GET_ALL_TASK_ROWS,
+                allowScan = true,
+                reason = "reads every row by definition"
+            ),
+            PlanCase("getCompletedTaskIds", TaskSql.GET_COMPLETED_TASK_IDS),
+            PlanCase("getAllTaskIds", TaskSql.GET_ALL_TASK_IDS),
+            PlanCase("getStatsRow", TaskSql.GET_STATS_ROW),
+            PlanCase("observeStatsRow", TaskSql.GET_STATS_ROW),
+            PlanCase("observeOverdueCountsByPriority", TaskSql.OBSERVE_OVERDUE_COUNTS_BY_PRIORITY, mapOf("today" to TODAY)),
+            PlanCase("getTaskCount", TaskSql.GET_TASK_COUNT),
+            PlanCase("getCompletedTaskCount", TaskSql.GET_COMPLETED_TASK_COUNT),
+            PlanCase("flipCompletion", TaskSql.FLIP_COMPLETION, mapOf("now" to NOW, "taskId" to 1)),
+            PlanCase("isTaskCompleted", TaskSql.IS_TASK_COMPLETED, mapOf("taskId" to 1)),
+            PlanCase("markCompleted", TaskSql.MARK_COMPLETED, mapOf("now" to NOW, "taskId" to 1))
+        )
+
+        /** [sql] as Room's paging source runs it, for a page deep into the list. */
+        fun paged(sql: String): String = "SELECT * FROM ( $sql ) LIMIT 50 OFFSET 1000"
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.smarttodo.data
+
+import android.content.Context
+import androidx.room.Room
+import androidx.room.RoomDatabase
+import androidx.test.core.app.ApplicationProvider
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import kotlin.random.Random
+import kotlin.system.measureNanoTime
+
+/**
+ * Measures by-id read latency through [TaskRepository] while another coroutine keeps committing
+ * batch inserts. Compares three setups:
+ * - Room's defaults on [Dispatchers.IO], as before [DatabaseTuning].
+ * - The same with a rollback journal, which is what Room's automatic mode picks on low-RAM devices.
+ * - [TaskDatabase.create] with the default [DatabaseTuning] and its bounded dispatcher.
+ *
+ * Every build checks the reads return the right rows on a small table; with [Benchmarks]
+ * enabled, the tuned setup's p95 latency must beat the rollback journal's.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class TaskDatabaseTuningBenchmarkTest {
+
+    private val context = ApplicationProvider.getApplicationContext<Context>()
+
+    @Test
+    fun `reads stay correct under concurrent writes`() {
+        measure("tuned", Load(seedRows = 200, readers = 2, readsPerReader = 20)) { name ->
+            val db = TaskDatabase.create(context, name, DatabaseTuning())
+            db to db.queryDispatcher
+        }
+    }
+
+    @Test
+    fun `read latency under concurrent writes`() {
+        Benchmarks.assumeEnabled()
+        val defaults = measure("defaults") { name ->
+            val db = Room.databaseBuilder(context, TaskDatabase::class.java, name).build()
+            db to Dispatchers.IO
+        }
+        val truncate = measure("truncate") { name ->
+            val db = Room.databaseBuilder(context, TaskDatabase::class.java, name)
+                .setJournalMode(RoomDatabase.JournalMode.TRUNCATE)
+                .build()
+            db to Dispatchers.IO
+        }
+        val tuned = measure("tuned") { name ->
+            val db = TaskDatabase.create(context, name, DatabaseTuning())
+            db to db.queryDispatcher
+        }
+        assertTrue("$defaults\n$truncate\n$tuned", tuned.p95 < truncate.p95)
+    }
+
+    /** How much work [measure] does. */
+    private class Load(
+        val seedRows: Int = SEED_ROWS,
+        val readers: Int = READERS,
+        val readsPerReader: Int = READS_PER_READER
+    )
+
+    /** Read latency percentiles, in microseconds. */
+    private data class Latency(val label: String, val p50: Long, val p95: Long, val p99: Long)
+
+    private fun measure(
+        label: String,
+        load: Load = Load(),
+        open: (String) -> Pair<TaskDatabase, CoroutineDispatcher>
+    ): Latency {
+        val name = "tuning-benchmark-$label.db"
+        context.deleteDatabase(name)
+        val (db, dispatcher) = open(name)
+        try {
+            return runBlocking {
+                val dao = db.taskDao()
+                val ids = dao.insertAll(List(load.seedRows) { Task(title = "Seed $it") }) { _, _ -> }.map { it.toInt() }
+                val repository = TaskRepository(dao, ioDispatcher = dispatcher)
+
+                val writer = launch(Dispatchers.IO) {
+                    var batch = 0
+                    while (isActive) {
+                        dao.insertAll(List(WRITE_BATCH) { Task(title = "Write $batch-$it") }) { _, _ -> }
+                        batch++
+                    }
+                }
+                val latencies = (0 until load.readers).map { reader ->
+                    async(Dispatchers.Default) {
+                        val random = Random(reader)
+                        LongArray(load.readsPerReader) {
+                            val id = ids[random.nextInt(ids.size)]
+                            measureNanoTime {
+                                assertEquals(id, repository.getTaskByIdNonLiveData(id)?.id)
+                            }
+                        }
+                    }
+                }.awaitAll()
+                writer.cancel()
+
+                val all = latencies.flatMap { it.asList() }.sorted()
+                Latency(label, p50 = micros(all, 0.50), p95 = micros(all, 0.95), p99 = micros(all, 0.99))
+            }
+        } finally {
+            db.close()
+            context.deleteDatabase(name)
+        }
+    }
+
+    private fun micros(sorted: List<Long>, quantile: Double): Long =
+        sorted[((sorted.size - 1) * quantile).toInt()] / 1_000
+
+    private companion object {
+        const val SEED_ROWS = 5_000
+        const val WRITE_BATCH = 50
+        const val READERS = 8
+        const val READS_PER_READER = 250
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.smarttodo.data
+
+import android.content.Context
+import androidx.paging.PagingSource
+import androidx.room.Room
+import androidx.test.core.app.ApplicationProvider
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+/**
+ * Pages through [TaskDao.getTasksPaged] and [TaskDao.getTasksLikePaged] and checks the rows
+ * come out in section order, each section in its own order. The queries get that order from
+ * one ordered subquery per section rather than from a final sort, so this pins it down.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class TaskPagedListTest {
+
+    private lateinit var db: TaskDatabase
+    private lateinit var dao: TaskDao
+
+    @Before
+    fun setup() {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        db = Room.inMemoryDatabaseBuilder(context, TaskDatabase::class.java)
+            .allowMainThreadQueries()
+            .build()
+        dao = db.taskDao()
+        val days = listOf(null, TODAY - 1, TODAY, TODAY + 1, TODAY + 5)
+        val tasks = List(ROW_COUNT) { i ->
+            val completed = i % 3 == 0
+            Task(
+                title = if (i % 2 == 0) "Milk $i" else "Bread $i",
+                priority = Priority.entries[i * 7 % 3],
+                isCompleted = completed,
+                createdAt = NOW + i * 13 % ROW_COUNT,
+                completionDate = if (completed) NOW - i * 37 % 11 * 1_000 else null,
+                dueEpochDay = days[i % days.size]
+            )
+        }
+        runBlocking { dao.insertBatch(tasks) }
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+    }
+
+    @Test
+    fun `all tasks come in section order across pages`() = runBlocking {
+        assertEquals(expected { true }, loadAll(dao.getTasksPaged(TODAY)))
+    }
+
+    @Test
+    fun `LIKE search comes in section order across pages`() = runBlocking {
+        assertEquals(expected { it.title.contains("milk", ignoreCase = true) }, loadAll(dao.getTasksLikePaged("milk", TODAY)))
+    }
+
+    /** Every row [dao] holds that passes [filter], sorted the way the paged list promises. */
+    private fun expected(filter: (TaskListItem) -> Boolean): List<Pair<Int, TaskSection>> =
+        dao.getAllTasksNonLiveData()
+            .map { TaskListItem(it.id, it.title, it.description, it.priority, it.dueDate, it.isCompleted, it.completionDate, it.createdAt, it.dueEpochDay) }
+            .filter(filter)
+            .sortedWith(
+                compareBy<TaskListItem> { sectionOf(it) }
+                    .thenByDescending { if (it.isCompleted) it.completionDate else null }
+                    .thenByDescending { it.priority.value }
+                    .thenBy { it.createdAt }
+            )
+            .map { it.id to sectionOf(it) }
+
+    private fun sectionOf(item: TaskListItem): TaskSection = when {
+        item.isCompleted -> TaskSection.COMPLETED
+        item.dueEpochDay == TODAY -> TaskSection.TODAY
+        item.dueEpochDay == TODAY + 1 -> TaskSection.TOMORROW
+        else -> TaskSection.UPCOMING
+    }
+
+    /** Loads [source] a page at a time, as the pager would while scrolling down. */
+    private suspend fun loadAll(source: PagingSource<Int, TaskWithSection>): List<Pair<Int, TaskSection>> {
+        val rows = ArrayList<Pair<Int, TaskSection>>()
+        var params: PagingSource.LoadParams<Int> = PagingSource.LoadParams.Refresh(null, PAGE_SIZE, false)
+        while (true) {
+            val page = source.load(params) as PagingSource.LoadResult.Page
+            page.data.mapTo(rows) { it.task.id to it.section }
+            val next = page.nextKey ?: return rows
+            params = PagingSource.LoadParams.Append(next, PAGE_SIZE, false)
+        }
+    }
+
+    private companion object {
+        const val ROW_COUNT = 120
+        const val PAGE_SIZE = 7
+        const val TODAY = 19_675
+        const val NOW = 1_700_000_000_000L
+    }
+}
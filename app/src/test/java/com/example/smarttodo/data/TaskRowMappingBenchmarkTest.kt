@@ -0,0 +1,150 @@
+package com.example.smarttodo.data
+
+import android.content.Context
+import android.database.Cursor
+import androidx.room.Room
+import androidx.test.core.app.ApplicationProvider
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import java.util.Date
+
+/**
+ * Cursor-to-[Task] mapping. Compares three mappings:
+ * - Room's generated mapping ([TaskDao.getAllTasksNonLiveData]).
+ * - A hand-written mapping with the current primitive columns and enum lookup tables.
+ * - The same mapping with the per-row allocations the old converters made: a [Date] per
+ *   timestamp and a `values()` scan per enum.
+ *
+ * Every build checks the three produce the same tasks; with [Benchmarks] enabled they are timed
+ * at 50k rows, where Room's mapping must reach [MIN_ROWS_PER_SECOND] and the primitive mapping
+ * must beat the legacy one.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class TaskRowMappingBenchmarkTest {
+
+    private lateinit var db: TaskDatabase
+
+    @Before
+    fun setup() {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        db = Room.inMemoryDatabaseBuilder(context, TaskDatabase::class.java)
+            .allowMainThreadQueries()
+            .build()
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+    }
+
+    @Test
+    fun `mappings agree`() = runBlocking {
+        seed(500)
+        val mapped = db.taskDao().getAllTasksNonLiveData().sortedBy { it.id }.map { it.mappedFields() }
+        assertEquals(500, mapped.size)
+        assertEquals(mapped, mapAll(::mapPrimitive).sortedBy { it.id })
+        assertEquals(mapped, mapAll(::mapLegacy).sortedBy { it.id })
+    }
+
+    @Test
+    fun `row mapping throughput at 50k rows`() = runBlocking {
+        Benchmarks.assumeEnabled()
+        seed(ROW_COUNT)
+
+        val roomNanos = Benchmarks.medianNanos { db.taskDao().getAllTasksNonLiveData() }
+        val primitiveNanos = Benchmarks.medianNanos { mapAll(::mapPrimitive) }
+        val legacyNanos = Benchmarks.medianNanos { mapAll(::mapLegacy) }
+
+        val roomRate = rowsPerSecond(roomNanos)
+        assertTrue("room mapped $roomRate rows/s", roomRate >= MIN_ROWS_PER_SECOND)
+        assertTrue(
+            "primitive mapped ${rowsPerSecond(primitiveNanos)} rows/s, legacy ${rowsPerSecond(legacyNanos)} rows/s",
+            primitiveNanos < legacyNanos
+        )
+    }
+
+    private suspend fun seed(rowCount: Int) {
+        val tasks = List(rowCount) { i ->
+            Task(
+                title = "Task $i",
+                priority = Priority.entries[i % Priority.entries.size],
+                taskType = TaskType.entries[i % TaskType.entries.size],
+                createdAt = NOW + i,
+                dueDate = if (i % 2 == 0) NOW + i * MINUTE else null
+            )
+        }
+        db.taskDao().insertAll(tasks) { _, _ -> }
+    }
+
+    /** The columns the hand-written mappings read, with every other field at its default. */
+    private fun Task.mappedFields(): Task = Task(
+        id = id,
+        title = title,
+        description = description,
+        priority = priority,
+        isCompleted = isCompleted,
+        createdAt = createdAt,
+        dueDate = dueDate,
+        completionDate = completionDate,
+        taskType = taskType
+    )
+
+    private fun mapAll(mapper: (Cursor) -> Task): List<Task> {
+        db.query(SELECT_ALL, emptyArray()).use { cursor ->
+            val rows = ArrayList<Task>(cursor.count)
+            while (cursor.moveToNext()) rows.add(mapper(cursor))
+            return rows
+        }
+    }
+
+    private fun mapPrimitive(c: Cursor): Task = Task(
+        id = c.getInt(0),
+        title = c.getString(1),
+        description = c.getString(2),
+        priority = Priority.fromValue(c.getInt(3)),
+        isCompleted = c.getInt(4) != 0,
+        createdAt = c.getLong(5),
+        dueDate = if (c.isNull(6)) null else c.getLong(6),
+        completionDate = if (c.isNull(7)) null else c.getLong(7),
+        taskType = TaskType.fromCode(c.getInt(8))
+    )
+
+    private fun mapLegacy(c: Cursor): Task {
+        val createdAt = Date(c.getLong(5))
+        val dueDate = if (c.isNull(6)) null else Date(c.getLong(6))
+        val completionDate = if (c.isNull(7)) null else Date(c.getLong(7))
+        return Task(
+            id = c.getInt(0),
+            title = c.getString(1),
+            description = c.getString(2),
+            priority = Priority.values().first { it.value == c.getInt(3) },
+            isCompleted = c.getInt(4) != 0,
+            createdAt = createdAt.time,
+            dueDate = dueDate?.time,
+            completionDate = completionDate?.time,
+            taskType = TaskType.values().first { it.code == c.getInt(8) }
+        )
+    }
+
+    private fun rowsPerSecond(nanos: Long): Long = ROW_COUNT * 1_000_000_000L / nanos.coerceAtLeast(1)
+
+    private companion object {
+        const val ROW_COUNT = 50_000
+
+        /** Far below what any device reaches; catches a mapping gone quadratic or reflective. */
+        const val MIN_ROWS_PER_SECOND = 20_000L
+        const val NOW = 1_700_000_000_000L
+        const val MINUTE = 60_000L
+
+        const val SELECT_ALL = "SELECT id, title, description, priority, isCompleted, createdAt, dueDate, " +
+            "completionDate, taskType FROM tasks"
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.smarttodo.data
+
+import android.content.Context
+import androidx.room.Room
+import androidx.test.core.app.ApplicationProvider
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+/**
+ * Compares the LIKE scan behind [TaskDao.getTasks] with the FTS lookup behind
+ * [TaskDao.searchTasks], the in-memory [TrigramIndex] and, for a misspelled query, [FuzzyIndex].
+ * Every build checks the paths agree on a small table; with [Benchmarks] enabled they are timed
+ * at 100k rows, where each index must beat the scan it replaces.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class TaskSearchBenchmarkTest {
+
+    private lateinit var db: TaskDatabase
+
+    @Before
+    fun setup() {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        db = Room.inMemoryDatabaseBuilder(context, TaskDatabase::class.java)
+            .allowMainThreadQueries()
+            .build()
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+    }
+
+    @Test
+    fun `search paths agree`() {
+        seed(2_000)
+        val items = loadItems()
+        val index = TrigramIndex().apply { load(items.asSequence()) }
+        val fuzzyIndex = FuzzyIndex().apply { load(items.asSequence()) }
+
+        val likeRows = countRows(TaskSql.GET_TASKS, likeArgs(TERM))
+        assertTrue(likeRows > 0)
+        assertEquals(likeRows, countRows(TaskSql.SEARCH_TASKS, ftsArgs(TERM)))
+        assertEquals(likeRows(TERM), index.search(TERM, null))
+        assertEquals(likeRows(FRAGMENT), index.search(FRAGMENT, null))
+        assertEquals(likeRows(TERM).map { it.id }.toSet(), fuzzyIndex.search(TYPO).map { it.id }.toSet())
+    }
+
+    @Test
+    fun `indexes beat the LIKE scan at 100k rows`() {
+        Benchmarks.assumeEnabled()
+        seed(100_000)
+        val items = loadItems()
+        val index = TrigramIndex().apply { load(items.asSequence()) }
+        val fuzzyIndex = FuzzyIndex().apply { load(items.asSequence()) }
+
+        val likeNanos = Benchmarks.medianNanos { countRows(TaskSql.GET_TASKS, likeArgs(TERM)) }
+        val ftsNanos = Benchmarks.medianNanos { countRows(TaskSql.SEARCH_TASKS, ftsArgs(TERM)) }
+        val trigramNanos = Benchmarks.medianNanos { index.search(TERM, null) }
+        val likeFragmentNanos = Benchmarks.medianNanos { countRows(TaskSql.GET_TASKS, likeArgs(FRAGMENT)) }
+        val trigramFragmentNanos = Benchmarks.medianNanos { index.search(FRAGMENT, null) }
+        val fuzzyTypoNanos = Benchmarks.medianNanos { fuzzyIndex.search(TYPO) }
+
+        assertFaster("fts", ftsNanos, "like", likeNanos)
+        assertFaster("trigram", trigramNanos, "like", likeNanos)
+        assertFaster("trigram fragment", trigramFragmentNanos, "like fragment", likeFragmentNanos)
+        assertFaster("fuzzy typo", fuzzyTypoNanos, "like", likeNanos)
+    }
+
+    private fun assertFaster(name: String, nanos: Long, baselineName: String, baselineNanos: Long) {
+        assertTrue("$name took ${nanos / 1_000}us, $baselineName ${baselineNanos / 1_000}us", nanos < baselineNanos)
+    }
+
+    // The DAO's SQL with isCompleted = NULL; named parameters bind in order of first appearance.
+    private fun likeArgs(term: String): Array<Any?> = arrayOf(null, term)
+
+    private fun ftsArgs(term: String): Array<Any?> =
+        arrayOf(FtsQueryBuilder.build(term)!!, null, FtsQueryBuilder.buildForTitle(term)!!)
+
+    private fun likeRows(term: String): List<TaskListItem> = runBlocking { db.taskDao().getTasks(term, null).first() }
+
+    private fun loadItems(): List<TaskListItem> = runBlocking {
+        val dao = db.taskDao()
+        val items = ArrayList<TaskListItem>()
+        var afterId = 0
+        while (true) {
+            val page = dao.getTaskItemsAfter(afterId, BATCH_CHUNK_SIZE)
+            items.addAll(page)
+            if (page.size < BATCH_CHUNK_SIZE) break
+            afterId = page.last().id
+        }
+        items
+    }
+
+    private fun seed(rowCount: Int) {
+        val sqlDb = db.openHelper.writableDatabase
+        sqlDb.beginTransaction()
+        try {
+            val insert = sqlDb.compileStatement(
+                "INSERT INTO tasks (title, description, priority, isCompleted, createdAt, hasReminder, " +
+                    "taskType, estimatedPomodoros, completedPomodoros) VALUES (?, ?, ?, 0, ?, 0, 2, 0, 0)"
+            )
+            for (i in 0 until rowCount) {
+                val word = WORDS[i % WORDS.size]
+                val other = WORDS[(i / WORDS.size) % WORDS.size]
+                insert.bindString(1, "$word $other $i")
+                insert.bindString(2, "Notes about $other and $word")
+                insert.bindLong(3, (i % 3 + 1).toLong())
+                insert.bindLong(4, i.toLong())
+                insert.executeInsert()
+                insert.clearBindings()
+            }
+            sqlDb.setTransactionSuccessful()
+        } finally {
+            sqlDb.endTransaction()
+        }
+    }
+
+    private fun countRows(sql: String, args: Array<Any?>): Int {
+        db.query(sql, args).use { cursor ->
+            var count = 0
+            while (cursor.moveToNext()) count++
+            return count
+        }
+    }
+
+    private companion object {
+        const val TERM = "invoice"
+
+        // A word fragment, which FTS prefix terms would not find but LIKE does.
+        const val FRAGMENT = "nvoic"
+
+        // One letter missing, which neither SQL search finds.
+        const val TYPO = "invoce"
+
+        val WORDS = listOf(
+            "groceries", "invoice", "report", "laundry", "dentist", "meeting", "gym", "taxes",
+            "birthday", "garden", "email", "review", "budget", "flight", "doctor", "library",
+            "backup", "presentation", "homework", "insurance", "plumber", "renewal", "concert"
+        )
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.smarttodo.data
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import com.example.smarttodo.util.OperationResult
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import java.io.File
+import kotlin.system.measureNanoTime
+
+/**
+ * Measures [TaskRepository.writeSnapshot] and [TaskRepository.restoreSnapshot] at 50k rows and
+ * compares the snapshot's size with the SQLite files a raw-file backup would copy. Runs only with
+ * [Benchmarks] enabled; [TaskSnapshotTest] covers correctness. The snapshot must be smaller than
+ * the database files, and each direction must finish within [MAX_MILLIS].
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class TaskSnapshotBenchmarkTest {
+
+    private val context = ApplicationProvider.getApplicationContext<Context>()
+    private lateinit var db: TaskDatabase
+    private lateinit var snapshot: File
+
+    @Before
+    fun setup() {
+        context.deleteDatabase(DB_NAME)
+        db = TaskDatabase.create(context, DB_NAME, DatabaseTuning())
+        snapshot = File(context.filesDir, "benchmark.snapshot")
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+        context.deleteDatabase(DB_NAME)
+        snapshot.delete()
+    }
+
+    @Test
+    fun `snapshot backup and restore at 50k rows`() = runBlocking {
+        Benchmarks.assumeEnabled()
+        val dao = db.taskDao()
+        val repository = TaskRepository(dao, ioDispatcher = db.queryDispatcher)
+        dao.insertAll(List(ROW_COUNT) { i ->
+            Task(
+                title = "Task $i",
+                description = if (i % 3 == 0) "Follow up with the team about item $i" else "",
+                priority = Priority.entries[i % Priority.entries.size],
+                taskType = TaskType.entries[i % TaskType.entries.size],
+                isCompleted = i % 4 == 0,
+                createdAt = NOW + i * MINUTE,
+                dueDate = if (i % 2 == 0) NOW + i * MINUTE + DAY else null,
+                completionDate = if (i % 4 == 0) NOW + i * MINUTE + HOUR else null
+            ).withDueEpochDay()
+        }) { _, _ -> }
+        db.query("PRAGMA wal_checkpoint(TRUNCATE)", emptyArray()).use { it.moveToFirst() }
+
+        val backupNanos = measureNanoTime {
+            assertEquals(OperationResult.Success(ROW_COUNT), repository.writeSnapshot(snapshot))
+        }
+        val restoreNanos = measureNanoTime {
+            assertEquals(OperationResult.Success(ROW_COUNT), repository.restoreSnapshot(snapshot, {}, {}))
+        }
+        val databaseBytes = listOf("", "-wal", "-shm").sumOf { context.getDatabasePath(DB_NAME + it).length() }
+
+        val report = "backup=${backupNanos / 1_000_000}ms restore=${restoreNanos / 1_000_000}ms " +
+            "snapshot=${snapshot.length()}B sqlite=${databaseBytes}B"
+        assertTrue(report, snapshot.length() < databaseBytes)
+        assertTrue(report, backupNanos / 1_000_000 < MAX_MILLIS && restoreNanos / 1_000_000 < MAX_MILLIS)
+    }
+
+    private companion object {
+        const val DB_NAME = "snapshot-benchmark.db"
+        const val ROW_COUNT = 50_000
+
+        /** Generous on purpose: catches a per-row transaction or an unbuffered stream, not jitter. */
+        const val MAX_MILLIS = 20_000L
+        const val NOW = 1_700_000_000_000L
+        const val MINUTE = 60_000L
+        const val HOUR = 3_600_000L
+        const val DAY = 86_400_000L
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.smarttodo.data
+
+import android.content.Context
+import androidx.room.Room
+import androidx.test.core.app.ApplicationProvider
+import com.example.smarttodo.util.OperationResult
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import java.io.File
+
+/**
+ * Round-trips tasks through [TaskRepository.writeSnapshot] and [TaskRepository.restoreSnapshot],
+ * and checks that a damaged snapshot leaves the table untouched.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class TaskSnapshotTest {
+
+    private lateinit var db: TaskDatabase
+    private lateinit var dao: TaskDao
+    private lateinit var repository: TaskRepository
+    private lateinit var file: File
+
+    @Before
+    fun setup() {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        db = Room.inMemoryDatabaseBuilder(context, TaskDatabase::class.java)
+            .allowMainThreadQueries()
+            .build()
+        dao = db.taskDao()
+        repository = TaskRepository(dao)
+        file = File(context.filesDir, "tasks.snapshot")
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+        file.delete()
+    }
+
+    @Test
+    fun `snapshot restores every field across blocks`() = runBlocking {
+        val tasks = List(BATCH_CHUNK_SIZE * 2 + 7) { i ->
+            Task(
+                title = if (i == 0) "Ünïcödé ✓ title" else "Task $i",
+                description = if (i % 2 == 0) "" else "Notes for $i",
+                priority = Priority.entries[i % Priority.entries.size],
+                isCompleted = i % 3 == 0,
+                createdAt = NOW + i * MINUTE,
+                dueDate = if (i % 4 == 0) null else NOW - i * HOUR,
+                completionDate = if (i % 3 == 0) NOW + i else null,
+                hasReminder = i % 5 == 0,
+                preReminderOffsetMinutes = if (i % 5 == 0) -i else null,
+                taskType = TaskType.entries[i % TaskType.entries.size],
+                estimatedPomodoros = i % 9,
+                completedPomodoros = i % 4,
+                soundUri = if (i % 7 == 0) "content://media/sounds/$i" else null
+            ).withDueEpochDay()
+        }
+        dao.insertAll(tasks) { _, _ -> }
+        // Gaps in the ids, so deltas other than 1 are covered.
+        dao.deleteByIds(listOf(3, 4, 600)) { _, _ -> }
+        val expected = dao.getAllTasksNonLiveData().sortedBy { it.id }
+
+        assertEquals(OperationResult.Success(expected.size), repository.writeSnapshot(file))
+        dao.deleteAllTasks()
+        dao.insert(Task(title = "Replaced by the restore"))
+
+        assertEquals(OperationResult.Success(expected.size), repository.restoreSnapshot(file, {}, {}))
+        // Restored rows count as modified by the restore.
+        assertEquals(expected, dao.getAllTasksNonLiveData().sortedBy { it.id }.map { it.copy(lastModified = 0) })
+    }
+
+    @Test
+    fun `truncated snapshot fails without touching the table`() = runBlocking {
+        dao.insertAll(List(BATCH_CHUNK_SIZE + 1) { Task(title = "Task $it") }) { _, _ -> }
+        repository.writeSnapshot(file)
+        file.writeBytes(file.readBytes().copyOf(file.length().toInt() - 20))
+        val kept = dao.insert(Task(title = "Still here")).toInt()
+
+        assertTrue(repository.restoreSnapshot(file, {}, {}) is OperationResult.Error)
+        assertEquals(BATCH_CHUNK_SIZE + 2, dao.getTaskCount())
+        assertEquals("Still here", dao.getTaskById(kept)?.title)
+    }
+
+    private companion object {
+        const val NOW = 1_700_000_000_000L
+        const val MINUTE = 60_000L
+        const val HOUR = 3_600_000L
+    }
+}
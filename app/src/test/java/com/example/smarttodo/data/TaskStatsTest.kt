@@ -0,0 +1,103 @@
+package com.example.smarttodo.data
+
+import android.content.Context
+import androidx.room.Room
+import androidx.test.core.app.ApplicationProvider
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+/**
+ * Checks that the counters kept by [TaskDatabase.createStatsTriggers] always equal a fresh
+ * count over 'tasks', across every kind of write the DAO makes.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class TaskStatsTest {
+
+    private lateinit var db: TaskDatabase
+    private lateinit var dao: TaskDao
+
+    @Before
+    fun setup() {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        db = Room.inMemoryDatabaseBuilder(context, TaskDatabase::class.java)
+            .addCallback(TaskDatabase.STATS_CALLBACK)
+            .allowMainThreadQueries()
+            .build()
+        dao = db.taskDao()
+    }
+
+    @After
+    fun tearDown() {
+        db.close()
+    }
+
+    @Test
+    fun `counters match the table after every kind of write`() = runBlocking {
+        val tasks = List(40) { i ->
+            Task(
+                title = "Task $i",
+                priority = Priority.entries[i % Priority.entries.size],
+                taskType = TaskType.entries[i % TaskType.entries.size],
+                isCompleted = i % 5 == 0,
+                dueDate = if (i % 4 == 0) null else NOW,
+                dueEpochDay = if (i % 4 == 0) null else TODAY - 2 + i % 4
+            )
+        }
+        val ids = dao.insertAll(tasks) { _, _ -> }.map { it.toInt() }
+        assertCountersExact()
+
+        dao.toggleCompletion(ids[1], NOW)
+        dao.markCompleted(ids[2], NOW)
+        dao.setCompletedByIds(ids.subList(10, 20), true, NOW) { _, _ -> }
+        assertCountersExact()
+
+        val first = dao.getTaskByIdNonLiveData(ids[3])!!
+        dao.update(first.copy(priority = Priority.HIGH, taskType = TaskType.CREATIVE, dueEpochDay = TODAY - 7))
+        dao.setDueEpochDay(ids.subList(20, 30), TODAY - 1)
+        assertCountersExact()
+
+        // REPLACE of an existing id deletes the old row without firing delete triggers.
+        dao.insert(first.copy(isCompleted = false, priority = Priority.LOW))
+        assertCountersExact()
+
+        dao.deleteByIds(ids.subList(0, 15)) { _, _ -> }
+        dao.deleteCompletedTasks()
+        assertCountersExact()
+
+        dao.deleteAllTasks()
+        assertCountersExact()
+        assertEquals(TaskStatsRow(total = 0, completed = 0, creative = 0, analytical = 0, administrative = 0), dao.getStatsRow())
+    }
+
+    private suspend fun assertCountersExact() {
+        val all = dao.getAllTasksNonLiveData()
+        val expected = TaskStatsRow(
+            total = all.size,
+            completed = all.count { it.isCompleted },
+            creative = all.count { it.taskType == TaskType.CREATIVE },
+            analytical = all.count { it.taskType == TaskType.ANALYTICAL },
+            administrative = all.count { it.taskType == TaskType.ADMINISTRATIVE }
+        )
+        assertEquals(expected, dao.getStatsRow())
+
+        val expectedOverdue = all
+            .filter { !it.isCompleted && it.dueEpochDay != null && it.dueEpochDay!! < TODAY }
+            .groupingBy { it.priority }
+            .eachCount()
+        val overdue = dao.observeOverdueCountsByPriority(TODAY).first().associate { it.priority to it.count }
+        assertEquals(expectedOverdue, overdue)
+    }
+
+    private companion object {
+        const val NOW = 1_700_000_000_000L
+        const val TODAY = 19_675
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.smarttodo.data
+
+import android.content.Context
+import androidx.room.Room
+import androidx.test.core.app.ApplicationProvider
+import com.example.smarttodo.util.OperationResult
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import java.io.ByteArrayOutputStream
+import java.nio.channels.Channels
+
+/**
+ * Round-trips tasks through [TaskRepository.exportTasks] and [TaskRepository.importTasks] in
+ * both formats, including values that need quoting or escaping.
+ */
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class TaskTransferTest {
+
+    private lateinit var source: TaskDatabase
+    private lateinit var target: TaskDatabase
+
+    @Before
+    fun setup() {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        source = Room.inMemoryDatabaseBuilder(context, TaskDatabase::class.java).allowMainThreadQueries().build()
+        target = Room.inMemoryDatabaseBuilder(context, TaskDatabase::class.java).allowMainThreadQueries().build()
+    }
+
+    @After
+    fun tearDown() {
+        source.close()
+        target.close()
+    }
+
+    @Test
+    fun `json lines round trip keeps every field and skips duplicates`() = roundTrip(TaskTransferFormat.JSON_LINES)
+
+    @Test
+    fun `csv round trip keeps every field and skips duplicates`() = roundTrip(TaskTransferFormat.CSV)
+
+    private fun roundTrip(format: TaskTransferFormat) = runBlocking {
+        val tasks = List(BATCH_CHUNK_SIZE + 3) { i ->
+            Task(
+                title = if (i == 0) "Quote \"this\", then\r\nthat \\ é" else "Task $i",
+                description = if (i % 2 == 0) "" else "Line one\nline two, \"quoted\"",
+                priority = Priority.entries[i % Priority.entries.size],
+                isCompleted = i % 3 == 0,
+                createdAt = NOW + i,
+                dueDate = if (i % 4 == 0) null else NOW + i * HOUR,
+                completionDate = if (i % 3 == 0) NOW else null,
+                hasReminder = i % 5 == 0,
+                preReminderOffsetMinutes = if (i % 5 == 0) 15 else null,
+                taskType = TaskType.entries[i % TaskType.entries.size],
+                estimatedPomodoros = i % 4,
+                completedPomodoros = i % 2,
+                soundUri = if (i % 7 == 0) "content://media/sounds/$i" else null
+            )
+        }
+        source.taskDao().insertAll(tasks.map { it.withDueEpochDay() }) { _, _ -> }
+
+        val bytes = ByteArrayOutputStream()
+        val exported = TaskRepository(source.taskDao()).exportTasks(Channels.newChannel(bytes), format)
+        assertEquals(OperationResult.Success(tasks.size), exported)
+
+        val importer = TaskRepository(target.taskDao())
+        val first = importer.importTasks(Channels.newChannel(bytes.toByteArray().inputStream()), format, batchSize = 100)
+        assertEquals(OperationResult.Success(ImportSummary(imported = tasks.size, duplicates = 0, rejected = 0)), first)
+        assertEquals(
+            tasks.map { it.withDueEpochDay() },
+            target.taskDao().getAllTasksNonLiveData().sortedBy { it.createdAt }.map { it.copy(id = 0, lastModified = 0) }
+        )
+
+        val again = importer.importTasks(Channels.newChannel(bytes.toByteArray().inputStream()), format)
+        assertEquals(OperationResult.Success(ImportSummary(imported = 0, duplicates = tasks.size, rejected = 0)), again)
+        assertEquals(tasks.size, target.taskDao().getTaskCount())
+    }
+
+    @Test
+    fun `rows without a title or with bad values are rejected`() = runBlocking {
+        val input = """
+            {"title":"Kept","priority":"HIGH"}
+            {"title":"  "}
+            {"title":"Bad priority","priority":"URGENT"}
+            {"title":"Bad date","dueDate":"tomorrow"}
+            not json
+        """.trimIndent()
+
+        val result = TaskRepository(target.taskDao())
+            .importTasks(Channels.newChannel(input.byteInputStream()), TaskTransferFormat.JSON_LINES)
+
+        assertEquals(OperationResult.Success(ImportSummary(imported = 1, duplicates = 0, rejected = 4)), result)
+        assertEquals(Priority.HIGH, target.taskDao().getAllTasksNonLiveData().single().priority)
+    }
+
+    @Test
+    fun `rows without a creation time are duplicates when imported again`() = runBlocking {
+        val input = """
+            {"title":"No date","priority":"HIGH"}
+            {"title":"Same title","createdAt":$NOW}
+            {"title":"Same title","createdAt":${NOW + 1}}
+        """.trimIndent()
+        val repository = TaskRepository(target.taskDao())
+
+        assertEquals(
+            OperationResult.Success(ImportSummary(imported = 3, duplicates = 0, rejected = 0)),
+            repository.importTasks(Channels.newChannel(input.byteInputStream()), TaskTransferFormat.JSON_LINES)
+        )
+        assertEquals(
+            OperationResult.Success(ImportSummary(imported = 0, duplicates = 3, rejected = 0)),
+            repository.importTasks(Channels.newChannel(input.byteInputStream()), TaskTransferFormat.JSON_LINES)
+        )
+        assertEquals(3, target.taskDao().getTaskCount())
+    }
+
+    @Test
+    fun `format comes from the file name, then the mime type, then the content`() = runBlocking {
+        assertEquals(TaskTransferFormat.CSV, TaskTransferFormat.fromFileName("tasks.CSV"))
+        assertEquals(TaskTransferFormat.JSON_LINES, TaskTransferFormat.fromFileName("tasks.jsonl"))
+        assertNull(TaskTransferFormat.fromFileName("tasks"))
+        assertEquals(TaskTransferFormat.CSV, TaskTransferFormat.fromMimeType("text/comma-separated-values"))
+        assertNull(TaskTransferFormat.fromMimeType("text/plain"))
+        assertNull(TaskTransferFormat.fromMimeType("application/octet-stream"))
+
+        val csv = "\uFEFFtitle,priority\r\nFrom CSV,HIGH\r\n"
+        val jsonLines = "\n  {\"title\":\"From JSON\"}\n"
+        val repository = TaskRepository(target.taskDao())
+        assertEquals(
+            OperationResult.Success(ImportSummary(imported = 1, duplicates = 0, rejected = 0)),
+            repository.importTasks(Channels.newChannel(csv.byteInputStream()), format = null)
+        )
+        assertEquals(
+            OperationResult.Success(ImportSummary(imported = 1, duplicates = 0, rejected = 0)),
+            repository.importTasks(Channels.newChannel(jsonLines.byteInputStream()), format = null)
+        )
+        assertEquals(
+            listOf("From CSV" to Priority.HIGH, "From JSON" to Priority.LOW),
+            target.taskDao().getAllTasksNonLiveData().sortedBy { it.id }.map { it.title to it.priority }
+        )
+    }
+
+    private companion object {
+        const val NOW = 1_700_000_000_000L
+        const val HOUR = 3_600_000L
+    }
+}
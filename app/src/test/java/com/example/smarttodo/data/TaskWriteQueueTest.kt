@@ -0,0 +1,108 @@
+package com.example.smarttodo.data
+
+import android.content.Context
+import androidx.room.Room
+import androidx.test.core.app.ApplicationProvider
+import com.example.smarttodo.util.OperationResult
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class TaskWriteQueueTest {
+
+    private lateinit var db: TaskDatabase
+    private lateinit var writerScope: CoroutineScope
+    private lateinit var queue: TaskWriteQueue
+
+    @Before
+    fun setup() {
+        val context = ApplicationProvider.getApplicationContext<Context>()
+        db = Room.inMemoryDatabaseBuilder(context, TaskDatabase::class.java)
+            .allowMainThreadQueries()
+            .build()
+        writerScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+        queue = TaskWriteQueue(db, writerScope)
+    }
+
+    @After
+    fun tearDown() {
+        writerScope.cancel()
+        db.close()
+    }
+
+    @Test
+    fun `burst of updates to one task ends with the last one`() = runBlocking {
+        val id = queue.insert(Task(title = "v0")).toInt()
+
+        (1..50).map { i -> async { queue.update(Task(id = id, title = "v$i")) } }.awaitAll()
+
+        assertEquals("v50", db.taskDao().getTaskByIdNonLiveData(id)?.title)
+    }
+
+    @Test
+    fun `markCompleted tells a completed task from a missing one`() = runBlocking {
+        val repository = TaskRepository(db.taskDao(), writeQueue = queue)
+        val id = queue.insert(Task(title = "open")).toInt()
+
+        assertEquals(OperationResult.Success(MarkCompletedResult.COMPLETED), repository.markCompleted(id))
+        assertEquals(OperationResult.Success(MarkCompletedResult.ALREADY_COMPLETED), repository.markCompleted(id))
+        queue.deleteById(id)
+        assertEquals(OperationResult.Success(MarkCompletedResult.NOT_FOUND), repository.markCompleted(id))
+    }
+
+    @Test
+    fun `a failing write does not fail the writes batched with it`() = runBlocking {
+        val id = queue.insert(Task(title = "before")).toInt()
+
+        val failing = async { runCatching { queue.run<Unit> { throw IllegalStateException("boom") } } }
+        val update = async { queue.update(Task(id = id, title = "after")) }
+
+        assertTrue(failing.await().isFailure)
+        update.await()
+        assertEquals("after", db.taskDao().getTaskByIdNonLiveData(id)?.title)
+    }
+
+    @Test
+    fun `updates are not merged across a batch write in between`() = runBlocking {
+        val id = queue.insert(Task(title = "open")).toInt()
+        // Holds the writer so the three writes below are queued together and form one batch.
+        val gate = CompletableDeferred<Unit>()
+        val blocker = async(start = CoroutineStart.UNDISPATCHED) { queue.run { gate.await() } }
+
+        val writes = listOf(
+            async(start = CoroutineStart.UNDISPATCHED) { queue.update(Task(id = id, title = "edited")) },
+            async(start = CoroutineStart.UNDISPATCHED) {
+                queue.run { it.setCompletedByIds(listOf(id), true, NOW) { _, _ -> } }
+            },
+            async(start = CoroutineStart.UNDISPATCHED) { queue.update(Task(id = id, title = "reopened", isCompleted = false)) }
+        )
+        gate.complete(Unit)
+        blocker.await()
+        writes.awaitAll()
+
+        val task = db.taskDao().getTaskByIdNonLiveData(id)!!
+        assertEquals("reopened", task.title)
+        assertFalse(task.isCompleted)
+    }
+
+    private companion object {
+        const val NOW = 1_700_000_000_000L
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.smarttodo.data
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class TrigramIndexTest {
+
+    @Test
+    fun `finds substrings in titles and descriptions ignoring ASCII case`() {
+        val index = TrigramIndex()
+        index.load(sequenceOf(item(1, "Buy GROCERIES"), item(2, "Call", "about the grocery bill"), item(3, "Crème brûlée"), item(4, "abcd", "xcde")))
+
+        assertEquals(listOf(1, 2), index.search("groc", null).map { it.id })
+        assertEquals(listOf(1), index.search("eries", null).map { it.id })
+        // Non-ASCII letters are compared exactly, like LIKE does.
+        assertEquals(listOf(3), index.search("brûl", null).map { it.id })
+        assertEquals(emptyList<Int>(), index.search("BRÛL", null).map { it.id })
+        // Shorter than a trigram: every row is checked.
+        assertEquals(listOf(1, 2, 3), index.search("r", null).map { it.id })
+        // Row 4 has every trigram of the query, split across title and description.
+        assertEquals(emptyList<Int>(), index.search("abcde", null).map { it.id })
+    }
+
+    @Test
+    fun `changes update the postings`() {
+        val index = TrigramIndex()
+        index.load(sequenceOf(item(1, "Grocery run"), item(2, "Laundry")))
+
+        index.apply(listOf(1, 2, 3), mapOf(1 to item(1, "Pharmacy run"), 3 to item(3, "Grocery list", completed = true)))
+
+        assertEquals(listOf(3), index.search("grocery", null).map { it.id })
+        assertEquals(emptyList<Int>(), index.search("grocery", false).map { it.id })
+        assertEquals(listOf(1), index.search("pharm", null).map { it.id })
+        assertEquals(emptyList<Int>(), index.search("laundry", null))
+        assertEquals(2, index.size)
+    }
+
+    @Test
+    fun `results are ordered like the LIKE query`() {
+        val index = TrigramIndex()
+        index.load(
+            sequenceOf(
+                item(1, "task a", priority = Priority.LOW, createdAt = 1),
+                item(2, "task b", priority = Priority.HIGH, createdAt = 3),
+                item(3, "task c", priority = Priority.HIGH, createdAt = 2)
+            )
+        )
+
+        assertEquals(listOf(3, 2, 1), index.search("task", null).map { it.id })
+    }
+
+    @Test
+    fun `wildcards and an unloaded index go to SQLite`() {
+        val index = TrigramIndex()
+        assertFalse(index.canSearch("milk"))
+        index.load(emptySequence())
+        assertTrue(index.canSearch("milk"))
+        assertFalse(index.canSearch("50%"))
+        assertFalse(index.canSearch("a_b"))
+        index.invalidate()
+        assertFalse(index.canSearch("milk"))
+    }
+
+    private fun item(
+        id: Int,
+        title: String,
+        description: String = "",
+        completed: Boolean = false,
+        priority: Priority = Priority.MEDIUM,
+        createdAt: Long = id.toLong()
+    ) = TaskListItem(
+        id = id,
+        title = title,
+        description = description,
+        priority = priority,
+        dueDate = null,
+        isCompleted = completed,
+        completionDate = null,
+        createdAt = createdAt,
+        dueEpochDay = null
+    )
+}
@@ -0,0 +1,49 @@
+package com.example.smarttodo.ui
+
+import com.example.smarttodo.data.Priority
+import com.example.smarttodo.data.TaskFilter
+import com.example.smarttodo.data.TaskListItem
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class FilteredTaskListTest {
+
+    @Test
+    fun `patches keep the filter's order and drop rows that stop matching`() {
+        val list = FilteredTaskList(TaskFilter.TODAY, TODAY, listOf(item(1, due = 300), item(2, due = 100)))
+
+        assertTrue(list.apply(setOf(3), mapOf(3 to item(3, due = 200))))
+        assertEquals(listOf(2, 3, 1), list.snapshot().map { it.id })
+
+        // Completing a task moves it out of TODAY; deleting one removes it.
+        assertTrue(list.apply(setOf(1, 2), mapOf(1 to item(1, due = 300, completed = true))))
+        assertEquals(listOf(3), list.snapshot().map { it.id })
+    }
+
+    @Test
+    fun `replaying a change is a no-op`() {
+        val row = item(1, due = 100)
+        val list = FilteredTaskList(TaskFilter.TODAY, TODAY, listOf(row))
+
+        assertFalse(list.apply(setOf(1), mapOf(1 to row)))
+        assertEquals(listOf(row), list.snapshot())
+    }
+
+    private fun item(id: Int, due: Long, completed: Boolean = false) = TaskListItem(
+        id = id,
+        title = "Task $id",
+        description = "",
+        priority = Priority.MEDIUM,
+        dueDate = due,
+        isCompleted = completed,
+        completionDate = null,
+        createdAt = id.toLong(),
+        dueEpochDay = TODAY
+    )
+
+    private companion object {
+        const val TODAY = 19_675
+    }
+}
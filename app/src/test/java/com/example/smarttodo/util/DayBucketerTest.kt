@@ -0,0 +1,67 @@
+package com.example.smarttodo.util
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.time.Instant
+import java.util.TimeZone
+
+class DayBucketerTest {
+
+    @Test
+    fun `spring forward day is 23 hours long`() {
+        val bucketer = DayBucketer(utc("2024-03-10T12:00:00Z"), NEW_YORK)
+
+        assertEquals(utc("2024-03-10T05:00:00Z"), bucketer.startOfToday)
+        assertEquals(utc("2024-03-11T04:00:00Z"), bucketer.startOfTomorrow)
+        // 23:30 local, after the clocks went forward.
+        assertEquals(DayBucket.TODAY, bucketer.bucketOf(utc("2024-03-11T03:30:00Z")))
+        assertEquals(DayBucket.TOMORROW, bucketer.bucketOf(utc("2024-03-11T04:00:00Z")))
+    }
+
+    @Test
+    fun `fall back day is 25 hours long`() {
+        val bucketer = DayBucketer(utc("2024-11-03T12:00:00Z"), NEW_YORK)
+
+        assertEquals(utc("2024-11-03T04:00:00Z"), bucketer.startOfToday)
+        assertEquals(utc("2024-11-04T05:00:00Z"), bucketer.startOfTomorrow)
+        assertEquals(DayBucket.TODAY, bucketer.bucketOf(utc("2024-11-04T04:30:00Z")))
+        assertEquals(DayBucket.OVERDUE, bucketer.bucketOf(utc("2024-11-03T03:59:59Z")))
+    }
+
+    @Test
+    fun `a day whose midnight is skipped starts when the clocks jump`() {
+        // Brazil moved the clocks from 00:00 to 01:00 on 2018-11-04.
+        val bucketer = DayBucketer(utc("2018-11-04T12:00:00Z"), TimeZone.getTimeZone("America/Sao_Paulo"))
+
+        assertEquals(utc("2018-11-04T03:00:00Z"), bucketer.startOfToday)
+        assertEquals(DayBucket.OVERDUE, bucketer.bucketOf(utc("2018-11-04T02:59:59Z")))
+    }
+
+    @Test
+    fun `buckets follow the zone the bucketer was created in`() {
+        val due = utc("2024-06-01T23:00:00Z")
+        val now = utc("2024-06-01T12:00:00Z")
+
+        assertEquals(DayBucket.TODAY, DayBucketer(now, NEW_YORK).bucketOf(due))
+        assertEquals(DayBucket.TOMORROW, DayBucketer(now, TimeZone.getTimeZone("Europe/Berlin")).bucketOf(due))
+        assertEquals(DayBucket.UPCOMING, DayBucketer(now, NEW_YORK).bucketOf(utc("2024-06-03T04:00:00Z")))
+        assertEquals(DayBucket.NONE, DayBucketer(now, NEW_YORK).bucketOf(null))
+    }
+
+    @Test
+    fun `a bucketer is current until midnight or a zone change`() {
+        val bucketer = DayBucketer(utc("2024-06-01T12:00:00Z"), NEW_YORK)
+
+        assertTrue(bucketer.isCurrent(utc("2024-06-02T03:59:59Z"), NEW_YORK))
+        assertFalse(bucketer.isCurrent(utc("2024-06-02T04:00:00Z"), NEW_YORK))
+        assertFalse(bucketer.isCurrent(utc("2024-06-01T13:00:00Z"), TimeZone.getTimeZone("Asia/Tokyo")))
+    }
+
+    private fun utc(iso: String): Long = Instant.parse(iso).toEpochMilli()
+
+    private companion object {
+        val NEW_YORK: TimeZone = TimeZone.getTimeZone("America/New_York")
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.smarttodo.util
+
+import android.content.Context
+import android.content.Intent
+import android.os.Looper
+import androidx.test.core.app.ApplicationProvider
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.launch
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+import org.robolectric.annotation.Config
+import java.util.TimeZone
+
+@RunWith(RobolectricTestRunner::class)
+@Config(sdk = [34])
+class DayTickerTest {
+
+    private val context = ApplicationProvider.getApplicationContext<Context>()
+    private val defaultZone = TimeZone.getDefault()
+    private val scope = CoroutineScope(Dispatchers.Unconfined)
+
+    @After
+    fun tearDown() {
+        scope.cancel()
+        TimeZone.setDefault(defaultZone)
+    }
+
+    @Test
+    fun `a time zone change emits a bucketer for the new zone`() {
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"))
+        val days = ArrayList<DayBucketer>()
+        scope.launch { DayTicker.days(context).collect { days += it } }
+        assertEquals(1, days.size)
+
+        // Fourteen hours ahead of UTC, so the local day starts at a different instant.
+        TimeZone.setDefault(TimeZone.getTimeZone("Pacific/Kiritimati"))
+        context.sendBroadcast(Intent(Intent.ACTION_TIMEZONE_CHANGED))
+        shadowOf(Looper.getMainLooper()).idle()
+
+        assertEquals(2, days.size)
+        assertFalse(days[0].isCurrent())
+        assertTrue(days[1].isCurrent())
+    }
+
+    @Test
+    fun `a broadcast that leaves the day alone emits nothing`() {
+        val days = ArrayList<DayBucketer>()
+        scope.launch { DayTicker.days(context).collect { days += it } }
+
+        context.sendBroadcast(Intent(Intent.ACTION_TIME_CHANGED))
+        shadowOf(Looper.getMainLooper()).idle()
+
+        assertEquals(1, days.size)
+    }
+}